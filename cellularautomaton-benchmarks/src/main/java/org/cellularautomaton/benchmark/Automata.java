@@ -0,0 +1,226 @@
+package org.cellularautomaton.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+
+/**
+ * The automata used by the benchmarks. Each of them works on a cyclic square
+ * space, so it can run as many steps as the benchmarks need without reaching
+ * a border, and its initial state is always the same for a given size. The
+ * states are integers, in order to measure the engine and not the rules.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public enum Automata {
+	/**
+	 * The game of life on a random soup (1 cell over 3 alive) : 0 is dead, 1
+	 * is alive.
+	 */
+	LIFE(0, 1) {
+		private final Neighborhood neighborhood = Neighborhood.moore(2);
+
+		@Override
+		public Integer calculateNextStateOf(ICell<Integer> cell) {
+			int alive = 0;
+			for (ICell<Integer> neighbor : cell.getNeighbors(neighborhood)) {
+				alive += neighbor.getCurrentState();
+			}
+			return alive == 3 || alive == 2 && cell.getCurrentState() == 1 ? 1
+					: 0;
+		}
+
+		@Override
+		protected Integer getInitialState(int x, int y, int size,
+				Random random) {
+			return random.nextInt(3) == 0 ? 1 : 0;
+		}
+	},
+	/**
+	 * WireWorld on parallel wires (1 row over 4) where electrons loop : 0 is
+	 * empty, 1 is an electron head, 2 is an electron tail and 3 is a
+	 * conductor.
+	 */
+	WIREWORLD(0, 1, 2, 3) {
+		@Override
+		public Integer calculateNextStateOf(ICell<Integer> cell) {
+			switch (cell.getCurrentState()) {
+			case 1:
+				return 2;
+			case 2:
+				return 3;
+			case 3:
+				int heads = 0;
+				for (int x = -1; x <= 1; x++) {
+					for (int y = -1; y <= 1; y++) {
+						if (cell.getRelativeCell(x, y).getCurrentState() == 1) {
+							heads++;
+						}
+					}
+				}
+				return heads == 1 || heads == 2 ? 1 : 3;
+			default:
+				return cell.getCurrentState();
+			}
+		}
+
+		@Override
+		protected Integer getInitialState(int x, int y, int size,
+				Random random) {
+			if (y % 4 != 0) {
+				return 0;
+			} else if (x % 8 == 1) {
+				return 1;
+			} else if (x % 8 == 0) {
+				return 2;
+			} else {
+				return 3;
+			}
+		}
+	},
+	/**
+	 * The Langton's ant starting at the center of the space : the bit 0 gives
+	 * the color of the cell (0 for black, 1 for white) and the other bits the
+	 * direction of the ant on the cell (0 for no ant, then 1 to 4 for up,
+	 * right, down and left).
+	 */
+	ANT(0, 1, 2, 3, 4, 5, 6, 7, 8, 9) {
+		private final int[][] moves = { { 0, -1 }, { 1, 0 }, { 0, 1 },
+				{ -1, 0 } };
+
+		@Override
+		public Integer calculateNextStateOf(ICell<Integer> cell) {
+			int state = cell.getCurrentState();
+			int color = state & 1;
+			if (state >> 1 != 0) {
+				// the ant leaves the cell, which has already its new color
+				return color;
+			}
+			for (int direction = 0; direction < moves.length; direction++) {
+				int[] move = moves[direction];
+				int neighbor = cell.getRelativeCell(-move[0], -move[1])
+						.getCurrentState();
+				if (neighbor >> 1 == direction + 1) {
+					// turn right on white, left on black, then flip the color
+					int turn = color == 1 ? 1 : 3;
+					return (1 - color) | ((direction + turn) % 4 + 1) << 1;
+				}
+			}
+			return state;
+		}
+
+		@Override
+		protected Integer getInitialState(int x, int y, int size,
+				Random random) {
+			return x == size / 2 && y == size / 2 ? 1 << 1 : 0;
+		}
+	};
+
+	/**
+	 * The seed of the random initial states, fixed to have always the same
+	 * space.
+	 */
+	private static final long SEED = 42;
+	/**
+	 * The states of the automaton, the first one being the default one.
+	 */
+	private final List<Integer> states;
+
+	private Automata(Integer... states) {
+		this.states = Arrays.asList(states);
+	}
+
+	/**
+	 * 
+	 * @param cell
+	 *            the cell to calculate
+	 * @return the next state of the cell
+	 */
+	public abstract Integer calculateNextStateOf(ICell<Integer> cell);
+
+	/**
+	 * 
+	 * @param x
+	 *            the first coordinate of the cell
+	 * @param y
+	 *            the second coordinate of the cell
+	 * @param size
+	 *            the length of the space on each dimension
+	 * @param random
+	 *            the generator to use for random states
+	 * @return the initial state of the cell
+	 */
+	protected abstract Integer getInitialState(int x, int y, int size,
+			Random random);
+
+	/**
+	 * 
+	 * @return the possible states of the cells
+	 */
+	public List<Integer> getStates() {
+		return states;
+	}
+
+	/**
+	 * Build the initial space of this automaton.
+	 * 
+	 * @param size
+	 *            the length of the space on each dimension
+	 * @param storage
+	 *            the storage of the space
+	 * @return the builder of the space, which is finalized
+	 */
+	public SpaceBuilder<Integer> createBuilder(final int size,
+			Storage storage) {
+		final Random random = new Random(SEED);
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(new AbstractStateFactory<Integer>() {
+			public List<Integer> getPossibleStates() {
+				return states;
+			}
+
+			public void customize(ICell<Integer> cell) {
+				int x = cell.getCoords().get(0);
+				int y = cell.getCoords().get(1);
+				cell.setCurrentState(getInitialState(x, y, size, random));
+			}
+		}).setRule(new IRule<Integer>() {
+			public Integer calculateNextStateOf(ICell<Integer> cell) {
+				return Automata.this.calculateNextStateOf(cell);
+			}
+		}).setStorage(storage);
+		builder.createNewSpace().addDimension(size, true)
+				.addDimension(size, true).finalizeSpace();
+		return builder;
+	}
+
+	/**
+	 * 
+	 * @param size
+	 *            the length of the space on each dimension
+	 * @return the initial space of this automaton, with linked cells
+	 */
+	public ISpace<Integer> createSpace(int size) {
+		return createBuilder(size, Storage.LINKED).getSpaceOfCell();
+	}
+
+	/**
+	 * 
+	 * @param size
+	 *            the length of the space on each dimension
+	 * @return an automaton working on the initial space of this automaton
+	 */
+	public CellularAutomaton<Integer> createAutomaton(int size) {
+		return new CellularAutomaton<Integer>(createSpace(size));
+	}
+}
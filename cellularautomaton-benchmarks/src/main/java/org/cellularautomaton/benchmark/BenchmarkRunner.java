@@ -0,0 +1,48 @@
+package org.cellularautomaton.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Run the benchmarks (all of them by default) and write their results in JSON,
+ * so they can be compared from a version to another. The arguments are the
+ * ones of the JMH command line, for example :
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar StepBenchmark -p size=256
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The results are written in {@link #DEFAULT_RESULT_FILE}, unless another
+ * file or format is given with the options <code>-rff</code> and
+ * <code>-rf</code>.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The file where the results are written by default.
+	 */
+	public static final String DEFAULT_RESULT_FILE = "target/benchmarks.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+		new Runner(options.build()).run();
+	}
+}
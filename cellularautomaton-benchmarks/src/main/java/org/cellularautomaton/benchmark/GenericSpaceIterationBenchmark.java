@@ -0,0 +1,60 @@
+package org.cellularautomaton.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure the time needed to go through all the cells of a
+ * {@link org.cellularautomaton.space.GenericSpace} (the space built with
+ * linked cells), either by iterating the space or by getting all its cells.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenericSpaceIterationBenchmark {
+
+	@Param({ "64", "256", "512" })
+	public int size;
+
+	private ISpace<Integer> space;
+
+	@Setup(Level.Trial)
+	public void createSpace() {
+		space = Automata.LIFE.createSpace(size);
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		for (ICell<Integer> cell : space) {
+			blackhole.consume(cell.getCurrentState());
+		}
+	}
+
+	@Benchmark
+	public void getAllCells(Blackhole blackhole) {
+		for (ICell<Integer> cell : space.getAllCells()) {
+			blackhole.consume(cell.getCurrentState());
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.cellularautomaton.benchmark;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.ScriptSpaceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time needed by the {@link ScriptSpaceBuilder} to parse a
+ * WireWorld script (the same than the scripted sample) and create its space.
+ * The cells of the script are made of parallel wires, like in
+ * {@link Automata#WIREWORLD}.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptSpaceBuilderBenchmark {
+
+	@Param({ "64", "256", "512" })
+	public int size;
+
+	private String script;
+
+	@Setup(Level.Trial)
+	public void createScript() {
+		StringWriter sw = new StringWriter();
+		PrintWriter out = new PrintWriter(sw);
+		out.println("[config]");
+		out.println("states=X_o.");
+		out.println("[rule]");
+		out.println("(0,0)=_ & ((-1,-1)+(-1,+0)+(-1,+1)+(+0,-1)+(+0,+1)+(+1,-1)+(+1,+0)+(+1,+1)=1o | (-1,-1)+(-1,+0)+(-1,+1)+(+0,-1)+(+0,+1)+(+1,-1)+(+1,+0)+(+1,+1)=2o) : o");
+		out.println("(0,0)=o:.");
+		out.println("(0,0)=.:_");
+		out.println("[cells]");
+		char[] row = new char[size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (y % 4 != 0) {
+					row[x] = 'X';
+				} else if (x % 8 == 1) {
+					row[x] = 'o';
+				} else if (x % 8 == 0) {
+					row[x] = '.';
+				} else {
+					row[x] = '_';
+				}
+			}
+			out.println(row);
+		}
+		out.close();
+		script = sw.toString();
+	}
+
+	@Benchmark
+	public ISpace<Character> parse() {
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(script);
+		return builder.getSpaceOfCell();
+	}
+}
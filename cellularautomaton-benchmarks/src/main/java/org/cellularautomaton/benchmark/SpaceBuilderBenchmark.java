@@ -0,0 +1,44 @@
+package org.cellularautomaton.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time needed by the
+ * {@link org.cellularautomaton.space.builder.SpaceBuilder} to create and
+ * finalize the space of the game of life, for each storage able to host it.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpaceBuilderBenchmark {
+
+	@Param({ "64", "256", "512" })
+	public int size;
+
+	@Param({ "LINKED", "ARRAY", "BITS" })
+	public Storage storage;
+
+	@Benchmark
+	public ISpace<Integer> build() {
+		return Automata.LIFE.createBuilder(size, storage).getSpaceOfCell();
+	}
+}
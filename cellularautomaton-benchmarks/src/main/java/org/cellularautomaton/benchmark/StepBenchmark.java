@@ -0,0 +1,91 @@
+package org.cellularautomaton.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.optimization.implemented.CalculateOnlyActiveTilesOptimization;
+import org.cellularautomaton.optimization.implemented.CalculateOnlyEvolvingZonesOptimization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time of a complete step ({@link CellularAutomaton#doStep()}) of
+ * each automaton, with and without the optimizations limiting the cells to
+ * calculate. The automaton is created once for each trial, so the steps
+ * measured follow each other like in a real run.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+	/**
+	 * The optimizations which can be added to the automaton.
+	 */
+	public static enum Optimization {
+		NONE, EVOLVING_ZONES, ACTIVE_TILES
+	}
+
+	@Param({ "LIFE", "WIREWORLD", "ANT" })
+	public Automata automata;
+
+	@Param({ "64", "256", "512" })
+	public int size;
+
+	@Param({ "NONE", "EVOLVING_ZONES", "ACTIVE_TILES" })
+	public Optimization optimization;
+
+	private CellularAutomaton<Integer> automaton;
+
+	/**
+	 * The cells depending on a cell for the rules of all the automata.
+	 */
+	private final Neighborhood neighborhood = Neighborhood.moore(2);
+
+	@SuppressWarnings("deprecation")
+	@Setup(Level.Trial)
+	public void createAutomaton() {
+		automaton = automata.createAutomaton(size);
+		switch (optimization) {
+		case EVOLVING_ZONES:
+			automaton.add(new CalculateOnlyEvolvingZonesOptimization<Integer>() {
+				@Override
+				protected Collection<ICell<Integer>> getCellsDependingTo(
+						ICell<Integer> cell) {
+					return cell.getNeighbors(neighborhood);
+				}
+			});
+			break;
+		case ACTIVE_TILES:
+			automaton.add(new CalculateOnlyActiveTilesOptimization<Integer>());
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Benchmark
+	public CellularAutomaton<Integer> doStep() {
+		automaton.doStep();
+		return automaton;
+	}
+}
@@ -1,7 +1,14 @@
 package org.cellularautomaton;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.optimization.Optimizable;
@@ -16,10 +23,19 @@ import org.cellularautomaton.optimization.step.OptimizationStep;
 import org.cellularautomaton.optimization.type.AutomatonCellsSelectionOptimization;
 import org.cellularautomaton.optimization.type.OptimizationType;
 import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.ISteppableSpace;
 
 /**
+ * <p>
  * A cellular automaton is a space of evolving cells. Each cell evolves
  * considering its actual state and the states of other cells.
+ * </p>
+ * <p>
+ * When the space is an {@link ISteppableSpace}, the automaton does not manage
+ * the cells one by one while it works on all of them : the space calculates
+ * and applies the next states of all its cells at once. The cells are managed
+ * one by one again as soon as an optimization selects the cells to manage.
+ * </p>
  * 
  * @author Matthieu Vergne (matthieu.vergne@gmail.com)
  * 
@@ -39,9 +55,10 @@ public class CellularAutomaton<StateType> implements
 	private final ISpace<StateType> cellSpace;
 
 	/**
-	 * The cells which have to be managed.
+	 * The cells which have to be managed, <code>null</code> while all the
+	 * cells of an {@link ISteppableSpace} are managed at once.
 	 */
-	private Collection<ICell<StateType>> cellsToManage = new HashSet<ICell<StateType>>();
+	private Collection<ICell<StateType>> cellsToManage = null;
 
 	/**
 	 * The optimizations to use.
@@ -53,6 +70,25 @@ public class CellularAutomaton<StateType> implements
 	 */
 	private boolean isCalculationDone;
 
+	/**
+	 * The executor used to manage the cells in parallel, <code>null</code> to
+	 * manage them sequentially.
+	 */
+	private ExecutorService executorService = null;
+
+	/**
+	 * The number of tasks the cells to manage are split into when they are
+	 * managed in parallel.
+	 */
+	private int parallelTasks = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The buffer used to split the cells to manage into tasks. It is kept
+	 * between the steps to not allocate it again at each step, but it is
+	 * cleared after each use to not keep the cells alive.
+	 */
+	private Object[] cellsBuffer = new Object[0];
+
 	/**
 	 * Create an automaton on a specific space of cells.
 	 * 
@@ -62,7 +98,10 @@ public class CellularAutomaton<StateType> implements
 	@SuppressWarnings("unchecked")
 	public CellularAutomaton(ISpace<StateType> cellSpace) {
 		this.cellSpace = cellSpace;
-		cellsToManage.addAll(cellSpace.getAllCells());
+		if (!(cellSpace instanceof ISteppableSpace)) {
+			cellsToManage = new HashSet<ICell<StateType>>(
+					cellSpace.getAllCells());
+		}
 		optimizations.setOwner(this);
 		optimizations
 				.setExecutor(
@@ -88,9 +127,7 @@ public class CellularAutomaton<StateType> implements
 		optimizations
 				.execute((Class<? extends OptimizationStep<CellularAutomaton<StateType>>>) AutomatonPreCalculationOptimization.class);
 
-		for (ICell<StateType> cell : cellsToManage) {
-			cell.calculateNextState();
-		}
+		manageCells(true);
 		isCalculationDone = true;
 
 		optimizations
@@ -106,15 +143,110 @@ public class CellularAutomaton<StateType> implements
 		optimizations
 				.execute((Class<? extends OptimizationStep<CellularAutomaton<StateType>>>) AutomatonPreApplyingOptimization.class);
 
-		for (ICell<StateType> cell : cellsToManage) {
-			cell.applyNextState();
-		}
+		manageCells(false);
 		isCalculationDone = false;
 
 		optimizations
 				.execute((Class<? extends OptimizationStep<CellularAutomaton<StateType>>>) AutomatonPostApplyingOptimization.class);
 	}
 
+	/**
+	 * Calculate or apply the next state of each cell to manage. If all the
+	 * cells of an {@link ISteppableSpace} are managed, the space manages them
+	 * at once. Otherwise, if an executor is given, the cells are split in
+	 * several tasks executed in parallel, or they are managed one after the
+	 * other.
+	 * 
+	 * @param isCalculation
+	 *            true to calculate the next states, false to apply them
+	 * @see #setExecutorService(ExecutorService)
+	 */
+	private void manageCells(final boolean isCalculation) {
+		if (cellsToManage == null) {
+			ISteppableSpace<StateType> space = (ISteppableSpace<StateType>) cellSpace;
+			if (isCalculation) {
+				space.calculateNextStates();
+			} else {
+				space.applyNextStates();
+			}
+		} else if (executorService == null || parallelTasks < 2
+				|| cellsToManage.size() < 2) {
+			for (ICell<StateType> cell : cellsToManage) {
+				if (isCalculation) {
+					cell.calculateNextState();
+				} else {
+					cell.applyNextState();
+				}
+			}
+		} else {
+			final int size = cellsToManage.size();
+			if (cellsBuffer.length < size) {
+				cellsBuffer = new Object[size];
+			}
+			final Object[] cells = cellsToManage.toArray(cellsBuffer);
+			int tasks = Math.min(parallelTasks, size);
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks);
+			for (int task = 0; task < tasks; task++) {
+				final int start = (int) ((long) size * task / tasks);
+				final int stop = (int) ((long) size * (task + 1) / tasks);
+				futures.add(executorService.submit(new Callable<Void>() {
+					@SuppressWarnings("unchecked")
+					@Override
+					public Void call() {
+						for (int index = start; index < stop; index++) {
+							ICell<StateType> cell = (ICell<StateType>) cells[index];
+							if (isCalculation) {
+								cell.calculateNextState();
+							} else {
+								cell.applyNextState();
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			boolean isDone = false;
+			try {
+				waitFor(futures);
+				isDone = true;
+			} finally {
+				if (isDone) {
+					Arrays.fill(cells, 0, size, null);
+				} else {
+					// other tasks can still read the buffer, so it is dropped
+					cellsBuffer = new Object[0];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wait for the end of the given tasks. If a task has failed, its exception
+	 * is thrown back in the current thread.
+	 * 
+	 * @param futures
+	 *            the tasks to wait for
+	 */
+	private void waitFor(List<Future<Void>> futures) {
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
 	/**
 	 * Execute a complete step of the automaton. After that, each cell has its
 	 * next state.
@@ -136,12 +268,71 @@ public class CellularAutomaton<StateType> implements
 	 * The cells which are managed by the automaton are basically all the cells
 	 * of the space. It is also possible to have another set of cells, for
 	 * example if some optimizations are used to restrain the cells to
-	 * calculate.
+	 * calculate. While all the cells of an {@link ISteppableSpace} are
+	 * managed, the cells of the space are given as is, so the returned
+	 * collection can be read-only (see {@link ISpace#getAllCells()}).
 	 * 
 	 * @return the cells which have to be managed
 	 */
 	public Collection<ICell<StateType>> getCellsToManage() {
-		return cellsToManage;
+		return cellsToManage == null ? cellSpace.getAllCells() : cellsToManage;
+	}
+
+	/**
+	 * <p>
+	 * Give an executor to manage the cells in parallel. The cells to manage are
+	 * split in several tasks (see {@link #setParallelTasks(int)}) which are
+	 * given to this executor, both for the calculation and the applying. By
+	 * default, no executor is given and the cells are managed sequentially.
+	 * The executor is not used while all the cells of an
+	 * {@link ISteppableSpace} are managed at once by the space.
+	 * </p>
+	 * <p>
+	 * <b>Be careful :</b> the rules of the cells are then called by several
+	 * threads at the same time, so they should not use any shared mutable
+	 * data. The executor is not shut down by the automaton.
+	 * </p>
+	 * 
+	 * @param executorService
+	 *            the executor to use, <code>null</code> to manage the cells
+	 *            sequentially
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	/**
+	 * 
+	 * @return the executor used to manage the cells in parallel,
+	 *         <code>null</code> if they are managed sequentially
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * 
+	 * @param parallelTasks
+	 *            the number of tasks the cells to manage are split into when
+	 *            an executor is given. Default value: the number of available
+	 *            processors.
+	 */
+	public void setParallelTasks(int parallelTasks) {
+		if (parallelTasks < 1) {
+			throw new IllegalArgumentException(
+					"At least one task is needed, " + parallelTasks
+							+ " is given.");
+		}
+		this.parallelTasks = parallelTasks;
+	}
+
+	/**
+	 * 
+	 * @return the number of tasks the cells to manage are split into when an
+	 *         executor is given
+	 */
+	public int getParallelTasks() {
+		return parallelTasks;
 	}
 
 	/**
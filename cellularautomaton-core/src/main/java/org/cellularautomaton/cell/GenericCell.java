@@ -1,12 +1,17 @@
 package org.cellularautomaton.cell;
 
+import java.util.AbstractList;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.state.IStateHistory;
 import org.cellularautomaton.state.StateMemory;
 import org.cellularautomaton.util.Coords;
 
@@ -30,6 +35,11 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 * generations are needed to calculate the new states.
 	 */
 	private StateMemory<StateType> previousStates;
+	/**
+	 * The history giving the states older than the memory, <code>null</code>
+	 * if there is none.
+	 */
+	private IStateHistory<StateType> history = null;
 	/**
 	 * The next state to apply to this cell.
 	 * 
@@ -37,11 +47,60 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 */
 	private StateType nextState;
 	/**
-	 * The cells around this one. <b>They are not the (logical) neighbors
-	 * considered by the rule</b> which change the state of the cell, they are
-	 * the (physical) neighbors in the space of cells.
+	 * The cells before this one on each dimension (<code>null</code> if there
+	 * is no link). <b>They are not the (logical) neighbors considered by the
+	 * rule</b> which change the state of the cell, they are the (physical)
+	 * neighbors in the space of cells.
+	 */
+	private ICell<StateType>[] previousCells;
+	/**
+	 * The cells after this one on each dimension (<code>null</code> if there
+	 * is no link).
+	 * 
+	 * @see #previousCells
+	 */
+	private ICell<StateType>[] nextCells;
+	/**
+	 * The links of a cell without dimension, shared by all the new cells.
+	 */
+	private static final ICell<?>[] NO_LINKS = new ICell<?>[0];
+	/**
+	 * The cells linked to this one, without duplicates. It is computed when
+	 * needed and forgotten each time a link changes. It is volatile, like the
+	 * views below, so the cells of a space can be read by several threads
+	 * (like in a parallel step) without seeing a partially filled array.
+	 * 
+	 * @see #getCellsAround()
+	 */
+	private volatile ICell<?>[] cellsAround;
+	/**
+	 * The unmodifiable list backed by {@link #cellsAround}.
 	 */
-	private final List<LinkedCellsCouple> surroundings;
+	private volatile List<ICell<StateType>> cellsAroundList;
+	/**
+	 * The unmodifiable set backed by {@link #cellsAround}.
+	 */
+	private volatile Set<ICell<StateType>> cellsAroundSet;
+	/**
+	 * The neighbors resolved for the last neighborhood asked.
+	 * 
+	 * @see #getNeighbors(Neighborhood)
+	 */
+	private NeighborsCache<StateType> neighbors;
+	/**
+	 * The number of changes of the links of this cell. As the neighbors of a
+	 * cell are found through the links of other cells, the resolved neighbors
+	 * are kept while the cells followed to find them do not change their
+	 * version.
+	 */
+	private volatile int linksVersion = 0;
+	/**
+	 * The number of changes of the links of the cells of the space containing
+	 * this cell, <code>null</code> if the space does not count them.
+	 * 
+	 * @see #setSpaceLinksVersion(AtomicInteger)
+	 */
+	private volatile AtomicInteger spaceLinksVersion = null;
 	/**
 	 * The coordinates of the cell in the space of cells.
 	 */
@@ -56,7 +115,7 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 * @return the dimensions this cell work on
 	 */
 	public int getDimensions() {
-		return surroundings.size();
+		return nextCells.length;
 	}
 
 	/**
@@ -73,17 +132,10 @@ public class GenericCell<StateType> implements ICell<StateType> {
 		if (dimensions == getDimensions()) {
 			// nothing to do
 		} else {
-			if (dimensions > getDimensions()) {
-				for (int dimension = getDimensions(); dimension < dimensions; dimension++) {
-					LinkedCellsCouple couple = new LinkedCellsCouple();
-					surroundings.add(couple);
-				}
-			} else {
-				for (int dimension = getDimensions() - 1; dimension >= dimensions; dimension--) {
-					surroundings.remove(dimension);
-				}
-			}
+			previousCells = Arrays.copyOf(previousCells, dimensions);
+			nextCells = Arrays.copyOf(nextCells, dimensions);
 			coords.setDimensions(dimensions);
+			linksChanged();
 		}
 	}
 
@@ -93,8 +145,10 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 * @see #setMemory(int, Object)
 	 * @see #setRule(IRule)
 	 */
+	@SuppressWarnings("unchecked")
 	public GenericCell() {
-		this.surroundings = new ArrayList<LinkedCellsCouple>();
+		previousCells = (ICell<StateType>[]) NO_LINKS;
+		nextCells = (ICell<StateType>[]) NO_LINKS;
 		coords = new Coords();
 	}
 
@@ -123,10 +177,39 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	/**
 	 * This method allows to get the memorized states of the cell. The number of
 	 * states memorized (including current state) corresponds to the memory size
-	 * given to the cell.
+	 * given to the cell. The older states are read from the history of the
+	 * cell, if it has one.
+	 * 
+	 * @see #setHistory(IStateHistory)
 	 */
 	public StateType getState(int age) {
-		return previousStates.getState(age);
+		if (history != null && age >= previousStates.getMemorySize()) {
+			return history.getState(coords, age);
+		} else {
+			return previousStates.getState(age);
+		}
+	}
+
+	/**
+	 * Give a history to the cell, to read the states older than its memory.
+	 * The history has to record the generations of the cell up to the current
+	 * one, so the age of a state is the same in the memory and the history.
+	 * 
+	 * @param history
+	 *            the history of the cell, <code>null</code> to have only the
+	 *            memory
+	 */
+	public void setHistory(IStateHistory<StateType> history) {
+		this.history = history;
+	}
+
+	/**
+	 * 
+	 * @return the history of the cell, <code>null</code> if it has only its
+	 *         memory
+	 */
+	public IStateHistory<StateType> getHistory() {
+		return history;
 	}
 
 	/**
@@ -170,14 +253,15 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 * <b>It does not make the reverse link.</b>
 	 */
 	public void setNextCellOnDimension(int dimension, ICell<StateType> next) {
-		surroundings.get(dimension).next = next;
+		nextCells[dimension] = next;
+		linksChanged();
 	}
 
 	/**
 	 * Gives the cell which follows this one on the given dimension.
 	 */
 	public ICell<StateType> getNextCellOnDimension(int dimension) {
-		return surroundings.get(dimension).next;
+		return nextCells[dimension];
 	}
 
 	/**
@@ -186,14 +270,40 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	 */
 	public void setPreviousCellOnDimension(int dimension,
 			ICell<StateType> previous) {
-		surroundings.get(dimension).previous = previous;
+		previousCells[dimension] = previous;
+		linksChanged();
+	}
+
+	/**
+	 * Forget the cells around and count the change of the links.
+	 */
+	private void linksChanged() {
+		cellsAround = null;
+		linksVersion++;
+		AtomicInteger spaceVersion = spaceLinksVersion;
+		if (spaceVersion != null) {
+			spaceVersion.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Give to the cell the counter of the link changes of its space, which is
+	 * increased each time a link of this cell changes, so the space knows when
+	 * its cells have to be searched again.
+	 * 
+	 * @param spaceLinksVersion
+	 *            the counter of the space, <code>null</code> to not count the
+	 *            changes
+	 */
+	public void setSpaceLinksVersion(AtomicInteger spaceLinksVersion) {
+		this.spaceLinksVersion = spaceLinksVersion;
 	}
 
 	/**
 	 * Gives the cell which precedes this one on the given dimension.
 	 */
 	public ICell<StateType> getPreviousCellOnDimension(int dimension) {
-		return surroundings.get(dimension).previous;
+		return previousCells[dimension];
 	}
 
 	/**
@@ -210,19 +320,75 @@ public class GenericCell<StateType> implements ICell<StateType> {
 
 	/**
 	 * This method allows to get all the cells linked to this one : the cells
-	 * before and after this one on each dimension.
+	 * before and after this one on each dimension. The returned set cannot be
+	 * modified and is backed by {@link #getCellsAround()}, so no collection is
+	 * created at each call.
 	 * 
 	 * @see #getPreviousCellOnDimension(int)
 	 * @see #getNextCellOnDimension(int)
 	 */
 	public Set<ICell<StateType>> getAllCellsAround() {
-		Set<ICell<StateType>> neighbors = new HashSet<ICell<StateType>>();
-		for (int dimension = 0; dimension < getDimensions(); dimension++) {
-			neighbors.add(getPreviousCellOnDimension(dimension));
-			neighbors.add(getNextCellOnDimension(dimension));
+		Set<ICell<StateType>> set = cellsAroundSet;
+		if (set == null) {
+			set = new AbstractSet<ICell<StateType>>() {
+				@Override
+				public Iterator<ICell<StateType>> iterator() {
+					return getCellsAround().iterator();
+				}
+
+				@Override
+				public int size() {
+					return getCellsAround().size();
+				}
+
+				@Override
+				public boolean contains(Object o) {
+					return getCellsAround().contains(o);
+				}
+			};
+			cellsAroundSet = set;
+		}
+		return set;
+	}
+
+	/**
+	 * The cells around are computed at the first call and kept until a link
+	 * of this cell changes, so calling this method does not create any object
+	 * when the space is not modified anymore. The list is sorted by dimension,
+	 * the previous cell being before the next one.
+	 */
+	public List<ICell<StateType>> getCellsAround() {
+		List<ICell<StateType>> list = cellsAroundList;
+		if (list == null) {
+			list = new CellsAroundList();
+			cellsAroundList = list;
 		}
-		neighbors.remove(null);
-		return neighbors;
+		return list;
+	}
+
+	/**
+	 * 
+	 * @return the cells linked to this one, without duplicates
+	 */
+	private ICell<?>[] getCellsAroundArray() {
+		ICell<?>[] cells = cellsAround;
+		if (cells == null) {
+			List<ICell<StateType>> list = new ArrayList<ICell<StateType>>(
+					2 * getDimensions());
+			for (int dimension = 0; dimension < nextCells.length; dimension++) {
+				ICell<StateType> previous = previousCells[dimension];
+				if (previous != null && !list.contains(previous)) {
+					list.add(previous);
+				}
+				ICell<StateType> next = nextCells[dimension];
+				if (next != null && !list.contains(next)) {
+					list.add(next);
+				}
+			}
+			cells = list.toArray(new ICell<?>[list.size()]);
+			cellsAround = cells;
+		}
+		return cells;
 	}
 
 	/**
@@ -251,6 +417,24 @@ public class GenericCell<StateType> implements ICell<StateType> {
 		return cell;
 	}
 
+	/**
+	 * The neighbors are resolved at the first call and kept for the next calls
+	 * with the same neighborhood, so no link is followed and no object is
+	 * created while the links used to find them do not change. Only the last
+	 * neighborhood used is kept, so a rule should always use the same
+	 * instance. The links should not change while the neighbors are resolved.
+	 */
+	public List<ICell<StateType>> getNeighbors(Neighborhood neighborhood) {
+		NeighborsCache<StateType> cache = neighbors;
+		if (cache == null || cache.neighborhood != neighborhood
+				&& !cache.neighborhood.equals(neighborhood)
+				|| !cache.isUpToDate()) {
+			cache = new NeighborsCache<StateType>(neighborhood, this);
+			neighbors = cache;
+		}
+		return cache.cells;
+	}
+
 	/**
 	 * Gives a simple display of the cell.
 	 */
@@ -289,15 +473,74 @@ public class GenericCell<StateType> implements ICell<StateType> {
 	}
 
 	/**
-	 * This class is a simple container for the cells before/after the current
-	 * one on a specific dimensions. Basically, there is no link (
-	 * <code>null</code>).
+	 * This class gives a read-only access to the cells around, as computed by
+	 * {@link GenericCell#getCellsAroundArray()}.
 	 * 
 	 * @author Matthieu Vergne (matthieu.vergne@gmail.com)
 	 * 
 	 */
-	private class LinkedCellsCouple {
-		public ICell<StateType> previous = null;
-		public ICell<StateType> next = null;
+	private class CellsAroundList extends AbstractList<ICell<StateType>>
+			implements RandomAccess {
+		@SuppressWarnings("unchecked")
+		@Override
+		public ICell<StateType> get(int index) {
+			return (ICell<StateType>) getCellsAroundArray()[index];
+		}
+
+		@Override
+		public int size() {
+			return getCellsAroundArray().length;
+		}
+	}
+
+	/**
+	 * This class stores the neighbors resolved for a neighborhood, with the
+	 * version of the links of the generic cells followed to find them. It is
+	 * immutable, so it can be replaced at once even if several threads use the
+	 * cell.
+	 * 
+	 * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+	 * 
+	 */
+	private static final class NeighborsCache<StateType> {
+		private final Neighborhood neighborhood;
+		private final List<ICell<StateType>> cells;
+		private final GenericCell<?>[] followedCells;
+		private final int[] versions;
+
+		public NeighborsCache(Neighborhood neighborhood,
+				ICell<StateType> cell) {
+			List<ICell<?>> followed = new ArrayList<ICell<?>>();
+			this.neighborhood = neighborhood;
+			this.cells = neighborhood.resolve(cell, followed);
+
+			List<GenericCell<?>> genericCells = new ArrayList<GenericCell<?>>(
+					followed.size());
+			for (ICell<?> followedCell : followed) {
+				if (followedCell instanceof GenericCell) {
+					genericCells.add((GenericCell<?>) followedCell);
+				}
+			}
+			followedCells = genericCells
+					.toArray(new GenericCell<?>[genericCells.size()]);
+			versions = new int[followedCells.length];
+			for (int index = 0; index < followedCells.length; index++) {
+				versions[index] = followedCells[index].linksVersion;
+			}
+		}
+
+		/**
+		 * 
+		 * @return <code>true</code> if no followed cell has changed its links
+		 *         since the resolution
+		 */
+		public boolean isUpToDate() {
+			for (int index = 0; index < followedCells.length; index++) {
+				if (followedCells[index].linksVersion != versions[index]) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package org.cellularautomaton.cell;
 
+import java.util.List;
 import java.util.Set;
 
 import org.cellularautomaton.rule.IRule;
@@ -170,6 +171,17 @@ public interface ICell<StateType> {
 	 */
 	public Set<ICell<StateType>> getAllCellsAround();
 
+	/**
+	 * This method must give the same cells than {@link #getAllCellsAround()},
+	 * but it is designed to be called often : the returned list cannot be
+	 * modified and it should not be created at each call, but only when the
+	 * links of the cell change.
+	 * 
+	 * @return all the cells near of the current cell, each of them only once
+	 * @see #getAllCellsAround()
+	 */
+	public List<ICell<StateType>> getCellsAround();
+
 	/**
 	 * This method must give the cell which is at the given coordinates,
 	 * starting from the current cell.
@@ -181,6 +193,20 @@ public interface ICell<StateType> {
 	 */
 	public ICell<StateType> getRelativeCell(int... coords);
 
+	/**
+	 * This method must give the cells at each relative coordinates of the
+	 * neighborhood, like {@link #getRelativeCell(int...)} would do for each of
+	 * them. It is designed to be called by the rules at each step, so the
+	 * neighbors should be resolved once and kept while the same neighborhood is
+	 * used.
+	 * 
+	 * @param neighborhood
+	 *            the relative coordinates of the neighbors
+	 * @return the neighbors in the order of the neighborhood, with
+	 *         <code>null</code> for the ones which are out of the space
+	 */
+	public List<ICell<StateType>> getNeighbors(Neighborhood neighborhood);
+
 	/**
 	 * 
 	 * @return the coordinates of the cell in the space
@@ -0,0 +1,206 @@
+package org.cellularautomaton.cell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * A neighborhood describes the (logical) neighbors of a cell with a list of
+ * relative coordinates, like the ones given to
+ * {@link ICell#getRelativeCell(int...)}. The usual ones are available with
+ * {@link #moore(int)} and {@link #vonNeumann(int)}, but any list of offsets can
+ * be used.
+ * </p>
+ * <p>
+ * A rule should create its neighborhood once (for example in a static field)
+ * and give it to {@link ICell#getNeighbors(Neighborhood)}, so the cells can
+ * resolve their neighbors only once and give them directly at each step.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class Neighborhood {
+	/**
+	 * The relative coordinates of each neighbor.
+	 */
+	private final int[][] offsets;
+	/**
+	 * The greatest number of coordinates of the offsets.
+	 */
+	private final int dimensions;
+
+	/**
+	 * Create a neighborhood from the relative coordinates of each neighbor.
+	 * The offsets are copied, so they can be modified after without impacting
+	 * the neighborhood.
+	 * 
+	 * @param offsets
+	 *            the relative coordinates of each neighbor, in the order the
+	 *            neighbors must be given
+	 */
+	public Neighborhood(int[]... offsets) {
+		this.offsets = new int[offsets.length][];
+		int dimensions = 0;
+		for (int index = 0; index < offsets.length; index++) {
+			this.offsets[index] = offsets[index].clone();
+			dimensions = Math.max(dimensions, offsets[index].length);
+		}
+		this.dimensions = dimensions;
+	}
+
+	/**
+	 * The Moore neighborhood contains all the cells at a distance of 1 on each
+	 * dimension (the 8 cells around in 2 dimensions).
+	 * 
+	 * @param dimensions
+	 *            the number of dimensions of the cells
+	 * @return the Moore neighborhood, without the cell itself
+	 */
+	public static Neighborhood moore(int dimensions) {
+		int total = 1;
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			total *= 3;
+		}
+		List<int[]> offsets = new ArrayList<int[]>();
+		for (int combination = 0; combination < total; combination++) {
+			int[] offset = new int[dimensions];
+			boolean isCenter = true;
+			int rest = combination;
+			for (int dimension = 0; dimension < dimensions; dimension++) {
+				offset[dimension] = rest % 3 - 1;
+				isCenter &= offset[dimension] == 0;
+				rest /= 3;
+			}
+			if (!isCenter) {
+				offsets.add(offset);
+			}
+		}
+		return new Neighborhood(offsets.toArray(new int[offsets.size()][]));
+	}
+
+	/**
+	 * The von Neumann neighborhood contains the cells just before and after
+	 * the cell on each dimension (the 4 cells around in 2 dimensions).
+	 * 
+	 * @param dimensions
+	 *            the number of dimensions of the cells
+	 * @return the von Neumann neighborhood, without the cell itself
+	 */
+	public static Neighborhood vonNeumann(int dimensions) {
+		int[][] offsets = new int[2 * dimensions][];
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			offsets[2 * dimension] = new int[dimensions];
+			offsets[2 * dimension][dimension] = -1;
+			offsets[2 * dimension + 1] = new int[dimensions];
+			offsets[2 * dimension + 1][dimension] = 1;
+		}
+		return new Neighborhood(offsets);
+	}
+
+	/**
+	 * 
+	 * @return the number of neighbors
+	 */
+	public int size() {
+		return offsets.length;
+	}
+
+	/**
+	 * 
+	 * @return the greatest number of coordinates of the offsets
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the neighbor
+	 * @return a copy of the relative coordinates of the neighbor
+	 */
+	public int[] getOffset(int index) {
+		return offsets[index].clone();
+	}
+
+	/**
+	 * Find the neighbors of a cell by following its links. This method is
+	 * used by the cells to resolve their neighbors, a rule should prefer
+	 * {@link ICell#getNeighbors(Neighborhood)}.
+	 * 
+	 * @param cell
+	 *            the cell to find the neighbors of
+	 * @return the neighbors of the cell, in the order of the offsets, with
+	 *         <code>null</code> for the neighbors out of the space
+	 */
+	public <StateType> List<ICell<StateType>> resolve(ICell<StateType> cell) {
+		return resolve(cell, null);
+	}
+
+	/**
+	 * Find the neighbors of a cell by following its links, and tell which
+	 * cells have their links followed.
+	 * 
+	 * @param cell
+	 *            the cell to find the neighbors of
+	 * @param followedCells
+	 *            the collection to add the cells having their links followed
+	 *            in (without duplicates), <code>null</code> to not tell them
+	 * @return the neighbors of the cell, in the order of the offsets, with
+	 *         <code>null</code> for the neighbors out of the space
+	 */
+	<StateType> List<ICell<StateType>> resolve(ICell<StateType> cell,
+			Collection<ICell<?>> followedCells) {
+		List<ICell<StateType>> neighbors = new ArrayList<ICell<StateType>>(
+				offsets.length);
+		for (int[] offset : offsets) {
+			ICell<StateType> neighbor = cell;
+			for (int dimension = 0; dimension < offset.length
+					&& neighbor != null; dimension++) {
+				int delta = offset[dimension];
+				while (delta > 0 && neighbor != null) {
+					follow(neighbor, followedCells);
+					neighbor = neighbor.getNextCellOnDimension(dimension);
+					delta--;
+				}
+				while (delta < 0 && neighbor != null) {
+					follow(neighbor, followedCells);
+					neighbor = neighbor.getPreviousCellOnDimension(dimension);
+					delta++;
+				}
+			}
+			neighbors.add(neighbor);
+		}
+		return Collections.unmodifiableList(neighbors);
+	}
+
+	private static void follow(ICell<?> cell,
+			Collection<ICell<?>> followedCells) {
+		if (followedCells != null && !followedCells.contains(cell)) {
+			followedCells.add(cell);
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof Neighborhood) {
+			return Arrays.deepEquals(offsets, ((Neighborhood) obj).offsets);
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.deepHashCode(offsets);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.deepToString(offsets);
+	}
+}
@@ -0,0 +1,691 @@
+package org.cellularautomaton.hashlife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ISpace;
+
+/**
+ * <p>
+ * HashLife is an engine designed to make the patterns of two-state automata
+ * (like the Game of Life) evolve on a very large number of generations. While
+ * the {@link CellularAutomaton} computes each generation of each cell, this
+ * engine represents the (infinite) plane as a quadtree where identical squares
+ * are represented by the same node. The evolution of each node is computed
+ * only once and memorized, and a node of 2^k cells per side can directly give
+ * its center 2^(k-2) generations later, so regular patterns can be advanced by
+ * billions of generations with {@link #advance(long)}.
+ * </p>
+ * <p>
+ * Only the {@link OuterTotalisticRule}s on the Moore neighborhood of 2
+ * dimensions (up to 8 neighbors) are supported, the cells out of the pattern
+ * being considered dead (so the rule cannot give birth to a cell without alive
+ * neighbors). The nodes are stored in a cache of limited size: when it is
+ * full, it is emptied, the nodes used by the current pattern being kept, so
+ * the memory used stays bounded at the price of computing again the results
+ * forgotten.
+ * </p>
+ *
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ *
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class HashLife<StateType> {
+	/**
+	 * The number of nodes the cache can store by default.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+	/**
+	 * The greatest level of the root, so the coordinates fit in a
+	 * <code>long</code>.
+	 */
+	private static final int MAX_LEVEL = 62;
+	/**
+	 * The smallest level of the root.
+	 */
+	private static final int MIN_LEVEL = 3;
+	/**
+	 * The rule applied to the cells.
+	 */
+	private final OuterTotalisticRule<StateType> rule;
+	/**
+	 * The dead cell.
+	 */
+	private final Node dead;
+	/**
+	 * The alive cell.
+	 */
+	private final Node alive;
+	/**
+	 * The maximal number of nodes in the cache.
+	 */
+	private int cacheSize;
+	/**
+	 * The buckets of the cache, each node being stored in the bucket of its
+	 * hash.
+	 */
+	private Node[] buckets;
+	/**
+	 * The number of nodes in the cache.
+	 */
+	private int nodeCount;
+	/**
+	 * The identifier of the next node to create.
+	 */
+	private long nextId;
+	/**
+	 * The number of times the cache has been emptied.
+	 */
+	private long evictions;
+	/**
+	 * The empty nodes, indexed by level.
+	 */
+	private final List<Node> emptyNodes = new ArrayList<Node>();
+	/**
+	 * The node containing the pattern, centered on the coordinates (0,0).
+	 */
+	private Node root;
+	/**
+	 * The number of generations computed since the creation.
+	 */
+	private long generation;
+
+	/**
+	 * Create an engine with an empty pattern and a cache of
+	 * {@link #DEFAULT_CACHE_SIZE} nodes.
+	 *
+	 * @param rule
+	 *            the rule to apply, it must be an {@link OuterTotalisticRule}
+	 * @throws IllegalArgumentException
+	 *             if the rule is not supported
+	 */
+	public HashLife(IRule<StateType> rule) {
+		this(rule, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create an engine with an empty pattern.
+	 *
+	 * @param rule
+	 *            the rule to apply, it must be an {@link OuterTotalisticRule}
+	 * @param cacheSize
+	 *            the maximal number of nodes to keep in the cache
+	 * @throws IllegalArgumentException
+	 *             if the rule is not supported
+	 */
+	@SuppressWarnings("unchecked")
+	public HashLife(IRule<StateType> rule, int cacheSize) {
+		if (!(rule instanceof OuterTotalisticRule)) {
+			throw new IllegalArgumentException(
+					"HashLife needs an outer totalistic rule, " + rule
+							+ " is given.");
+		}
+		this.rule = (OuterTotalisticRule<StateType>) rule;
+		if (((this.rule.getBirthMask() | this.rule.getSurvivalMask()) >>> 9) != 0) {
+			throw new IllegalArgumentException("The rule " + rule
+					+ " counts more than 8 neighbors.");
+		}
+		if (this.rule.isBirth(0)) {
+			throw new IllegalArgumentException("The rule " + rule
+					+ " gives birth to cells without neighbors.");
+		}
+		setCacheSize(cacheSize);
+		dead = new Node(false, nextId++);
+		alive = new Node(true, nextId++);
+		buckets = new Node[1024];
+		clear();
+	}
+
+	/**
+	 *
+	 * @param cacheSize
+	 *            the maximal number of nodes to keep in the cache
+	 */
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize < 1) {
+			throw new IllegalArgumentException(
+					"The cache size must be at least 1, " + cacheSize
+							+ " is given.");
+		}
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 *
+	 * @return the maximal number of nodes to keep in the cache
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 *
+	 * @return the number of nodes currently in the cache
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 *
+	 * @return the rule applied to the cells
+	 */
+	public OuterTotalisticRule<StateType> getRule() {
+		return rule;
+	}
+
+	/**
+	 * Kill all the cells. The generation counter is not reset.
+	 */
+	public void clear() {
+		root = getEmptyNode(MIN_LEVEL);
+	}
+
+	/**
+	 *
+	 * @return the number of generations computed since the creation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 *
+	 * @return the number of alive cells
+	 */
+	public long getPopulation() {
+		return root.population;
+	}
+
+	/**
+	 * Copy the cells of a space of 2 dimensions : the cells in the alive state
+	 * of the rule are made alive at the same coordinates, the other cells are
+	 * not considered.
+	 *
+	 * @param space
+	 *            the space to copy
+	 * @throws IllegalArgumentException
+	 *             if a cell has not 2 coordinates
+	 */
+	public void load(ISpace<StateType> space) {
+		StateType aliveState = rule.getAliveState();
+		for (ICell<StateType> cell : space) {
+			if (aliveState.equals(cell.getCurrentState())) {
+				int[] coords = cell.getCoords().getAll();
+				if (coords.length != 2) {
+					throw new IllegalArgumentException(
+							"HashLife needs cells with 2 coordinates, "
+									+ Arrays.toString(coords) + " is given.");
+				}
+				setState(coords[0], coords[1], aliveState);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param x
+	 *            the first coordinate of the cell
+	 * @param y
+	 *            the second coordinate of the cell
+	 * @param state
+	 *            the new state of the cell, the dead or alive state of the rule
+	 * @throws IllegalArgumentException
+	 *             if the state is not a state of the rule
+	 */
+	public void setState(long x, long y, StateType state) {
+		boolean isAlive;
+		if (rule.getAliveState().equals(state)) {
+			isAlive = true;
+		} else if (rule.getDeadState().equals(state)) {
+			isAlive = false;
+		} else {
+			throw new IllegalArgumentException("The state " + state
+					+ " is neither " + rule.getDeadState() + " nor "
+					+ rule.getAliveState() + ".");
+		}
+		while (!isInRoot(x, y)) {
+			root = expand(root);
+		}
+		long offset = 1L << (root.level - 1);
+		root = setState(root, x + offset, y + offset, isAlive);
+	}
+
+	/**
+	 *
+	 * @param x
+	 *            the first coordinate of the cell
+	 * @param y
+	 *            the second coordinate of the cell
+	 * @return the state of the cell
+	 */
+	public StateType getState(long x, long y) {
+		if (!isInRoot(x, y)) {
+			return rule.getDeadState();
+		}
+		long offset = 1L << (root.level - 1);
+		Node node = root;
+		x += offset;
+		y += offset;
+		while (node.level > 0) {
+			long half = 1L << (node.level - 1);
+			if (y < half) {
+				node = x < half ? node.nw : node.ne;
+			} else {
+				node = x < half ? node.sw : node.se;
+			}
+			x &= half - 1;
+			y &= half - 1;
+		}
+		return node == alive ? rule.getAliveState() : rule.getDeadState();
+	}
+
+	/**
+	 *
+	 * @return true if the cell is in the square covered by the root
+	 */
+	private boolean isInRoot(long x, long y) {
+		long half = 1L << (root.level - 1);
+		return x >= -half && x < half && y >= -half && y < half;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            the node containing the cell
+	 * @param x
+	 *            the first coordinate of the cell in the node
+	 * @param y
+	 *            the second coordinate of the cell in the node
+	 * @param isAlive
+	 *            the new state of the cell
+	 * @return the node with the new state of the cell
+	 */
+	private Node setState(Node node, long x, long y, boolean isAlive) {
+		if (node.level == 0) {
+			return isAlive ? alive : dead;
+		}
+		long half = 1L << (node.level - 1);
+		long subX = x & (half - 1);
+		long subY = y & (half - 1);
+		if (y < half) {
+			if (x < half) {
+				return join(setState(node.nw, subX, subY, isAlive), node.ne,
+						node.sw, node.se);
+			} else {
+				return join(node.nw, setState(node.ne, subX, subY, isAlive),
+						node.sw, node.se);
+			}
+		} else {
+			if (x < half) {
+				return join(node.nw, node.ne,
+						setState(node.sw, subX, subY, isAlive), node.se);
+			} else {
+				return join(node.nw, node.ne, node.sw,
+						setState(node.se, subX, subY, isAlive));
+			}
+		}
+	}
+
+	/**
+	 * Compute the pattern some generations later. The generations are
+	 * computed by powers of 2, the biggest ones being split in several steps
+	 * of 2^(MAX_LEVEL-3) generations so the root can contain them. An empty
+	 * pattern or a pattern which does not change anymore is not advanced,
+	 * only the generation counter is.
+	 *
+	 * @param generations
+	 *            the number of generations to compute
+	 * @throws IllegalArgumentException
+	 *             if the number of generations is negative
+	 * @throws IllegalStateException
+	 *             if the pattern becomes too big for the coordinates
+	 */
+	public void advance(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException(
+					"The number of generations cannot be negative, "
+							+ generations + " is given.");
+		}
+		long evictionsBefore = evictions;
+		long remaining = generations;
+		for (int step = 0; remaining != 0; step++) {
+			if ((remaining & (1L << step)) != 0) {
+				int subStep = Math.min(step, MAX_LEVEL - 3);
+				for (long run = 1L << (step - subStep); run > 0
+						&& remaining != 0; run--) {
+					if (expandRoot(subStep)) {
+						generation += remaining;
+						remaining = 0;
+					} else {
+						root = successor(root, subStep);
+						generation += 1L << subStep;
+						remaining -= 1L << subStep;
+					}
+				}
+			}
+		}
+		if (evictions != evictionsBefore) {
+			root = canonicalize(root, new IdentityHashMap<Node, Node>());
+		}
+	}
+
+	/**
+	 * Expand the root until it can be advanced by 2^step generations, unless
+	 * the pattern does not change anymore. This is checked before each
+	 * expansion, so the tree does not grow for an empty or still pattern.
+	 *
+	 * @param step
+	 *            the log2 of the number of generations to compute
+	 * @return true if the pattern does not change anymore, so it does not
+	 *         need to be advanced
+	 * @throws IllegalStateException
+	 *             if the root cannot be expanded anymore
+	 */
+	private boolean expandRoot(int step) {
+		if (root.population == 0) {
+			return true;
+		}
+		while (root.level < step + 3 || !isCentered(root)) {
+			if (isCentered(root) && successor(root, 0) == getCenter(root)) {
+				return true;
+			} else if (root.level == MAX_LEVEL) {
+				throw new IllegalStateException(
+						"The pattern is too big for HashLife.");
+			}
+			root = expand(root);
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            the node to check
+	 * @return true if all the alive cells are in the center of the center of
+	 *         the node, so it can evolve without going out of its center
+	 */
+	private boolean isCentered(Node node) {
+		if (node.population == 0) {
+			return true;
+		}
+		Node center = getCenter(node);
+		return getCenter(center).population == node.population;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            a node of level 1 or more
+	 * @return the node of the level above with the given node in its center
+	 */
+	private Node expand(Node node) {
+		Node empty = getEmptyNode(node.level - 1);
+		return join(join(empty, empty, empty, node.nw),
+				join(empty, empty, node.ne, empty),
+				join(empty, node.sw, empty, empty),
+				join(node.se, empty, empty, empty));
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            a node of level 2 or more
+	 * @return the center of the node, of the level below
+	 */
+	private Node getCenter(Node node) {
+		return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/**
+	 *
+	 * @param west
+	 *            a node of level 1 or more
+	 * @param east
+	 *            the node on the east of the first one
+	 * @return the node between the two nodes, of the same level
+	 */
+	private Node getHorizontalCenter(Node west, Node east) {
+		return join(west.ne, east.nw, west.se, east.sw);
+	}
+
+	/**
+	 *
+	 * @param north
+	 *            a node of level 1 or more
+	 * @param south
+	 *            the node on the south of the first one
+	 * @return the node between the two nodes, of the same level
+	 */
+	private Node getVerticalCenter(Node north, Node south) {
+		return join(north.sw, north.se, south.nw, south.ne);
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            a node of level 2 or more
+	 * @param step
+	 *            the log2 of the number of generations to compute, at most
+	 *            the level of the node minus 2
+	 * @return the center of the node after 2^step generations
+	 */
+	private Node successor(Node node, int step) {
+		boolean isSlow = step < node.level - 2;
+		if (!isSlow && node.result != null) {
+			return node.result;
+		} else if (isSlow && node.slowResult != null && node.slowStep == step) {
+			return node.slowResult;
+		}
+		Node result;
+		if (node.population == 0) {
+			result = getEmptyNode(node.level - 1);
+		} else if (node.level == 2) {
+			result = computeLevel2(node);
+		} else {
+			Node n00 = node.nw;
+			Node n01 = getHorizontalCenter(node.nw, node.ne);
+			Node n02 = node.ne;
+			Node n10 = getVerticalCenter(node.nw, node.sw);
+			Node n11 = getCenter(node);
+			Node n12 = getVerticalCenter(node.ne, node.se);
+			Node n20 = node.sw;
+			Node n21 = getHorizontalCenter(node.sw, node.se);
+			Node n22 = node.se;
+
+			int subStep;
+			if (step == node.level - 2) {
+				// half of the generations now, the other half below
+				subStep = step - 1;
+				n00 = successor(n00, subStep);
+				n01 = successor(n01, subStep);
+				n02 = successor(n02, subStep);
+				n10 = successor(n10, subStep);
+				n11 = successor(n11, subStep);
+				n12 = successor(n12, subStep);
+				n20 = successor(n20, subStep);
+				n21 = successor(n21, subStep);
+				n22 = successor(n22, subStep);
+			} else {
+				// all the generations are computed below
+				subStep = step;
+				n00 = getCenter(n00);
+				n01 = getCenter(n01);
+				n02 = getCenter(n02);
+				n10 = getCenter(n10);
+				n11 = getCenter(n11);
+				n12 = getCenter(n12);
+				n20 = getCenter(n20);
+				n21 = getCenter(n21);
+				n22 = getCenter(n22);
+			}
+			result = join(successor(join(n00, n01, n10, n11), subStep),
+					successor(join(n01, n02, n11, n12), subStep),
+					successor(join(n10, n11, n20, n21), subStep),
+					successor(join(n11, n12, n21, n22), subStep));
+		}
+		if (isSlow) {
+			node.slowResult = result;
+			node.slowStep = step;
+		} else {
+			node.result = result;
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            a node of level 2 (4x4 cells)
+	 * @return the center of the node (2x2 cells) at the next generation
+	 */
+	private Node computeLevel2(Node node) {
+		Node[] quarters = { node.nw, node.ne, node.sw, node.se };
+		boolean[][] cells = new boolean[4][4];
+		for (int quarter = 0; quarter < 4; quarter++) {
+			Node q = quarters[quarter];
+			int x = (quarter % 2) * 2;
+			int y = (quarter / 2) * 2;
+			cells[y][x] = q.nw == alive;
+			cells[y][x + 1] = q.ne == alive;
+			cells[y + 1][x] = q.sw == alive;
+			cells[y + 1][x + 1] = q.se == alive;
+		}
+		Node[] result = new Node[4];
+		for (int y = 1; y <= 2; y++) {
+			for (int x = 1; x <= 2; x++) {
+				int count = 0;
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						if ((dx != 0 || dy != 0) && cells[y + dy][x + dx]) {
+							count++;
+						}
+					}
+				}
+				boolean isAlive = cells[y][x] ? rule.isSurvival(count) : rule
+						.isBirth(count);
+				result[(y - 1) * 2 + (x - 1)] = isAlive ? alive : dead;
+			}
+		}
+		return join(result[0], result[1], result[2], result[3]);
+	}
+
+	/**
+	 *
+	 * @param level
+	 *            the level of the node
+	 * @return the node of this level without alive cells
+	 */
+	private Node getEmptyNode(int level) {
+		if (emptyNodes.isEmpty()) {
+			emptyNodes.add(dead);
+		}
+		while (emptyNodes.size() <= level) {
+			Node empty = emptyNodes.get(emptyNodes.size() - 1);
+			emptyNodes.add(join(empty, empty, empty, empty));
+		}
+		return emptyNodes.get(level);
+	}
+
+	/**
+	 * Give the canonical node made of the given quarters, creating it if it
+	 * does not exist yet.
+	 *
+	 * @return the node made of the quarters
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int hash = Node.hash(nw, ne, sw, se);
+		int bucket = hash & (buckets.length - 1);
+		for (Node node = buckets[bucket]; node != null; node = node.next) {
+			if (node.hash == hash && node.isMadeOf(nw, ne, sw, se)) {
+				return node;
+			}
+		}
+
+		if (nodeCount >= cacheSize) {
+			evict();
+			bucket = hash & (buckets.length - 1);
+		} else if (nodeCount >= buckets.length - buckets.length / 4) {
+			resize();
+			bucket = hash & (buckets.length - 1);
+		}
+		Node node = new Node(nw, ne, sw, se, nextId++);
+		node.next = buckets[bucket];
+		buckets[bucket] = node;
+		nodeCount++;
+		return node;
+	}
+
+	/**
+	 * Double the number of buckets of the cache.
+	 */
+	private void resize() {
+		Node[] old = buckets;
+		buckets = new Node[old.length * 2];
+		for (Node node : old) {
+			while (node != null) {
+				Node next = node.next;
+				int bucket = node.hash & (buckets.length - 1);
+				node.next = buckets[bucket];
+				buckets[bucket] = node;
+				node = next;
+			}
+		}
+	}
+
+	/**
+	 * Empty the cache. The nodes already used stay valid, but they are not
+	 * canonical anymore, so the results they memorize are forgotten (the empty
+	 * nodes are kept as they are recognized by their population).
+	 */
+	private void evict() {
+		for (int bucket = 0; bucket < buckets.length; bucket++) {
+			Node node = buckets[bucket];
+			while (node != null) {
+				Node next = node.next;
+				node.next = null;
+				node.result = null;
+				node.slowResult = null;
+				node = next;
+			}
+			buckets[bucket] = null;
+		}
+		nodeCount = 0;
+		evictions++;
+	}
+
+	/**
+	 *
+	 * @param node
+	 *            a node which can be not canonical
+	 * @param canonicals
+	 *            the canonical nodes already found
+	 * @return the canonical node with the same cells
+	 */
+	private Node canonicalize(Node node, Map<Node, Node> canonicals) {
+		if (node.level == 0) {
+			return node;
+		}
+		Node canonical = canonicals.get(node);
+		if (canonical == null) {
+			canonical = join(canonicalize(node.nw, canonicals),
+					canonicalize(node.ne, canonicals),
+					canonicalize(node.sw, canonicals),
+					canonicalize(node.se, canonicals));
+			canonicals.put(node, canonical);
+		}
+		return canonical;
+	}
+}
@@ -0,0 +1,137 @@
+package org.cellularautomaton.hashlife;
+
+/**
+ * A node is a square of cells of 2^level cells per side, described by its four
+ * quarters (each of them being a node of the level below). The nodes of level
+ * 0 are single cells. The nodes are canonical: a given square content is
+ * represented by only one node (see {@link HashLife}), so they can be compared
+ * by identity and their results can be shared by all the places where they
+ * appear.
+ *
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ *
+ */
+final class Node {
+	/**
+	 * The level of the node, the node being a square of 2^level cells per
+	 * side.
+	 */
+	final int level;
+	/**
+	 * The north-west quarter (smallest coordinates), <code>null</code> for a
+	 * cell.
+	 */
+	final Node nw;
+	/**
+	 * The north-east quarter (greatest first coordinate), <code>null</code> for
+	 * a cell.
+	 */
+	final Node ne;
+	/**
+	 * The south-west quarter (greatest second coordinate), <code>null</code>
+	 * for a cell.
+	 */
+	final Node sw;
+	/**
+	 * The south-east quarter (greatest coordinates), <code>null</code> for a
+	 * cell.
+	 */
+	final Node se;
+	/**
+	 * The number of alive cells in the node.
+	 */
+	final long population;
+	/**
+	 * The unique identifier of the node, used to compute the hashes.
+	 */
+	final long id;
+	/**
+	 * The hash of the quarters, used to find the canonical node.
+	 */
+	final int hash;
+	/**
+	 * The next node with the same bucket in the cache.
+	 */
+	Node next;
+	/**
+	 * The center of this node after 2^(level-2) generations (the greatest
+	 * number of generations a node can compute), <code>null</code> if not
+	 * computed yet.
+	 */
+	Node result;
+	/**
+	 * The center of this node after 2^{@link #slowStep} generations, for a
+	 * smaller number of generations than {@link #result}, <code>null</code> if
+	 * not computed yet.
+	 */
+	Node slowResult;
+	/**
+	 * The log2 of the number of generations computed in {@link #slowResult}.
+	 */
+	int slowStep;
+
+	/**
+	 * Create a cell.
+	 *
+	 * @param isAlive
+	 *            the state of the cell
+	 * @param id
+	 *            the identifier of the cell
+	 */
+	Node(boolean isAlive, long id) {
+		this.level = 0;
+		this.nw = null;
+		this.ne = null;
+		this.sw = null;
+		this.se = null;
+		this.population = isAlive ? 1 : 0;
+		this.id = id;
+		this.hash = (int) id;
+	}
+
+	/**
+	 * Create a node from its quarters.
+	 *
+	 * @param nw
+	 *            the north-west quarter
+	 * @param ne
+	 *            the north-east quarter
+	 * @param sw
+	 *            the south-west quarter
+	 * @param se
+	 *            the south-east quarter
+	 * @param id
+	 *            the identifier of the node
+	 */
+	Node(Node nw, Node ne, Node sw, Node se, long id) {
+		this.level = nw.level + 1;
+		this.nw = nw;
+		this.ne = ne;
+		this.sw = sw;
+		this.se = se;
+		this.population = nw.population + ne.population + sw.population
+				+ se.population;
+		this.id = id;
+		this.hash = hash(nw, ne, sw, se);
+	}
+
+	/**
+	 *
+	 * @return the hash of a node with the given quarters
+	 */
+	static int hash(Node nw, Node ne, Node sw, Node se) {
+		long hash = nw.id;
+		hash = hash * 1000003 + ne.id;
+		hash = hash * 1000003 + sw.id;
+		hash = hash * 1000003 + se.id;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 *
+	 * @return true if the node has exactly these quarters
+	 */
+	boolean isMadeOf(Node nw, Node ne, Node sw, Node se) {
+		return this.nw == nw && this.ne == ne && this.sw == sw && this.se == se;
+	}
+}
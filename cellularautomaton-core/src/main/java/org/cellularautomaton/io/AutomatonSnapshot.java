@@ -0,0 +1,556 @@
+package org.cellularautomaton.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+
+/**
+ * <p>
+ * An automaton snapshot saves the state of a space of cells in a compact
+ * binary form, so a long simulation can be restored later without replaying
+ * it from its first generation. A snapshot contains :
+ * <ul>
+ * <li>the length of each dimension and if it is cyclic,</li>
+ * <li>the number of states remembered by each cell,</li>
+ * <li>the dictionary of the states used by the cells, written with the Java
+ * serialization. Only the booleans, numbers, characters, strings and enums
+ * can be read back (see {@link StateInputStream}), so loading a snapshot
+ * cannot instantiate any other class,</li>
+ * <li>the code of the default state, which is the current state of the most
+ * cells,</li>
+ * <li>the code of the state of each cell for each age of the memory, the
+ * cells being ordered by their coordinates (the last dimension varying
+ * first). Each age is written as a sequence of runs of cells having the same
+ * state, all the numbers being written as variable-length integers.</li>
+ * </ul>
+ * The rule is not saved, it has to be given again when the snapshot is
+ * loaded. The state factory is not saved either : only the states used by the
+ * cells are known by the snapshot, so the spaces needing all the possible
+ * states (like the {@link Storage#BITS} ones) have to be loaded with a builder
+ * having a state factory.
+ * </p>
+ * <p>
+ * Only the spaces filling a complete box, with coordinates going from 0 to
+ * <code>length - 1</code> on each dimension (like the ones built by a
+ * {@link SpaceBuilder}), can be saved. The snapshots are written and read
+ * through NIO channels, for example a {@link java.nio.channels.FileChannel}.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class AutomatonSnapshot {
+
+	/**
+	 * The bytes starting each snapshot.
+	 */
+	private static final byte[] MAGIC = { 'C', 'A', 'S', 'N' };
+	/**
+	 * The version of the format written by this class.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * The size of the buffers used to write and read the channels.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private AutomatonSnapshot() {
+		// only static methods
+	}
+
+	/**
+	 * Save the space of an automaton.
+	 * 
+	 * @param automaton
+	 *            the automaton to save
+	 * @param channel
+	 *            the channel to write the snapshot in, which is not closed
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 * @see #save(ISpace, WritableByteChannel)
+	 */
+	public static <StateType> void save(CellularAutomaton<StateType> automaton,
+			WritableByteChannel channel) throws IOException {
+		save(automaton.getSpace(), channel);
+	}
+
+	/**
+	 * Save a space of cells. The space should not evolve during the saving.
+	 * 
+	 * @param space
+	 *            the space to save
+	 * @param channel
+	 *            the channel to write the snapshot in, which is not closed
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 * @throws IllegalArgumentException
+	 *             if the space does not fill a complete box or if its cells
+	 *             do not have the same dimensions and memory size
+	 */
+	public static <StateType> void save(ISpace<StateType> space,
+			WritableByteChannel channel) throws IOException {
+		Collection<ICell<StateType>> cells = space.getAllCells();
+		int[] lengths = getLengths(cells);
+		int[] strides = getStrides(lengths);
+		int dimensions = lengths.length;
+		int memorySize = cells.iterator().next().getMemorySize();
+		ICell<StateType> origin = space.getCell(new int[dimensions]);
+
+		// states of the cells
+		List<StateType> dictionary = new ArrayList<StateType>();
+		Map<StateType, Integer> codes = new HashMap<StateType, Integer>();
+		int[][] layers = new int[memorySize][cells.size()];
+		List<Integer> counts = new ArrayList<Integer>();
+		for (ICell<StateType> cell : cells) {
+			if (cell.getMemorySize() != memorySize) {
+				throw new IllegalArgumentException("The cell " + cell
+						+ " does not remember " + memorySize + " states.");
+			}
+			int rank = getRank(cell.getCoords().getAll(), strides);
+			for (int age = 0; age < memorySize; age++) {
+				StateType state = cell.getState(age);
+				Integer code = codes.get(state);
+				if (code == null) {
+					code = dictionary.size();
+					codes.put(state, code);
+					dictionary.add(state);
+					counts.add(0);
+				}
+				layers[age][rank] = code;
+			}
+			int code = layers[0][rank];
+			counts.set(code, counts.get(code) + 1);
+		}
+		int defaultCode = counts.indexOf(Collections.max(counts));
+
+		Output output = new Output(channel);
+		output.writeBytes(MAGIC);
+		output.writeVarInt(VERSION);
+		output.writeVarInt(dimensions);
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			output.writeVarInt(lengths[dimension]);
+			ICell<StateType> previous = origin
+					.getPreviousCellOnDimension(dimension);
+			output.writeVarInt(previous == null ? 0 : 1);
+		}
+		output.writeVarInt(memorySize);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objects = new ObjectOutputStream(bytes);
+		objects.writeObject(dictionary);
+		objects.close();
+		output.writeVarInt(bytes.size());
+		output.writeBytes(bytes.toByteArray());
+		output.writeVarInt(defaultCode);
+
+		for (int[] layer : layers) {
+			int start = 0;
+			while (start < layer.length) {
+				int code = layer[start];
+				int stop = start + 1;
+				while (stop < layer.length && layer[stop] == code) {
+					stop++;
+				}
+				output.writeVarInt(stop - start);
+				output.writeVarInt(code);
+				start = stop;
+			}
+		}
+		output.flush();
+	}
+
+	/**
+	 * Load an automaton in a linked space. The cells remember the same states
+	 * than the saved ones, the oldest included.
+	 * 
+	 * @param channel
+	 *            the channel to read the snapshot from, which is not closed
+	 * @param rule
+	 *            the rule of the automaton
+	 * @return the loaded automaton
+	 * @throws IOException
+	 *             if the channel cannot be read or does not contain a snapshot
+	 * @see #load(ReadableByteChannel, SpaceBuilder)
+	 */
+	public static <StateType> CellularAutomaton<StateType> load(
+			ReadableByteChannel channel, IRule<StateType> rule)
+			throws IOException {
+		SpaceBuilder<StateType> builder = new SpaceBuilder<StateType>();
+		builder.setRule(rule);
+		return new CellularAutomaton<StateType>(load(channel, builder));
+	}
+
+	/**
+	 * Load a space of cells with a given builder, which gives the rule, the
+	 * storage or the executor used to build the space. The dimensions and the
+	 * memory size of the builder are replaced by the ones of the snapshot. If
+	 * the builder has a state factory, its possible states and its default
+	 * state are kept and only the customization of the cells is replaced,
+	 * otherwise the states of the snapshot are used.<br/>
+	 * <br/>
+	 * The snapshot is read by blocks, so some bytes following it may be read
+	 * too. If the channel is a {@link FileChannel}, it is placed back just
+	 * after the snapshot, otherwise its position is unknown after the loading.
+	 * 
+	 * @param channel
+	 *            the channel to read the snapshot from, which is not closed
+	 * @param builder
+	 *            the builder to use
+	 * @return the loaded space
+	 * @throws IOException
+	 *             if the channel cannot be read or does not contain a snapshot
+	 * @throws IllegalArgumentException
+	 *             if the cells remember several states but the storage of the
+	 *             builder is not {@link Storage#LINKED} (only the linked cells
+	 *             can get back their previous states)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <StateType> ISpace<StateType> load(
+			ReadableByteChannel channel, SpaceBuilder<StateType> builder)
+			throws IOException {
+		Input input = new Input(channel);
+		byte[] magic = input.readBytes(MAGIC.length);
+		for (int index = 0; index < MAGIC.length; index++) {
+			if (magic[index] != MAGIC[index]) {
+				throw new IOException(
+						"The channel does not contain a snapshot.");
+			}
+		}
+		int version = input.readVarInt();
+		if (version != VERSION) {
+			throw new IOException("The version " + version
+					+ " of the snapshot is not supported.");
+		}
+
+		int dimensions = input.readVarInt();
+		int[] lengths = new int[dimensions];
+		boolean[] cycles = new boolean[dimensions];
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			lengths[dimension] = input.readVarInt();
+			cycles[dimension] = input.readVarInt() != 0;
+		}
+		final int memorySize = input.readVarInt();
+		if (memorySize > 1 && builder.getStorage() != Storage.LINKED) {
+			throw new IllegalArgumentException("The cells remember "
+					+ memorySize + " states, which can be restored only in a "
+					+ Storage.LINKED + " storage.");
+		}
+
+		final List<StateType> dictionary;
+		ObjectInputStream objects = new StateInputStream(
+				new ByteArrayInputStream(input.readBytes(input.readVarInt())));
+		try {
+			dictionary = (List<StateType>) objects.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("The states of the snapshot are unknown : "
+					+ e.getMessage());
+		} finally {
+			objects.close();
+		}
+		int defaultCode = input.readVarInt();
+		if (defaultCode >= dictionary.size()) {
+			throw new IOException("The default state is corrupted.");
+		}
+		final StateType defaultState = dictionary.get(defaultCode);
+
+		final int[] strides = getStrides(lengths);
+		final int[][] layers = new int[memorySize][strides[0] * lengths[0]];
+		for (int[] layer : layers) {
+			int start = 0;
+			while (start < layer.length) {
+				int stop = start + input.readVarInt();
+				int code = input.readVarInt();
+				if (stop > layer.length || code >= dictionary.size()) {
+					throw new IOException(
+							"The states of the cells are corrupted.");
+				}
+				for (int rank = start; rank < stop; rank++) {
+					layer[rank] = code;
+				}
+				start = stop;
+			}
+		}
+		input.release();
+
+		final IStateFactory<StateType> factory = builder.getStateFactory();
+		builder.setMemorySize(memorySize);
+		builder.setStateFactory(new AbstractStateFactory<StateType>() {
+			public List<StateType> getPossibleStates() {
+				return factory == null ? dictionary : factory
+						.getPossibleStates();
+			}
+
+			@Override
+			public StateType getDefaultState() {
+				return factory == null ? defaultState : factory
+						.getDefaultState();
+			}
+
+			@Override
+			public StateType getRandomState() {
+				return factory == null ? super.getRandomState() : factory
+						.getRandomState();
+			}
+
+			@Override
+			public void customize(ICell<StateType> cell) {
+				int rank = getRank(cell.getCoords().getAll(), strides);
+				if (memorySize == 1) {
+					cell.setCurrentState(dictionary.get(layers[0][rank]));
+				} else {
+					restoreMemory(cell, rank);
+				}
+			}
+
+			/**
+			 * Give back to a cell its previous states by applying them from
+			 * the oldest to the current one.
+			 */
+			private void restoreMemory(ICell<StateType> cell, int rank) {
+				IRule<StateType> rule = cell.getRule();
+				cell.setMemory(memorySize,
+						dictionary.get(layers[memorySize - 1][rank]));
+				for (int age = memorySize - 2; age >= 0; age--) {
+					final StateType state = dictionary.get(layers[age][rank]);
+					cell.setRule(new IRule<StateType>() {
+						public StateType calculateNextStateOf(
+								ICell<StateType> cell) {
+							return state;
+						}
+					});
+					cell.calculateNextState();
+					cell.applyNextState();
+				}
+				cell.setRule(rule);
+			}
+		});
+		try {
+			builder.createNewSpace();
+			for (int dimension = 0; dimension < dimensions; dimension++) {
+				builder.addDimension(lengths[dimension], cycles[dimension]);
+			}
+			return builder.getSpaceOfCell();
+		} finally {
+			if (factory != null) {
+				builder.setStateFactory(factory);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param cells
+	 *            all the cells of a space
+	 * @return the lengths of the dimensions of the space
+	 * @throws IllegalArgumentException
+	 *             if the space does not fill a complete box starting at the
+	 *             origin
+	 */
+	static int[] getLengths(Collection<? extends ICell<?>> cells) {
+		if (cells.isEmpty()) {
+			throw new IllegalArgumentException("An empty space has no state.");
+		}
+
+		ICell<?> first = cells.iterator().next();
+		int dimensions = first.getDimensions();
+		int[] lengths = new int[dimensions];
+		for (ICell<?> cell : cells) {
+			int[] coords = cell.getCoords().getAll();
+			if (coords.length != dimensions) {
+				throw new IllegalArgumentException("The cell " + cell
+						+ " has not the dimensions of " + first + ".");
+			}
+			for (int dimension = 0; dimension < dimensions; dimension++) {
+				if (coords[dimension] < 0) {
+					throw new IllegalArgumentException("The cell " + cell
+							+ " has negative coordinates.");
+				}
+				lengths[dimension] = Math.max(lengths[dimension],
+						coords[dimension] + 1);
+			}
+		}
+		long size = (long) getStrides(lengths)[0] * lengths[0];
+		if (size != cells.size()) {
+			throw new IllegalArgumentException("The " + cells.size()
+					+ " cells do not fill a box of " + size + " cells.");
+		}
+		return lengths;
+	}
+
+	/**
+	 * 
+	 * @param lengths
+	 *            the lengths of the dimensions of a space
+	 * @return the number of ranks between two neighbors on each dimension
+	 */
+	static int[] getStrides(int[] lengths) {
+		int[] strides = new int[lengths.length];
+		long stride = 1;
+		for (int dimension = lengths.length - 1; dimension >= 0; dimension--) {
+			strides[dimension] = (int) stride;
+			stride *= lengths[dimension];
+			if (stride > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(
+						"A snapshot cannot have more than " + Integer.MAX_VALUE
+								+ " cells.");
+			}
+		}
+		return strides;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @param strides
+	 *            the number of ranks between two neighbors on each dimension
+	 * @return the rank of the cell, the cells being ordered by their
+	 *         coordinates
+	 */
+	static int getRank(int[] coords, int[] strides) {
+		int rank = 0;
+		for (int dimension = 0; dimension < coords.length; dimension++) {
+			rank += coords[dimension] * strides[dimension];
+		}
+		return rank;
+	}
+
+	/**
+	 * A buffered writing in a channel.
+	 */
+	private static class Output {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		public Output(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Write a positive integer on 7 bits per byte, the highest bit telling
+		 * if another byte follows.
+		 */
+		public void writeVarInt(int value) throws IOException {
+			if (buffer.remaining() < 5) {
+				flush();
+			}
+			while ((value & ~0x7F) != 0) {
+				buffer.put((byte) (value & 0x7F | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		public void writeBytes(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int length = Math.min(buffer.remaining(), bytes.length
+						- offset);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * A buffered reading of a channel.
+	 */
+	private static class Input {
+		private final ReadableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		public Input(ReadableByteChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/**
+		 * 
+		 * @return the next byte of the channel
+		 * @throws EOFException
+		 *             if the channel has no more bytes
+		 */
+		public byte readByte() throws IOException {
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				int read;
+				do {
+					read = channel.read(buffer);
+				} while (read == 0);
+				buffer.flip();
+				if (read < 0) {
+					throw new EOFException("The snapshot is truncated.");
+				}
+			}
+			return buffer.get();
+		}
+
+		/**
+		 * @see Output#writeVarInt(int)
+		 */
+		public int readVarInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				byte b = readByte();
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("The snapshot contains a too big number.");
+		}
+
+		public byte[] readBytes(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			for (int index = 0; index < length; index++) {
+				bytes[index] = readByte();
+			}
+			return bytes;
+		}
+
+		/**
+		 * Give back to the channel the bytes read but not used, when it is
+		 * possible.
+		 */
+		public void release() throws IOException {
+			if (channel instanceof FileChannel && buffer.hasRemaining()) {
+				FileChannel file = (FileChannel) channel;
+				file.position(file.position() - buffer.remaining());
+				buffer.position(buffer.limit());
+			}
+		}
+	}
+}
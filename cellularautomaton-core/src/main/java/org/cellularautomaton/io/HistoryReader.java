@@ -0,0 +1,356 @@
+package org.cellularautomaton.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
+
+/**
+ * <p>
+ * A history reader gives access to any generation of a history written by a
+ * {@link HistoryWriter}. The frames are indexed when the reader is created,
+ * reading only their headers, then going to a generation reads the last
+ * keyframe before it and applies the following deltas. Going to the next
+ * generation only applies its delta, so replaying a history generation after
+ * generation costs only the changes.
+ * </p>
+ * <p>
+ * If the last frame of the history is incomplete (for example because the
+ * recording has been interrupted), it is ignored. The states of the frames are
+ * read through a {@link StateInputStream}, so a history using other states
+ * than booleans, numbers, characters, strings or enums cannot be read.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class HistoryReader<StateType> {
+
+	/**
+	 * The channel to read the history from.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The lengths of the dimensions of the space.
+	 */
+	private final int[] lengths;
+	/**
+	 * The number of ranks between two neighbors on each dimension.
+	 */
+	private final int[] strides;
+	/**
+	 * The generation of the first frame.
+	 */
+	private final int firstGeneration;
+	/**
+	 * The position of the content of each frame in the channel.
+	 */
+	private long[] positions = new long[16];
+	/**
+	 * The size of the content of each frame.
+	 */
+	private int[] sizes = new int[16];
+	/**
+	 * Tell for each frame if it is a keyframe.
+	 */
+	private boolean[] keyframes = new boolean[16];
+	/**
+	 * The number of frames.
+	 */
+	private int frames = 0;
+	/**
+	 * The states met in the frames read, ordered by code.
+	 */
+	private final List<StateType> dictionary = new ArrayList<StateType>();
+	/**
+	 * The code of the state of each cell, the cells being ordered by their
+	 * coordinates.
+	 */
+	private final int[] codes;
+	/**
+	 * The frame corresponding to the current codes, -1 if no frame has been
+	 * read yet.
+	 */
+	private int currentFrame = -1;
+
+	/**
+	 * Create a reader and index the frames of the history. The reader is
+	 * placed on the first generation.
+	 * 
+	 * @param channel
+	 *            the channel to read the history from, which is not closed
+	 * @throws IOException
+	 *             if the channel cannot be read or does not contain a history
+	 */
+	public HistoryReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = read(0, (int) Math.min(channel.size(), 64));
+		byte[] magic = new byte[HistoryWriter.MAGIC.length];
+		if (header.remaining() < magic.length) {
+			throw new EOFException("The history is truncated.");
+		}
+		header.get(magic);
+		if (!Arrays.equals(magic, HistoryWriter.MAGIC)) {
+			throw new IOException("The channel does not contain a history.");
+		}
+		int version = readVarInt(header);
+		if (version != HistoryWriter.VERSION) {
+			throw new IOException("The version " + version
+					+ " of the history is not supported.");
+		}
+		lengths = new int[readVarInt(header)];
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			lengths[dimension] = readVarInt(header);
+		}
+		strides = AutomatonSnapshot.getStrides(lengths);
+		codes = new int[strides[0] * lengths[0]];
+
+		int generation = indexFrames(header.position());
+		if (frames == 0 || !keyframes[0]) {
+			throw new IOException(
+					"The history does not start with a keyframe.");
+		}
+		firstGeneration = generation - frames + 1;
+		seek(firstGeneration);
+	}
+
+	/**
+	 * Read the headers of the frames to know where they are.
+	 * 
+	 * @param position
+	 *            the position of the first frame
+	 * @return the generation of the last frame
+	 */
+	private int indexFrames(long position) throws IOException {
+		int generation = 0;
+		long end = channel.size();
+		while (position + HistoryWriter.FRAME_HEADER_SIZE <= end) {
+			ByteBuffer header = read(position, HistoryWriter.FRAME_HEADER_SIZE);
+			byte type = header.get();
+			int size = header.getInt();
+			int frameGeneration = header.getInt();
+			position += HistoryWriter.FRAME_HEADER_SIZE;
+			if (position + size > end) {
+				break;
+			} else if (frames > 0 && frameGeneration != generation + 1) {
+				throw new IOException("The generation " + frameGeneration
+						+ " does not follow the generation " + generation
+						+ ".");
+			}
+
+			if (frames == positions.length) {
+				positions = Arrays.copyOf(positions, frames * 2);
+				sizes = Arrays.copyOf(sizes, frames * 2);
+				keyframes = Arrays.copyOf(keyframes, frames * 2);
+			}
+			positions[frames] = position;
+			sizes[frames] = size;
+			keyframes[frames] = type == HistoryWriter.KEYFRAME;
+			frames++;
+			generation = frameGeneration;
+			position += size;
+		}
+		return generation;
+	}
+
+	/**
+	 * 
+	 * @return the lengths of the dimensions of the space
+	 */
+	public int[] getLengths() {
+		return lengths.clone();
+	}
+
+	/**
+	 * 
+	 * @return the first generation of the history
+	 */
+	public int getFirstGeneration() {
+		return firstGeneration;
+	}
+
+	/**
+	 * 
+	 * @return the last generation of the history
+	 */
+	public int getLastGeneration() {
+		return firstGeneration + frames - 1;
+	}
+
+	/**
+	 * 
+	 * @return the generation the reader is placed on
+	 */
+	public int getGeneration() {
+		return firstGeneration + currentFrame;
+	}
+
+	/**
+	 * Place the reader on a generation.
+	 * 
+	 * @param generation
+	 *            the generation to read
+	 * @throws IOException
+	 *             if the channel cannot be read
+	 * @throws IllegalArgumentException
+	 *             if the generation is not in the history
+	 */
+	public void seek(int generation) throws IOException {
+		if (generation < getFirstGeneration()
+				|| generation > getLastGeneration()) {
+			throw new IllegalArgumentException("The generation " + generation
+					+ " is not between " + getFirstGeneration() + " and "
+					+ getLastGeneration() + ".");
+		}
+		int target = generation - firstGeneration;
+		int keyframe = target;
+		while (!keyframes[keyframe]) {
+			keyframe--;
+		}
+		int frame = keyframe;
+		if (currentFrame >= keyframe && currentFrame <= target) {
+			frame = currentFrame + 1;
+		}
+		currentFrame = -1;
+		for (; frame <= target; frame++) {
+			readFrame(frame);
+		}
+		currentFrame = target;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @return the state of the cell at the current generation
+	 */
+	public StateType getState(int... coords) {
+		if (coords.length != lengths.length) {
+			throw new IllegalArgumentException("The coordinates "
+					+ Arrays.toString(coords) + " have not "
+					+ lengths.length + " dimensions.");
+		}
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			if (coords[dimension] < 0
+					|| coords[dimension] >= lengths[dimension]) {
+				throw new IndexOutOfBoundsException("The coordinates "
+						+ Arrays.toString(coords) + " are out of the space.");
+			}
+		}
+		return dictionary.get(codes[AutomatonSnapshot.getRank(coords,
+				strides)]);
+	}
+
+	/**
+	 * Give to the cells of a space their state at the current generation. The
+	 * space must have the same dimensions than the recorded one.
+	 * 
+	 * @param space
+	 *            the space to restore
+	 */
+	public void restore(ISpace<StateType> space) {
+		for (ICell<StateType> cell : space.getAllCells()) {
+			cell.setCurrentState(getState(cell.getCoords().getAll()));
+		}
+	}
+
+	/**
+	 * Read a frame and apply it to the current codes.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readFrame(int frame) throws IOException {
+		ByteBuffer content = read(positions[frame], sizes[frame]);
+		if (keyframes[frame]) {
+			dictionary.clear();
+		}
+		int newStates = readVarInt(content);
+		if (newStates > 0) {
+			byte[] bytes = new byte[readVarInt(content)];
+			content.get(bytes);
+			ObjectInputStream objects = new StateInputStream(
+					new ByteArrayInputStream(bytes));
+			try {
+				dictionary.addAll((List<StateType>) objects.readObject());
+			} catch (ClassNotFoundException e) {
+				throw new IOException("The states of the history are unknown : "
+						+ e.getMessage());
+			} finally {
+				objects.close();
+			}
+		}
+
+		if (keyframes[frame]) {
+			int start = 0;
+			while (start < codes.length) {
+				int stop = start + readVarInt(content);
+				int code = readCode(content);
+				if (stop > codes.length) {
+					throw new IOException("The keyframe " + frame
+							+ " is corrupted.");
+				}
+				Arrays.fill(codes, start, stop, code);
+				start = stop;
+			}
+		} else {
+			int changes = readVarInt(content);
+			int rank = -1;
+			for (int change = 0; change < changes; change++) {
+				rank += readVarInt(content) + 1;
+				if (rank >= codes.length) {
+					throw new IOException("The delta " + frame
+							+ " is corrupted.");
+				}
+				codes[rank] = readCode(content);
+			}
+		}
+	}
+
+	private int readCode(ByteBuffer content) throws IOException {
+		int code = readVarInt(content);
+		if (code >= dictionary.size()) {
+			throw new IOException("The state " + code + " is unknown.");
+		}
+		return code;
+	}
+
+	/**
+	 * Read a part of the channel.
+	 */
+	private ByteBuffer read(long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException("The history is truncated.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @see HistoryWriter#writeVarInt(java.io.ByteArrayOutputStream, int)
+	 */
+	private static int readVarInt(ByteBuffer buffer) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (!buffer.hasRemaining()) {
+				throw new EOFException("The history is truncated.");
+			}
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("The history contains a too big number.");
+	}
+}
@@ -0,0 +1,491 @@
+package org.cellularautomaton.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
+
+/**
+ * <p>
+ * A history writer records the successive generations of a space of cells in
+ * a channel, in order to replay or analyze them later with a
+ * {@link HistoryReader}. Most of the generations are written as deltas,
+ * containing only the cells which have changed since the previous generation,
+ * while some generations are written as keyframes, containing all the cells,
+ * in order to go quickly to any generation when reading the history.
+ * </p>
+ * <p>
+ * A history starts with the lengths of the dimensions of the space (which has
+ * to fill a complete box, like for an {@link AutomatonSnapshot}), followed by
+ * the frames. Each frame starts with its type, the size of its content and its
+ * generation, so a reader can index the frames without reading them. Then
+ * comes the states used for the first time in the history (all the states for
+ * a keyframe), written with the Java serialization, and the cells :
+ * <ul>
+ * <li>a keyframe gives the codes of the states of all the cells, ordered by
+ * their coordinates, as runs of cells having the same state,</li>
+ * <li>a delta gives the number of changed cells then, for each of them ordered
+ * by their coordinates, the gap with the previous changed cell and the code of
+ * its new state.</li>
+ * </ul>
+ * All the numbers are written as variable-length integers.
+ * </p>
+ * <p>
+ * By default, the frames are written in the channel by the thread giving them.
+ * An executor can be given to write them in the background (see
+ * {@link #setExecutorService(ExecutorService)}), the frames waiting to be
+ * written being kept in a bounded buffer : the thread giving a frame waits
+ * only if this buffer is full.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class HistoryWriter<StateType> {
+
+	/**
+	 * The bytes starting each history.
+	 */
+	static final byte[] MAGIC = { 'C', 'A', 'H', 'S' };
+	/**
+	 * The version of the format written by this class.
+	 */
+	static final int VERSION = 1;
+	/**
+	 * The type of the frames containing all the cells.
+	 */
+	static final byte KEYFRAME = 0;
+	/**
+	 * The type of the frames containing only the changed cells.
+	 */
+	static final byte DELTA = 1;
+	/**
+	 * The number of bytes before the content of a frame : its type, the size of
+	 * its content and its generation.
+	 */
+	static final int FRAME_HEADER_SIZE = 9;
+	/**
+	 * The default number of frames which can wait to be written.
+	 */
+	public static final int DEFAULT_BUFFERED_FRAMES = 16;
+
+	/**
+	 * The channel to write the history in.
+	 */
+	private final WritableByteChannel channel;
+	/**
+	 * The number of ranks between two neighbors on each dimension.
+	 */
+	private final int[] strides;
+	/**
+	 * The number of cells of the space.
+	 */
+	private final int size;
+	/**
+	 * The states already met, ordered by code.
+	 */
+	private final List<StateType> dictionary = new ArrayList<StateType>();
+	/**
+	 * The code of each state already met.
+	 */
+	private final Map<StateType, Integer> codes = new HashMap<StateType, Integer>();
+	/**
+	 * The number of states of the dictionary already written in the history.
+	 */
+	private int writtenStates = 0;
+	/**
+	 * The generation of the last frame, <code>null</code> if no frame has been
+	 * written yet.
+	 */
+	private Integer lastGeneration = null;
+	/**
+	 * The executor writing the frames, <code>null</code> to write them in the
+	 * thread giving them.
+	 */
+	private ExecutorService executorService = null;
+	/**
+	 * The number of frames which can wait to be written.
+	 */
+	private int bufferedFrames = DEFAULT_BUFFERED_FRAMES;
+	/**
+	 * The frames waiting to be written, the first one being written when the
+	 * executor is working.
+	 */
+	private final LinkedList<ByteBuffer> pendingFrames = new LinkedList<ByteBuffer>();
+	/**
+	 * Tell if a task of the executor is writing the pending frames.
+	 */
+	private boolean isDraining = false;
+	/**
+	 * The error met by the executor, thrown back at each next call because
+	 * the history is then incomplete.
+	 */
+	private IOException failure = null;
+
+	/**
+	 * Create a writer and write the header of the history.
+	 * 
+	 * @param space
+	 *            the space to record
+	 * @param channel
+	 *            the channel to write the history in, which is not closed
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 * @throws IllegalArgumentException
+	 *             if the space does not fill a complete box
+	 */
+	public HistoryWriter(ISpace<StateType> space, WritableByteChannel channel)
+			throws IOException {
+		this.channel = channel;
+		int[] lengths = AutomatonSnapshot.getLengths(space.getAllCells());
+		strides = AutomatonSnapshot.getStrides(lengths);
+		size = strides[0] * lengths[0];
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		header.write(MAGIC);
+		writeVarInt(header, VERSION);
+		writeVarInt(header, lengths.length);
+		for (int length : lengths) {
+			writeVarInt(header, length);
+		}
+		write(ByteBuffer.wrap(header.toByteArray()));
+	}
+
+	/**
+	 * Give an executor to write the frames in the background. The executor is
+	 * not shut down by the writer.
+	 * 
+	 * @param executorService
+	 *            the executor to use, <code>null</code> to write the frames in
+	 *            the thread giving them
+	 * @throws IOException
+	 *             if the frames already given cannot be written
+	 */
+	public void setExecutorService(ExecutorService executorService)
+			throws IOException {
+		flush();
+		this.executorService = executorService;
+	}
+
+	/**
+	 * 
+	 * @return the executor writing the frames, <code>null</code> if they are
+	 *         written in the thread giving them
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * 
+	 * @param bufferedFrames
+	 *            the number of frames which can wait to be written when an
+	 *            executor is used
+	 * @throws IllegalArgumentException
+	 *             if the number is lower than 1
+	 */
+	public void setBufferedFrames(int bufferedFrames) {
+		if (bufferedFrames < 1) {
+			throw new IllegalArgumentException("The number of frames ("
+					+ bufferedFrames + ") must be positive.");
+		}
+		synchronized (pendingFrames) {
+			this.bufferedFrames = bufferedFrames;
+			pendingFrames.notifyAll();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of frames which can wait to be written when an
+	 *         executor is used
+	 */
+	public int getBufferedFrames() {
+		return bufferedFrames;
+	}
+
+	/**
+	 * 
+	 * @return the generation of the last frame, <code>null</code> if no frame
+	 *         has been written yet
+	 */
+	public Integer getLastGeneration() {
+		return lastGeneration;
+	}
+
+	/**
+	 * Write a frame containing the current state of all the cells.
+	 * 
+	 * @param generation
+	 *            the generation of the cells, which has to follow the one of
+	 *            the previous frame
+	 * @param cells
+	 *            all the cells of the space
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 */
+	public void writeKeyframe(int generation,
+			Collection<ICell<StateType>> cells) throws IOException {
+		if (cells.size() != size) {
+			throw new IllegalArgumentException("A keyframe needs the " + size
+					+ " cells of the space, not " + cells.size() + ".");
+		}
+		int[] layer = new int[size];
+		for (ICell<StateType> cell : cells) {
+			layer[getRank(cell)] = getCode(cell.getCurrentState());
+		}
+
+		ByteArrayOutputStream frame = startFrame(KEYFRAME, generation);
+		writeNewStates(frame, 0);
+		int start = 0;
+		while (start < size) {
+			int code = layer[start];
+			int stop = start + 1;
+			while (stop < size && layer[stop] == code) {
+				stop++;
+			}
+			writeVarInt(frame, stop - start);
+			writeVarInt(frame, code);
+			start = stop;
+		}
+		endFrame(frame, generation);
+	}
+
+	/**
+	 * Write a frame containing the current state of the cells which have
+	 * changed since the previous frame.
+	 * 
+	 * @param generation
+	 *            the generation of the cells, which has to follow the one of
+	 *            the previous frame
+	 * @param changedCells
+	 *            the cells which have changed
+	 * @throws IOException
+	 *             if the channel cannot be written
+	 */
+	public void writeDelta(int generation,
+			Collection<ICell<StateType>> changedCells) throws IOException {
+		if (lastGeneration == null) {
+			throw new IllegalStateException(
+					"The history has to start with a keyframe.");
+		}
+		long[] changes = new long[changedCells.size()];
+		int index = 0;
+		for (ICell<StateType> cell : changedCells) {
+			long code = getCode(cell.getCurrentState());
+			changes[index++] = (long) getRank(cell) << 32 | code;
+		}
+		Arrays.sort(changes);
+
+		ByteArrayOutputStream frame = startFrame(DELTA, generation);
+		writeNewStates(frame, writtenStates);
+		writeVarInt(frame, changes.length);
+		int previous = -1;
+		for (long change : changes) {
+			int rank = (int) (change >>> 32);
+			writeVarInt(frame, rank - previous - 1);
+			writeVarInt(frame, (int) change);
+			previous = rank;
+		}
+		endFrame(frame, generation);
+	}
+
+	/**
+	 * Wait for all the frames given to be written.
+	 * 
+	 * @throws IOException
+	 *             if a frame cannot be written
+	 */
+	public void flush() throws IOException {
+		synchronized (pendingFrames) {
+			while (isDraining) {
+				waitForFrames();
+			}
+			checkFailure();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the rank of the cell in the space, the cells being ordered by
+	 *         their coordinates
+	 */
+	private int getRank(ICell<StateType> cell) {
+		return AutomatonSnapshot.getRank(cell.getCoords().getAll(), strides);
+	}
+
+	/**
+	 * 
+	 * @return the code of the state, added to the dictionary if it is new
+	 */
+	private int getCode(StateType state) {
+		Integer code = codes.get(state);
+		if (code == null) {
+			code = dictionary.size();
+			codes.put(state, code);
+			dictionary.add(state);
+		}
+		return code;
+	}
+
+	private ByteArrayOutputStream startFrame(byte type, int generation) {
+		if (lastGeneration != null && generation != lastGeneration + 1) {
+			throw new IllegalArgumentException("The generation " + generation
+					+ " does not follow the generation " + lastGeneration
+					+ ".");
+		}
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		frame.write(type);
+		for (int index = 1; index < FRAME_HEADER_SIZE; index++) {
+			frame.write(0);
+		}
+		return frame;
+	}
+
+	private void endFrame(ByteArrayOutputStream frame, int generation)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(frame.toByteArray());
+		buffer.putInt(1, buffer.capacity() - FRAME_HEADER_SIZE);
+		buffer.putInt(5, generation);
+		write(buffer);
+		writtenStates = dictionary.size();
+		lastGeneration = generation;
+	}
+
+	/**
+	 * Write the states of the dictionary which are not known by the frame. The
+	 * number of states written is only updated once the frame is accepted
+	 * (see {@link #endFrame(ByteArrayOutputStream, int)}), so a frame which
+	 * cannot be written does not lose its new states.
+	 * 
+	 * @param from
+	 *            the number of states already known, 0 for a keyframe
+	 */
+	private void writeNewStates(ByteArrayOutputStream frame, int from)
+			throws IOException {
+		List<StateType> states = new ArrayList<StateType>(dictionary.subList(
+				from, dictionary.size()));
+		writeVarInt(frame, states.size());
+		if (!states.isEmpty()) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream objects = new ObjectOutputStream(bytes);
+			objects.writeObject(states);
+			objects.close();
+			writeVarInt(frame, bytes.size());
+			bytes.writeTo(frame);
+		}
+	}
+
+	/**
+	 * Write some bytes in the channel, directly or through the executor.
+	 */
+	private void write(ByteBuffer buffer) throws IOException {
+		if (executorService == null) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} else {
+			synchronized (pendingFrames) {
+				while (pendingFrames.size() >= bufferedFrames) {
+					waitForFrames();
+				}
+				checkFailure();
+				pendingFrames.add(buffer);
+				if (!isDraining) {
+					isDraining = true;
+					try {
+						executorService.execute(new Runnable() {
+							public void run() {
+								drain();
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						isDraining = false;
+						pendingFrames.removeLast();
+						throw new IOException("The frames cannot be written : "
+								+ e.getMessage(), e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the pending frames until there is no more.
+	 */
+	private void drain() {
+		while (true) {
+			ByteBuffer buffer;
+			synchronized (pendingFrames) {
+				buffer = pendingFrames.peek();
+				if (buffer == null) {
+					isDraining = false;
+					pendingFrames.notifyAll();
+					return;
+				}
+			}
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				synchronized (pendingFrames) {
+					failure = e;
+					pendingFrames.clear();
+					isDraining = false;
+					pendingFrames.notifyAll();
+					return;
+				}
+			}
+			synchronized (pendingFrames) {
+				pendingFrames.remove();
+				pendingFrames.notifyAll();
+			}
+		}
+	}
+
+	private void waitForFrames() throws InterruptedIOException {
+		try {
+			pendingFrames.wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for the frames to be written.");
+		}
+	}
+
+	/**
+	 * Throw back the error met by the executor, if any.
+	 */
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Write a positive integer on 7 bits per byte, the highest bit telling if
+	 * another byte follows.
+	 */
+	static void writeVarInt(ByteArrayOutputStream output, int value) {
+		while ((value & ~0x7F) != 0) {
+			output.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+}
@@ -0,0 +1,476 @@
+package org.cellularautomaton.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cellularautomaton.cell.GenericCell;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.state.IStateHistory;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * <p>
+ * A mapped history store keeps the last generations of a space of cells in a
+ * memory-mapped file, so a long history of a big space does not fill the heap
+ * and can be read again after a restart. The file is a ring of frames, each
+ * frame containing the code of the state of each cell (on 1, 2 or 4 bytes
+ * depending on the number of possible states) ordered by their coordinates :
+ * when the ring is full, a new generation replaces the oldest one.
+ * </p>
+ * <p>
+ * The generations are recorded with {@link #record(Collection)}, for example
+ * after each step of an automaton (see
+ * {@link org.cellularautomaton.optimization.implemented.StoreHistoryOptimization}
+ * ). The linked cells of a space can read their old states from the store
+ * through {@link ICell#getState(int)} once {@link #attach(ISpace)} is called.
+ * </p>
+ * <p>
+ * The space has to fill a complete box, like for an {@link AutomatonSnapshot}
+ * . The possible states are written with the Java serialization in the header
+ * of the file, and read back with a {@link StateInputStream} : only the
+ * booleans, numbers, characters, strings and enums are accepted. A store can be read by several threads at the same time, but
+ * the recording has to be done while nobody reads it.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class MappedHistoryStore<StateType> implements IStateHistory<StateType> {
+
+	/**
+	 * The bytes starting each store.
+	 */
+	private static final byte[] MAGIC = { 'C', 'A', 'H', 'M' };
+	/**
+	 * The version of the format written by this class.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * The position of the number of generations recorded in the header.
+	 */
+	private static final int GENERATIONS_POSITION = 8;
+	/**
+	 * The maximal size of a mapped segment of the file.
+	 */
+	private static final long SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The file of the store.
+	 */
+	private final RandomAccessFile file;
+	/**
+	 * The header of the file, updated at each generation.
+	 */
+	private final MappedByteBuffer header;
+	/**
+	 * The mapped segments of the file containing the frames.
+	 */
+	private final MappedByteBuffer[] segments;
+	/**
+	 * The lengths of the dimensions of the space.
+	 */
+	private final int[] lengths;
+	/**
+	 * The number of ranks between two neighbors on each dimension.
+	 */
+	private final int[] strides;
+	/**
+	 * The possible states, ordered by code.
+	 */
+	private final List<StateType> states;
+	/**
+	 * The code of each possible state.
+	 */
+	private final Map<StateType, Integer> codes = new HashMap<StateType, Integer>();
+	/**
+	 * The number of bytes of a code.
+	 */
+	private final int codeSize;
+	/**
+	 * The number of bytes of a frame.
+	 */
+	private final int frameSize;
+	/**
+	 * The number of frames of a segment.
+	 */
+	private final int segmentFrames;
+	/**
+	 * The number of frames of the ring.
+	 */
+	private final int depth;
+	/**
+	 * The number of generations recorded since the creation of the store.
+	 */
+	private long generations;
+
+	/**
+	 * Create a new store, replacing the file if it exists.
+	 * 
+	 * @param file
+	 *            the file of the store
+	 * @param space
+	 *            the space to record
+	 * @param possibleStates
+	 *            the states the cells can have
+	 * @param depth
+	 *            the number of generations the store keeps
+	 * @return the store, which has no generation yet
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public static <StateType> MappedHistoryStore<StateType> create(File file,
+			ISpace<StateType> space, Collection<StateType> possibleStates,
+			int depth) throws IOException {
+		if (depth < 1) {
+			throw new IllegalArgumentException("The depth (" + depth
+					+ ") must be positive.");
+		}
+		int[] lengths = AutomatonSnapshot.getLengths(space.getAllCells());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objects = new ObjectOutputStream(bytes);
+		objects.writeObject(new ArrayList<StateType>(possibleStates));
+		objects.close();
+		ByteBuffer buffer = ByteBuffer.allocate(28 + 4 * lengths.length
+				+ bytes.size());
+		buffer.put(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(0);
+		buffer.putInt(depth);
+		buffer.putInt(lengths.length);
+		for (int length : lengths) {
+			buffer.putInt(length);
+		}
+		buffer.putInt(bytes.size());
+		buffer.put(bytes.toByteArray());
+		buffer.flip();
+
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			access.setLength(0);
+			FileChannel channel = access.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			return new MappedHistoryStore<StateType>(access);
+		} catch (IOException e) {
+			access.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open an existing store, with all the generations it contains.
+	 * 
+	 * @param file
+	 *            the file of the store
+	 * @return the store
+	 * @throws IOException
+	 *             if the file cannot be read or does not contain a store
+	 */
+	public static <StateType> MappedHistoryStore<StateType> open(File file)
+			throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			return new MappedHistoryStore<StateType>(access);
+		} catch (IOException e) {
+			access.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the header of the file and map the frames.
+	 */
+	@SuppressWarnings("unchecked")
+	private MappedHistoryStore(RandomAccessFile file) throws IOException {
+		this.file = file;
+		FileChannel channel = file.getChannel();
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(
+				channel.size(), 24));
+		channel.read(buffer, 0);
+		buffer.flip();
+		byte[] magic = new byte[MAGIC.length];
+		if (buffer.remaining() < 24) {
+			throw new IOException("The file does not contain a store.");
+		}
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException("The file does not contain a store.");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("The version " + version
+					+ " of the store is not supported.");
+		}
+		generations = buffer.getLong();
+		depth = buffer.getInt();
+		lengths = new int[buffer.getInt()];
+
+		buffer = ByteBuffer.allocate(4 * lengths.length + 4);
+		channel.read(buffer, 24);
+		buffer.flip();
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			lengths[dimension] = buffer.getInt();
+		}
+		strides = AutomatonSnapshot.getStrides(lengths);
+		byte[] bytes = new byte[buffer.getInt()];
+		int dictionaryPosition = 28 + 4 * lengths.length;
+		channel.read(ByteBuffer.wrap(bytes), dictionaryPosition);
+		ObjectInputStream objects = new StateInputStream(
+				new ByteArrayInputStream(bytes));
+		try {
+			states = (List<StateType>) objects.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("The states of the store are unknown : "
+					+ e.getMessage());
+		} finally {
+			objects.close();
+		}
+		for (int code = 0; code < states.size(); code++) {
+			codes.put(states.get(code), code);
+		}
+
+		codeSize = states.size() <= 1 << 8 ? 1 : states.size() <= 1 << 16 ? 2
+				: 4;
+		long cells = (long) strides[0] * lengths[0];
+		if (cells * codeSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"A frame cannot be bigger than " + Integer.MAX_VALUE
+							+ " bytes.");
+		}
+		frameSize = (int) cells * codeSize;
+		segmentFrames = (int) Math.max(1, SEGMENT_SIZE / frameSize);
+
+		header = channel.map(MapMode.READ_WRITE, 0, 24);
+		long position = dictionaryPosition + bytes.length;
+		segments = new MappedByteBuffer[(depth + segmentFrames - 1)
+				/ segmentFrames];
+		for (int segment = 0; segment < segments.length; segment++) {
+			int frames = Math.min(segmentFrames, depth - segment
+					* segmentFrames);
+			segments[segment] = channel.map(MapMode.READ_WRITE, position,
+					(long) frames * frameSize);
+			position += (long) frames * frameSize;
+		}
+	}
+
+	/**
+	 * Give this store as history to the linked cells of a space, so they can
+	 * read the states older than their memory from it (see
+	 * {@link GenericCell#setHistory(IStateHistory)}). The store has to record
+	 * each generation of the space for the ages to be consistent, so if the
+	 * store already has some generations (like when it is opened again), the
+	 * current states of the cells have to be the ones of the last generation.
+	 * 
+	 * @param space
+	 *            the space to attach
+	 * @throws IllegalArgumentException
+	 *             if the space has cells which are not linked cells, if it
+	 *             has not the dimensions of the store or if its states are
+	 *             not the ones of the last generation
+	 */
+	public void attach(ISpace<StateType> space) {
+		Collection<ICell<StateType>> cells = space.getAllCells();
+		int[] spaceLengths = AutomatonSnapshot.getLengths(cells);
+		if (!Arrays.equals(spaceLengths, lengths)) {
+			throw new IllegalArgumentException("The space "
+					+ Arrays.toString(spaceLengths)
+					+ " has not the dimensions of the store "
+					+ Arrays.toString(lengths) + ".");
+		}
+		for (ICell<StateType> cell : cells) {
+			if (!(cell instanceof GenericCell)) {
+				throw new IllegalArgumentException("The cell " + cell
+						+ " cannot have a history.");
+			} else if (generations > 0
+					&& !cell.getCurrentState().equals(
+							getState(0, cell.getCoords().getAll()))) {
+				throw new IllegalArgumentException("The cell " + cell
+						+ " is not in the last generation of the store.");
+			}
+		}
+		for (ICell<StateType> cell : cells) {
+			((GenericCell<StateType>) cell).setHistory(this);
+		}
+	}
+
+	/**
+	 * Remove this store from the history of the cells of a space, so they
+	 * only have their memory.
+	 * 
+	 * @param space
+	 *            the space to detach
+	 * @see #attach(ISpace)
+	 */
+	public void detach(ISpace<StateType> space) {
+		for (ICell<StateType> cell : space.getAllCells()) {
+			if (cell instanceof GenericCell
+					&& ((GenericCell<StateType>) cell).getHistory() == this) {
+				((GenericCell<StateType>) cell).setHistory(null);
+			}
+		}
+	}
+
+	/**
+	 * Record the current state of the cells as the last generation of the
+	 * store.
+	 * 
+	 * @param cells
+	 *            all the cells of the space
+	 * @throws IllegalArgumentException
+	 *             if a cell has a state which is not a possible state
+	 */
+	public void record(Collection<ICell<StateType>> cells) {
+		if (cells.size() * codeSize != frameSize) {
+			throw new IllegalArgumentException("A generation needs the "
+					+ frameSize / codeSize + " cells of the space, not "
+					+ cells.size() + ".");
+		}
+		long frame = generations % depth;
+		MappedByteBuffer segment = segments[(int) (frame / segmentFrames)];
+		int offset = (int) (frame % segmentFrames) * frameSize;
+		for (ICell<StateType> cell : cells) {
+			StateType state = cell.getCurrentState();
+			Integer code = codes.get(state);
+			if (code == null) {
+				throw new IllegalArgumentException("The state " + state
+						+ " of the cell " + cell + " is not a possible state.");
+			}
+			int index = offset
+					+ AutomatonSnapshot.getRank(cell.getCoords().getAll(),
+							strides) * codeSize;
+			if (codeSize == 1) {
+				segment.put(index, (byte) (int) code);
+			} else if (codeSize == 2) {
+				segment.putShort(index, (short) (int) code);
+			} else {
+				segment.putInt(index, code);
+			}
+		}
+		generations++;
+		header.putLong(GENERATIONS_POSITION, generations);
+	}
+
+	public StateType getState(Coords coords, int age) {
+		return getState(age, coords.getAll());
+	}
+
+	/**
+	 * 
+	 * @param age
+	 *            the age of the asked state, 0 is the last generation recorded
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return the state the cell had
+	 * @throws IndexOutOfBoundsException
+	 *             if the age is not in the store or the cell not in the space
+	 */
+	public StateType getState(int age, int... coords) {
+		if (age < 0 || age >= getDepth()) {
+			throw new IndexOutOfBoundsException("Age: " + age + ", Depth: "
+					+ getDepth());
+		}
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			if (coords[dimension] < 0
+					|| coords[dimension] >= lengths[dimension]) {
+				throw new IndexOutOfBoundsException("The coordinates "
+						+ Arrays.toString(coords) + " are out of the space.");
+			}
+		}
+		long frame = (generations - 1 - age) % depth;
+		MappedByteBuffer segment = segments[(int) (frame / segmentFrames)];
+		int index = (int) (frame % segmentFrames) * frameSize
+				+ AutomatonSnapshot.getRank(coords, strides) * codeSize;
+		int code;
+		if (codeSize == 1) {
+			code = segment.get(index) & 0xFF;
+		} else if (codeSize == 2) {
+			code = segment.getShort(index) & 0xFFFF;
+		} else {
+			code = segment.getInt(index);
+		}
+		return states.get(code);
+	}
+
+	/**
+	 * The depth is the number of generations recorded, up to the number of
+	 * generations the store can keep.
+	 */
+	public int getDepth() {
+		return (int) Math.min(generations, depth);
+	}
+
+	/**
+	 * 
+	 * @return the number of generations the store can keep
+	 */
+	public int getCapacity() {
+		return depth;
+	}
+
+	/**
+	 * 
+	 * @return the number of generations recorded since the creation of the
+	 *         store, the oldest ones being forgotten
+	 */
+	public long getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * 
+	 * @return the lengths of the dimensions of the space
+	 */
+	public int[] getLengths() {
+		return lengths.clone();
+	}
+
+	/**
+	 * 
+	 * @return the possible states of the cells
+	 */
+	public List<StateType> getPossibleStates() {
+		return states;
+	}
+
+	/**
+	 * Write the recorded generations on the disk. Otherwise, the system writes
+	 * them when it wants.
+	 */
+	public void force() {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+		header.force();
+	}
+
+	/**
+	 * Write the recorded generations on the disk and close the file. The store
+	 * cannot be used anymore, but the mapped memory is released only when the
+	 * store is garbage collected.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		force();
+		file.close();
+	}
+}
@@ -0,0 +1,83 @@
+package org.cellularautomaton.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * <p>
+ * A state input stream reads the dictionaries of states written with the Java
+ * serialization in the snapshots and the histories. As these files can come
+ * from anywhere, only the classes which cannot run any code when they are
+ * read are accepted : the lists of states, the boxed primitives, the strings
+ * and the enums. Any other class met in the stream makes the reading fail
+ * with an {@link InvalidClassException}, before the class is instantiated.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+class StateInputStream extends ObjectInputStream {
+
+	/**
+	 * The names of the classes which can be read, besides the enums.
+	 */
+	private static final Collection<String> ALLOWED_CLASSES = new HashSet<String>(
+			Arrays.asList(ArrayList.class.getName(), Boolean.class.getName(),
+					Character.class.getName(), Byte.class.getName(),
+					Short.class.getName(), Integer.class.getName(),
+					Long.class.getName(), Float.class.getName(),
+					Double.class.getName(), Number.class.getName(),
+					String.class.getName(), Enum.class.getName()));
+
+	/**
+	 * Create a stream reading the states from another stream.
+	 * 
+	 * @param input
+	 *            the stream containing the serialized states
+	 * @throws IOException
+	 *             if the header of the stream cannot be read
+	 */
+	public StateInputStream(InputStream input) throws IOException {
+		super(input);
+	}
+
+	/**
+	 * The class is resolved only if it is allowed, the enums being checked
+	 * once loaded (which does not initialize them).
+	 */
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass description)
+			throws IOException, ClassNotFoundException {
+		if (ALLOWED_CLASSES.contains(description.getName())) {
+			return super.resolveClass(description);
+		}
+		Class<?> type = super.resolveClass(description);
+		if (type.isEnum() || type.getSuperclass() != null
+				&& type.getSuperclass().isEnum()) {
+			return type;
+		} else {
+			throw new InvalidClassException(description.getName(),
+					"This class cannot be used as a state.");
+		}
+	}
+
+	/**
+	 * No proxy can be a state.
+	 * 
+	 * @throws InvalidClassException
+	 *             in any case
+	 */
+	@Override
+	protected Class<?> resolveProxyClass(String[] interfaces)
+			throws IOException, ClassNotFoundException {
+		throw new InvalidClassException(Arrays.toString(interfaces),
+				"A proxy cannot be used as a state.");
+	}
+}
@@ -1,9 +1,11 @@
 package org.cellularautomaton.optimization;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.cellularautomaton.optimization.step.OptimizationStep;
@@ -12,7 +14,16 @@ import org.cellularautomaton.optimization.type.GenericOptimization;
 import org.cellularautomaton.optimization.type.OptimizationType;
 
 /**
+ * <p>
  * This manager gives a convenient way to manage optimizations.
+ * </p>
+ * <p>
+ * As the optimizations are executed at each step of their owner, the
+ * optimizations of a step and their executors are resolved only once and kept
+ * in a dispatch table, which is rebuilt when the optimizations or the
+ * executors change. Executing a step without optimization costs nearly
+ * nothing.
+ * </p>
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
@@ -21,8 +32,17 @@ import org.cellularautomaton.optimization.type.OptimizationType;
  */
 public class OptimizationManager<OwnerType> extends
 		AbstractOptimization<OwnerType> implements Optimizable<OwnerType> {
-	private final Collection<Optimization<OwnerType>> optimizations = new HashSet<Optimization<OwnerType>>();
+	private final Collection<Optimization<OwnerType>> optimizations = new LinkedHashSet<Optimization<OwnerType>>();
 	private final Map<Class<? extends OptimizationType<OwnerType>>, OptimizationExecutor<OwnerType>> executors = new HashMap<Class<? extends OptimizationType<OwnerType>>, OptimizationExecutor<OwnerType>>();
+	/**
+	 * The optimizations to execute at each step, with their executors, built
+	 * when a step is executed for the first time since the last change.
+	 */
+	private final Map<Class<? extends OptimizationStep<OwnerType>>, Dispatch<OwnerType>[]> dispatchTable = new HashMap<Class<? extends OptimizationStep<OwnerType>>, Dispatch<OwnerType>[]>();
+	/**
+	 * The optimizations which can ask to be removed.
+	 */
+	private final List<AutoRemoveOptimization<OwnerType>> autoRemovables = new ArrayList<AutoRemoveOptimization<OwnerType>>();
 
 	/**
 	 * Create a new manager, already able to execute {@link GenericOptimization}
@@ -43,6 +63,7 @@ public class OptimizationManager<OwnerType> extends
 				});
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public void add(Optimization<OwnerType> optimization) {
 		if (getOwner() == null) {
@@ -61,7 +82,12 @@ public class OptimizationManager<OwnerType> extends
 					"Another owner use the optimization " + optimization);
 		} else {
 			optimization.setOwner(getOwner());
-			optimizations.add(optimization);
+			if (optimizations.add(optimization)
+					&& optimization instanceof AutoRemoveOptimization) {
+				autoRemovables
+						.add((AutoRemoveOptimization<OwnerType>) optimization);
+			}
+			dispatchTable.clear();
 		}
 	}
 
@@ -69,6 +95,8 @@ public class OptimizationManager<OwnerType> extends
 	public void remove(Optimization<OwnerType> optimization) {
 		if (optimizations.remove(optimization)) {
 			optimization.setOwner(null);
+			autoRemovables.remove(optimization);
+			dispatchTable.clear();
 		}
 	}
 
@@ -94,69 +122,115 @@ public class OptimizationManager<OwnerType> extends
 	public void setExecutor(Class<? extends OptimizationType<OwnerType>> type,
 			OptimizationExecutor<OwnerType> executor) {
 		executors.put(type, executor);
+		dispatchTable.clear();
 	}
 
 	/**
-	 * Apply the optimizations of a specific step.
+	 * Apply the optimizations of a specific step. The optimizations of the
+	 * step and their executors are taken from the dispatch table, so they are
+	 * searched only for the first execution of the step since the last change
+	 * of the optimizations or the executors.
 	 * 
 	 * @param step
 	 *            the current step
+	 * @throws IllegalStateException
+	 *             if no executor, or several ones, correspond to an
+	 *             optimization of the step
 	 */
 	public void execute(Class<? extends OptimizationStep<OwnerType>> step) {
-		clean();
+		if (!autoRemovables.isEmpty()) {
+			clean();
+		}
+		if (optimizations.isEmpty()) {
+			return;
+		}
+		Dispatch<OwnerType>[] dispatches = dispatchTable.get(step);
+		if (dispatches == null) {
+			dispatches = createDispatches(step);
+			dispatchTable.put(step, dispatches);
+		}
+		for (Dispatch<OwnerType> dispatch : dispatches) {
+			dispatch.executor.execute(dispatch.optimization);
+		}
+	}
+
+	/**
+	 * Resolve the executors of the optimizations of a specific step.
+	 * 
+	 * @param step
+	 *            the step to consider
+	 * @return the optimizations of the step with their executors
+	 */
+	private Dispatch<OwnerType>[] createDispatches(
+			Class<? extends OptimizationStep<OwnerType>> step) {
+		List<Dispatch<OwnerType>> dispatches = new ArrayList<Dispatch<OwnerType>>();
 		for (Optimization<OwnerType> optimization : getOptimizationsOf(step)) {
-			// look for exact matching
-			OptimizationExecutor<OwnerType> executor = executors
-					.get(optimization);
-
-			// look for global matching
-			if (executor == null) {
-				HashSet<Class<? extends OptimizationType<OwnerType>>> candidates = new HashSet<Class<? extends OptimizationType<OwnerType>>>();
-				for (Class<? extends OptimizationType<OwnerType>> type : executors
-						.keySet()) {
-					if (type.isInstance(optimization)) {
-						candidates.add(type);
-					}
-				}
-				if (candidates.isEmpty()) {
-					throw new IllegalStateException(
-							"No executor has been defined for the optimization "
-									+ optimization);
-				} else if (candidates.size() > 1) {
-					String classes = "";
-					for (Class<? extends OptimizationType<OwnerType>> candidate : candidates) {
-						classes += ", " + candidate.getCanonicalName();
-					}
-					classes = classes.substring(2);
-					throw new IllegalStateException(
-							"No executor has been defined for the optimizations "
-									+ optimization.getClass()
-											.getCanonicalName()
-									+ " and the parent classes are in conflict : "
-									+ classes);
-				} else {
-					executor = executors.get(candidates.iterator().next());
+			dispatches.add(new Dispatch<OwnerType>(optimization,
+					getExecutorOf(optimization)));
+		}
+		@SuppressWarnings("unchecked")
+		Dispatch<OwnerType>[] array = new Dispatch[dispatches.size()];
+		return dispatches.toArray(array);
+	}
+
+	/**
+	 * 
+	 * @param optimization
+	 *            the optimization to execute
+	 * @return the executor of the class of the optimization if there is one,
+	 *         otherwise the only executor of a type of the optimization
+	 * @throws IllegalStateException
+	 *             if no executor, or several ones, correspond to the
+	 *             optimization
+	 */
+	private OptimizationExecutor<OwnerType> getExecutorOf(
+			Optimization<OwnerType> optimization) {
+		// look for exact matching
+		OptimizationExecutor<OwnerType> executor = executors
+				.get(optimization.getClass());
+
+		// look for global matching
+		if (executor == null) {
+			HashSet<Class<? extends OptimizationType<OwnerType>>> candidates = new HashSet<Class<? extends OptimizationType<OwnerType>>>();
+			for (Class<? extends OptimizationType<OwnerType>> type : executors
+					.keySet()) {
+				if (type.isInstance(optimization)) {
+					candidates.add(type);
 				}
 			}
-
-			// execution
-			if (executor != null) {
-				executor.execute(optimization);
+			if (candidates.isEmpty()) {
+				throw new IllegalStateException(
+						"No executor has been defined for the optimization "
+								+ optimization);
+			} else if (candidates.size() > 1) {
+				String classes = "";
+				for (Class<? extends OptimizationType<OwnerType>> candidate : candidates) {
+					classes += ", " + candidate.getCanonicalName();
+				}
+				classes = classes.substring(2);
+				throw new IllegalStateException(
+						"No executor has been defined for the optimizations "
+								+ optimization.getClass()
+										.getCanonicalName()
+								+ " and the parent classes are in conflict : "
+								+ classes);
+			} else {
+				executor = executors.get(candidates.iterator().next());
 			}
 		}
+		return executor;
 	}
 
 	/**
 	 * Remove all the {@link AutoRemoveOptimization} which ask to be removed.
 	 */
+	@SuppressWarnings("unchecked")
 	private void clean() {
-		Iterator<Optimization<OwnerType>> iterator = optimizations.iterator();
-		while (iterator.hasNext()) {
-			Optimization<OwnerType> optimization = iterator.next();
-			if (optimization instanceof AutoRemoveOptimization
-					&& ((AutoRemoveOptimization<OwnerType>) optimization)
-							.removeNow()) {
-				remove(optimization);
+		for (int index = autoRemovables.size() - 1; index >= 0; index--) {
+			AutoRemoveOptimization<OwnerType> optimization = autoRemovables
+					.get(index);
+			if (optimization.removeNow()) {
+				remove((Optimization<OwnerType>) optimization);
 			}
 		}
 	}
@@ -173,7 +247,7 @@ public class OptimizationManager<OwnerType> extends
 	 */
 	private Collection<Optimization<OwnerType>> getOptimizationsOf(
 			Class<? extends Optimization<OwnerType>> filter) {
-		Collection<Optimization<OwnerType>> optimizations = new HashSet<Optimization<OwnerType>>();
+		Collection<Optimization<OwnerType>> optimizations = new ArrayList<Optimization<OwnerType>>();
 		for (Optimization<OwnerType> optimization : this.optimizations) {
 			if (filter == null || filter.isInstance(optimization)) {
 				optimizations.add(optimization);
@@ -182,6 +256,20 @@ public class OptimizationManager<OwnerType> extends
 		return optimizations;
 	}
 
+	/**
+	 * An optimization of a step with its executor.
+	 */
+	private static class Dispatch<OwnerType> {
+		private final Optimization<OwnerType> optimization;
+		private final OptimizationExecutor<OwnerType> executor;
+
+		public Dispatch(Optimization<OwnerType> optimization,
+				OptimizationExecutor<OwnerType> executor) {
+			this.optimization = optimization;
+			this.executor = executor;
+		}
+	}
+
 	/**
 	 * An executor is a way to specify how to execute an optimization. Each
 	 * {@link Optimizable} element can have its own optimizations, or some
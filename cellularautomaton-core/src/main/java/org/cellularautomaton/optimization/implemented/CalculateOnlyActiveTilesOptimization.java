@@ -0,0 +1,374 @@
+package org.cellularautomaton.optimization.implemented;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.optimization.AbstractOptimization;
+import org.cellularautomaton.optimization.step.AutomatonPostApplyingOptimization;
+import org.cellularautomaton.optimization.step.AutomatonPostCalculationOptimization;
+import org.cellularautomaton.optimization.type.AutomatonCellsSelectionOptimization;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * <p>
+ * This optimization limits the calculation process to the tiles of the space
+ * where something happens. The space is cut in tiles (squares of
+ * {@link #DEFAULT_TILE_SIZE} cells on each dimension by default, based on the
+ * coordinates of the cells) and the activity is tracked by tile instead of by
+ * cell : a tile is awake if one of its cells, or one of the cells it depends
+ * on, has changed during the last step. Only the cells of the awake tiles are
+ * calculated and applied.
+ * </p>
+ * <p>
+ * The links between the tiles are computed once, at the first step, from the
+ * cells depending on each cell (see {@link #getCellsDependingTo(ICell)}). Then
+ * the bookkeeping of a step only uses bitmaps of tiles : the changed cells are
+ * searched in the awake tiles, a tile where only inner cells (cells which have
+ * no dependent in other tiles) changed waking only itself, and a tile where a
+ * border cell changed waking also the tiles depending on it. No collection of
+ * cells is built at each step, so the overhead stays low even for spaces of
+ * millions of cells.
+ * </p>
+ * <p>
+ * Like with {@link CalculateOnlyEvolvingZonesOptimization}, the memory of the
+ * cells which are not managed is frozen, so it is not consistent if the cells
+ * remember several states. The space must not be modified after the first
+ * step.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class CalculateOnlyActiveTilesOptimization<StateType> extends
+		AbstractOptimization<CellularAutomaton<StateType>> implements
+		AutomatonPostCalculationOptimization<StateType>,
+		AutomatonPostApplyingOptimization<StateType>,
+		AutomatonCellsSelectionOptimization<StateType> {
+
+	/**
+	 * The default number of cells of a tile on each dimension.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 32;
+	/**
+	 * The number of cells of a tile on each dimension.
+	 */
+	private final int tileSize;
+	/**
+	 * The cells of each tile.
+	 */
+	private ICell<StateType>[][] tiles;
+	/**
+	 * For each tile, tell which cells have dependents in other tiles (one bit
+	 * per cell).
+	 */
+	private long[][] borders;
+	/**
+	 * For each tile, the other tiles depending on its cells.
+	 */
+	private int[][] dependents;
+	/**
+	 * The tiles to manage during the current step.
+	 */
+	private long[] awake;
+	/**
+	 * The tiles where a cell changes during the current step.
+	 */
+	private long[] changed;
+	/**
+	 * The tiles where a border cell changes during the current step.
+	 */
+	private long[] borderChanged;
+	/**
+	 * The number of cells in the awake tiles.
+	 */
+	private int awakeSize;
+	/**
+	 * The cells of the awake tiles, given to the automaton.
+	 */
+	private final Collection<ICell<StateType>> awakeCells = new AwakeCells();
+
+	/**
+	 * Create an optimization with tiles of {@link #DEFAULT_TILE_SIZE} cells on
+	 * each dimension.
+	 */
+	public CalculateOnlyActiveTilesOptimization() {
+		this(DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Create an optimization.
+	 * 
+	 * @param tileSize
+	 *            the number of cells of a tile on each dimension
+	 */
+	public CalculateOnlyActiveTilesOptimization(int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("The size of the tiles ("
+					+ tileSize + ") must be positive.");
+		}
+		this.tileSize = tileSize;
+	}
+
+	public Collection<ICell<StateType>> getCellsToManage() {
+		if (tiles == null) {
+			createTiles(getOwner().getSpace().getAllCells());
+		}
+
+		if (getOwner().isReadyForCalculation()) {
+			wakeChangedTiles();
+		} else if (getOwner().isReadyForApplying()) {
+			findChangedTiles();
+		} else {
+			throw new RuntimeException("This case should not occur.");
+		}
+		return awakeCells;
+	}
+
+	/**
+	 * Cut the space in tiles and compute the links between them. All the
+	 * tiles are awake.
+	 * 
+	 * @param cells
+	 *            all the cells of the space
+	 */
+	private void createTiles(Collection<ICell<StateType>> cells) {
+		Map<Coords, Integer> ids = new HashMap<Coords, Integer>();
+		List<List<ICell<StateType>>> members = new ArrayList<List<ICell<StateType>>>();
+		Map<ICell<StateType>, Integer> tileOfCell = new HashMap<ICell<StateType>, Integer>();
+		for (ICell<StateType> cell : cells) {
+			int[] coords = cell.getCoords().getAll();
+			for (int dimension = 0; dimension < coords.length; dimension++) {
+				coords[dimension] = floorDiv(coords[dimension], tileSize);
+			}
+			Coords tileCoords = new Coords(coords);
+			Integer id = ids.get(tileCoords);
+			if (id == null) {
+				id = members.size();
+				ids.put(tileCoords, id);
+				members.add(new ArrayList<ICell<StateType>>());
+			}
+			members.get(id).add(cell);
+			tileOfCell.put(cell, id);
+		}
+
+		int count = members.size();
+		@SuppressWarnings("unchecked")
+		ICell<StateType>[][] tiles = new ICell[count][];
+		this.tiles = tiles;
+		borders = new long[count][];
+		dependents = new int[count][];
+		for (int id = 0; id < count; id++) {
+			List<ICell<StateType>> tile = members.get(id);
+			@SuppressWarnings("unchecked")
+			ICell<StateType>[] array = new ICell[tile.size()];
+			tiles[id] = tile.toArray(array);
+			borders[id] = new long[(tile.size() + 63) >> 6];
+			Set<Integer> others = new TreeSet<Integer>();
+			for (int index = 0; index < tiles[id].length; index++) {
+				ICell<StateType> cell = tiles[id][index];
+				for (ICell<StateType> dependent : getCellsDependingTo(cell)) {
+					Integer other = dependent == null ? null : tileOfCell
+							.get(dependent);
+					if (other != null && other != id) {
+						others.add(other);
+						borders[id][index >> 6] |= 1L << index;
+					}
+				}
+			}
+			dependents[id] = new int[others.size()];
+			int index = 0;
+			for (Integer other : others) {
+				dependents[id][index++] = other;
+			}
+		}
+
+		int words = (count + 63) >> 6;
+		awake = new long[words];
+		changed = new long[words];
+		borderChanged = new long[words];
+		for (int id = 0; id < count; id++) {
+			awake[id >> 6] |= 1L << id;
+		}
+		awakeSize = cells.size();
+	}
+
+	/**
+	 * 
+	 * @return the quotient rounded to the lowest integer
+	 */
+	private static int floorDiv(int dividend, int divisor) {
+		int quotient = dividend / divisor;
+		return dividend % divisor < 0 ? quotient - 1 : quotient;
+	}
+
+	/**
+	 * Search the changing cells in the awake tiles, which are calculated but
+	 * not applied yet.
+	 */
+	private void findChangedTiles() {
+		for (int id = nextTile(awake, 0); id >= 0; id = nextTile(awake,
+				id + 1)) {
+			ICell<StateType>[] tile = tiles[id];
+			long[] border = borders[id];
+			for (int index = 0; index < tile.length; index++) {
+				if (tile[index].isNextStateDifferent()) {
+					changed[id >> 6] |= 1L << id;
+					if ((border[index >> 6] & 1L << index) != 0) {
+						borderChanged[id >> 6] |= 1L << id;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wake the tiles where a cell has changed and the tiles depending on the
+	 * changed border cells.
+	 */
+	private void wakeChangedTiles() {
+		long[] swap = awake;
+		awake = changed;
+		changed = swap;
+		for (int id = nextTile(borderChanged, 0); id >= 0; id = nextTile(
+				borderChanged, id + 1)) {
+			for (int other : dependents[id]) {
+				awake[other >> 6] |= 1L << other;
+			}
+		}
+		Arrays.fill(changed, 0);
+		Arrays.fill(borderChanged, 0);
+
+		awakeSize = 0;
+		for (int id = nextTile(awake, 0); id >= 0; id = nextTile(awake,
+				id + 1)) {
+			awakeSize += tiles[id].length;
+		}
+	}
+
+	/**
+	 * 
+	 * @param bitmap
+	 *            the bitmap of tiles
+	 * @param from
+	 *            the first tile to consider
+	 * @return the first tile set in the bitmap from the given one, -1 if there
+	 *         is none
+	 */
+	private static int nextTile(long[] bitmap, int from) {
+		int word = from >> 6;
+		if (word >= bitmap.length) {
+			return -1;
+		}
+		long bits = bitmap[word] & -1L << from;
+		while (bits == 0) {
+			if (++word >= bitmap.length) {
+				return -1;
+			}
+			bits = bitmap[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * 
+	 * @return the number of cells of a tile on each dimension
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * 
+	 * @return the number of tiles of the space, 0 if the first step is not
+	 *         done yet
+	 */
+	public int getTileCount() {
+		return tiles == null ? 0 : tiles.length;
+	}
+
+	/**
+	 * 
+	 * @return the number of tiles to manage during the current step
+	 */
+	public int getAwakeTileCount() {
+		if (tiles == null) {
+			return 0;
+		}
+		int count = 0;
+		for (long word : awake) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * If a cell sees its state modified during the current step, this method
+	 * gives all the cells which depend on it. It is called only once for each
+	 * cell, when the tiles are created. By default, it gives the cells of the
+	 * Moore neighborhood, which fits the rules reading this neighborhood (or a
+	 * smaller one) : it can be overridden for rules looking farther.
+	 * 
+	 * @param cell
+	 *            the cell to consider the dependencies with
+	 * @return the cells which depends of the cell given in argument
+	 */
+	protected Collection<ICell<StateType>> getCellsDependingTo(
+			ICell<StateType> cell) {
+		return cell.getNeighbors(Neighborhood.moore(cell.getDimensions()));
+	}
+
+	/**
+	 * The cells of the awake tiles, read from the tiles at each iteration.
+	 */
+	private class AwakeCells extends AbstractCollection<ICell<StateType>> {
+
+		@Override
+		public Iterator<ICell<StateType>> iterator() {
+			return new Iterator<ICell<StateType>>() {
+				private int tile = nextTile(awake, 0);
+				private int index = 0;
+
+				@Override
+				public boolean hasNext() {
+					return tile >= 0;
+				}
+
+				@Override
+				public ICell<StateType> next() {
+					if (tile < 0) {
+						throw new NoSuchElementException();
+					}
+					ICell<StateType> cell = tiles[tile][index++];
+					if (index == tiles[tile].length) {
+						tile = nextTile(awake, tile + 1);
+						index = 0;
+					}
+					return cell;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return awakeSize;
+		}
+	}
+}
@@ -26,7 +26,12 @@ import org.cellularautomaton.optimization.type.AutomatonCellsSelectionOptimizati
  * 
  * @author Matthieu Vergne <matthieu.vergne@gmail.com>
  * 
+ * @deprecated The cells to manage are tracked one by one in sets rebuilt at
+ *             each step, which costs more than it saves for big spaces. Use
+ *             {@link CalculateOnlyActiveTilesOptimization}, which tracks the
+ *             activity by tiles.
  */
+@Deprecated
 public abstract class CalculateOnlyEvolvingZonesOptimization<StateType> extends
 		AbstractOptimization<CellularAutomaton<StateType>> implements
 		AutomatonPostCalculationOptimization<StateType>,
@@ -70,7 +75,7 @@ public abstract class CalculateOnlyEvolvingZonesOptimization<StateType> extends
 	 * 
 	 * <pre>
 	 * protected Collection&lt;...&gt; getCellsDependingTo(ICell&lt;...&gt; cell) {
-	 * 	return cell.getAllCellsAround();
+	 * 	return cell.getCellsAround();
 	 * }
 	 * </pre>
 	 * 
@@ -0,0 +1,158 @@
+package org.cellularautomaton.optimization.implemented;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.io.HistoryWriter;
+import org.cellularautomaton.optimization.AbstractOptimization;
+import org.cellularautomaton.optimization.step.AutomatonPostApplyingOptimization;
+import org.cellularautomaton.optimization.step.AutomatonPostCalculationOptimization;
+import org.cellularautomaton.optimization.type.GenericOptimization;
+
+/**
+ * <p>
+ * This optimization records each generation of the automaton with a
+ * {@link HistoryWriter}, without going through all the cells at each step :
+ * after the calculation, the managed cells are checked to know which ones will
+ * change (see {@link ICell#isNextStateDifferent()}), then after the applying
+ * only these cells are written as a delta. A keyframe containing all the cells
+ * is written every {@link #getKeyframeInterval()} generations, the first
+ * generation recorded (the one of the space when the first step starts) being
+ * always a keyframe.
+ * </p>
+ * <p>
+ * To not slow down the steps, an executor can be given to the writer to write
+ * the frames in the background (see
+ * {@link HistoryWriter#setExecutorService(java.util.concurrent.ExecutorService)}
+ * ). The errors of the writer are thrown back as runtime exceptions during the
+ * steps.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class RecordHistoryOptimization<StateType> extends
+		AbstractOptimization<CellularAutomaton<StateType>> implements
+		AutomatonPostCalculationOptimization<StateType>,
+		AutomatonPostApplyingOptimization<StateType>,
+		GenericOptimization<CellularAutomaton<StateType>> {
+
+	/**
+	 * The default number of generations between two keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+	/**
+	 * The writer of the history.
+	 */
+	private final HistoryWriter<StateType> writer;
+	/**
+	 * The number of generations between two keyframes.
+	 */
+	private final int keyframeInterval;
+	/**
+	 * The cells changing during the current step.
+	 */
+	private final List<ICell<StateType>> changedCells = new ArrayList<ICell<StateType>>();
+	/**
+	 * The number of generations recorded.
+	 */
+	private int generations = 0;
+
+	/**
+	 * Create an optimization writing a keyframe every
+	 * {@link #DEFAULT_KEYFRAME_INTERVAL} generations.
+	 * 
+	 * @param writer
+	 *            the writer of the history, which has not written any frame
+	 *            yet
+	 */
+	public RecordHistoryOptimization(HistoryWriter<StateType> writer) {
+		this(writer, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Create an optimization.
+	 * 
+	 * @param writer
+	 *            the writer of the history, which has not written any frame
+	 *            yet
+	 * @param keyframeInterval
+	 *            the number of generations between two keyframes
+	 */
+	public RecordHistoryOptimization(HistoryWriter<StateType> writer,
+			int keyframeInterval) {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("The interval ("
+					+ keyframeInterval + ") must be positive.");
+		}
+		this.writer = writer;
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	public void execute() {
+		try {
+			if (getOwner().isReadyForApplying()) {
+				if (generations == 0) {
+					record(getOwner().getSpace().getAllCells(), true);
+				}
+				changedCells.clear();
+				for (ICell<StateType> cell : getOwner().getCellsToManage()) {
+					if (cell.isNextStateDifferent()) {
+						changedCells.add(cell);
+					}
+				}
+			} else if (getOwner().isReadyForCalculation()) {
+				if (generations % keyframeInterval == 0) {
+					record(getOwner().getSpace().getAllCells(), true);
+				} else {
+					record(changedCells, false);
+				}
+			} else {
+				throw new RuntimeException("This case should not occur.");
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write the next generation.
+	 */
+	private void record(Collection<ICell<StateType>> cells,
+			boolean isKeyframe) throws IOException {
+		if (isKeyframe) {
+			writer.writeKeyframe(generations, cells);
+		} else {
+			writer.writeDelta(generations, cells);
+		}
+		generations++;
+	}
+
+	/**
+	 * 
+	 * @return the number of generations between two keyframes
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * 
+	 * @return the number of generations recorded
+	 */
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * 
+	 * @return the writer of the history
+	 */
+	public HistoryWriter<StateType> getWriter() {
+		return writer;
+	}
+}
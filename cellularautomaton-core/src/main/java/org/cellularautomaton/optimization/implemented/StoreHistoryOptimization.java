@@ -0,0 +1,74 @@
+package org.cellularautomaton.optimization.implemented;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.io.MappedHistoryStore;
+import org.cellularautomaton.optimization.AbstractOptimization;
+import org.cellularautomaton.optimization.step.AutomatonPostApplyingOptimization;
+import org.cellularautomaton.optimization.type.GenericOptimization;
+
+/**
+ * <p>
+ * This optimization records each generation of the automaton in a
+ * {@link MappedHistoryStore}, so the cells can read more past states than
+ * their memory keeps without filling the heap. When the optimization is added
+ * to an automaton, the store is attached to its space (see
+ * {@link MappedHistoryStore#attach(org.cellularautomaton.space.ISpace)}) and,
+ * if the store is empty, the current generation is recorded. Then each
+ * generation is recorded after the applying, so the linked cells can give
+ * their old states through
+ * {@link org.cellularautomaton.cell.ICell#getState(int)}. When the
+ * optimization is removed, the store is detached from the space.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class StoreHistoryOptimization<StateType> extends
+		AbstractOptimization<CellularAutomaton<StateType>> implements
+		AutomatonPostApplyingOptimization<StateType>,
+		GenericOptimization<CellularAutomaton<StateType>> {
+
+	/**
+	 * The store of the history.
+	 */
+	private final MappedHistoryStore<StateType> store;
+
+	/**
+	 * Create an optimization.
+	 * 
+	 * @param store
+	 *            the store of the history
+	 */
+	public StoreHistoryOptimization(MappedHistoryStore<StateType> store) {
+		this.store = store;
+	}
+
+	@Override
+	public void setOwner(CellularAutomaton<StateType> owner) {
+		CellularAutomaton<StateType> previousOwner = getOwner();
+		if (owner != null) {
+			store.attach(owner.getSpace());
+			if (store.getGenerations() == 0) {
+				store.record(owner.getSpace().getAllCells());
+			}
+		}
+		if (previousOwner != null
+				&& (owner == null || owner.getSpace() != previousOwner
+						.getSpace())) {
+			store.detach(previousOwner.getSpace());
+		}
+		super.setOwner(owner);
+	}
+
+	public void execute() {
+		store.record(getOwner().getSpace().getAllCells());
+	}
+
+	/**
+	 * 
+	 * @return the store of the history
+	 */
+	public MappedHistoryStore<StateType> getStore() {
+		return store;
+	}
+}
@@ -0,0 +1,386 @@
+package org.cellularautomaton.rule;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+
+/**
+ * <p>
+ * A memoized rule wraps another rule and keeps the states it computes, so the
+ * wrapped rule is called only once for each combination of states met. It can
+ * be used only if the wrapped rule is a pure function of the state of the cell
+ * and of the states of its neighbors (in the neighborhood given at the
+ * creation, the Moore neighborhood by default) : a rule looking at other cells
+ * or using a random or changing data would give wrong results.
+ * </p>
+ * <p>
+ * The combinations are stored in a cache with a maximum size, the entries to
+ * remove when this size is reached being chosen by the given {@link Eviction}.
+ * When the states of the combination are known and not too numerous, they are
+ * packed in a single <code>long</code>, otherwise a list of the states is
+ * used. The numbers of hits and misses of the cache can be read to know if the
+ * memoization is worth it.
+ * </p>
+ * <p>
+ * The rule can be used by several threads at the same time, like in a parallel
+ * step, but the policy matters : with {@link Eviction#LEAST_RECENTLY_USED},
+ * each lookup reorders the cache under a lock, so the threads wait for each
+ * other, while {@link Eviction#FIRST_IN} uses a concurrent map which can be
+ * read by all the threads at the same time.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class MemoizedRule<StateType> implements IRule<StateType> {
+	/**
+	 * The policies to choose the combinations to remove from a full cache.
+	 */
+	public static enum Eviction {
+		/**
+		 * Remove the combination used the least recently. The cache is locked
+		 * at each lookup.
+		 */
+		LEAST_RECENTLY_USED,
+		/**
+		 * Remove the combination stored first. The cache is not locked, so
+		 * this policy should be preferred for the parallel steps.
+		 */
+		FIRST_IN
+	}
+
+	/**
+	 * The default maximum number of combinations kept in the cache.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+	/**
+	 * The rule computing the states.
+	 */
+	private final IRule<StateType> rule;
+	/**
+	 * The neighborhood the wrapped rule looks at, <code>null</code> for the
+	 * Moore neighborhood of the cells.
+	 */
+	private final Neighborhood neighborhood;
+	/**
+	 * The Moore neighborhood for the last number of dimensions met.
+	 */
+	private volatile Neighborhood mooreNeighborhood = Neighborhood.moore(0);
+	/**
+	 * The code of each known state, starting from 1 (0 is the code of the
+	 * missing neighbors).
+	 */
+	private final Map<StateType, Integer> codes = new HashMap<StateType, Integer>();
+	/**
+	 * The number of bits used to pack a code.
+	 */
+	private final int bitsPerCode;
+	/**
+	 * The maximum number of combinations kept in the cache.
+	 */
+	private final int cacheSize;
+	/**
+	 * The next states computed for each combination, locked at each access for
+	 * the {@link Eviction#LEAST_RECENTLY_USED} policy.
+	 */
+	private final Map<Object, StateType> cache;
+	/**
+	 * The combinations in the order they have been stored, <code>null</code>
+	 * for the {@link Eviction#LEAST_RECENTLY_USED} policy.
+	 */
+	private final Queue<Object> insertionOrder;
+	/**
+	 * The number of combinations in the cache, counted apart for the
+	 * {@link Eviction#FIRST_IN} policy (the size of a concurrent map being
+	 * costly to compute).
+	 */
+	private final AtomicInteger cachedCount = new AtomicInteger();
+	/**
+	 * The number of states found in the cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	/**
+	 * The number of states computed by the wrapped rule.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a memoized rule looking at the Moore neighborhood of the cells,
+	 * with a cache of {@link #DEFAULT_CACHE_SIZE} combinations removing the
+	 * least recently used ones.
+	 * 
+	 * @param rule
+	 *            the rule to memoize
+	 * @param states
+	 *            the possible states of the cells
+	 */
+	public MemoizedRule(IRule<StateType> rule, Collection<StateType> states) {
+		this(rule, null, states, DEFAULT_CACHE_SIZE,
+				Eviction.LEAST_RECENTLY_USED);
+	}
+
+	/**
+	 * Create a memoized rule.
+	 * 
+	 * @param rule
+	 *            the rule to memoize
+	 * @param neighborhood
+	 *            the neighborhood the rule looks at (the state of the cell
+	 *            itself is always considered), <code>null</code> for the Moore
+	 *            neighborhood of the cells
+	 * @param states
+	 *            the possible states of the cells, used to pack the
+	 *            combinations (other states can be met, but their combinations
+	 *            take more memory)
+	 * @param cacheSize
+	 *            the maximum number of combinations kept in the cache
+	 * @param eviction
+	 *            the policy to choose the combinations to remove when the
+	 *            cache is full
+	 * @throws IllegalArgumentException
+	 *             if the size of the cache is not positive
+	 */
+	@SuppressWarnings("serial")
+	public MemoizedRule(IRule<StateType> rule, Neighborhood neighborhood,
+			Collection<StateType> states, final int cacheSize,
+			Eviction eviction) {
+		if (rule == null || eviction == null) {
+			throw new NullPointerException();
+		}
+		if (cacheSize < 1) {
+			throw new IllegalArgumentException("The size of the cache ("
+					+ cacheSize + ") must be positive.");
+		}
+		this.rule = rule;
+		this.neighborhood = neighborhood;
+		for (StateType state : states) {
+			if (!codes.containsKey(state)) {
+				codes.put(state, codes.size() + 1);
+			}
+		}
+		this.bitsPerCode = 32 - Integer.numberOfLeadingZeros(codes.size());
+		this.cacheSize = cacheSize;
+		if (eviction == Eviction.LEAST_RECENTLY_USED) {
+			this.cache = new LinkedHashMap<Object, StateType>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Object, StateType> eldest) {
+					return size() > cacheSize;
+				}
+			};
+			this.insertionOrder = null;
+		} else {
+			this.cache = new ConcurrentHashMap<Object, StateType>();
+			this.insertionOrder = new ConcurrentLinkedQueue<Object>();
+		}
+	}
+
+	/**
+	 * The next state is taken from the cache if the combination of states of
+	 * the cell and its neighbors has already been met, otherwise it is
+	 * computed by the wrapped rule and stored in the cache.
+	 */
+	public StateType calculateNextStateOf(ICell<StateType> cell) {
+		Object key = createKey(cell, cell.getNeighbors(getNeighborhood(cell)));
+		StateType state;
+		if (insertionOrder == null) {
+			synchronized (cache) {
+				state = cache.get(key);
+			}
+		} else {
+			state = cache.get(key);
+		}
+		if (state != null) {
+			hits.incrementAndGet();
+			return state;
+		} else {
+			misses.incrementAndGet();
+		}
+
+		state = rule.calculateNextStateOf(cell);
+		if (state != null) {
+			store(key, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Store a combination in the cache, removing the oldest ones if the cache
+	 * is full.
+	 */
+	private void store(Object key, StateType state) {
+		if (insertionOrder == null) {
+			synchronized (cache) {
+				cache.put(key, state);
+			}
+		} else if (((ConcurrentHashMap<Object, StateType>) cache).putIfAbsent(
+				key, state) == null) {
+			insertionOrder.add(key);
+			if (cachedCount.incrementAndGet() > cacheSize) {
+				Object oldest = insertionOrder.poll();
+				if (oldest != null && cache.remove(oldest) != null) {
+					cachedCount.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the neighborhood to consider for the cell
+	 */
+	private Neighborhood getNeighborhood(ICell<StateType> cell) {
+		if (neighborhood != null) {
+			return neighborhood;
+		}
+		Neighborhood neighborhood = mooreNeighborhood;
+		if (neighborhood.getDimensions() != cell.getDimensions()) {
+			neighborhood = Neighborhood.moore(cell.getDimensions());
+			mooreNeighborhood = neighborhood;
+		}
+		return neighborhood;
+	}
+
+	/**
+	 * 
+	 * @return the key of the combination of states, a {@link Long} if the
+	 *         states can be packed, a {@link List} of the states otherwise
+	 */
+	private Object createKey(ICell<StateType> cell,
+			List<ICell<StateType>> neighbors) {
+		int size = neighbors.size();
+		if ((size + 1) * bitsPerCode < Long.SIZE - 1) {
+			Long key = pack(cell, neighbors);
+			if (key != null) {
+				return key;
+			}
+		}
+
+		Object[] states = new Object[size + 1];
+		states[0] = cell.getCurrentState();
+		for (int index = 0; index < size; index++) {
+			ICell<StateType> neighbor = neighbors.get(index);
+			states[index + 1] = neighbor == null ? null : neighbor
+					.getCurrentState();
+		}
+		return Arrays.asList(states);
+	}
+
+	/**
+	 * 
+	 * @return the codes of the states packed in a long (the first bit set
+	 *         marking the length of the combination), <code>null</code> if a
+	 *         state is not known
+	 */
+	private Long pack(ICell<StateType> cell, List<ICell<StateType>> neighbors) {
+		Integer code = codes.get(cell.getCurrentState());
+		if (code == null) {
+			return null;
+		}
+		long key = (1L << bitsPerCode) | code;
+		for (int index = 0; index < neighbors.size(); index++) {
+			ICell<StateType> neighbor = neighbors.get(index);
+			if (neighbor == null) {
+				code = 0;
+			} else {
+				code = codes.get(neighbor.getCurrentState());
+				if (code == null) {
+					return null;
+				}
+			}
+			key = (key << bitsPerCode) | code;
+		}
+		return key;
+	}
+
+	/**
+	 * 
+	 * @return the memoized rule
+	 */
+	public IRule<StateType> getRule() {
+		return rule;
+	}
+
+	/**
+	 * 
+	 * @return the maximum number of combinations kept in the cache
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * 
+	 * @return the number of combinations currently in the cache
+	 */
+	public int getCachedCount() {
+		if (insertionOrder == null) {
+			synchronized (cache) {
+				return cache.size();
+			}
+		} else {
+			return cachedCount.get();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of states found in the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * 
+	 * @return the number of states computed by the wrapped rule
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * 
+	 * @return the part of the states found in the cache (between 0 and 1), 0
+	 *         if no state has been asked yet
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Remove all the combinations from the cache and reset the numbers of
+	 * hits and misses, for example if the wrapped rule has been modified. It
+	 * should not be called while the rule is used by other threads.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+			if (insertionOrder != null) {
+				insertionOrder.clear();
+				cachedCount.set(0);
+			}
+			hits.set(0);
+			misses.set(0);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package org.cellularautomaton.rule;
+
+import java.util.List;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+
+/**
+ * <p>
+ * An outer totalistic rule is a rule for two-state automata (like the Game of
+ * Life) where the next state of a cell only depends on its current state and on
+ * the number of alive cells in its Moore neighborhood (all the cells at a
+ * distance of 1 on each dimension). A dead cell becomes alive if this number is
+ * one of the birth counts, an alive cell stays alive if this number is one of
+ * the survival counts, any other cell is dead at the next step.
+ * </p>
+ * <p>
+ * The rule can be described with the usual B/S notation, for example
+ * <code>B3/S23</code> for the Game of Life (birth with 3 alive neighbors,
+ * survival with 2 or 3). The cells missing at the borders of a non-cyclic space
+ * are considered as dead. Knowing the counts, specific engines can evaluate
+ * this rule without calling it for each cell (see
+ * {@link org.cellularautomaton.space.BitSpace}).
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class OuterTotalisticRule<StateType> implements IRule<StateType> {
+	/**
+	 * The greatest number of neighbors the rule can count.
+	 */
+	public static final int MAX_COUNT = 63;
+	/**
+	 * The state of the dead cells.
+	 */
+	private final StateType deadState;
+	/**
+	 * The state of the alive cells.
+	 */
+	private final StateType aliveState;
+	/**
+	 * The birth counts, the bit n being set if a dead cell with n alive
+	 * neighbors becomes alive.
+	 */
+	private final long birthMask;
+	/**
+	 * The survival counts, the bit n being set if an alive cell with n alive
+	 * neighbors stays alive.
+	 */
+	private final long survivalMask;
+	/**
+	 * The Moore neighborhood for the last number of dimensions met.
+	 */
+	private volatile Neighborhood neighborhood = Neighborhood.moore(0);
+
+	/**
+	 * Create a rule from its B/S notation, like <code>B3/S23</code>. Each
+	 * digit is a count of alive neighbors, so only the counts from 0 to 9 can
+	 * be described this way.
+	 * 
+	 * @param deadState
+	 *            the state of the dead cells
+	 * @param aliveState
+	 *            the state of the alive cells
+	 * @param notation
+	 *            the B/S notation of the rule
+	 * @throws IllegalArgumentException
+	 *             if the notation is not valid
+	 */
+	public OuterTotalisticRule(StateType deadState, StateType aliveState,
+			String notation) {
+		this(deadState, aliveState, parseCounts(notation, 'B'), parseCounts(
+				notation, 'S'));
+	}
+
+	/**
+	 * Create a rule from its birth and survival counts.
+	 * 
+	 * @param deadState
+	 *            the state of the dead cells
+	 * @param aliveState
+	 *            the state of the alive cells
+	 * @param birthCounts
+	 *            the numbers of alive neighbors making a dead cell alive
+	 * @param survivalCounts
+	 *            the numbers of alive neighbors keeping an alive cell alive
+	 * @throws IllegalArgumentException
+	 *             if a count is not between 0 and {@link #MAX_COUNT} or if the
+	 *             two states are equal
+	 */
+	public OuterTotalisticRule(StateType deadState, StateType aliveState,
+			int[] birthCounts, int[] survivalCounts) {
+		if (deadState == null || aliveState == null) {
+			throw new NullPointerException("null is not a valid state");
+		}
+		if (deadState.equals(aliveState)) {
+			throw new IllegalArgumentException(
+					"The dead and alive states must be different, " + deadState
+							+ " is given for both.");
+		}
+		this.deadState = deadState;
+		this.aliveState = aliveState;
+		this.birthMask = toMask(birthCounts);
+		this.survivalMask = toMask(survivalCounts);
+	}
+
+	/**
+	 * 
+	 * @param counts
+	 *            some numbers of alive neighbors
+	 * @return the mask with the bit of each count set
+	 */
+	private static long toMask(int[] counts) {
+		long mask = 0;
+		for (int count : counts) {
+			if (count < 0 || count > MAX_COUNT) {
+				throw new IllegalArgumentException("The count " + count
+						+ " is not between 0 and " + MAX_COUNT + ".");
+			}
+			mask |= 1L << count;
+		}
+		return mask;
+	}
+
+	/**
+	 * 
+	 * @param notation
+	 *            the B/S notation of a rule
+	 * @param prefix
+	 *            the letter of the part to parse (B or S)
+	 * @return the counts of the part
+	 */
+	private static int[] parseCounts(String notation, char prefix) {
+		String[] parts = notation.trim().split("/");
+		if (parts.length != 2) {
+			throw new IllegalArgumentException("The notation " + notation
+					+ " is not of the form B.../S...");
+		}
+		for (String part : parts) {
+			if (part.length() == 0) {
+				throw new IllegalArgumentException("The notation " + notation
+						+ " has an empty part.");
+			}
+			if (Character.toUpperCase(part.charAt(0)) == prefix) {
+				int[] counts = new int[part.length() - 1];
+				for (int i = 0; i < counts.length; i++) {
+					char digit = part.charAt(i + 1);
+					if (!Character.isDigit(digit)) {
+						throw new IllegalArgumentException("The notation "
+								+ notation + " contains the invalid count "
+								+ digit + ".");
+					}
+					counts[i] = digit - '0';
+				}
+				return counts;
+			}
+		}
+		throw new IllegalArgumentException("The notation " + notation
+				+ " has no part starting with " + prefix + ".");
+	}
+
+	/**
+	 * 
+	 * @return the state of the dead cells
+	 */
+	public StateType getDeadState() {
+		return deadState;
+	}
+
+	/**
+	 * 
+	 * @return the state of the alive cells
+	 */
+	public StateType getAliveState() {
+		return aliveState;
+	}
+
+	/**
+	 * 
+	 * @return the birth counts, the bit n being set if a dead cell with n
+	 *         alive neighbors becomes alive
+	 */
+	public long getBirthMask() {
+		return birthMask;
+	}
+
+	/**
+	 * 
+	 * @return the survival counts, the bit n being set if an alive cell with n
+	 *         alive neighbors stays alive
+	 */
+	public long getSurvivalMask() {
+		return survivalMask;
+	}
+
+	/**
+	 * 
+	 * @param count
+	 *            a number of alive neighbors
+	 * @return true if a dead cell with this number of alive neighbors becomes
+	 *         alive
+	 */
+	public boolean isBirth(int count) {
+		return count >= 0 && count <= MAX_COUNT
+				&& (birthMask & (1L << count)) != 0;
+	}
+
+	/**
+	 * 
+	 * @param count
+	 *            a number of alive neighbors
+	 * @return true if an alive cell with this number of alive neighbors stays
+	 *         alive
+	 */
+	public boolean isSurvival(int count) {
+		return count >= 0 && count <= MAX_COUNT
+				&& (survivalMask & (1L << count)) != 0;
+	}
+
+	/**
+	 * 
+	 * @param isAlive
+	 *            the current state of the cell
+	 * @param count
+	 *            the number of alive neighbors of the cell
+	 * @return the next state of the cell
+	 */
+	public StateType getNextState(boolean isAlive, int count) {
+		return (isAlive ? isSurvival(count) : isBirth(count)) ? aliveState
+				: deadState;
+	}
+
+	/**
+	 * The alive cells are counted in the Moore neighborhood of the cell,
+	 * whatever its number of dimensions.
+	 */
+	public StateType calculateNextStateOf(ICell<StateType> cell) {
+		Neighborhood neighborhood = this.neighborhood;
+		if (neighborhood.getDimensions() != cell.getDimensions()) {
+			neighborhood = Neighborhood.moore(cell.getDimensions());
+			this.neighborhood = neighborhood;
+		}
+		List<ICell<StateType>> neighbors = cell.getNeighbors(neighborhood);
+		int count = 0;
+		for (int index = 0; index < neighbors.size(); index++) {
+			ICell<StateType> neighbor = neighbors.get(index);
+			if (neighbor != null
+					&& aliveState.equals(neighbor.getCurrentState())) {
+				count++;
+			}
+		}
+		return getNextState(aliveState.equals(cell.getCurrentState()), count);
+	}
+
+	/**
+	 * 
+	 * @return the B/S notation of the rule, the counts above 9 being ignored
+	 */
+	public String getNotation() {
+		StringBuilder builder = new StringBuilder("B");
+		for (int count = 0; count < 10; count++) {
+			if (isBirth(count)) {
+				builder.append(count);
+			}
+		}
+		builder.append("/S");
+		for (int count = 0; count < 10; count++) {
+			if (isSurvival(count)) {
+				builder.append(count);
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getNotation();
+	}
+}
@@ -0,0 +1,239 @@
+package org.cellularautomaton.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+
+/**
+ * <p>
+ * A totalistic rule is a rule where the next state of a cell only depends on
+ * the sum of the values of the cells in its Moore neighborhood, the cell itself
+ * included. The value of a state is its index in the list of states given at
+ * the creation (0 for the first one, which is also the value of the cells
+ * missing at the borders of a non-cyclic space), and the sum gives the next
+ * state through a table.
+ * </p>
+ * <p>
+ * The table can be given directly or with the usual code of the totalistic
+ * rules, where the digit n of the code (written in the base of the number of
+ * states, from the lowest digit) is the value of the next state for a sum of n.
+ * For example, the code 777 with 3 states describes the 1-dimension rule with
+ * the table {0, 1, 2, 1, 0, 0, 1}. Knowing the table, specific engines can
+ * evaluate this rule without calling it for each cell (see
+ * {@link org.cellularautomaton.space.ArraySpace}).
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class TotalisticRule<StateType> implements IRule<StateType> {
+	/**
+	 * The states of the rule, the index of a state being its value.
+	 */
+	private final List<StateType> states;
+	/**
+	 * The value of each state.
+	 */
+	private final Map<StateType, Integer> values = new HashMap<StateType, Integer>();
+	/**
+	 * The value of the next state for each sum, the sums out of the table
+	 * giving the first state.
+	 */
+	private final int[] table;
+	/**
+	 * The Moore neighborhood for the last number of dimensions met.
+	 */
+	private volatile Neighborhood neighborhood = Neighborhood.moore(0);
+
+	/**
+	 * Create a rule from its table.
+	 * 
+	 * @param states
+	 *            the states of the rule, the index of each state being its
+	 *            value
+	 * @param table
+	 *            the value of the next state for each sum (the sums out of the
+	 *            table give the first state)
+	 * @throws IllegalArgumentException
+	 *             if there is less than 2 states, if a state is given twice or
+	 *             if a value of the table is not the value of a state
+	 */
+	public TotalisticRule(List<StateType> states, int[] table) {
+		if (states.size() < 2) {
+			throw new IllegalArgumentException(
+					"At least 2 states are needed, " + states.size()
+							+ " are given.");
+		}
+		for (StateType state : states) {
+			if (state == null) {
+				throw new NullPointerException("null is not a valid state");
+			} else if (values.put(state, values.size()) != null) {
+				throw new IllegalArgumentException("The state " + state
+						+ " is given several times.");
+			}
+		}
+		for (int value : table) {
+			if (value < 0 || value >= states.size()) {
+				throw new IllegalArgumentException("The value " + value
+						+ " is not between 0 and " + (states.size() - 1) + ".");
+			}
+		}
+		this.states = Collections.unmodifiableList(new ArrayList<StateType>(
+				states));
+		this.table = table.clone();
+	}
+
+	/**
+	 * Create a rule from its code.
+	 * 
+	 * @param states
+	 *            the states of the rule, the index of each state being its
+	 *            value
+	 * @param code
+	 *            the code of the rule, the digit n (in the base of the number
+	 *            of states) being the value of the next state for a sum of n
+	 * @throws IllegalArgumentException
+	 *             if there is less than 2 states, if a state is given twice or
+	 *             if the code is negative
+	 */
+	public TotalisticRule(List<StateType> states, long code) {
+		this(states, toTable(code, states.size()));
+	}
+
+	/**
+	 * 
+	 * @param code
+	 *            the code of a rule
+	 * @param base
+	 *            the number of states
+	 * @return the table described by the code
+	 */
+	private static int[] toTable(long code, int base) {
+		if (code < 0) {
+			throw new IllegalArgumentException("The code " + code
+					+ " is negative.");
+		} else if (base < 2) {
+			return new int[0];
+		}
+		List<Integer> digits = new ArrayList<Integer>();
+		while (code > 0) {
+			digits.add((int) (code % base));
+			code /= base;
+		}
+		int[] table = new int[digits.size()];
+		for (int sum = 0; sum < table.length; sum++) {
+			table[sum] = digits.get(sum);
+		}
+		return table;
+	}
+
+	/**
+	 * 
+	 * @return the states of the rule, the index of each state being its value
+	 */
+	public List<StateType> getStates() {
+		return states;
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            a state of the rule
+	 * @return the value of the state, -1 if it is not a state of the rule
+	 */
+	public int getValue(StateType state) {
+		Integer value = values.get(state);
+		return value == null ? -1 : value;
+	}
+
+	/**
+	 * 
+	 * @return a copy of the table of the rule, giving the value of the next
+	 *         state for each sum (the sums out of the table give the first
+	 *         state)
+	 */
+	public int[] getTable() {
+		return table.clone();
+	}
+
+	/**
+	 * 
+	 * @param sum
+	 *            the sum of the values of a cell and its neighbors
+	 * @return the value of the next state of the cell
+	 */
+	public int getNextValue(int sum) {
+		return sum >= 0 && sum < table.length ? table[sum] : 0;
+	}
+
+	/**
+	 * 
+	 * @return the code of the rule, -1 if it is too big to be written in a
+	 *         <code>long</code>
+	 */
+	public long getCode() {
+		long code = 0;
+		for (int sum = table.length - 1; sum >= 0; sum--) {
+			if (code > (Long.MAX_VALUE - table[sum]) / states.size()) {
+				return -1;
+			}
+			code = code * states.size() + table[sum];
+		}
+		return code;
+	}
+
+	/**
+	 * The values are summed in the Moore neighborhood of the cell (and the
+	 * cell itself), whatever its number of dimensions.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a cell has a state which is not a state of the rule
+	 */
+	public StateType calculateNextStateOf(ICell<StateType> cell) {
+		Neighborhood neighborhood = this.neighborhood;
+		if (neighborhood.getDimensions() != cell.getDimensions()) {
+			neighborhood = Neighborhood.moore(cell.getDimensions());
+			this.neighborhood = neighborhood;
+		}
+		int sum = getValueOf(cell);
+		List<ICell<StateType>> neighbors = cell.getNeighbors(neighborhood);
+		for (int index = 0; index < neighbors.size(); index++) {
+			ICell<StateType> neighbor = neighbors.get(index);
+			if (neighbor != null) {
+				sum += getValueOf(neighbor);
+			}
+		}
+		return states.get(getNextValue(sum));
+	}
+
+	/**
+	 * 
+	 * @return the value of the current state of the cell
+	 */
+	private int getValueOf(ICell<StateType> cell) {
+		Integer value = values.get(cell.getCurrentState());
+		if (value == null) {
+			throw new IllegalArgumentException("The state "
+					+ cell.getCurrentState() + " is not a state of the rule.");
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		long code = getCode();
+		return code < 0 ? Arrays.toString(table) : String.valueOf(code);
+	}
+}
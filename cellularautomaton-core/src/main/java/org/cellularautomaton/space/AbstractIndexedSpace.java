@@ -0,0 +1,542 @@
+package org.cellularautomaton.space;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * <p>
+ * An indexed space is a space with a fixed rectangular structure, where each
+ * cell is identified by its index, computed from its coordinates (the first
+ * dimension being the fastest one). The cells around are found by index
+ * arithmetic, without following any link, and the cells given by the space are
+ * only views (see {@link ArrayCell}) created on demand.
+ * </p>
+ * <p>
+ * This class manages the structure of the space, the way the states are
+ * stored being left to the implementations.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public abstract class AbstractIndexedSpace<StateType> implements
+		ISpace<StateType> {
+	/**
+	 * The lengths of each dimension.
+	 */
+	private final int[] lengths;
+	/**
+	 * Tell for each dimension if the last cells loop to the firsts.
+	 */
+	private final boolean[] cyclic;
+	/**
+	 * The difference of index between two consecutive cells on each
+	 * dimension.
+	 */
+	private final int[] strides;
+	/**
+	 * The number of cells in the space.
+	 */
+	private final int size;
+	/**
+	 * The tables of the neighborhoods already used.
+	 */
+	private final ConcurrentMap<Neighborhood, NeighborTable> neighborTables = new ConcurrentHashMap<Neighborhood, NeighborTable>();
+	/**
+	 * The table of the last neighborhood used, to not search it at each call.
+	 */
+	private volatile NeighborTable lastNeighborTable;
+
+	/**
+	 * Create the structure of the space.
+	 * 
+	 * @param lengths
+	 *            the length of each dimension (at least 1)
+	 * @param cyclic
+	 *            tells for each dimension if its last cells must loop to the
+	 *            firsts
+	 */
+	protected AbstractIndexedSpace(int[] lengths, boolean[] cyclic) {
+		if (lengths.length != cyclic.length) {
+			throw new IllegalArgumentException("There is " + lengths.length
+					+ " lengths for " + cyclic.length + " cyclic flags.");
+		}
+		this.lengths = lengths.clone();
+		this.cyclic = cyclic.clone();
+
+		strides = new int[lengths.length];
+		long size = 1;
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			if (lengths[dimension] < 1) {
+				throw new IllegalArgumentException("The dimension " + dimension
+						+ " has a length of " + lengths[dimension] + ".");
+			}
+			strides[dimension] = (int) size;
+			size *= lengths[dimension];
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The space is too big ("
+						+ size + " cells).");
+			}
+		}
+		this.size = (int) size;
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            the state to code
+	 * @return the code of the state
+	 */
+	abstract int getCode(StateType state);
+
+	/**
+	 * 
+	 * @param code
+	 *            the code of a known state
+	 * @return the state corresponding to the code
+	 */
+	abstract StateType getStateOfCode(int code);
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param age
+	 *            the age of the state, 0 is the current state
+	 * @return the code of the state the cell had
+	 */
+	abstract int getStateCode(int index, int age);
+
+	/**
+	 * Replace the current state of a cell, without keeping the previous one.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param code
+	 *            the code of the new current state
+	 */
+	abstract void setCurrentCode(int index, int code);
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @return the code of the calculated next state, a negative value if it is
+	 *         not calculated
+	 */
+	abstract int getNextCode(int index);
+
+	/**
+	 * Calculate the next state of a cell with the rule of the space.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @throws NullPointerException
+	 *             the calculation has returned a <code>null</code> value
+	 */
+	public abstract void calculateNextState(int index);
+
+	/**
+	 * Push the calculated next state of a cell in its memory.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @return true if the state of the cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state is not calculated yet
+	 */
+	public abstract boolean applyNextState(int index);
+
+	/**
+	 * 
+	 * @return the number of states each cell remembers
+	 */
+	public abstract int getMemorySize();
+
+	/**
+	 * 
+	 * @return the rule shared by all the cells
+	 */
+	public abstract IRule<StateType> getRule();
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell to start from
+	 * @param dimension
+	 *            the dimension to move on
+	 * @param delta
+	 *            the number of cells to move on the dimension (negative to go
+	 *            backward)
+	 * @return the index of the cell reached, a negative value if it goes out
+	 *         of the space
+	 */
+	int move(int index, int dimension, int delta) {
+		int length = lengths[dimension];
+		int stride = strides[dimension];
+		int coord = (index / stride) % length;
+		int target = coord + delta;
+		if (target < 0 || target >= length) {
+			if (!cyclic[dimension]) {
+				return -1;
+			}
+			target %= length;
+			if (target < 0) {
+				target += length;
+			}
+		}
+		return index + (target - coord) * stride;
+	}
+
+	/**
+	 * 
+	 * @param neighborhood
+	 *            the neighborhood to resolve
+	 * @return the table giving the indexes of the neighbors in this space
+	 */
+	NeighborTable getNeighborTable(Neighborhood neighborhood) {
+		NeighborTable table = lastNeighborTable;
+		if (table == null || table.neighborhood != neighborhood) {
+			table = neighborTables.get(neighborhood);
+			if (table == null) {
+				table = new NeighborTable(neighborhood);
+				NeighborTable previous = neighborTables.putIfAbsent(
+						neighborhood, table);
+				table = previous == null ? table : previous;
+			}
+			lastNeighborTable = table;
+		}
+		return table;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param dimension
+	 *            the dimension to consider
+	 * @return the coordinate of the cell on the dimension
+	 */
+	int getCoord(int index, int dimension) {
+		return (index / strides[dimension]) % lengths[dimension];
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @return the index of the cell, a negative value if the coordinates are
+	 *         out of the space
+	 */
+	int getIndex(int... coords) {
+		if (coords.length != lengths.length) {
+			return -1;
+		}
+		int index = 0;
+		for (int dimension = 0; dimension < coords.length; dimension++) {
+			int coord = coords[dimension];
+			if (coord < 0 || coord >= lengths[dimension]) {
+				return -1;
+			}
+			index += coord * strides[dimension];
+		}
+		return index;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return the cell at the given coordinates, <code>null</code> if it is
+	 *         out of the space
+	 */
+	public ICell<StateType> getCell(int... coords) {
+		int index = getIndex(coords);
+		return index < 0 ? null : new ArrayCell<StateType>(this, index);
+	}
+
+	/**
+	 * The index of the cell is computed from the coordinates, so no cell is
+	 * searched.
+	 */
+	public ICell<StateType> getCell(Coords coords) {
+		if (coords.getDimensions() != lengths.length) {
+			return null;
+		}
+		int index = 0;
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			int coord = coords.get(dimension);
+			if (coord < 0 || coord >= lengths[dimension]) {
+				return null;
+			}
+			index += coord * strides[dimension];
+		}
+		return new ArrayCell<StateType>(this, index);
+	}
+
+	/**
+	 * The region is reduced to the part which is in the space. The returned
+	 * list does not store any cell, they are created each time they are asked.
+	 */
+	public Collection<ICell<StateType>> getCells(Coords min, Coords max) {
+		if (min.getDimensions() != max.getDimensions()) {
+			throw new IllegalArgumentException("The coordinates " + min
+					+ " and " + max + " have not the same dimensions.");
+		}
+		final int[] starts = new int[lengths.length];
+		final int[] counts = new int[lengths.length];
+		int total = isEmpty() || min.getDimensions() != lengths.length ? 0 : 1;
+		for (int dimension = 0; dimension < lengths.length
+				&& total > 0; dimension++) {
+			starts[dimension] = Math.max(min.get(dimension), 0);
+			int stop = Math.min(max.get(dimension), lengths[dimension] - 1);
+			counts[dimension] = Math.max(stop - starts[dimension] + 1, 0);
+			total *= counts[dimension];
+		}
+		final int size = total;
+		return new AbstractList<ICell<StateType>>() {
+			@Override
+			public ICell<StateType> get(int position) {
+				if (position < 0 || position >= size) {
+					throw new IndexOutOfBoundsException("Index: " + position
+							+ ", Size: " + size);
+				}
+				int index = 0;
+				for (int dimension = 0; dimension < lengths.length;
+						dimension++) {
+					int coord = starts[dimension] + position
+							% counts[dimension];
+					position /= counts[dimension];
+					index += coord * strides[dimension];
+				}
+				return new ArrayCell<StateType>(AbstractIndexedSpace.this,
+						index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * 
+	 * @return the number of cells in the space
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return the number of dimensions of the space
+	 */
+	public int getDimensions() {
+		return lengths.length;
+	}
+
+	/**
+	 * 
+	 * @param dimension
+	 *            the dimension to consider
+	 * @return the number of cells on this dimension
+	 */
+	public int getLength(int dimension) {
+		return lengths[dimension];
+	}
+
+	/**
+	 * 
+	 * @param dimension
+	 *            the dimension to consider
+	 * @return true if the last cells of the dimension loop to the firsts
+	 */
+	public boolean isCyclic(int dimension) {
+		return cyclic[dimension];
+	}
+
+	/**
+	 * The origin of an indexed space is always the cell with all its
+	 * coordinates at 0, so it cannot be changed.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setOrigin(ICell<StateType> origin) {
+		throw new UnsupportedOperationException(
+				"The origin of an indexed space cannot be changed.");
+	}
+
+	/**
+	 * The origin is the cell with all its coordinates at 0.
+	 */
+	public ICell<StateType> getOrigin() {
+		return isEmpty() ? null : new ArrayCell<StateType>(this, 0);
+	}
+
+	/**
+	 * An indexed space is empty when it has no dimension.
+	 */
+	public boolean isEmpty() {
+		return lengths.length == 0;
+	}
+
+	/**
+	 * The cells are given in the order of their indexes (the first dimension
+	 * being the fastest one). The returned list does not store any cell, they
+	 * are created each time they are asked.
+	 */
+	public Collection<ICell<StateType>> getAllCells() {
+		return new AbstractList<ICell<StateType>>() {
+			@Override
+			public ICell<StateType> get(int index) {
+				if (index < 0 || index >= size()) {
+					throw new IndexOutOfBoundsException("Index: " + index
+							+ ", Size: " + size());
+				}
+				return new ArrayCell<StateType>(AbstractIndexedSpace.this,
+						index);
+			}
+
+			@Override
+			public int size() {
+				return AbstractIndexedSpace.this.isEmpty() ? 0
+						: AbstractIndexedSpace.this.size;
+			}
+		};
+	}
+
+	/**
+	 * Give an iterator over the cells, in the same order than
+	 * {@link #getAllCells()}.
+	 */
+	public Iterator<ICell<StateType>> iterator() {
+		return getAllCells().iterator();
+	}
+
+	/**
+	 * A neighbor table resolves a {@link Neighborhood} by index arithmetic.
+	 * As the structure of the space is fixed, a neighbor is always at the same
+	 * difference of index from the cell, unless the cell is close to a border.
+	 * These differences are computed once, the cells close to a border
+	 * moving on each dimension like {@link ArrayCell#getRelativeCell(int...)}.
+	 */
+	final class NeighborTable {
+		/**
+		 * The neighborhood resolved.
+		 */
+		private final Neighborhood neighborhood;
+		/**
+		 * The relative coordinates of each neighbor.
+		 */
+		private final int[][] offsets;
+		/**
+		 * The difference of index between a cell and each neighbor, when the
+		 * cell is far enough from the borders.
+		 */
+		private final int[] deltas;
+		/**
+		 * The greatest distance of the neighbors on each dimension.
+		 */
+		private final int[] reaches;
+		/**
+		 * Tell if the differences can be used, which is not the case when the
+		 * offsets go beyond the dimensions of the space.
+		 */
+		private final boolean isShiftable;
+
+		private NeighborTable(Neighborhood neighborhood) {
+			this.neighborhood = neighborhood;
+			offsets = new int[neighborhood.size()][];
+			deltas = new int[offsets.length];
+			reaches = new int[lengths.length];
+			boolean isShiftable = true;
+			for (int neighbor = 0; neighbor < offsets.length; neighbor++) {
+				int[] offset = neighborhood.getOffset(neighbor);
+				for (int dimension = 0; dimension < offset.length; dimension++) {
+					if (dimension >= lengths.length) {
+						isShiftable &= offset[dimension] == 0;
+					} else {
+						deltas[neighbor] += offset[dimension]
+								* strides[dimension];
+						reaches[dimension] = Math.max(reaches[dimension],
+								Math.abs(offset[dimension]));
+					}
+				}
+				offsets[neighbor] = offset;
+			}
+			this.isShiftable = isShiftable;
+		}
+
+		/**
+		 * 
+		 * @return the number of neighbors
+		 */
+		int size() {
+			return offsets.length;
+		}
+
+		/**
+		 * 
+		 * @param index
+		 *            the index of a cell
+		 * @return true if all the neighbors of the cell can be found with the
+		 *         differences of index
+		 */
+		boolean isInside(int index) {
+			if (!isShiftable) {
+				return false;
+			}
+			for (int dimension = 0; dimension < lengths.length; dimension++) {
+				int coord = getCoord(index, dimension);
+				if (coord < reaches[dimension]
+						|| coord >= lengths[dimension] - reaches[dimension]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * 
+		 * @param index
+		 *            the index of a cell
+		 * @param neighbor
+		 *            the index of the neighbor in the neighborhood
+		 * @param isInside
+		 *            the result of {@link #isInside(int)} for the cell
+		 * @return the index of the neighbor, a negative value if it is out of
+		 *         the space
+		 */
+		int getNeighbor(int index, int neighbor, boolean isInside) {
+			if (isInside) {
+				return index + deltas[neighbor];
+			}
+			int[] offset = offsets[neighbor];
+			int target = index;
+			for (int dimension = 0; dimension < offset.length && target >= 0;
+					dimension++) {
+				if (offset[dimension] != 0) {
+					target = move(target, dimension, offset[dimension]);
+				}
+			}
+			return target;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package org.cellularautomaton.space;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * An array cell is a view on a cell of an {@link AbstractIndexedSpace}, like
+ * an {@link ArraySpace} or a {@link BitSpace}. It does not store anything but
+ * its index in the space, so several views can represent the same cell (they
+ * are then equal). As the structure of an indexed space is fixed, the methods
+ * modifying the links, the dimensions, the memory or the rule of the cell are
+ * not supported.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by the cell, it can be {@link Boolean} for a
+ *            simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses.
+ */
+public class ArrayCell<StateType> implements ICell<StateType> {
+
+	/**
+	 * The space containing the cell.
+	 */
+	private final AbstractIndexedSpace<StateType> space;
+	/**
+	 * The index of the cell in the space.
+	 */
+	private final int index;
+
+	/**
+	 * Create a view on a cell of an indexed space.
+	 * 
+	 * @param space
+	 *            the space containing the cell
+	 * @param index
+	 *            the index of the cell in the space
+	 */
+	ArrayCell(AbstractIndexedSpace<StateType> space, int index) {
+		this.space = space;
+		this.index = index;
+	}
+
+	/**
+	 * 
+	 * @return the index of the cell in its space
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * The memory is managed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setMemory(int memorySize, StateType initialState) {
+		throw new UnsupportedOperationException(
+				"The memory of an array cell is managed by its space.");
+	}
+
+	public int getMemorySize() {
+		return space.getMemorySize();
+	}
+
+	/**
+	 * Force the current state to a particular value.
+	 */
+	public void setCurrentState(StateType state) {
+		space.setCurrentCode(index, space.getCode(state));
+	}
+
+	/**
+	 * This method is similar to {@link #getState(int)} with the argument 0.
+	 */
+	public StateType getCurrentState() {
+		return getState(0);
+	}
+
+	public StateType getState(int age) {
+		return space.getStateOfCode(space.getStateCode(index, age));
+	}
+
+	/**
+	 * The rule is shared by all the cells of the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setRule(IRule<StateType> rule) {
+		throw new UnsupportedOperationException(
+				"The rule of an array cell is shared by all its space.");
+	}
+
+	public IRule<StateType> getRule() {
+		return space.getRule();
+	}
+
+	public void calculateNextState() {
+		space.calculateNextState(index);
+	}
+
+	public boolean isNextStateCalculated() {
+		return space.getNextCode(index) >= 0;
+	}
+
+	public boolean isNextStateDifferent() {
+		int next = space.getNextCode(index);
+		if (next < 0) {
+			throw new StateNotCalculatedException();
+		}
+		return next != space.getStateCode(index, 0);
+	}
+
+	public void applyNextState() {
+		space.applyNextState(index);
+	}
+
+	public int getDimensions() {
+		return space.getDimensions();
+	}
+
+	/**
+	 * The dimensions are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the dimensions are not the ones of the space
+	 */
+	public void setDimensions(int dimensions) {
+		if (dimensions != getDimensions()) {
+			throw new UnsupportedOperationException(
+					"The dimensions of an array cell are fixed by its space.");
+		}
+	}
+
+	/**
+	 * The links are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setNextCellOnDimension(int dimension, ICell<StateType> next) {
+		throw new UnsupportedOperationException(
+				"The links of an array cell are fixed by its space.");
+	}
+
+	public ICell<StateType> getNextCellOnDimension(int dimension) {
+		return getCellAt(space.move(index, dimension, 1));
+	}
+
+	/**
+	 * The links are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setPreviousCellOnDimension(int dimension,
+			ICell<StateType> previous) {
+		throw new UnsupportedOperationException(
+				"The links of an array cell are fixed by its space.");
+	}
+
+	public ICell<StateType> getPreviousCellOnDimension(int dimension) {
+		return getCellAt(space.move(index, dimension, -1));
+	}
+
+	public Set<ICell<StateType>> getAllCellsAround() {
+		return new LinkedHashSet<ICell<StateType>>(getCellsAround());
+	}
+
+	/**
+	 * As a view does not store anything, the list is computed at each call.
+	 */
+	public List<ICell<StateType>> getCellsAround() {
+		List<ICell<StateType>> neighbors = new ArrayList<ICell<StateType>>(
+				2 * getDimensions());
+		for (int dimension = 0; dimension < getDimensions(); dimension++) {
+			ICell<StateType> previous = getPreviousCellOnDimension(dimension);
+			if (previous != null && !neighbors.contains(previous)) {
+				neighbors.add(previous);
+			}
+			ICell<StateType> next = getNextCellOnDimension(dimension);
+			if (next != null && !neighbors.contains(next)) {
+				neighbors.add(next);
+			}
+		}
+		return Collections.unmodifiableList(neighbors);
+	}
+
+	/**
+	 * The cell is found by index arithmetic. If the coordinates go out of a
+	 * non-cyclic dimension, <code>null</code> is returned.
+	 */
+	public ICell<StateType> getRelativeCell(int... coords) {
+		int target = index;
+		for (int dimension = 0; dimension < coords.length && target >= 0;
+				dimension++) {
+			if (coords[dimension] != 0) {
+				target = space.move(target, dimension, coords[dimension]);
+			}
+		}
+		return getCellAt(target);
+	}
+
+	/**
+	 * The indexes of the neighbors are computed from the strides of the space
+	 * (see {@link AbstractIndexedSpace.NeighborTable}), the returned list
+	 * creating a view only when a neighbor is asked.
+	 */
+	public List<ICell<StateType>> getNeighbors(Neighborhood neighborhood) {
+		final AbstractIndexedSpace<StateType>.NeighborTable table = space
+				.getNeighborTable(neighborhood);
+		final boolean isInside = table.isInside(index);
+		return new AbstractList<ICell<StateType>>() {
+			@Override
+			public ICell<StateType> get(int neighbor) {
+				return getCellAt(table.getNeighbor(index, neighbor, isInside));
+			}
+
+			@Override
+			public int size() {
+				return table.size();
+			}
+		};
+	}
+
+	/**
+	 * The coordinates are computed from the index of the cell, so they are
+	 * not mutable.
+	 */
+	public Coords getCoords() {
+		int[] coords = new int[getDimensions()];
+		for (int dimension = 0; dimension < coords.length; dimension++) {
+			coords[dimension] = space.getCoord(index, dimension);
+		}
+		Coords result = new Coords(coords);
+		result.setMutable(false);
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of a cell in the space, negative for no cell
+	 * @return a view on the cell, <code>null</code> if there is no cell
+	 */
+	private ICell<StateType> getCellAt(int index) {
+		return index < 0 ? null : new ArrayCell<StateType>(space, index);
+	}
+
+	/**
+	 * Two views are equal if they represent the same cell of the same space.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof ArrayCell) {
+			ArrayCell<?> cell = (ArrayCell<?>) obj;
+			return cell.space == space && cell.index == index;
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(space) + index;
+	}
+
+	/**
+	 * Gives a simple display of the cell.
+	 */
+	@Override
+	public String toString() {
+		return "cell(" + getCurrentState().toString() + ") " + getCoords();
+	}
+}
@@ -0,0 +1,450 @@
+package org.cellularautomaton.space;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.rule.TotalisticRule;
+import org.cellularautomaton.state.IntStateMemory;
+
+/**
+ * <p>
+ * An array space is a dense space of cells where the states are stored in a
+ * flat array of integers instead of being stored in linked cell objects. Each
+ * state is coded by its index in a dictionary of states and each cell is
+ * identified by its index in the array, which is computed from its coordinates
+ * (the first dimension being the fastest one). The cells around are then found
+ * by index arithmetic, without following any link. When the cells remember
+ * more than their current state, the past states of each cell are kept in an
+ * {@link IntStateMemory}, so applying a state does not move the whole memory
+ * of the cell.
+ * </p>
+ * <p>
+ * The cells given by this space are only views on the array (see
+ * {@link ArrayCell}), created on demand, so they can be used by the existing
+ * rules without storing any object per cell. The structure of the space is
+ * fixed at the creation : its cells cannot be linked in another way and all of
+ * them share the same rule. A {@link CellularAutomaton} working on all the
+ * cells makes such a space evolve with {@link #calculateNextStates()} and
+ * {@link #applyNextStates()}, so no cell object is used at each step.
+ * </p>
+ * <p>
+ * When the rule is an {@link OuterTotalisticRule} or a {@link TotalisticRule},
+ * {@link #calculateNextStates()} does not call it : the sums over the Moore
+ * neighborhoods are computed for all the cells at once and the next states are
+ * read in a table.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class ArraySpace<StateType> extends AbstractIndexedSpace<StateType>
+		implements ISteppableSpace<StateType> {
+	/**
+	 * The value used in {@link #nextStates} for the cells which have not
+	 * calculated their next state.
+	 */
+	private static final int NOT_CALCULATED = -1;
+	/**
+	 * The number of states each cell remembers.
+	 */
+	private final int memorySize;
+	/**
+	 * The current state of each cell.
+	 */
+	private final int[] states;
+	/**
+	 * The past states of each cell (starting from the age 1),
+	 * <code>null</code> if the cells only remember their current state.
+	 */
+	private final IntStateMemory[] pastStates;
+	/**
+	 * The calculated next state of each cell.
+	 */
+	private final int[] nextStates;
+	/**
+	 * The rule shared by all the cells.
+	 */
+	private final IRule<StateType> rule;
+	/**
+	 * The states known by this space, the index of a state being its code.
+	 */
+	private volatile Object[] dictionary;
+	/**
+	 * The code of each known state.
+	 */
+	private final Map<StateType, Integer> codes = new ConcurrentHashMap<StateType, Integer>();
+
+	/**
+	 * Create a space filled with the given initial state.
+	 * 
+	 * @param possibleStates
+	 *            the states to code first, other states are coded when they
+	 *            appear
+	 * @param initialState
+	 *            the state to fill the memory of each cell with
+	 * @param memorySize
+	 *            the number of states each cell remembers (at least 1)
+	 * @param rule
+	 *            the rule shared by all the cells
+	 * @param lengths
+	 *            the length of each dimension (at least 1)
+	 * @param cyclic
+	 *            tells for each dimension if its last cells must loop to the
+	 *            firsts
+	 */
+	public ArraySpace(Collection<StateType> possibleStates,
+			StateType initialState, int memorySize, IRule<StateType> rule,
+			int[] lengths, boolean[] cyclic) {
+		super(lengths, cyclic);
+		if (memorySize < 1) {
+			throw new IllegalArgumentException(
+					"The memory size must be at least 1, " + memorySize
+							+ " is given.");
+		}
+		this.memorySize = memorySize;
+		this.rule = rule;
+
+		dictionary = new Object[0];
+		for (StateType state : possibleStates) {
+			getCode(state);
+		}
+		int initialCode = getCode(initialState);
+		states = new int[size()];
+		Arrays.fill(states, initialCode);
+		if (memorySize > 1) {
+			pastStates = new IntStateMemory[size()];
+			for (int index = 0; index < pastStates.length; index++) {
+				pastStates[index] = new IntStateMemory(memorySize - 1,
+						initialCode);
+			}
+		} else {
+			pastStates = null;
+		}
+		nextStates = new int[size()];
+		Arrays.fill(nextStates, NOT_CALCULATED);
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            the state to code
+	 * @return the code of the state, a new code is given if the state is not
+	 *         known yet
+	 */
+	@Override
+	int getCode(StateType state) {
+		if (state == null) {
+			throw new NullPointerException("null is not a valid state");
+		}
+		Integer code = codes.get(state);
+		return code == null ? register(state) : code;
+	}
+
+	/**
+	 * Give a code to a new state.
+	 * 
+	 * @param state
+	 *            the state to code
+	 * @return the code of the state
+	 */
+	private synchronized int register(StateType state) {
+		Integer code = codes.get(state);
+		if (code == null) {
+			Object[] extended = Arrays.copyOf(dictionary,
+					dictionary.length + 1);
+			code = dictionary.length;
+			extended[code] = state;
+			dictionary = extended;
+			codes.put(state, code);
+		}
+		return code;
+	}
+
+	/**
+	 * 
+	 * @param code
+	 *            the code of a known state
+	 * @return the state corresponding to the code
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	StateType getStateOfCode(int code) {
+		return (StateType) dictionary[code];
+	}
+
+	/**
+	 * 
+	 * @return the states known by this space, the index of each state being
+	 *         its code
+	 */
+	@SuppressWarnings("unchecked")
+	public List<StateType> getKnownStates() {
+		List<StateType> known = new ArrayList<StateType>();
+		for (Object state : dictionary) {
+			known.add((StateType) state);
+		}
+		return known;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param age
+	 *            the age of the state, 0 is the current state
+	 * @return the code of the state the cell had
+	 */
+	@Override
+	int getStateCode(int index, int age) {
+		if (age < 0 || age >= memorySize) {
+			throw new IndexOutOfBoundsException("The age " + age
+					+ " is not in the memory (size " + memorySize + ").");
+		}
+		return age == 0 ? states[index] : pastStates[index].getState(age - 1);
+	}
+
+	/**
+	 * Replace the current state of a cell, without keeping the previous one.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @param code
+	 *            the code of the new current state
+	 */
+	@Override
+	void setCurrentCode(int index, int code) {
+		states[index] = code;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @return the code of the calculated next state, a negative value if it is
+	 *         not calculated
+	 */
+	@Override
+	int getNextCode(int index) {
+		return nextStates[index];
+	}
+
+	/**
+	 * Calculate the next state of a cell with the rule of the space.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @throws NullPointerException
+	 *             the calculation has returned a <code>null</code> value
+	 */
+	@Override
+	public void calculateNextState(int index) {
+		StateType nextState = rule.calculateNextStateOf(new ArrayCell<StateType>(
+				this, index));
+		if (nextState == null) {
+			throw new NullPointerException(
+					"the calculation has returned a null value");
+		}
+		nextStates[index] = getCode(nextState);
+	}
+
+	/**
+	 * Calculate the next state of all the cells. If the rule of the space is
+	 * an {@link OuterTotalisticRule} or a {@link TotalisticRule} (on states
+	 * known by the rule), the rule is not called : the values of the cells
+	 * are summed over their Moore neighborhoods with a running sum on each
+	 * dimension (so each cell is read 3 times per dimension instead of once
+	 * per neighbor) and the next states are read in a table built from the
+	 * rule. Otherwise, the rule is called for each cell.
+	 * 
+	 * @throws NullPointerException
+	 *             the calculation of a cell has returned a <code>null</code>
+	 *             value
+	 */
+	@SuppressWarnings("unchecked")
+	public void calculateNextStates() {
+		int size = isEmpty() ? 0 : size();
+		if (rule instanceof OuterTotalisticRule) {
+			OuterTotalisticRule<StateType> outer = (OuterTotalisticRule<StateType>) rule;
+			int aliveCode = getCode(outer.getAliveState());
+			int deadCode = getCode(outer.getDeadState());
+			int[] values = new int[size];
+			for (int index = 0; index < size; index++) {
+				values[index] = states[index] == aliveCode ? 1 : 0;
+			}
+			int[] sums = sumMooreNeighborhoods(values);
+			for (int index = 0; index < size; index++) {
+				int count = sums[index] - values[index];
+				boolean isAlive = values[index] == 1 ? outer.isSurvival(count)
+						: outer.isBirth(count);
+				nextStates[index] = isAlive ? aliveCode : deadCode;
+			}
+		} else if (rule instanceof TotalisticRule
+				&& isKnownBy((TotalisticRule<StateType>) rule)) {
+			TotalisticRule<StateType> totalistic = (TotalisticRule<StateType>) rule;
+			Object[] dictionary = this.dictionary;
+			int[] valueOfCode = new int[dictionary.length];
+			for (int code = 0; code < dictionary.length; code++) {
+				valueOfCode[code] = totalistic
+						.getValue((StateType) dictionary[code]);
+			}
+			List<StateType> ruleStates = totalistic.getStates();
+			int[] codeOfValue = new int[ruleStates.size()];
+			for (int value = 0; value < codeOfValue.length; value++) {
+				codeOfValue[value] = getCode(ruleStates.get(value));
+			}
+
+			int[] values = new int[size];
+			for (int index = 0; index < size; index++) {
+				values[index] = valueOfCode[states[index]];
+			}
+			int[] sums = sumMooreNeighborhoods(values);
+			for (int index = 0; index < size; index++) {
+				nextStates[index] = codeOfValue[totalistic
+						.getNextValue(sums[index])];
+			}
+		} else {
+			for (int index = 0; index < size; index++) {
+				calculateNextState(index);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if all the current states of the cells are states of the
+	 *         rule
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean isKnownBy(TotalisticRule<StateType> rule) {
+		Object[] dictionary = this.dictionary;
+		boolean[] isKnown = new boolean[dictionary.length];
+		for (int code = 0; code < dictionary.length; code++) {
+			isKnown[code] = rule.getValue((StateType) dictionary[code]) >= 0;
+		}
+		for (int index = 0; index < size(); index++) {
+			if (!isKnown[states[index]]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sum the values of each cell and its Moore neighbors (the cells missing
+	 * at the borders having a value of 0). The sum over the 3<sup>n</sup>
+	 * cells is computed one dimension after the other : the sums of the
+	 * previous dimensions of a cell and of its two neighbors on the current
+	 * dimension are added, so the neighbors are counted like when following
+	 * the links of the cells.
+	 * 
+	 * @param values
+	 *            the value of each cell
+	 * @return the sum of each cell
+	 */
+	private int[] sumMooreNeighborhoods(int[] values) {
+		int[] sums = values.clone();
+		int[] buffer = new int[values.length];
+		int stride = 1;
+		for (int dimension = 0; dimension < getDimensions(); dimension++) {
+			int length = getLength(dimension);
+			boolean isCyclic = isCyclic(dimension);
+			int block = stride * length;
+			for (int start = 0; start < values.length; start += block) {
+				for (int coord = 0; coord < length; coord++) {
+					int row = start + coord * stride;
+					for (int index = row; index < row + stride; index++) {
+						int sum = sums[index];
+						if (coord > 0) {
+							sum += sums[index - stride];
+						} else if (isCyclic) {
+							sum += sums[index + block - stride];
+						}
+						if (coord < length - 1) {
+							sum += sums[index + stride];
+						} else if (isCyclic) {
+							sum += sums[index - block + stride];
+						}
+						buffer[index] = sum;
+					}
+				}
+			}
+			int[] swap = sums;
+			sums = buffer;
+			buffer = swap;
+			stride = block;
+		}
+		return sums;
+	}
+
+	/**
+	 * Push the calculated next state of a cell in its memory.
+	 * 
+	 * @param index
+	 *            the index of the cell
+	 * @return true if the state of the cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state is not calculated yet
+	 */
+	@Override
+	public boolean applyNextState(int index) {
+		int next = nextStates[index];
+		if (next == NOT_CALCULATED) {
+			throw new StateNotCalculatedException();
+		}
+		boolean isChanged = states[index] != next;
+		if (pastStates != null) {
+			pastStates[index].pushNewState(states[index]);
+		}
+		states[index] = next;
+		nextStates[index] = NOT_CALCULATED;
+		return isChanged;
+	}
+
+	/**
+	 * Push the calculated next state of all the cells in their memory.
+	 * 
+	 * @return true if the state of a cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state of a cell is not calculated yet
+	 */
+	public boolean applyNextStates() {
+		int size = isEmpty() ? 0 : size();
+		boolean isChanged = false;
+		for (int index = 0; index < size; index++) {
+			isChanged |= applyNextState(index);
+		}
+		return isChanged;
+	}
+
+	/**
+	 * 
+	 * @return the number of states each cell remembers
+	 */
+	@Override
+	public int getMemorySize() {
+		return memorySize;
+	}
+
+	/**
+	 * 
+	 * @return the rule shared by all the cells
+	 */
+	@Override
+	public IRule<StateType> getRule() {
+		return rule;
+	}
+}
@@ -0,0 +1,479 @@
+package org.cellularautomaton.space;
+
+import java.util.Arrays;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+
+/**
+ * <p>
+ * A bit space is a two-dimensional space for automata with only two states (a
+ * dead one and an alive one), where each cell is stored as a single bit. Each
+ * row of the space is stored in consecutive <code>long</code> values, 64 cells
+ * per value, the first dimension giving the position in the row and the second
+ * dimension giving the row. Each cell remembers only its current state.
+ * </p>
+ * <p>
+ * The cells can be managed one by one like in an {@link ArraySpace}, but the
+ * main interest of this space is {@link #calculateNextStates()}: when the rule
+ * is an {@link OuterTotalisticRule} on the same states, the numbers of alive
+ * neighbors of 64 cells are computed at once with bitwise operations, so the
+ * rule is never called for a specific cell. A {@link CellularAutomaton}
+ * working on all the cells makes such a space evolve with this method.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class BitSpace<StateType> extends AbstractIndexedSpace<StateType>
+		implements ISteppableSpace<StateType> {
+	/**
+	 * The state of the cells with a bit at 0.
+	 */
+	private final StateType deadState;
+	/**
+	 * The state of the cells with a bit at 1.
+	 */
+	private final StateType aliveState;
+	/**
+	 * The rule shared by all the cells.
+	 */
+	private final IRule<StateType> rule;
+	/**
+	 * The number of cells in a row.
+	 */
+	private final int width;
+	/**
+	 * The number of rows.
+	 */
+	private final int height;
+	/**
+	 * The number of <code>long</code> values used for each row.
+	 */
+	private final int wordsPerRow;
+	/**
+	 * The bits of the cells actually used in the last word of a row.
+	 */
+	private final long lastWordMask;
+	/**
+	 * The current states of the cells.
+	 */
+	private long[] words;
+	/**
+	 * The calculated next states of the cells.
+	 */
+	private long[] nextWords;
+	/**
+	 * The cells which have calculated their next state.
+	 */
+	private final long[] calculated;
+
+	/**
+	 * Create a space filled with the given initial state.
+	 * 
+	 * @param deadState
+	 *            the state of the dead cells
+	 * @param aliveState
+	 *            the state of the alive cells
+	 * @param initialState
+	 *            the state to fill the space with
+	 * @param rule
+	 *            the rule shared by all the cells
+	 * @param lengths
+	 *            the length of the two dimensions (at least 1)
+	 * @param cyclic
+	 *            tells for each dimension if its last cells must loop to the
+	 *            firsts
+	 * @throws IllegalArgumentException
+	 *             if the space has not two dimensions or if the states are not
+	 *             valid
+	 */
+	public BitSpace(StateType deadState, StateType aliveState,
+			StateType initialState, IRule<StateType> rule, int[] lengths,
+			boolean[] cyclic) {
+		super(lengths, cyclic);
+		if (lengths.length != 2) {
+			throw new IllegalArgumentException(
+					"A bit space needs 2 dimensions, " + lengths.length
+							+ " are given.");
+		}
+		if (deadState == null || aliveState == null) {
+			throw new NullPointerException("null is not a valid state");
+		}
+		if (deadState.equals(aliveState)) {
+			throw new IllegalArgumentException(
+					"The dead and alive states must be different, " + deadState
+							+ " is given for both.");
+		}
+		this.deadState = deadState;
+		this.aliveState = aliveState;
+		this.rule = rule;
+		width = lengths[0];
+		height = lengths[1];
+		wordsPerRow = (width + 63) >>> 6;
+		lastWordMask = -1L >>> (64 - (((width - 1) & 63) + 1));
+
+		words = new long[wordsPerRow * height];
+		nextWords = new long[words.length];
+		calculated = new long[words.length];
+		if (getCode(initialState) == 1) {
+			for (int row = 0; row < height; row++) {
+				int start = row * wordsPerRow;
+				Arrays.fill(words, start, start + wordsPerRow - 1, -1L);
+				words[start + wordsPerRow - 1] = lastWordMask;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the state of the dead cells
+	 */
+	public StateType getDeadState() {
+		return deadState;
+	}
+
+	/**
+	 * 
+	 * @return the state of the alive cells
+	 */
+	public StateType getAliveState() {
+		return aliveState;
+	}
+
+	/**
+	 * 
+	 * @return the number of alive cells in the space
+	 */
+	public int countAliveCells() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * The dead state has the code 0 and the alive state has the code 1.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the state is neither the dead state nor the alive state
+	 */
+	@Override
+	int getCode(StateType state) {
+		if (aliveState.equals(state)) {
+			return 1;
+		} else if (deadState.equals(state)) {
+			return 0;
+		} else {
+			throw new IllegalArgumentException("The state " + state
+					+ " is neither " + deadState + " nor " + aliveState + ".");
+		}
+	}
+
+	@Override
+	StateType getStateOfCode(int code) {
+		return code == 1 ? aliveState : deadState;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of a cell
+	 * @return the position of the word containing the cell
+	 */
+	private int getWord(int index) {
+		return (index / width) * wordsPerRow + ((index % width) >>> 6);
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            the index of a cell
+	 * @return the mask selecting the bit of the cell in its word
+	 */
+	private long getBit(int index) {
+		return 1L << ((index % width) & 63);
+	}
+
+	@Override
+	int getStateCode(int index, int age) {
+		if (age != 0) {
+			throw new IndexOutOfBoundsException("The age " + age
+					+ " is not in the memory (size 1).");
+		}
+		return (words[getWord(index)] & getBit(index)) == 0 ? 0 : 1;
+	}
+
+	@Override
+	void setCurrentCode(int index, int code) {
+		if (code == 1) {
+			words[getWord(index)] |= getBit(index);
+		} else {
+			words[getWord(index)] &= ~getBit(index);
+		}
+	}
+
+	@Override
+	int getNextCode(int index) {
+		int word = getWord(index);
+		long bit = getBit(index);
+		if ((calculated[word] & bit) == 0) {
+			return -1;
+		} else {
+			return (nextWords[word] & bit) == 0 ? 0 : 1;
+		}
+	}
+
+	@Override
+	public void calculateNextState(int index) {
+		StateType nextState = rule.calculateNextStateOf(new ArrayCell<StateType>(
+				this, index));
+		if (nextState == null) {
+			throw new NullPointerException(
+					"the calculation has returned a null value");
+		}
+		int word = getWord(index);
+		long bit = getBit(index);
+		if (getCode(nextState) == 1) {
+			nextWords[word] |= bit;
+		} else {
+			nextWords[word] &= ~bit;
+		}
+		calculated[word] |= bit;
+	}
+
+	@Override
+	public boolean applyNextState(int index) {
+		int word = getWord(index);
+		long bit = getBit(index);
+		if ((calculated[word] & bit) == 0) {
+			throw new StateNotCalculatedException();
+		}
+		long current = words[word] & bit;
+		long next = nextWords[word] & bit;
+		words[word] ^= current ^ next;
+		calculated[word] &= ~bit;
+		return current != next;
+	}
+
+	/**
+	 * Calculate the next state of all the cells. If the rule of the space is
+	 * an {@link OuterTotalisticRule} on the states of the space and with
+	 * counts up to 8, the states are computed 64 cells at a time, otherwise
+	 * the rule is called for each cell.
+	 * 
+	 * @throws NullPointerException
+	 *             the calculation of a cell has returned a <code>null</code>
+	 *             value
+	 */
+	@SuppressWarnings("unchecked")
+	public void calculateNextStates() {
+		if (rule instanceof OuterTotalisticRule) {
+			OuterTotalisticRule<StateType> outer = (OuterTotalisticRule<StateType>) rule;
+			long counts = outer.getBirthMask() | outer.getSurvivalMask();
+			if (outer.getDeadState().equals(deadState)
+					&& outer.getAliveState().equals(aliveState)
+					&& (counts >>> 9) == 0) {
+				calculateWords(outer.getBirthMask(), outer.getSurvivalMask());
+				return;
+			}
+		}
+		for (int index = 0; index < size(); index++) {
+			calculateNextState(index);
+		}
+	}
+
+	/**
+	 * Apply the calculated next state of all the cells.
+	 * 
+	 * @return true if the state of a cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state of a cell is not calculated yet
+	 */
+	public boolean applyNextStates() {
+		for (int row = 0; row < height; row++) {
+			int last = (row + 1) * wordsPerRow - 1;
+			for (int word = row * wordsPerRow; word < last; word++) {
+				if (calculated[word] != -1L) {
+					throw new StateNotCalculatedException();
+				}
+			}
+			if (calculated[last] != lastWordMask) {
+				throw new StateNotCalculatedException();
+			}
+		}
+		boolean isChanged = !Arrays.equals(words, nextWords);
+		long[] swap = words;
+		words = nextWords;
+		nextWords = swap;
+		Arrays.fill(calculated, 0);
+		return isChanged;
+	}
+
+	/**
+	 * Compute the next states of all the cells with bitwise operations.
+	 * 
+	 * @param birthMask
+	 *            the birth counts of the rule
+	 * @param survivalMask
+	 *            the survival counts of the rule
+	 */
+	private void calculateWords(long birthMask, long survivalMask) {
+		boolean cyclicRows = isCyclic(0);
+		boolean cyclicColumns = isCyclic(1);
+		for (int row = 0; row < height; row++) {
+			int above = row - 1;
+			int below = row + 1;
+			if (cyclicColumns) {
+				above = (above + height) % height;
+				below = below % height;
+			} else {
+				above = above < 0 ? -1 : above;
+				below = below >= height ? -1 : below;
+			}
+			int rowStart = row * wordsPerRow;
+			int aboveStart = above < 0 ? -1 : above * wordsPerRow;
+			int belowStart = below < 0 ? -1 : below * wordsPerRow;
+			for (int word = 0; word < wordsPerRow; word++) {
+				// sums of the rows above and below (0 to 3 each)
+				long a = getWord(aboveStart, word);
+				long aw = getWestWord(aboveStart, word, cyclicRows);
+				long ae = getEastWord(aboveStart, word, cyclicRows);
+				long aLow = a ^ aw ^ ae;
+				long aHigh = (a & aw) | (ae & (a ^ aw));
+				long b = getWord(belowStart, word);
+				long bw = getWestWord(belowStart, word, cyclicRows);
+				long be = getEastWord(belowStart, word, cyclicRows);
+				long bLow = b ^ bw ^ be;
+				long bHigh = (b & bw) | (be & (b ^ bw));
+				// sum of the same row, without the cell itself (0 to 2)
+				long cw = getWestWord(rowStart, word, cyclicRows);
+				long ce = getEastWord(rowStart, word, cyclicRows);
+				long cLow = cw ^ ce;
+				long cHigh = cw & ce;
+
+				// total on 4 bits (0 to 8)
+				long s0 = aLow ^ bLow ^ cLow;
+				long carry = (aLow & bLow) | (cLow & (aLow ^ bLow));
+				long x = aHigh ^ bHigh;
+				long xCarry = aHigh & bHigh;
+				long y = cHigh ^ carry;
+				long yCarry = cHigh & carry;
+				long s1 = x ^ y;
+				long s2 = xCarry ^ yCarry ^ (x & y);
+				long s3 = xCarry & yCarry;
+
+				long born = 0;
+				long survive = 0;
+				for (int count = 0; count <= 8; count++) {
+					long countBit = 1L << count;
+					if (((birthMask | survivalMask) & countBit) != 0) {
+						long matching = ((count & 1) == 0 ? ~s0 : s0)
+								& ((count & 2) == 0 ? ~s1 : s1)
+								& ((count & 4) == 0 ? ~s2 : s2)
+								& ((count & 8) == 0 ? ~s3 : s3);
+						if ((birthMask & countBit) != 0) {
+							born |= matching;
+						}
+						if ((survivalMask & countBit) != 0) {
+							survive |= matching;
+						}
+					}
+				}
+
+				long current = words[rowStart + word];
+				long used = word == wordsPerRow - 1 ? lastWordMask : -1L;
+				nextWords[rowStart + word] = ((current & survive) | (~current & born))
+						& used;
+				calculated[rowStart + word] = used;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param rowStart
+	 *            the position of the first word of the row, negative for an
+	 *            empty row
+	 * @param word
+	 *            the position of the word in the row
+	 * @return the word
+	 */
+	private long getWord(int rowStart, int word) {
+		return rowStart < 0 ? 0 : words[rowStart + word];
+	}
+
+	/**
+	 * 
+	 * @param rowStart
+	 *            the position of the first word of the row, negative for an
+	 *            empty row
+	 * @param word
+	 *            the position of the word in the row
+	 * @param cyclic
+	 *            tells if the first cell of the row follows the last one
+	 * @return the states of the cells just before the cells of the word
+	 */
+	private long getWestWord(int rowStart, int word, boolean cyclic) {
+		if (rowStart < 0) {
+			return 0;
+		}
+		long incoming;
+		if (word > 0) {
+			incoming = words[rowStart + word - 1] >>> 63;
+		} else if (cyclic) {
+			incoming = (words[rowStart + wordsPerRow - 1] >>> ((width - 1) & 63)) & 1L;
+		} else {
+			incoming = 0;
+		}
+		return (words[rowStart + word] << 1) | incoming;
+	}
+
+	/**
+	 * 
+	 * @param rowStart
+	 *            the position of the first word of the row, negative for an
+	 *            empty row
+	 * @param word
+	 *            the position of the word in the row
+	 * @param cyclic
+	 *            tells if the first cell of the row follows the last one
+	 * @return the states of the cells just after the cells of the word
+	 */
+	private long getEastWord(int rowStart, int word, boolean cyclic) {
+		if (rowStart < 0) {
+			return 0;
+		}
+		long incoming;
+		if (word < wordsPerRow - 1) {
+			incoming = words[rowStart + word + 1] << 63;
+		} else if (cyclic) {
+			incoming = (words[rowStart] & 1L) << ((width - 1) & 63);
+		} else {
+			incoming = 0;
+		}
+		return (words[rowStart + word] >>> 1) | incoming;
+	}
+
+	/**
+	 * A bit space only remembers the current state of each cell.
+	 */
+	@Override
+	public int getMemorySize() {
+		return 1;
+	}
+
+	@Override
+	public IRule<StateType> getRule() {
+		return rule;
+	}
+}
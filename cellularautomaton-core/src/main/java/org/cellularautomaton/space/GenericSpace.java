@@ -1,12 +1,23 @@
 package org.cellularautomaton.space;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.cellularautomaton.cell.GenericCell;
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.util.Coords;
 
 /**
  * This generic space of cell offers a simple way to contains and access the
@@ -27,6 +38,21 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 	 * accessible from this one).
 	 */
 	private ICell<StateType> originCell;
+	/**
+	 * The indexed cells of the space, <code>null</code> if not built yet. They
+	 * are replaced at once, so the threads reading the space always see a
+	 * complete index.
+	 * 
+	 * @see #indexCells()
+	 */
+	private volatile Index<StateType> index;
+	/**
+	 * The number of changes of the links of the indexed cells, given to the
+	 * {@link GenericCell}s of the space.
+	 * 
+	 * @see GenericCell#setSpaceLinksVersion(AtomicInteger)
+	 */
+	private final AtomicInteger linksVersion = new AtomicInteger();
 
 	/**
 	 * Create a space of cells with the given origin and all the other cells
@@ -40,12 +66,20 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 	}
 
 	/**
-	 * All the cells accessible from the origin cell are returned (without any
-	 * ordering).
+	 * All the cells accessible from the origin cell are returned. If the cells
+	 * are indexed, the returned list is an unmodifiable view on the indexed
+	 * cells, ordered by their coordinates, else the cells are searched from
+	 * the origin and returned without any ordering.
+	 * 
+	 * @see #indexCells()
 	 */
 	public Collection<ICell<StateType>> getAllCells() {
+		Index<StateType> index = getUpToDateIndex();
+		if (index != null) {
+			return index.cells;
+		}
 		Collection<ICell<StateType>> result = new ArrayList<ICell<StateType>>();
-		for (Iterator<ICell<StateType>> iterator = iterator(); iterator
+		for (Iterator<ICell<StateType>> iterator = new CellIterator(); iterator
 				.hasNext();) {
 			ICell<StateType> cell = iterator.next();
 			result.add(cell);
@@ -60,6 +94,7 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 	 */
 	public void setOrigin(ICell<StateType> origin) {
 		originCell = origin;
+		index = null;
 	}
 
 	/**
@@ -72,12 +107,223 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 	/**
 	 * Give an iterator over the cells. It is strongly recommended to <b>not
 	 * modify the space of cells during iteration</b>, as the modifications can
-	 * generate unexpected behaviors.
+	 * generate unexpected behaviors. If the cells are indexed, the iterator
+	 * goes through the indexed cells, ordered by their coordinates.
 	 * 
 	 * @return an iterator over the cells
+	 * @see #indexCells()
 	 */
 	public Iterator<ICell<StateType>> iterator() {
-		return new CellIterator();
+		Index<StateType> index = getUpToDateIndex();
+		return index != null ? index.cells.iterator() : new CellIterator();
+	}
+
+	/**
+	 * Build the index of the cells, used by {@link #getCell(Coords)},
+	 * {@link #getCells(Coords, Coords)}, {@link #getAllCells()} and
+	 * {@link #iterator()}. The cells are searched once from the origin and
+	 * stored ordered by their coordinates, so the iterations do not search
+	 * them anymore and always give them in the same order. The index is built
+	 * automatically the first time a cell is asked by its coordinates (and the
+	 * builders build it when they finalize the space). It is built again when
+	 * a link of an indexed {@link GenericCell} changes, so this method has to
+	 * be called only if other kinds of cells are added or moved. If several
+	 * cells have the same coordinates, only one of them can be found by its
+	 * coordinates.
+	 */
+	public void indexCells() {
+		int version = linksVersion.get();
+		List<ICell<StateType>> cells = new ArrayList<ICell<StateType>>();
+		for (Iterator<ICell<StateType>> iterator = new CellIterator(); iterator
+				.hasNext();) {
+			cells.add(iterator.next());
+		}
+		Collections.sort(cells, new Comparator<ICell<StateType>>() {
+			public int compare(ICell<StateType> cell1, ICell<StateType> cell2) {
+				return cell1.getCoords().compareTo(cell2.getCoords());
+			}
+		});
+		this.index = createIndex(cells, version);
+	}
+
+	/**
+	 * Give the cells of the space when they are already known, like when the
+	 * space has just been built, so they are not searched from the origin.
+	 * The first cell becomes the origin of the space and the cells are used
+	 * like the ones found by {@link #indexCells()}, so they must be all the
+	 * cells accessible from the first one, ordered by their coordinates.
+	 * 
+	 * @param cells
+	 *            all the cells of the space, ordered by their coordinates
+	 */
+	public void setCells(List<ICell<StateType>> cells) {
+		this.originCell = cells.isEmpty() ? null : cells.get(0);
+		this.index = createIndex(cells, linksVersion.get());
+	}
+
+	/**
+	 * Give the counter of the link changes to the cells and index them.
+	 */
+	private Index<StateType> createIndex(List<ICell<StateType>> cells,
+			int version) {
+		for (ICell<StateType> cell : cells) {
+			if (cell instanceof GenericCell) {
+				((GenericCell<StateType>) cell)
+						.setSpaceLinksVersion(linksVersion);
+			}
+		}
+		return new Index<StateType>(cells, version);
+	}
+
+	/**
+	 * 
+	 * @return the index of the cells, built again if some links have changed
+	 *         since it has been built, <code>null</code> if the cells have
+	 *         never been indexed
+	 */
+	private Index<StateType> getUpToDateIndex() {
+		Index<StateType> index = this.index;
+		if (index != null && index.version != linksVersion.get()) {
+			synchronized (this) {
+				index = this.index;
+				if (index != null && index.version != linksVersion.get()) {
+					indexCells();
+					index = this.index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * 
+	 * @return the index of the space, built if needed
+	 */
+	private Index<StateType> getIndex() {
+		Index<StateType> index = getUpToDateIndex();
+		if (index == null) {
+			indexCells();
+			index = this.index;
+		}
+		return index;
+	}
+
+	/**
+	 * The cell is found with the index of the space.
+	 * 
+	 * @see #indexCells()
+	 */
+	public ICell<StateType> getCell(Coords coords) {
+		return getIndex().getCellsByCoords().get(coords);
+	}
+
+	/**
+	 * The cell is found with the index of the space.
+	 * 
+	 * @see #indexCells()
+	 */
+	public ICell<StateType> getCell(int... coords) {
+		return getCell(new Coords(coords));
+	}
+
+	/**
+	 * The region is reduced to the bounds of the indexed cells. If it still
+	 * contains more coordinates than the space contains cells, the cells of
+	 * the index are filtered, otherwise the cells are found with the index,
+	 * looking only for the coordinates of the region. In both cases, the cells
+	 * are given in the order of their coordinates (the first dimension being
+	 * the fastest one).
+	 * 
+	 * @see #indexCells()
+	 */
+	public Collection<ICell<StateType>> getCells(Coords min, Coords max) {
+		final int dimensions = min.getDimensions();
+		if (dimensions != max.getDimensions()) {
+			throw new IllegalArgumentException("The coordinates " + min
+					+ " and " + max + " have not the same dimensions.");
+		}
+		Index<StateType> index = getIndex();
+		Map<Coords, ICell<StateType>> cellsByCoords = index.getCellsByCoords();
+		int[] lowest = index.getLowest();
+		int[] highest = index.getHighest();
+
+		List<ICell<StateType>> cells = new ArrayList<ICell<StateType>>();
+		if (dimensions > lowest.length) {
+			return cells;
+		}
+		int[] start = new int[dimensions];
+		int[] stop = new int[dimensions];
+		long volume = 1;
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			start[dimension] = Math.max(min.get(dimension), lowest[dimension]);
+			stop[dimension] = Math.min(max.get(dimension), highest[dimension]);
+			if (start[dimension] > stop[dimension]) {
+				return cells;
+			} else if (volume <= cellsByCoords.size()) {
+				volume *= (long) stop[dimension] - start[dimension] + 1;
+			}
+		}
+
+		if (volume > cellsByCoords.size()) {
+			for (ICell<StateType> cell : index.cells) {
+				Coords coords = cell.getCoords();
+				if (isInside(coords, start, stop)) {
+					cells.add(cell);
+				}
+			}
+			Collections.sort(cells, new Comparator<ICell<StateType>>() {
+				public int compare(ICell<StateType> c1, ICell<StateType> c2) {
+					for (int dimension = dimensions - 1; dimension >= 0;
+							dimension--) {
+						int coord1 = c1.getCoords().get(dimension);
+						int coord2 = c2.getCoords().get(dimension);
+						if (coord1 != coord2) {
+							return coord1 < coord2 ? -1 : 1;
+						}
+					}
+					return 0;
+				}
+			});
+			return cells;
+		}
+
+		Coords coords = new Coords(start);
+		while (true) {
+			ICell<StateType> cell = cellsByCoords.get(coords);
+			if (cell != null) {
+				cells.add(cell);
+			}
+
+			int dimension = 0;
+			while (dimension < dimensions
+					&& coords.get(dimension) == stop[dimension]) {
+				coords.set(dimension, start[dimension]);
+				dimension++;
+			}
+			if (dimension == dimensions) {
+				return cells;
+			} else {
+				coords.set(dimension, coords.get(dimension) + 1);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the coordinates have the dimensions of the bounds and
+	 *         are between them
+	 */
+	private static boolean isInside(Coords coords, int[] start, int[] stop) {
+		if (coords.getDimensions() != start.length) {
+			return false;
+		}
+		for (int dimension = 0; dimension < start.length; dimension++) {
+			int coord = coords.get(dimension);
+			if (coord < start[dimension] || coord > stop[dimension]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -88,6 +334,91 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 		return originCell == null;
 	}
 	
+	/**
+	 * This class stores the cells of the space ordered by their coordinates,
+	 * the number of link changes when they have been searched and, once a
+	 * cell is asked by its coordinates, the map giving them by their
+	 * coordinates. The map is built only once, even if several threads
+	 * ask it at the same time.
+	 * 
+	 * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+	 * 
+	 */
+	private static final class Index<StateType> {
+		private final List<ICell<StateType>> cells;
+		private final int version;
+		private volatile Map<Coords, ICell<StateType>> cellsByCoords;
+		private int[] lowest;
+		private int[] highest;
+
+		public Index(List<ICell<StateType>> cells, int version) {
+			this.cells = Collections.unmodifiableList(cells);
+			this.version = version;
+		}
+
+		public Map<Coords, ICell<StateType>> getCellsByCoords() {
+			Map<Coords, ICell<StateType>> map = cellsByCoords;
+			if (map == null) {
+				synchronized (this) {
+					map = cellsByCoords;
+					if (map == null) {
+						map = new HashMap<Coords, ICell<StateType>>(
+								cells.size() * 4 / 3 + 1);
+						int[] lowest = new int[0];
+						int[] highest = new int[0];
+						for (ICell<StateType> cell : cells) {
+							Coords coords = cell.getCoords();
+							if (coords.isMutable()) {
+								coords = new Coords(coords.getAll());
+								coords.setMutable(false);
+							}
+							map.put(coords, cell);
+
+							int dimensions = coords.getDimensions();
+							int known = lowest.length;
+							if (dimensions > known) {
+								lowest = Arrays.copyOf(lowest, dimensions);
+								highest = Arrays.copyOf(highest, dimensions);
+							}
+							for (int d = 0; d < dimensions; d++) {
+								int coord = coords.get(d);
+								if (d >= known) {
+									lowest[d] = coord;
+									highest[d] = coord;
+								} else {
+									lowest[d] = Math.min(lowest[d], coord);
+									highest[d] = Math.max(highest[d], coord);
+								}
+							}
+						}
+						this.lowest = lowest;
+						this.highest = highest;
+						cellsByCoords = map;
+					}
+				}
+			}
+			return map;
+		}
+
+		/**
+		 * 
+		 * @return the lowest coordinate of the cells on each dimension
+		 */
+		public int[] getLowest() {
+			getCellsByCoords();
+			return lowest;
+		}
+
+		/**
+		 * 
+		 * @return the highest coordinate of the cells on each dimension
+		 */
+		public int[] getHighest() {
+			getCellsByCoords();
+			return highest;
+		}
+	}
+
 	/**
 	 * Specific iterator for the space of cells. If the space is modified during
 	 * the iteration, it is possible that the modifications are not considered :<br/>
@@ -106,13 +437,14 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 	private class CellIterator implements Iterator<ICell<StateType>> {
 
 		/**
-		 * The cells already returned.
+		 * The cells already found (returned or to return).
 		 */
 		Collection<ICell<StateType>> cellsUsed = new HashSet<ICell<StateType>>();
 		/**
-		 * The cells to look for next iterations.
+		 * The cells to return in the next iterations, in the order they have
+		 * been found.
 		 */
-		Collection<ICell<StateType>> cellsToCheck = new HashSet<ICell<StateType>>();
+		Queue<ICell<StateType>> cellsToCheck = new LinkedList<ICell<StateType>>();
 
 		/**
 		 * Create an iterator over the current space of cells.
@@ -120,6 +452,7 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 		public CellIterator() {
 			if (getOrigin() != null) {
 				cellsToCheck.add(getOrigin());
+				cellsUsed.add(getOrigin());
 			}
 		}
 
@@ -130,11 +463,11 @@ public class GenericSpace<StateType> implements ISpace<StateType> {
 		public ICell<StateType> next() {
 
 			if (hasNext()) {
-				ICell<StateType> cell = cellsToCheck.iterator().next();
-				cellsToCheck.remove(cell);
-				cellsUsed.add(cell);
-				for (ICell<StateType> cellAround : cell.getAllCellsAround()) {
-					if (!cellsUsed.contains(cellAround)) {
+				ICell<StateType> cell = cellsToCheck.remove();
+				List<ICell<StateType>> cellsAround = cell.getCellsAround();
+				for (int index = 0; index < cellsAround.size(); index++) {
+					ICell<StateType> cellAround = cellsAround.get(index);
+					if (cellsUsed.add(cellAround)) {
 						cellsToCheck.add(cellAround);
 					}
 				}
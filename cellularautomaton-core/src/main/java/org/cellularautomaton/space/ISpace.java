@@ -3,6 +3,7 @@ package org.cellularautomaton.space;
 import java.util.Collection;
 
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.util.Coords;
 
 /**
  * A space of cell is a simple container of cells, with some useful methods.
@@ -40,8 +41,40 @@ public interface ISpace<StateType> extends Iterable<ICell<StateType>> {
 	public boolean isEmpty();
 
 	/**
+	 * Give all the cells of the space. The ordering of the cells depends on
+	 * the implementation. The returned collection can be a read-only view on
+	 * the cells of the space, so it must be copied before being modified.
 	 * 
-	 * @return all the cells of the space (without specific ordering)
+	 * @return all the cells of the space
 	 */
 	public Collection<ICell<StateType>> getAllCells();
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return the cell at the given coordinates, <code>null</code> if there
+	 *         is no such cell in the space
+	 */
+	public ICell<StateType> getCell(Coords coords);
+
+	/**
+	 * Same as {@link #getCell(Coords)} with the coordinates given directly.
+	 */
+	public ICell<StateType> getCell(int... coords);
+
+	/**
+	 * Give the cells of a region of the space, only the cells of the region
+	 * being considered.
+	 * 
+	 * @param min
+	 *            the smallest coordinates of the region (included)
+	 * @param max
+	 *            the greatest coordinates of the region (included)
+	 * @return the cells of the space which are in the region, the first
+	 *         dimension being the fastest one
+	 * @throws IllegalArgumentException
+	 *             if the two coordinates have not the same dimensions
+	 */
+	public Collection<ICell<StateType>> getCells(Coords min, Coords max);
 }
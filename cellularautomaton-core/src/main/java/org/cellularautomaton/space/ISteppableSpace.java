@@ -0,0 +1,39 @@
+package org.cellularautomaton.space;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+
+/**
+ * A steppable space is a space able to calculate and apply the next state of
+ * all its cells at once, without going through a cell object for each of
+ * them. The {@link CellularAutomaton} uses these methods instead of managing
+ * the cells one by one when it works on all the cells of such a space.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public interface ISteppableSpace<StateType> extends ISpace<StateType> {
+	/**
+	 * Calculate the next state of all the cells.
+	 * 
+	 * @throws NullPointerException
+	 *             the calculation of a cell has returned a <code>null</code>
+	 *             value
+	 */
+	public void calculateNextStates();
+
+	/**
+	 * Apply the calculated next state of all the cells.
+	 * 
+	 * @return true if the state of a cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state of a cell is not calculated yet
+	 */
+	public boolean applyNextStates();
+}
@@ -0,0 +1,276 @@
+package org.cellularautomaton.space;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * A sparse cell is a view on a cell of a {@link SparseSpace}. It does not
+ * store anything but its coordinates, so several views can represent the same
+ * cell (they are then equal). As the space is unbounded, each cell has all its
+ * neighbors. The structure of a sparse space being fixed, the methods
+ * modifying the links, the dimensions, the memory or the rule of the cell are
+ * not supported.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by the cell, it can be {@link Boolean} for a
+ *            simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses.
+ */
+public class SparseCell<StateType> implements ICell<StateType> {
+
+	/**
+	 * The space containing the cell.
+	 */
+	private final SparseSpace<StateType> space;
+	/**
+	 * The coordinates of the cell in the space.
+	 */
+	private final int[] coords;
+
+	/**
+	 * Create a view on a cell of a sparse space.
+	 * 
+	 * @param space
+	 *            the space containing the cell
+	 * @param coords
+	 *            the coordinates of the cell, which must not be modified
+	 *            afterward
+	 */
+	SparseCell(SparseSpace<StateType> space, int[] coords) {
+		this.space = space;
+		this.coords = coords;
+	}
+
+	/**
+	 * The memory is managed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setMemory(int memorySize, StateType initialState) {
+		throw new UnsupportedOperationException(
+				"The memory of a sparse cell is managed by its space.");
+	}
+
+	public int getMemorySize() {
+		return space.getMemorySize();
+	}
+
+	/**
+	 * Force the current state to a particular value. The chunk of the cell is
+	 * allocated if the state is not the default one.
+	 */
+	public void setCurrentState(StateType state) {
+		space.setCurrentCode(coords, space.getCode(state));
+	}
+
+	/**
+	 * This method is similar to {@link #getState(int)} with the argument 0.
+	 */
+	public StateType getCurrentState() {
+		return getState(0);
+	}
+
+	/**
+	 * As the cell remembers only its current state, only the age 0 is
+	 * accepted.
+	 */
+	public StateType getState(int age) {
+		if (age != 0) {
+			throw new IndexOutOfBoundsException("The age " + age
+					+ " is not in the memory (size 1).");
+		}
+		return space.getStateOfCode(space.getStateCode(coords));
+	}
+
+	/**
+	 * The rule is shared by all the cells of the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setRule(IRule<StateType> rule) {
+		throw new UnsupportedOperationException(
+				"The rule of a sparse cell is shared by all its space.");
+	}
+
+	public IRule<StateType> getRule() {
+		return space.getRule();
+	}
+
+	public void calculateNextState() {
+		space.calculateNextState(coords);
+	}
+
+	public boolean isNextStateCalculated() {
+		return space.getNextCode(coords) >= 0;
+	}
+
+	public boolean isNextStateDifferent() {
+		int next = space.getNextCode(coords);
+		if (next < 0) {
+			throw new StateNotCalculatedException();
+		}
+		return next != space.getStateCode(coords);
+	}
+
+	public void applyNextState() {
+		space.applyNextState(coords);
+	}
+
+	public int getDimensions() {
+		return coords.length;
+	}
+
+	/**
+	 * The dimensions are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the dimensions are not the ones of the space
+	 */
+	public void setDimensions(int dimensions) {
+		if (dimensions != getDimensions()) {
+			throw new UnsupportedOperationException(
+					"The dimensions of a sparse cell are fixed by its space.");
+		}
+	}
+
+	/**
+	 * The links are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setNextCellOnDimension(int dimension, ICell<StateType> next) {
+		throw new UnsupportedOperationException(
+				"The links of a sparse cell are fixed by its space.");
+	}
+
+	public ICell<StateType> getNextCellOnDimension(int dimension) {
+		return move(dimension, 1);
+	}
+
+	/**
+	 * The links are fixed by the space.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setPreviousCellOnDimension(int dimension,
+			ICell<StateType> previous) {
+		throw new UnsupportedOperationException(
+				"The links of a sparse cell are fixed by its space.");
+	}
+
+	public ICell<StateType> getPreviousCellOnDimension(int dimension) {
+		return move(dimension, -1);
+	}
+
+	/**
+	 * 
+	 * @param dimension
+	 *            the dimension to move on
+	 * @param delta
+	 *            the number of cells to move on the dimension
+	 * @return the cell reached
+	 */
+	private ICell<StateType> move(int dimension, int delta) {
+		if (dimension < 0 || dimension >= coords.length) {
+			throw new IndexOutOfBoundsException("The dimension " + dimension
+					+ " is not between 0 and " + (coords.length - 1) + ".");
+		}
+		int[] target = coords.clone();
+		target[dimension] += delta;
+		return new SparseCell<StateType>(space, target);
+	}
+
+	public Set<ICell<StateType>> getAllCellsAround() {
+		return new LinkedHashSet<ICell<StateType>>(getCellsAround());
+	}
+
+	/**
+	 * As a view does not store anything, the list is computed at each call.
+	 */
+	public List<ICell<StateType>> getCellsAround() {
+		List<ICell<StateType>> neighbors = new ArrayList<ICell<StateType>>(
+				2 * getDimensions());
+		for (int dimension = 0; dimension < getDimensions(); dimension++) {
+			neighbors.add(getPreviousCellOnDimension(dimension));
+			neighbors.add(getNextCellOnDimension(dimension));
+		}
+		return Collections.unmodifiableList(neighbors);
+	}
+
+	/**
+	 * The cell is found by adding the coordinates, so it always exists.
+	 */
+	public ICell<StateType> getRelativeCell(int... coords) {
+		int[] target = this.coords.clone();
+		for (int dimension = 0; dimension < coords.length
+				&& dimension < target.length; dimension++) {
+			target[dimension] += coords[dimension];
+		}
+		return new SparseCell<StateType>(space, target);
+	}
+
+	/**
+	 * The neighbors are found by adding the coordinates, so they are computed
+	 * at each call.
+	 */
+	public List<ICell<StateType>> getNeighbors(Neighborhood neighborhood) {
+		List<ICell<StateType>> neighbors = new ArrayList<ICell<StateType>>(
+				neighborhood.size());
+		for (int index = 0; index < neighborhood.size(); index++) {
+			neighbors.add(getRelativeCell(neighborhood.getOffset(index)));
+		}
+		return Collections.unmodifiableList(neighbors);
+	}
+
+	/**
+	 * The coordinates are given by the view, so they are not mutable.
+	 */
+	public Coords getCoords() {
+		Coords coords = new Coords(this.coords);
+		coords.setMutable(false);
+		return coords;
+	}
+
+	/**
+	 * Two views are equal if they represent the same cell of the same space.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof SparseCell) {
+			SparseCell<?> cell = (SparseCell<?>) obj;
+			return cell.space == space && Arrays.equals(cell.coords, coords);
+		} else {
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(space) + Arrays.hashCode(coords);
+	}
+
+	/**
+	 * Gives a simple display of the cell.
+	 */
+	@Override
+	public String toString() {
+		return "cell(" + getCurrentState().toString() + ") " + getCoords();
+	}
+}
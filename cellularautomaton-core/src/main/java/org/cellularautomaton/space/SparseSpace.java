@@ -0,0 +1,793 @@
+package org.cellularautomaton.space;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * <p>
+ * A sparse space is an unbounded space of cells where all the cells have a
+ * default state, except the ones which are stored. The cells are stored by
+ * chunks, which are squares (or cubes, or hypercubes) of a fixed size : a
+ * chunk is allocated when one of its cells gets a state different from the
+ * default one, and it is freed when all its cells are back to the default
+ * state. The memory and the time needed to make the space evolve are then
+ * proportional to the activity, not to the area covered by the patterns.
+ * </p>
+ * <p>
+ * The cells given by this space are only views (see {@link SparseCell}), so
+ * they can be read and modified through their coordinates like in any other
+ * space, any coordinates giving a cell. The cells remember only their current
+ * state and all of them share the same rule. When the states of all the cells
+ * are calculated (see {@link #calculateNextStates()}), only the chunks where
+ * some cells are not in the default state and the chunks around are
+ * considered, so the rule must satisfy two conditions :
+ * </p>
+ * <ul>
+ * <li>a cell in the default state surrounded by cells in the default state
+ * stays in the default state (the default state is quiescent)</li>
+ * <li>the next state of a cell only depends on the cells at a distance of 1
+ * on each dimension (like the Moore neighborhood)</li>
+ * </ul>
+ * <p>
+ * A {@link CellularAutomaton} working on all the cells makes such a space
+ * evolve with {@link #calculateNextStates()} and {@link #applyNextStates()},
+ * so only the allocated chunks are considered at each step.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by each cell, it can be {@link Boolean} for
+ *            a simple "On/Off" state, a numeral state like {@link Integer} or
+ *            {@link Float} for arithmetical states, or any specific type of
+ *            data for particular uses (just consider all the cells use the same
+ *            type).
+ */
+public class SparseSpace<StateType> implements ISteppableSpace<StateType> {
+	/**
+	 * The default number of cells of a chunk on each dimension.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16;
+	/**
+	 * The value used in the next states of a chunk for the cells which have
+	 * not calculated their next state.
+	 */
+	private static final int NOT_CALCULATED = -1;
+	/**
+	 * The code of the default state.
+	 */
+	private static final int DEFAULT_CODE = 0;
+	/**
+	 * The number of dimensions of the space.
+	 */
+	private final int dimensions;
+	/**
+	 * The number of bits to shift a coordinate to get the coordinate of its
+	 * chunk.
+	 */
+	private final int shift;
+	/**
+	 * The mask giving the coordinate of a cell in its chunk.
+	 */
+	private final int mask;
+	/**
+	 * The number of cells in a chunk.
+	 */
+	private final int chunkLength;
+	/**
+	 * The rule shared by all the cells.
+	 */
+	private final IRule<StateType> rule;
+	/**
+	 * The chunks allocated, identified by their coordinates (the coordinates
+	 * of their cells divided by the size of the chunks).
+	 */
+	private final Map<Coords, Chunk> chunks = new HashMap<Coords, Chunk>();
+	/**
+	 * The states known by this space, the index of a state being its code
+	 * (the default state having the code 0).
+	 */
+	private volatile Object[] dictionary;
+	/**
+	 * The code of each known state.
+	 */
+	private final Map<StateType, Integer> codes = new ConcurrentHashMap<StateType, Integer>();
+
+	/**
+	 * Create a space with chunks of {@link #DEFAULT_CHUNK_SIZE} cells on each
+	 * dimension.
+	 * 
+	 * @param possibleStates
+	 *            the states to code first, other states are coded when they
+	 *            appear
+	 * @param defaultState
+	 *            the state of all the cells which are not stored
+	 * @param rule
+	 *            the rule shared by all the cells
+	 * @param dimensions
+	 *            the number of dimensions of the space
+	 */
+	public SparseSpace(Collection<StateType> possibleStates,
+			StateType defaultState, IRule<StateType> rule, int dimensions) {
+		this(possibleStates, defaultState, rule, dimensions,
+				DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create a space.
+	 * 
+	 * @param possibleStates
+	 *            the states to code first, other states are coded when they
+	 *            appear
+	 * @param defaultState
+	 *            the state of all the cells which are not stored
+	 * @param rule
+	 *            the rule shared by all the cells
+	 * @param dimensions
+	 *            the number of dimensions of the space
+	 * @param chunkSize
+	 *            the number of cells of a chunk on each dimension, a power of 2
+	 * @throws IllegalArgumentException
+	 *             if the number of dimensions is negative, if the size of the
+	 *             chunks is not a power of 2 or if the chunks are too big
+	 */
+	public SparseSpace(Collection<StateType> possibleStates,
+			StateType defaultState, IRule<StateType> rule, int dimensions,
+			int chunkSize) {
+		if (dimensions < 0) {
+			throw new IllegalArgumentException("The number of dimensions ("
+					+ dimensions + ") cannot be negative.");
+		}
+		if (chunkSize < 1 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("The size of the chunks ("
+					+ chunkSize + ") is not a power of 2.");
+		}
+		long length = 1;
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			length *= chunkSize;
+			if (length > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The chunks are too big ("
+						+ chunkSize + " cells on " + dimensions
+						+ " dimensions).");
+			}
+		}
+		this.dimensions = dimensions;
+		this.shift = Integer.numberOfTrailingZeros(chunkSize);
+		this.mask = chunkSize - 1;
+		this.chunkLength = (int) length;
+		this.rule = rule;
+
+		dictionary = new Object[0];
+		getCode(defaultState);
+		for (StateType state : possibleStates) {
+			getCode(state);
+		}
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            the state to code
+	 * @return the code of the state, a new code is given if the state is not
+	 *         known yet
+	 */
+	int getCode(StateType state) {
+		if (state == null) {
+			throw new NullPointerException("null is not a valid state");
+		}
+		Integer code = codes.get(state);
+		return code == null ? register(state) : code;
+	}
+
+	/**
+	 * Give a code to a new state.
+	 * 
+	 * @param state
+	 *            the state to code
+	 * @return the code of the state
+	 */
+	private synchronized int register(StateType state) {
+		Integer code = codes.get(state);
+		if (code == null) {
+			Object[] extended = Arrays.copyOf(dictionary,
+					dictionary.length + 1);
+			code = dictionary.length;
+			extended[code] = state;
+			dictionary = extended;
+			codes.put(state, code);
+		}
+		return code;
+	}
+
+	/**
+	 * 
+	 * @param code
+	 *            the code of a known state
+	 * @return the state corresponding to the code
+	 */
+	@SuppressWarnings("unchecked")
+	StateType getStateOfCode(int code) {
+		return (StateType) dictionary[code];
+	}
+
+	/**
+	 * 
+	 * @return the states known by this space, the index of each state being
+	 *         its code (the default state being the first one)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<StateType> getKnownStates() {
+		List<StateType> known = new ArrayList<StateType>();
+		for (Object state : dictionary) {
+			known.add((StateType) state);
+		}
+		return known;
+	}
+
+	/**
+	 * 
+	 * @return the state of all the cells which are not stored
+	 */
+	public StateType getDefaultState() {
+		return getStateOfCode(DEFAULT_CODE);
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @return the coordinates of the chunk containing the cell
+	 */
+	private Coords getChunkCoords(int[] coords) {
+		if (dimensions == 2) {
+			return Coords.valueOf(coords[0] >> shift, coords[1] >> shift);
+		} else {
+			int[] chunkCoords = new int[dimensions];
+			for (int dimension = 0; dimension < dimensions; dimension++) {
+				chunkCoords[dimension] = coords[dimension] >> shift;
+			}
+			return Coords.valueOf(chunkCoords);
+		}
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @return the index of the cell in its chunk (the first dimension being
+	 *         the fastest one)
+	 */
+	private int getOffset(int[] coords) {
+		int offset = 0;
+		for (int dimension = dimensions - 1; dimension >= 0; dimension--) {
+			offset = (offset << shift) | (coords[dimension] & mask);
+		}
+		return offset;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of a cell
+	 * @return the chunk containing the cell, <code>null</code> if it is not
+	 *         allocated
+	 */
+	private Chunk getChunk(int[] coords) {
+		return chunks.get(getChunkCoords(coords));
+	}
+
+	/**
+	 * 
+	 * @param chunkCoords
+	 *            the coordinates of a chunk
+	 * @return the chunk, allocated if it was not
+	 */
+	private Chunk getOrCreateChunk(Coords chunkCoords) {
+		Chunk chunk = chunks.get(chunkCoords);
+		if (chunk == null) {
+			chunk = new Chunk(chunkCoords, chunkLength);
+			chunks.put(chunkCoords, chunk);
+		}
+		return chunk;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return the code of the current state of the cell
+	 */
+	int getStateCode(int[] coords) {
+		Chunk chunk = getChunk(coords);
+		return chunk == null ? DEFAULT_CODE : chunk.states[getOffset(coords)];
+	}
+
+	/**
+	 * Replace the current state of a cell, allocating its chunk if the state
+	 * is not the default one.
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @param code
+	 *            the code of the new current state
+	 */
+	void setCurrentCode(int[] coords, int code) {
+		Coords chunkCoords = getChunkCoords(coords);
+		Chunk chunk = chunks.get(chunkCoords);
+		if (chunk == null && code == DEFAULT_CODE) {
+			return;
+		} else if (chunk == null) {
+			chunk = getOrCreateChunk(chunkCoords);
+		}
+		chunk.setState(getOffset(coords), code);
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return the code of the calculated next state, a negative value if it is
+	 *         not calculated
+	 */
+	int getNextCode(int[] coords) {
+		Chunk chunk = getChunk(coords);
+		return chunk == null ? NOT_CALCULATED
+				: chunk.nextStates[getOffset(coords)];
+	}
+
+	/**
+	 * Calculate the next state of a cell with the rule of the space. Its chunk
+	 * is allocated to store the next state.
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @throws NullPointerException
+	 *             the calculation has returned a <code>null</code> value
+	 */
+	public void calculateNextState(int... coords) {
+		checkDimensions(coords);
+		Chunk chunk = getOrCreateChunk(getChunkCoords(coords));
+		calculateNextState(chunk, coords, getOffset(coords));
+	}
+
+	/**
+	 * Calculate the next state of a cell of a chunk.
+	 * 
+	 * @param chunk
+	 *            the chunk of the cell
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @param offset
+	 *            the index of the cell in the chunk
+	 */
+	private void calculateNextState(Chunk chunk, int[] coords, int offset) {
+		StateType nextState = rule.calculateNextStateOf(new SparseCell<StateType>(
+				this, coords));
+		if (nextState == null) {
+			throw new NullPointerException(
+					"the calculation has returned a null value");
+		}
+		chunk.setNextState(offset, getCode(nextState));
+	}
+
+	/**
+	 * Push the calculated next state of a cell in its memory.
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @return true if the state of the cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state is not calculated yet
+	 */
+	public boolean applyNextState(int... coords) {
+		checkDimensions(coords);
+		Chunk chunk = getChunk(coords);
+		if (chunk == null) {
+			throw new StateNotCalculatedException();
+		}
+		return chunk.applyNextState(getOffset(coords));
+	}
+
+	/**
+	 * Calculate the next state of all the cells. The chunks where all the
+	 * cells are in the default state are freed, then the remaining chunks and
+	 * the chunks around them are considered : all the cells of the remaining
+	 * chunks are calculated, while only the cells at the borders of the
+	 * chunks around are calculated (the other ones being surrounded by cells
+	 * in the default state, they stay in the default state).
+	 * 
+	 * @throws NullPointerException
+	 *             the calculation of a cell has returned a <code>null</code>
+	 *             value
+	 */
+	public void calculateNextStates() {
+		freeQuiescentChunks();
+		List<Chunk> populated = new ArrayList<Chunk>(chunks.values());
+		List<Chunk> borders = new ArrayList<Chunk>();
+		int[] delta = new int[dimensions];
+		for (Chunk chunk : populated) {
+			int[] base = chunk.coords.getAll();
+			Arrays.fill(delta, -1);
+			do {
+				int[] around = new int[dimensions];
+				for (int dimension = 0; dimension < dimensions; dimension++) {
+					around[dimension] = base[dimension] + delta[dimension];
+				}
+				Coords coords = Coords.valueOf(around);
+				if (!chunks.containsKey(coords)) {
+					borders.add(getOrCreateChunk(coords));
+				}
+			} while (increment(delta, -1, 1));
+		}
+
+		for (Chunk chunk : populated) {
+			calculateChunk(chunk, false);
+		}
+		for (Chunk chunk : borders) {
+			calculateChunk(chunk, true);
+		}
+	}
+
+	/**
+	 * Calculate the next states of the cells of a chunk.
+	 * 
+	 * @param chunk
+	 *            the chunk to calculate
+	 * @param isBorderOnly
+	 *            true if only the cells at the borders of the chunk have to be
+	 *            calculated, the other ones staying in the default state
+	 */
+	private void calculateChunk(Chunk chunk, boolean isBorderOnly) {
+		int size = mask + 1;
+		int[] origin = chunk.coords.getAll();
+		int[] local = new int[dimensions];
+		for (int offset = 0; offset < chunkLength; offset++) {
+			boolean isBorder = false;
+			int[] coords = new int[dimensions];
+			for (int dimension = 0; dimension < dimensions; dimension++) {
+				isBorder |= local[dimension] == 0
+						|| local[dimension] == size - 1;
+				coords[dimension] = (origin[dimension] << shift)
+						+ local[dimension];
+			}
+			if (isBorder || !isBorderOnly) {
+				calculateNextState(chunk, coords, offset);
+			} else {
+				chunk.setNextState(offset, DEFAULT_CODE);
+			}
+			increment(local, 0, size - 1);
+		}
+	}
+
+	/**
+	 * Go to the next combination of values, the first one being the fastest.
+	 * 
+	 * @param values
+	 *            the values to change
+	 * @param min
+	 *            the minimal value
+	 * @param max
+	 *            the maximal value
+	 * @return false if all the combinations have been done (the values being
+	 *         back to the minimum)
+	 */
+	private static boolean increment(int[] values, int min, int max) {
+		for (int index = 0; index < values.length; index++) {
+			if (values[index] < max) {
+				values[index]++;
+				return true;
+			} else {
+				values[index] = min;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Push the calculated next state of all the stored cells in their memory,
+	 * then free the chunks where all the cells are in the default state.
+	 * 
+	 * @return true if the state of a cell has changed, false otherwise
+	 * @throws StateNotCalculatedException
+	 *             the next state of a stored cell is not calculated yet
+	 */
+	public boolean applyNextStates() {
+		boolean isChanged = false;
+		for (Chunk chunk : chunks.values()) {
+			for (int offset = 0; offset < chunkLength; offset++) {
+				isChanged |= chunk.applyNextState(offset);
+			}
+		}
+		freeQuiescentChunks();
+		return isChanged;
+	}
+
+	/**
+	 * Free the chunks where all the cells are in the default state and have
+	 * no calculated next state.
+	 */
+	private void freeQuiescentChunks() {
+		for (Iterator<Chunk> iterator = chunks.values().iterator(); iterator
+				.hasNext();) {
+			Chunk chunk = iterator.next();
+			if (chunk.population == 0 && chunk.calculated == 0) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of chunks allocated
+	 */
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of cells which are not in the default state
+	 */
+	public int getPopulation() {
+		int population = 0;
+		for (Chunk chunk : chunks.values()) {
+			population += chunk.population;
+		}
+		return population;
+	}
+
+	/**
+	 * 
+	 * @return the number of cells of a chunk on each dimension
+	 */
+	public int getChunkSize() {
+		return mask + 1;
+	}
+
+	/**
+	 * 
+	 * @return the number of dimensions of the space
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @return the number of states each cell remembers, always 1
+	 */
+	public int getMemorySize() {
+		return 1;
+	}
+
+	/**
+	 * 
+	 * @return the rule shared by all the cells
+	 */
+	public IRule<StateType> getRule() {
+		return rule;
+	}
+
+	/**
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the coordinates have not the dimensions of the space
+	 */
+	private void checkDimensions(int[] coords) {
+		if (coords.length != dimensions) {
+			throw new IllegalArgumentException("The coordinates "
+					+ Arrays.toString(coords) + " have not " + dimensions
+					+ " dimensions.");
+		}
+	}
+
+	/**
+	 * The origin of a sparse space is always the cell with all its coordinates
+	 * at 0, so it cannot be changed.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             in any case
+	 */
+	public void setOrigin(ICell<StateType> origin) {
+		throw new UnsupportedOperationException(
+				"The origin of a sparse space cannot be changed.");
+	}
+
+	/**
+	 * The origin is the cell with all its coordinates at 0.
+	 */
+	public ICell<StateType> getOrigin() {
+		return isEmpty() ? null : new SparseCell<StateType>(this,
+				new int[dimensions]);
+	}
+
+	/**
+	 * A sparse space is empty when it has no dimension.
+	 */
+	public boolean isEmpty() {
+		return dimensions == 0;
+	}
+
+	/**
+	 * As the space is unbounded, only the cells of the allocated chunks are
+	 * given, so all the cells which are not in the default state are given.
+	 */
+	public Collection<ICell<StateType>> getAllCells() {
+		List<ICell<StateType>> cells = new ArrayList<ICell<StateType>>(
+				chunks.size() * chunkLength);
+		int size = mask + 1;
+		for (Chunk chunk : chunks.values()) {
+			int[] origin = chunk.coords.getAll();
+			int[] local = new int[dimensions];
+			for (int offset = 0; offset < chunkLength; offset++) {
+				int[] coords = new int[dimensions];
+				for (int dimension = 0; dimension < dimensions; dimension++) {
+					coords[dimension] = (origin[dimension] << shift)
+							+ local[dimension];
+				}
+				cells.add(new SparseCell<StateType>(this, coords));
+				increment(local, 0, size - 1);
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Any coordinates with the dimensions of the space give a cell, which is
+	 * not stored until it gets a state different from the default one.
+	 */
+	public ICell<StateType> getCell(Coords coords) {
+		return coords.getDimensions() != dimensions || isEmpty() ? null
+				: new SparseCell<StateType>(this, coords.getAll());
+	}
+
+	public ICell<StateType> getCell(int... coords) {
+		return coords.length != dimensions || isEmpty() ? null
+				: new SparseCell<StateType>(this, coords.clone());
+	}
+
+	/**
+	 * As the space is unbounded, all the cells of the region are given. The
+	 * returned list does not store any cell, they are created each time they
+	 * are asked.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the region has more than {@link Integer#MAX_VALUE}
+	 *             cells
+	 */
+	public Collection<ICell<StateType>> getCells(Coords min, Coords max) {
+		if (min.getDimensions() != max.getDimensions()) {
+			throw new IllegalArgumentException("The coordinates " + min
+					+ " and " + max + " have not the same dimensions.");
+		}
+		final int[] starts = new int[dimensions];
+		final int[] counts = new int[dimensions];
+		long total = isEmpty() || min.getDimensions() != dimensions ? 0 : 1;
+		for (int dimension = 0; dimension < dimensions && total > 0;
+				dimension++) {
+			starts[dimension] = min.get(dimension);
+			counts[dimension] = (int) Math.max((long) max.get(dimension)
+					- starts[dimension] + 1, 0);
+			total *= counts[dimension];
+			if (total > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The region between " + min
+						+ " and " + max + " has too many cells.");
+			}
+		}
+		final int size = (int) total;
+		return new AbstractList<ICell<StateType>>() {
+			@Override
+			public ICell<StateType> get(int position) {
+				if (position < 0 || position >= size) {
+					throw new IndexOutOfBoundsException("Index: " + position
+							+ ", Size: " + size);
+				}
+				int[] coords = new int[dimensions];
+				for (int dimension = 0; dimension < dimensions; dimension++) {
+					coords[dimension] = starts[dimension] + position
+							% counts[dimension];
+					position /= counts[dimension];
+				}
+				return new SparseCell<StateType>(SparseSpace.this, coords);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Give an iterator over the cells of the allocated chunks, like
+	 * {@link #getAllCells()}.
+	 */
+	public Iterator<ICell<StateType>> iterator() {
+		return getAllCells().iterator();
+	}
+
+	/**
+	 * A chunk stores the states of a block of cells.
+	 */
+	private static class Chunk {
+		/**
+		 * The coordinates of the chunk.
+		 */
+		private final Coords coords;
+		/**
+		 * The code of the current state of each cell.
+		 */
+		private final int[] states;
+		/**
+		 * The code of the calculated next state of each cell.
+		 */
+		private final int[] nextStates;
+		/**
+		 * The number of cells which are not in the default state.
+		 */
+		private int population = 0;
+		/**
+		 * The number of cells which have a calculated next state.
+		 */
+		private int calculated = 0;
+
+		public Chunk(Coords coords, int length) {
+			this.coords = coords;
+			this.states = new int[length];
+			this.nextStates = new int[length];
+			Arrays.fill(nextStates, NOT_CALCULATED);
+		}
+
+		/**
+		 * Replace the current state of a cell.
+		 */
+		public void setState(int offset, int code) {
+			if (states[offset] == DEFAULT_CODE && code != DEFAULT_CODE) {
+				population++;
+			} else if (states[offset] != DEFAULT_CODE && code == DEFAULT_CODE) {
+				population--;
+			}
+			states[offset] = code;
+		}
+
+		/**
+		 * Store the calculated next state of a cell.
+		 */
+		public void setNextState(int offset, int code) {
+			if (nextStates[offset] == NOT_CALCULATED) {
+				calculated++;
+			}
+			nextStates[offset] = code;
+		}
+
+		/**
+		 * Replace the current state of a cell by its next state.
+		 * 
+		 * @return true if the state of the cell has changed
+		 */
+		public boolean applyNextState(int offset) {
+			int next = nextStates[offset];
+			if (next == NOT_CALCULATED) {
+				throw new StateNotCalculatedException();
+			}
+			boolean isChanged = states[offset] != next;
+			setState(offset, next);
+			nextStates[offset] = NOT_CALCULATED;
+			calculated--;
+			return isChanged;
+		}
+	}
+}
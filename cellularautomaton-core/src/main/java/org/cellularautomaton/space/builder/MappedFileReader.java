@@ -0,0 +1,196 @@
+package org.cellularautomaton.space.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+
+/**
+ * <p>
+ * A mapped file reader reads a file through a memory-mapped
+ * {@link FileChannel}, decoding the characters directly from the mapped bytes.
+ * The file is mapped by parts of at most {@link #WINDOW_SIZE} bytes, so even
+ * very big files can be read without loading them entirely in memory.
+ * </p>
+ * <p>
+ * Like any {@link Reader}, it is better to wrap it in a
+ * {@link java.io.BufferedReader} to read it line by line. Notice that the
+ * mapped parts are released by the garbage collector, not when the reader is
+ * closed.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class MappedFileReader extends Reader {
+	/**
+	 * The default size (in bytes) of the parts of the file mapped in memory.
+	 */
+	public static final int WINDOW_SIZE = 1 << 26;
+	/**
+	 * The channel of the file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The size of the file.
+	 */
+	private final long size;
+	/**
+	 * The size of the parts of the file mapped in memory.
+	 */
+	private final int windowSize;
+	/**
+	 * The decoder of the bytes.
+	 */
+	private final CharsetDecoder decoder;
+	/**
+	 * The characters decoded but not read yet.
+	 */
+	private final CharBuffer chars = CharBuffer.allocate(8192);
+	/**
+	 * The part of the file currently mapped, <code>null</code> if the reader
+	 * is closed.
+	 */
+	private ByteBuffer window;
+	/**
+	 * The position of the current part in the file.
+	 */
+	private long windowStart;
+	/**
+	 * Tell if all the bytes have been decoded.
+	 */
+	private boolean isFlushed = false;
+
+	/**
+	 * Create a reader of a file using the default charset of the platform.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped
+	 */
+	public MappedFileReader(File file) throws IOException {
+		this(file, Charset.defaultCharset());
+	}
+
+	/**
+	 * Create a reader of a file. The malformed bytes are replaced, like in an
+	 * {@link java.io.InputStreamReader}.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @param charset
+	 *            the charset of the file
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped
+	 */
+	public MappedFileReader(File file, Charset charset) throws IOException {
+		this(file, charset, WINDOW_SIZE);
+	}
+
+	/**
+	 * Create a reader of a file.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @param charset
+	 *            the charset of the file
+	 * @param windowSize
+	 *            the size (in bytes) of the parts of the file mapped in memory
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped
+	 * @throws IllegalArgumentException
+	 *             if the size of the parts is too small to contain any
+	 *             character (less than 4 bytes)
+	 */
+	public MappedFileReader(File file, Charset charset, int windowSize)
+			throws IOException {
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		if (windowSize < 4) {
+			throw new IllegalArgumentException("The size " + windowSize
+					+ " is too small to map the file.");
+		}
+		this.windowSize = windowSize;
+		this.channel = new FileInputStream(file).getChannel();
+		try {
+			this.size = channel.size();
+			map(0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		chars.flip();
+	}
+
+	/**
+	 * Map the part of the file starting at the given position.
+	 * 
+	 * @param position
+	 *            the position of the first byte to map
+	 */
+	private void map(long position) throws IOException {
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+				Math.min(windowSize, size - position));
+		windowStart = position;
+	}
+
+	/**
+	 * Decode the next characters, mapping the next part of the file when the
+	 * current one has been entirely decoded.
+	 * 
+	 * @return false if the end of the file is reached
+	 */
+	private boolean fill() throws IOException {
+		chars.clear();
+		while (chars.position() == 0 && !isFlushed) {
+			boolean isLastWindow = windowStart + window.limit() == size;
+			CoderResult result = decoder.decode(window, chars, isLastWindow);
+			if (result.isUnderflow()) {
+				if (isLastWindow) {
+					decoder.flush(chars);
+					isFlushed = true;
+				} else {
+					// keep the bytes of an incomplete character
+					map(windowStart + window.position());
+				}
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	@Override
+	public int read(char[] buffer, int offset, int length) throws IOException {
+		synchronized (lock) {
+			if (window == null) {
+				throw new IOException("The reader is closed.");
+			} else if (length == 0) {
+				return 0;
+			} else if (!chars.hasRemaining() && !fill()) {
+				return -1;
+			} else {
+				int count = Math.min(length, chars.remaining());
+				chars.get(buffer, offset, count);
+				return count;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			window = null;
+			channel.close();
+		}
+	}
+
+}
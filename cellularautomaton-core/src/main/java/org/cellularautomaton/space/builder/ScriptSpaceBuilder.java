@@ -2,9 +2,8 @@ package org.cellularautomaton.space.builder;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -15,12 +14,15 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.rule.DynamicRule;
 import org.cellularautomaton.rule.DynamicRule.RulePart;
+import org.cellularautomaton.rule.IRule;
 import org.cellularautomaton.rule.StaticRule;
 import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.expression.CompiledRule;
 import org.cellularautomaton.space.builder.expression.Expression;
 import org.cellularautomaton.space.builder.expression.ExpressionHelper;
 import org.cellularautomaton.state.DynamicStateFactory;
@@ -254,11 +256,33 @@ public class ScriptSpaceBuilder {
 
 	private SpaceBuilder<Character> builder;
 	private DynamicRule<Character> rule;
+	private List<Expression> ruleConditions;
+	private List<Character> ruleStates;
 	private DynamicStateFactory<Character> stateFactory;
 	private Mode actualMode;
 	private int width;
 	private int height;
 	private Object[] characterSpace;
+	/**
+	 * The states of the cells, row by row, when the description of the cells
+	 * contains no separator (<code>null</code> otherwise).
+	 */
+	private char[] cellStates;
+	/**
+	 * The description of the cells when it contains separators
+	 * (<code>null</code> otherwise).
+	 */
+	private StringBuilder cellsDescription;
+	/**
+	 * The executor used to build the cells in parallel, <code>null</code> to
+	 * build them sequentially.
+	 */
+	private ExecutorService executorService = null;
+	/**
+	 * The number of tasks the cells are split into when they are built in
+	 * parallel, 0 to use the default of the {@link SpaceBuilder}.
+	 */
+	private int parallelTasks = 0;
 
 	/**
 	 * Create a new builder.
@@ -267,43 +291,60 @@ public class ScriptSpaceBuilder {
 		// do nothing
 	}
 
+	/**
+	 * Give an executor to build the cells of the next spaces in parallel (see
+	 * {@link SpaceBuilder#setExecutorService(ExecutorService)}). The cells
+	 * only read the parsed description to get their initial state, so they can
+	 * be customized by several threads at the same time.
+	 * 
+	 * @param executorService
+	 *            the executor to use, <code>null</code> to build the cells
+	 *            sequentially
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	/**
+	 * 
+	 * @param parallelTasks
+	 *            the number of tasks the cells are split into when an executor
+	 *            is given (see {@link SpaceBuilder#setParallelTasks(int)})
+	 */
+	public void setParallelTasks(int parallelTasks) {
+		if (parallelTasks < 1) {
+			throw new IllegalArgumentException(
+					"At least one task is needed, " + parallelTasks
+							+ " is given.");
+		}
+		this.parallelTasks = parallelTasks;
+	}
+
 	/**
 	 * This method is equivalent to {@link #createSpaceFromString(String)},
-	 * excepted it takes the description from a file.
+	 * excepted it takes the description from a file. The file is read through
+	 * a {@link MappedFileReader}, so it is never loaded entirely in memory.
 	 * 
 	 * @param filePath
 	 *            the path to the script file
 	 * @return the created space
 	 */
 	public void createSpaceFromFile(File file) {
-		BufferedReader in;
+		Reader reader;
 		try {
-			in = new BufferedReader(new FileReader(file));
-		} catch (FileNotFoundException e) {
+			reader = new MappedFileReader(file);
+		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
-		String line;
-		String description = "";
-		actualMode = null;
 		try {
-			while ((line = in.readLine()) != null) {
-				description += line + "\n";
-			}
-		} catch (IOException e) {
+			createSpaceFromReader(reader);
+		} finally {
 			try {
-				in.close();
-			} catch (IOException e1) {
-				throw new RuntimeException(e1);
+				reader.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
 			}
-			throw new RuntimeException(e);
 		}
-		try {
-			in.close();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-
-		createSpaceFromString(description);
 	}
 
 	/**
@@ -314,27 +355,51 @@ public class ScriptSpaceBuilder {
 	 *            the description to consider
 	 */
 	public void createSpaceFromString(String description) {
+		createSpaceFromReader(new StringReader(description));
+	}
+
+	/**
+	 * Create the space reading its description line by line. Each section is
+	 * parsed while it is read and, when the cells are described without
+	 * separator (1 or 2 dimensions), their states are stored directly in an
+	 * array read when the cells are created. The reader is not closed by this
+	 * method.
+	 * 
+	 * @param reader
+	 *            the reader giving the description to consider
+	 * @see #createSpaceFromString(String)
+	 */
+	public void createSpaceFromReader(Reader reader) {
 		try {
 			width = 0;
 			height = 0;
+			characterSpace = null;
+			cellStates = new char[0];
+			cellsDescription = null;
 			builder = new SpaceBuilder<Character>();
+			builder.setExecutorService(executorService);
+			if (parallelTasks > 0) {
+				builder.setParallelTasks(parallelTasks);
+			}
 			rule = new DynamicRule<Character>();
+			ruleConditions = new ArrayList<Expression>();
+			ruleStates = new ArrayList<Character>();
 			stateFactory = new DynamicStateFactory<Character>() {
 				public void customize(ICell<Character> cell) {
 					customizeCell(cell);
 				};
 			};
 
-			BufferedReader in = new BufferedReader(
-					new StringReader(description));
+			BufferedReader in = new BufferedReader(reader);
 			String line;
-			String cellsDescription = "";
 			actualMode = null;
 			while ((line = in.readLine()) != null) {
 				line = line.trim();
 				if (line.length() == 0) {
 					continue;
-				} else if (line.matches("^\\[.+\\]$")) {
+				} else if (line.charAt(0) == '['
+						&& line.charAt(line.length() - 1) == ']'
+						&& line.length() > 2) {
 					switchMode(line);
 				} else if (actualMode == Mode.CONFIG
 						&& line.matches("^[^=]+=.+$")) {
@@ -343,24 +408,34 @@ public class ScriptSpaceBuilder {
 				} else if (actualMode == Mode.RULE) {
 					addRule(line);
 				} else if (actualMode == Mode.CELLS) {
-					cellsDescription = addCells(cellsDescription, line);
+					addCells(line);
 				} else {
 					throw new BadFileContentException("Unparsable line : "
 							+ line);
 				}
 			}
-			in.close();
 
-			characterSpace = translateDescriptionInSpace(cellsDescription);
-
-			builder.setRule(rule);
+			builder.setRule(compileRule());
 			builder.setStateFactory(stateFactory);
 			builder.createNewSpace();
-			Object reference = characterSpace;
-			while (reference instanceof Object[]) {
-				Object[] array = (Object[]) reference;
-				builder.addDimension(array.length);
-				reference = array[0];
+			if (cellsDescription == null && height > 0) {
+				if (width > 1 && height > 1) {
+					builder.addDimension(height);
+					builder.addDimension(width);
+				} else {
+					builder.addDimension(width * height);
+				}
+			} else {
+				String description = cellsDescription == null ? ""
+						: cellsDescription.toString();
+				characterSpace = translateDescriptionInSpace(description);
+				cellsDescription = null;
+				Object reference = characterSpace;
+				while (reference instanceof Object[]) {
+					Object[] array = (Object[]) reference;
+					builder.addDimension(array.length);
+					reference = array[0];
+				}
 			}
 			builder.finalizeSpace();
 		} catch (Exception e) {
@@ -370,6 +445,14 @@ public class ScriptSpaceBuilder {
 
 	protected void customizeCell(ICell<Character> cell) {
 		Coords coords = cell.getCoords();
+		if (characterSpace == null) {
+			int index = coords.get(0);
+			if (coords.getDimensions() > 1) {
+				index = index * width + coords.get(1);
+			}
+			cell.setCurrentState(cellStates[index]);
+			return;
+		}
 		Object reference = characterSpace;
 		for (int dimension = 0; dimension < coords.getDimensions(); dimension++) {
 			int coord = coords.get(dimension);
@@ -716,16 +799,61 @@ public class ScriptSpaceBuilder {
 		return stateFactory.getPossibleStates().contains(character);
 	}
 
-	private String addCells(String cellsDescription, String line) {
+	/**
+	 * Add a row of cells. As long as the rows contain only known states, they
+	 * are stored directly in {@link #cellStates}, otherwise the description is
+	 * kept as text to find the separators once all the rows are read.
+	 * 
+	 * @param line
+	 *            the row to add
+	 */
+	private void addCells(String line) {
 		if (width == 0) {
 			width = line.length();
 		} else if (width != line.length()) {
 			throw new BadFileContentException(
 					"the cell space must have a constant width.");
 		}
-		cellsDescription += line + "\n";
+
+		if (cellsDescription == null && isOnlyStates(line)) {
+			int start = height * width;
+			if (start + width > cellStates.length) {
+				long capacity = Math.max(2L * cellStates.length, start + width);
+				if (capacity > Integer.MAX_VALUE) {
+					throw new BadFileContentException(
+							"the cell space is too big.");
+				}
+				char[] states = new char[(int) capacity];
+				System.arraycopy(cellStates, 0, states, 0, start);
+				cellStates = states;
+			}
+			line.getChars(0, width, cellStates, start);
+		} else {
+			if (cellsDescription == null) {
+				cellsDescription = new StringBuilder();
+				for (int row = 0; row < height; row++) {
+					cellsDescription.append(cellStates, row * width, width)
+							.append('\n');
+				}
+				cellStates = null;
+			}
+			cellsDescription.append(line).append('\n');
+		}
 		height++;
-		return cellsDescription;
+	}
+
+	private boolean isOnlyStates(String line) {
+		StringBuilder builder = new StringBuilder();
+		for (Character state : stateFactory.getPossibleStates()) {
+			builder.append(state);
+		}
+		String states = builder.toString();
+		for (int index = 0; index < line.length(); index++) {
+			if (states.indexOf(line.charAt(index)) < 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private void addRule(String rulePart) {
@@ -748,11 +876,12 @@ public class ScriptSpaceBuilder {
 		}
 
 		// complete rule
+		ruleConditions.add(expression);
+		ruleStates.add(assignedState);
 		rule.addPart(new RulePart<Character>() {
 			@Override
 			public boolean isVerifiedBy(ICell<Character> cell) {
-				ExpressionHelper.setExpressionForOriginCell(expression, cell);
-				return expression.evaluate();
+				return expression.evaluate(cell);
 			}
 
 			@Override
@@ -762,6 +891,23 @@ public class ScriptSpaceBuilder {
 		});
 	}
 
+	/**
+	 * Compile the rule, if possible, so the expressions are not evaluated for
+	 * each cell.
+	 * 
+	 * @return the rule to give to the cells
+	 * @see CompiledRule
+	 */
+	private IRule<Character> compileRule() {
+		for (Expression condition : ruleConditions) {
+			if (!CompiledRule.isCompilable(condition)) {
+				return rule;
+			}
+		}
+		return new CompiledRule(ruleConditions, ruleStates,
+				stateFactory.getPossibleStates());
+	}
+
 	private void saveConfig(String key, String value) {
 		if (key.equalsIgnoreCase("states")) {
 			for (int i = 0; i < value.length(); i++) {
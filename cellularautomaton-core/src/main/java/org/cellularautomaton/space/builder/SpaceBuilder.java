@@ -1,9 +1,15 @@
 package org.cellularautomaton.space.builder;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.cellularautomaton.cell.CellFactory;
 import org.cellularautomaton.cell.ICell;
@@ -11,9 +17,14 @@ import org.cellularautomaton.optimization.Optimizable;
 import org.cellularautomaton.optimization.Optimization;
 import org.cellularautomaton.optimization.OptimizationManager;
 import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ArraySpace;
+import org.cellularautomaton.space.BitSpace;
 import org.cellularautomaton.space.GenericSpace;
 import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.SparseSpace;
 import org.cellularautomaton.state.IStateFactory;
+import org.cellularautomaton.util.Coords;
 
 /**
  * A space builder allows to create a complete space of cells. The number of
@@ -30,6 +41,45 @@ import org.cellularautomaton.state.IStateFactory;
  */
 public class SpaceBuilder<StateType> implements
 		Optimizable<SpaceBuilder<StateType>> {
+	/**
+	 * The different ways to store the cells of the built space.
+	 * 
+	 * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+	 * 
+	 */
+	public static enum Storage {
+		/**
+		 * Each cell is an object created by the cell factory and linked to the
+		 * cells around. The space is instantiated with
+		 * {@link SpaceBuilder#instantiateEmptySpace()} and its cells are
+		 * created and linked in one pass when the space is finalized.
+		 */
+		LINKED,
+		/**
+		 * The states of the cells are stored in flat arrays (see
+		 * {@link ArraySpace}). The cell factory is not used and all the cells
+		 * share the same rule.
+		 */
+		ARRAY,
+		/**
+		 * Each cell is stored as a single bit (see {@link BitSpace}). The space
+		 * must have 2 dimensions, the state factory must give exactly 2 states
+		 * and the cells cannot remember their previous states. If the rule is
+		 * an {@link OuterTotalisticRule}, its dead and alive states are used,
+		 * otherwise the default state of the factory is the dead one.
+		 */
+		BITS,
+		/**
+		 * The cells are stored by chunks allocated on demand (see
+		 * {@link SparseSpace}), so the space has no bounds. The dimensions
+		 * added only give the region initialized by the state factory (the
+		 * cyclic flags are ignored), the cells out of this region having the
+		 * default state of the factory. The cells cannot remember their
+		 * previous states.
+		 */
+		SPARSE
+	}
+
 	/**
 	 * The factory used to create the space of cells.
 	 */
@@ -38,6 +88,18 @@ public class SpaceBuilder<StateType> implements
 	 * The lengths of each dimension.
 	 */
 	private final ArrayList<Integer> dimensionLengths;
+	/**
+	 * Tell for each dimension if its last cells loop to the firsts.
+	 */
+	private final ArrayList<Boolean> dimensionCycles;
+	/**
+	 * The way to store the cells of the next spaces.
+	 */
+	private Storage storage;
+	/**
+	 * The way to store the cells of the current space.
+	 */
+	private Storage spaceStorage;
 	/**
 	 * The state factory used to initialize the cells.
 	 */
@@ -52,6 +114,16 @@ public class SpaceBuilder<StateType> implements
 	 * @see #finalizeSpace()
 	 */
 	private boolean isSpaceFinalized;
+	/**
+	 * The executor used to build the cells in parallel, <code>null</code> to
+	 * build them sequentially.
+	 */
+	private ExecutorService executorService = null;
+	/**
+	 * The number of tasks the cells are split into when they are built in
+	 * parallel.
+	 */
+	private int parallelTasks = Runtime.getRuntime().availableProcessors();
 	/**
 	 * The optimizations used by this builder.
 	 */
@@ -64,11 +136,14 @@ public class SpaceBuilder<StateType> implements
 	 * <li>a basic cell factory (creating generic cells)</li>
 	 * <li>a memory size of 1</li>
 	 * <li>a static rule</li>
+	 * <li>a linked storage of the cells</li>
 	 * </ul>
 	 */
 	public SpaceBuilder() {
 		cellFactory = new CellFactory<StateType>();
 		dimensionLengths = new ArrayList<Integer>();
+		dimensionCycles = new ArrayList<Boolean>();
+		storage = Storage.LINKED;
 		optimizations.setOwner(this);
 		isSpaceFinalized = false;
 	}
@@ -82,7 +157,10 @@ public class SpaceBuilder<StateType> implements
 	 */
 	public SpaceBuilder<StateType> createNewSpace() {
 		dimensionLengths.clear();
-		space = instantiateEmptySpace();
+		dimensionCycles.clear();
+		spaceStorage = storage;
+		space = spaceStorage == Storage.LINKED ? instantiateEmptySpace()
+				: null;
 		isSpaceFinalized = false;
 		return this;
 	}
@@ -109,11 +187,12 @@ public class SpaceBuilder<StateType> implements
 
 	/**
 	 * <p>
-	 * This method allows to add a dimension and to fill it with cells. The
-	 * length of the dimension indicate the number of cells on this dimension.
-	 * The coordinates of these cells go from 0 to <code>length - 1</code> on
-	 * the new dimension. When no more dimensions (and cells) are needed, you
-	 * can finalize and get the space.
+	 * This method allows to add a dimension to the space. The length of the
+	 * dimension indicate the number of cells on this dimension. The
+	 * coordinates of these cells go from 0 to <code>length - 1</code> on the
+	 * new dimension. When no more dimensions are needed, you can finalize and
+	 * get the space : the cells are created only at this moment, for all the
+	 * dimensions at once.
 	 * </p>
 	 * <p>
 	 * As creating a new dimension with <code>length = 1</code> implies
@@ -147,136 +226,379 @@ public class SpaceBuilder<StateType> implements
 		if (isSpaceFinalized()) {
 			throw new IllegalStateException("the space is already finalized");
 		}
+		dimensionLengths.add(length);
+		dimensionCycles.add(cyclic);
+		return this;
+	}
 
-		if (space.isEmpty()) {
-			space.setOrigin(cellFactory.createCell());
+	/**
+	 * Create the cells of the current space and link them. The cells are
+	 * ordered by their coordinates (the last dimension varying first), so the
+	 * neighbors of a cell are found by computing their rank instead of
+	 * searching them in the space. The cells are first created, then each
+	 * cell is linked to its neighbors, both steps being split by ranges of
+	 * ranks if an executor is given.
+	 * 
+	 * @return the cells of the space, ordered by their coordinates
+	 * @throws IllegalStateException
+	 *             if the space has too much cells to be stored in an array
+	 */
+	private List<ICell<StateType>> createLinkedCells() {
+		final int[] lengths = getLengths();
+		final boolean[] cycles = getCycles();
+		final int dimensions = lengths.length;
+		if (dimensions == 0) {
+			return Collections.emptyList();
 		}
 
-		dimensionLengths.add(length);
-		final Collection<ICell<StateType>> starts = space.getAllCells();
-		generateDimensionFrom(starts, length);
-
-		if (cyclic) {
-			cycle(starts, dimensionLengths.size() - 1);
+		// the number of ranks between two neighbors on each dimension
+		final int[] strides = new int[dimensions];
+		long size = 1;
+		for (int dimension = dimensions - 1; dimension >= 0; dimension--) {
+			strides[dimension] = (int) size;
+			size *= lengths[dimension];
+			if (size > Integer.MAX_VALUE) {
+				throw new IllegalStateException(
+						"The space cannot have more than " + Integer.MAX_VALUE
+								+ " cells.");
+			}
 		}
 
-		return this;
+		@SuppressWarnings("unchecked")
+		final ICell<StateType>[] cells = new ICell[(int) size];
+		executeByRanges(cells.length, new RangeTask() {
+			public void execute(int start, int stop) {
+				int[] coords = getCoordsOfRank(start, lengths);
+				for (int rank = start; rank < stop; rank++) {
+					ICell<StateType> cell = cellFactory.createCell();
+					cell.setDimensions(dimensions);
+					for (int dimension = 0; dimension < dimensions; dimension++) {
+						cell.getCoords().set(dimension, coords[dimension]);
+					}
+					cells[rank] = cell;
+					moveToNextRank(coords, lengths);
+				}
+			}
+		});
+		executeByRanges(cells.length, new RangeTask() {
+			public void execute(int start, int stop) {
+				int[] coords = getCoordsOfRank(start, lengths);
+				for (int rank = start; rank < stop; rank++) {
+					// each task modifies only the links of its own cells
+					ICell<StateType> cell = cells[rank];
+					for (int dimension = 0; dimension < dimensions; dimension++) {
+						int stride = strides[dimension];
+						int last = lengths[dimension] - 1;
+						int coord = coords[dimension];
+						if (coord > 0) {
+							cell.setPreviousCellOnDimension(dimension,
+									cells[rank - stride]);
+						} else if (cycles[dimension]) {
+							cell.setPreviousCellOnDimension(dimension,
+									cells[rank + last * stride]);
+						}
+						if (coord < last) {
+							cell.setNextCellOnDimension(dimension,
+									cells[rank + stride]);
+						} else if (cycles[dimension]) {
+							cell.setNextCellOnDimension(dimension,
+									cells[rank - last * stride]);
+						}
+					}
+					moveToNextRank(coords, lengths);
+				}
+			}
+		});
+		return Arrays.asList(cells);
 	}
 
 	/**
-	 * This method make a loop with the given dimension, linking the last cells
-	 * of the dimension to the first ones.
 	 * 
-	 * @param startCells
-	 *            the cells which are at the beginning of the dimension
-	 * @param dimension
-	 *            the dimension to consider
+	 * @param rank
+	 *            the rank of a cell, its cells being ordered by their
+	 *            coordinates
+	 * @param lengths
+	 *            the lengths of the dimensions of the space
+	 * @return the coordinates of the cell
 	 */
-	private void cycle(Collection<ICell<StateType>> startCells, int dimension) {
-		for (ICell<StateType> start : startCells) {
-			ICell<StateType> stop = start;
-			while (stop.getNextCellOnDimension(dimension) != null) {
-				stop = stop.getNextCellOnDimension(dimension);
-			}
-			stop.setNextCellOnDimension(dimension, start);
-			start.setPreviousCellOnDimension(dimension, stop);
+	private static int[] getCoordsOfRank(int rank, int[] lengths) {
+		int[] coords = new int[lengths.length];
+		for (int dimension = lengths.length - 1; dimension >= 0; dimension--) {
+			coords[dimension] = rank % lengths[dimension];
+			rank /= lengths[dimension];
 		}
+		return coords;
 	}
 
 	/**
-	 * This method create cells on a new dimension, considering the given cells
-	 * as the first cells of the dimension. <code>length - 1</code> new cells
-	 * are added (and linked) to each of the first cells. The generated
-	 * dimension is not cyclic.
+	 * Change the coordinates of a cell to the coordinates of the cell having
+	 * the next rank.
 	 * 
-	 * @param startCells
-	 * @param length
+	 * @param coords
+	 *            the coordinates to change
+	 * @param lengths
+	 *            the lengths of the dimensions of the space
 	 */
-	private void generateDimensionFrom(Collection<ICell<StateType>> startCells,
-			int length) {
-		// dimension characteristics
-		int actualDimension = dimensionLengths.size() - 1;
-
-		// expansion
-		for (int rank = 1; rank < length; rank++) {
-			// creation of the next layer of cells
-			Collection<ICell<StateType>> added = new HashSet<ICell<StateType>>();
-			for (ICell<StateType> cellBefore : startCells) {
-				ICell<StateType> cellAfter = cellFactory.createCell();
-
-				if (rank == 1) {
-					cellBefore.setDimensions(actualDimension + 1);
-				}
-				cellAfter.setDimensions(cellBefore.getDimensions());
-				cellAfter.getCoords().setAll(cellBefore.getCoords().getAll());
-				cellAfter.getCoords().set(actualDimension, rank);
-
-				linkCells(cellBefore, cellAfter, actualDimension);
-
-				added.add(cellAfter);
-			}
+	private static void moveToNextRank(int[] coords, int[] lengths) {
+		int dimension = coords.length - 1;
+		while (dimension >= 0 && coords[dimension] == lengths[dimension] - 1) {
+			coords[dimension] = 0;
+			dimension--;
+		}
+		if (dimension >= 0) {
+			coords[dimension]++;
+		}
+	}
 
-			// linking of the new layer
-			for (ICell<StateType> cellBefore : added) {
-				ICell<StateType> ref = cellBefore
-						.getPreviousCellOnDimension(actualDimension);
-				for (int dim = 0; dim < actualDimension; dim++) {
-					if (ref.getNextCellOnDimension(dim) != null
-							&& ref.getNextCellOnDimension(dim) != ref) {
-						ICell<StateType> cellAfter = ref
-								.getNextCellOnDimension(dim)
-								.getNextCellOnDimension(actualDimension);
-
-						linkCells(cellBefore, cellAfter, dim);
+	/**
+	 * Execute a task on the ranks from 0 to <code>size - 1</code>. If an
+	 * executor is given, the ranks are split in several ranges executed in
+	 * parallel (see {@link #setParallelTasks(int)}), otherwise they are
+	 * executed in a single range.
+	 * 
+	 * @param size
+	 *            the number of ranks
+	 * @param task
+	 *            the task to execute on each range
+	 * @see #setExecutorService(ExecutorService)
+	 */
+	private void executeByRanges(int size, final RangeTask task) {
+		if (executorService == null || parallelTasks < 2 || size < 2) {
+			task.execute(0, size);
+		} else {
+			int tasks = Math.min(parallelTasks, size);
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks);
+			for (int index = 0; index < tasks; index++) {
+				final int start = (int) ((long) size * index / tasks);
+				final int stop = (int) ((long) size * (index + 1) / tasks);
+				futures.add(executorService.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						task.execute(start, stop);
+						return null;
 					}
-				}
+				}));
 			}
+			waitFor(futures);
+		}
+	}
 
-			// preparation of the next layer
-			startCells = added;
+	/**
+	 * Wait for the end of the given tasks. If a task has failed, its exception
+	 * is thrown back in the current thread.
+	 * 
+	 * @param futures
+	 *            the tasks to wait for
+	 */
+	private void waitFor(List<Future<Void>> futures) {
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
 		}
 	}
 
 	/**
-	 * Links the first cell to the second.
+	 * A task executed on a range of ranks.
+	 * 
+	 * @author Matthieu Vergne (matthieu.vergne@gmail.com)
 	 * 
-	 * @param cellBefore
-	 *            the previous cell
-	 * @param cellAfter
-	 *            the next cell
-	 * @param dimension
-	 *            the dimension to consider
 	 */
-	private void linkCells(ICell<StateType> cellBefore,
-			ICell<StateType> cellAfter, int dimension) {
-		cellBefore.setNextCellOnDimension(dimension, cellAfter);
-		cellAfter.setPreviousCellOnDimension(dimension, cellBefore);
+	private static interface RangeTask {
+		/**
+		 * 
+		 * @param start
+		 *            the first rank of the range
+		 * @param stop
+		 *            the rank following the last rank of the range
+		 */
+		public void execute(int start, int stop);
 	}
 
 	/**
 	 * This method finalize the space creation. Since this method is called, the
-	 * space of cells should not be modified. A complete check is done on the
-	 * space in order to configure the last properties of each cell (like their
-	 * current state or set their coordinates as not mutable).
+	 * space of cells should not be modified. The cells of a linked space are
+	 * created, then a complete check is done on the space in order to
+	 * configure the last properties of each cell (like their current state or
+	 * set their coordinates as not mutable). The cells of a
+	 * {@link GenericSpace} are also indexed by their coordinates. If an
+	 * executor is given, the cells of a linked space are created, linked and
+	 * customized in parallel. The cells of the other storages share their
+	 * data, so they are always customized sequentially.
 	 * 
 	 * @return this builder
+	 * @throws IllegalStateException
+	 *             if the space cannot be stored as requested
 	 */
 	public SpaceBuilder<StateType> finalizeSpace() {
-		if (space == null) {
+		if (spaceStorage == null) {
 			throw new IllegalStateException("No space has been created yet.");
 		}
+		if (spaceStorage == Storage.ARRAY && !isSpaceFinalized()) {
+			space = instantiateArraySpace();
+		} else if (spaceStorage == Storage.BITS && !isSpaceFinalized()) {
+			space = instantiateBitSpace();
+		} else if (spaceStorage == Storage.SPARSE && !isSpaceFinalized()) {
+			space = instantiateSparseSpace();
+		}
 
-		for (Iterator<ICell<StateType>> iterator = space.iterator(); iterator
+		Iterable<ICell<StateType>> cells = space;
+		boolean isIndexed = false;
+		if (spaceStorage == Storage.LINKED && !isSpaceFinalized()) {
+			final List<ICell<StateType>> linkedCells = createLinkedCells();
+			if (space instanceof GenericSpace) {
+				((GenericSpace<StateType>) space).setCells(linkedCells);
+				isIndexed = true;
+			} else if (!linkedCells.isEmpty()) {
+				space.setOrigin(linkedCells.get(0));
+			}
+			executeByRanges(linkedCells.size(), new RangeTask() {
+				public void execute(int start, int stop) {
+					for (int rank = start; rank < stop; rank++) {
+						ICell<StateType> cell = linkedCells.get(rank);
+						cell.getCoords().setMutable(false);
+						stateFactory.customize(cell);
+					}
+				}
+			});
+			// the cells are already customized
+			cells = Collections.emptyList();
+		} else if (space instanceof SparseSpace) {
+			int[] max = getLengths();
+			for (int dimension = 0; dimension < max.length; dimension++) {
+				max[dimension]--;
+			}
+			cells = space.getCells(new Coords(new int[max.length]),
+					new Coords(max));
+		}
+		for (Iterator<ICell<StateType>> iterator = cells.iterator(); iterator
 				.hasNext();) {
 			ICell<StateType> cell = iterator.next();
 			cell.getCoords().setMutable(false);
 			stateFactory.customize(cell);
 		}
+		if (space instanceof GenericSpace && !isIndexed) {
+			((GenericSpace<StateType>) space).indexCells();
+		}
 		isSpaceFinalized = true;
 
 		return this;
 	}
 
+	/**
+	 * Create an array space corresponding to the dimensions added to the
+	 * current space.
+	 * 
+	 * @return the array space, filled with the initial state
+	 */
+	private ArraySpace<StateType> instantiateArraySpace() {
+		return new ArraySpace<StateType>(stateFactory.getPossibleStates(),
+				cellFactory.getInitialState(), cellFactory.getMemorySize(),
+				cellFactory.getRule(), getLengths(), getCycles());
+	}
+
+	/**
+	 * Create a bit space corresponding to the dimensions added to the current
+	 * space.
+	 * 
+	 * @return the bit space, filled with the initial state
+	 * @throws IllegalStateException
+	 *             if the space cannot be stored as bits
+	 */
+	@SuppressWarnings("unchecked")
+	private BitSpace<StateType> instantiateBitSpace() {
+		List<StateType> states = new ArrayList<StateType>(
+				new LinkedHashSet<StateType>(stateFactory.getPossibleStates()));
+		if (states.size() != 2) {
+			throw new IllegalStateException(
+					"A bit space needs a state factory with 2 states, "
+							+ states.size() + " are given.");
+		}
+		if (dimensionLengths.size() != 2) {
+			throw new IllegalStateException("A bit space needs 2 dimensions, "
+					+ dimensionLengths.size() + " are given.");
+		}
+		if (cellFactory.getMemorySize() != 1) {
+			throw new IllegalStateException(
+					"A bit space needs a memory size of 1, "
+							+ cellFactory.getMemorySize() + " is given.");
+		}
+
+		IRule<StateType> rule = cellFactory.getRule();
+		StateType deadState;
+		StateType aliveState;
+		if (rule instanceof OuterTotalisticRule) {
+			deadState = ((OuterTotalisticRule<StateType>) rule).getDeadState();
+			aliveState = ((OuterTotalisticRule<StateType>) rule)
+					.getAliveState();
+			if (!states.contains(deadState) || !states.contains(aliveState)) {
+				throw new IllegalStateException("The states of the rule "
+						+ rule + " are not the states " + states
+						+ " of the state factory.");
+			}
+		} else {
+			deadState = stateFactory.getDefaultState();
+			states.remove(deadState);
+			aliveState = states.get(0);
+		}
+		return new BitSpace<StateType>(deadState, aliveState,
+				cellFactory.getInitialState(), rule, getLengths(), getCycles());
+	}
+
+	/**
+	 * Create a sparse space with the dimensions added to the current space.
+	 * 
+	 * @return the sparse space, filled with the default state
+	 * @throws IllegalStateException
+	 *             if the cells have to remember their previous states
+	 */
+	private SparseSpace<StateType> instantiateSparseSpace() {
+		if (cellFactory.getMemorySize() != 1) {
+			throw new IllegalStateException(
+					"A sparse space needs a memory size of 1, "
+							+ cellFactory.getMemorySize() + " is given.");
+		}
+		return new SparseSpace<StateType>(stateFactory.getPossibleStates(),
+				stateFactory.getDefaultState(), cellFactory.getRule(),
+				dimensionLengths.size());
+	}
+
+	/**
+	 * 
+	 * @return the lengths of the dimensions added to the current space
+	 */
+	private int[] getLengths() {
+		int[] lengths = new int[dimensionLengths.size()];
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			lengths[dimension] = dimensionLengths.get(dimension);
+		}
+		return lengths;
+	}
+
+	/**
+	 * 
+	 * @return the cyclic flags of the dimensions added to the current space
+	 */
+	private boolean[] getCycles() {
+		boolean[] cycles = new boolean[dimensionCycles.size()];
+		for (int dimension = 0; dimension < cycles.length; dimension++) {
+			cycles[dimension] = dimensionCycles.get(dimension);
+		}
+		return cycles;
+	}
+
 	/**
 	 * 
 	 * @return true if the space is finalized and ready to be gotten
@@ -368,6 +690,89 @@ public class SpaceBuilder<StateType> implements
 		return stateFactory;
 	}
 
+	/**
+	 * Select the way to store the cells of the spaces built after this call.
+	 * The current space (if there is) is not impacted, so this method should
+	 * be called before {@link #createNewSpace()}.
+	 * 
+	 * @param storage
+	 *            the way to store the cells
+	 * @return this builder
+	 */
+	public SpaceBuilder<StateType> setStorage(Storage storage) {
+		this.storage = storage;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return the way to store the cells of the spaces to build
+	 */
+	public Storage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * <p>
+	 * Give an executor to build the cells of the linked spaces in parallel.
+	 * The cells are split in several ranges of cells ordered by their
+	 * coordinates (see {@link #setParallelTasks(int)}) which are given to this
+	 * executor, to create the cells, to link them and to customize them. By
+	 * default, no executor is given and the cells are built sequentially.
+	 * </p>
+	 * <p>
+	 * <b>Be careful :</b> the cell factory and the state factory are then
+	 * called by several threads at the same time (see
+	 * {@link IStateFactory#customize(ICell)}). The executor is not shut down by
+	 * the builder.
+	 * </p>
+	 * 
+	 * @param executorService
+	 *            the executor to use, <code>null</code> to build the cells
+	 *            sequentially
+	 * @return this builder
+	 */
+	public SpaceBuilder<StateType> setExecutorService(
+			ExecutorService executorService) {
+		this.executorService = executorService;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return the executor used to build the cells in parallel,
+	 *         <code>null</code> if they are built sequentially
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * 
+	 * @param parallelTasks
+	 *            the number of tasks the cells are split into when an executor
+	 *            is given. Default value: the number of available processors.
+	 * @return this builder
+	 */
+	public SpaceBuilder<StateType> setParallelTasks(int parallelTasks) {
+		if (parallelTasks < 1) {
+			throw new IllegalArgumentException(
+					"At least one task is needed, " + parallelTasks
+							+ " is given.");
+		}
+		this.parallelTasks = parallelTasks;
+		return this;
+	}
+
+	/**
+	 * 
+	 * @return the number of tasks the cells are split into when an executor
+	 *         is given
+	 */
+	public int getParallelTasks() {
+		return parallelTasks;
+	}
+
 	/**
 	 * 
 	 * @return the cell factory used to fill the space
@@ -2,6 +2,8 @@ package org.cellularautomaton.space.builder.expression;
 
 import java.util.Iterator;
 
+import org.cellularautomaton.cell.ICell;
+
 public class AndExpression extends ComposedExpression {
 	public boolean evaluate() {
 		boolean isTrue = true;
@@ -11,4 +13,13 @@ public class AndExpression extends ComposedExpression {
 		}
 		return isTrue;
 	};
+
+	public boolean evaluate(ICell<Character> origin) {
+		boolean isTrue = true;
+		Iterator<Expression> iterator = getExpressions().iterator();
+		while (isTrue && iterator.hasNext()) {
+			isTrue = isTrue && iterator.next().evaluate(origin);
+		}
+		return isTrue;
+	};
 }
@@ -16,26 +16,41 @@ public class CellComparisonExpression implements Expression {
 
 	@Override
 	public boolean evaluate() {
+		return evaluate(getOrigin());
+	}
+
+	/**
+	 * The states of the targets are counted for each constraint, without
+	 * storing anything in the expression, so this method can be called by
+	 * several threads at the same time (as long as the expression is not
+	 * modified).
+	 */
+	@Override
+	public boolean evaluate(ICell<Character> origin) {
 		if (getConstraints() == null) {
 			throw new IllegalStateException("The reference is missing.");
-		} else if (getOrigin() == null) {
+		} else if (origin == null) {
 			throw new IllegalStateException("The origin cell is missing.");
 		} else if (getTargets().isEmpty()) {
 			throw new IllegalStateException("There is no target coords.");
 		} else {
-			Map<Character, Integer> values = new HashMap<Character, Integer>();
-			for (Coords target : targets) {
-				Character state = getOrigin().getRelativeCell(target.getAll())
-						.getCurrentState();
-				if (!values.containsKey(state)) {
-					values.put(state, 0);
-				}
-				values.put(state, values.get(state) + 1);
+			int size = targets.size();
+			Character[] states = new Character[size];
+			for (int index = 0; index < size; index++) {
+				states[index] = origin.getRelativeCell(
+						targets.get(index).getAll()).getCurrentState();
 			}
 
-			for (Character state : constraints.keySet()) {
-				if (!values.containsKey(state)
-						|| !values.get(state).equals(constraints.get(state))) {
+			for (Map.Entry<Character, Integer> constraint : constraints
+					.entrySet()) {
+				Character state = constraint.getKey();
+				int count = 0;
+				for (int index = 0; index < size; index++) {
+					if (state.equals(states[index])) {
+						count++;
+					}
+				}
+				if (count == 0 || count != constraint.getValue()) {
 					return false;
 				}
 			}
@@ -66,6 +81,13 @@ public class CellComparisonExpression implements Expression {
 		return origin;
 	}
 
+	/**
+	 * Set the cell used by {@link #evaluate()}. Prefer
+	 * {@link #evaluate(ICell)} when the expression can be shared.
+	 * 
+	 * @param origin
+	 *            the cell to evaluate the expression for
+	 */
 	public void setOrigin(ICell<Character> origin) {
 		this.origin = origin;
 	}
@@ -0,0 +1,418 @@
+package org.cellularautomaton.space.builder.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.rule.DynamicRule;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.util.Coords;
+
+/**
+ * <p>
+ * A compiled rule is the equivalent of a {@link DynamicRule} made of
+ * expressions (like the rules of the scripts), but it evaluates them without
+ * walking the expressions for each cell. At the creation, the expressions are
+ * analysed to know all the cells they look at (which gives the
+ * {@link Neighborhood} of the rule) and are translated into conditions on the
+ * codes of the states of these cells (the index of the state in the list of
+ * the possible states).
+ * </p>
+ * <p>
+ * When the number of combinations of states in the neighborhood is small
+ * enough (see {@link #MAX_TABLE_SIZE}), all of them are evaluated at the
+ * creation and the next state of a cell is simply read in a table. Otherwise,
+ * the conditions are evaluated directly on the codes of the neighbors.
+ * </p>
+ * <p>
+ * Like the {@link DynamicRule}, the first verified condition gives the next
+ * state and the cell keeps its current state if no condition is verified.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class CompiledRule implements IRule<Character> {
+	/**
+	 * The greatest number of combinations which can be stored in the table of
+	 * the next states.
+	 */
+	public static final int MAX_TABLE_SIZE = 1 << 22;
+	/**
+	 * The value used in the table for the combinations which do not verify
+	 * any condition (the cell keeps its current state).
+	 */
+	private static final byte KEEP_STATE = -1;
+	/**
+	 * The possible states, the index of a state being its code.
+	 */
+	private final Character[] states;
+	/**
+	 * The code of each state, indexed by the character of the state, -1 for
+	 * the unknown characters.
+	 */
+	private final int[] codes;
+	/**
+	 * The cells looked at by the conditions.
+	 */
+	private final Neighborhood neighborhood;
+	/**
+	 * The condition of each part of the rule.
+	 */
+	private final Condition[] conditions;
+	/**
+	 * The code of the next state of each part of the rule.
+	 */
+	private final int[] nextCodes;
+	/**
+	 * The code of the next state of each combination of states (the code of
+	 * the first neighbor being the least significant digit), <code>null</code>
+	 * if there is too much combinations.
+	 */
+	private final byte[] table;
+	/**
+	 * The rule to use for the cells which have a state unknown by this rule.
+	 */
+	private final DynamicRule<Character> fallback = new DynamicRule<Character>();
+
+	/**
+	 * Compile the parts of a rule.
+	 * 
+	 * @param conditions
+	 *            the condition of each part, in the order they have to be
+	 *            checked
+	 * @param nextStates
+	 *            the next state of each part
+	 * @param states
+	 *            the possible states of the cells
+	 * @throws IllegalArgumentException
+	 *             if a condition cannot be compiled (see
+	 *             {@link #isCompilable(Expression)}) or a next state is not a
+	 *             possible state
+	 */
+	public CompiledRule(List<Expression> conditions,
+			List<Character> nextStates, Collection<Character> states) {
+		if (conditions.size() != nextStates.size()) {
+			throw new IllegalArgumentException("There is "
+					+ conditions.size() + " conditions for "
+					+ nextStates.size() + " next states.");
+		}
+		this.states = states.toArray(new Character[states.size()]);
+		int maxCharacter = 0;
+		for (Character state : this.states) {
+			maxCharacter = Math.max(maxCharacter, state);
+		}
+		codes = new int[maxCharacter + 1];
+		Arrays.fill(codes, -1);
+		for (int code = this.states.length - 1; code >= 0; code--) {
+			codes[this.states[code]] = code;
+		}
+
+		List<Coords> offsets = new ArrayList<Coords>();
+		Map<Coords, Integer> positions = new HashMap<Coords, Integer>();
+		this.conditions = new Condition[conditions.size()];
+		this.nextCodes = new int[nextStates.size()];
+		for (int part = 0; part < conditions.size(); part++) {
+			this.conditions[part] = compile(conditions.get(part), offsets,
+					positions);
+			Character nextState = nextStates.get(part);
+			if (nextState >= codes.length || codes[nextState] < 0) {
+				throw new IllegalArgumentException(nextState
+						+ " is not a known state.");
+			}
+			this.nextCodes[part] = codes[nextState];
+			fallback.addPart(createPart(conditions.get(part), nextState));
+		}
+		int[][] neighbors = new int[offsets.size()][];
+		for (int index = 0; index < neighbors.length; index++) {
+			neighbors[index] = offsets.get(index).getAll();
+		}
+		neighborhood = new Neighborhood(neighbors);
+		table = createTable();
+	}
+
+	/**
+	 * 
+	 * @param expression
+	 *            an expression
+	 * @return true if the expression is only made of
+	 *         {@link CellComparisonExpression}, {@link AndExpression} and
+	 *         {@link OrExpression}, false otherwise
+	 */
+	public static boolean isCompilable(Expression expression) {
+		if (expression instanceof AndExpression
+				|| expression instanceof OrExpression) {
+			for (Expression subexpression : ((ComposedExpression) expression)
+					.getExpressions()) {
+				if (!isCompilable(subexpression)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (expression instanceof CellComparisonExpression) {
+			return !((CellComparisonExpression) expression).getTargets()
+					.isEmpty();
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * 
+	 * @param expression
+	 *            the expression to translate
+	 * @param offsets
+	 *            the offsets already known, completed with the new ones
+	 * @param positions
+	 *            the position of each offset in the list of offsets
+	 * @return the condition corresponding to the expression
+	 */
+	private Condition compile(Expression expression, List<Coords> offsets,
+			Map<Coords, Integer> positions) {
+		if (!isCompilable(expression)) {
+			throw new IllegalArgumentException("The expression " + expression
+					+ " cannot be compiled.");
+		} else if (expression instanceof CellComparisonExpression) {
+			CellComparisonExpression comparison = (CellComparisonExpression) expression;
+			Collection<Coords> targets = comparison.getTargets();
+			int[] neighbors = new int[targets.size()];
+			int index = 0;
+			for (Coords target : targets) {
+				Integer position = positions.get(target);
+				if (position == null) {
+					position = offsets.size();
+					Coords offset = new Coords(target.getAll());
+					offset.setMutable(false);
+					offsets.add(offset);
+					positions.put(offset, position);
+				}
+				neighbors[index++] = position;
+			}
+			Map<Character, Integer> constraints = comparison.getConstraints();
+			int[] constrainedCodes = new int[constraints.size()];
+			int[] counts = new int[constraints.size()];
+			index = 0;
+			for (Map.Entry<Character, Integer> constraint : constraints
+					.entrySet()) {
+				Character state = constraint.getKey();
+				constrainedCodes[index] = state < codes.length ? codes[state]
+						: -1;
+				counts[index] = constraint.getValue();
+				index++;
+			}
+			return new ComparisonCondition(neighbors, constrainedCodes, counts);
+		} else {
+			Collection<Expression> expressions = ((ComposedExpression) expression)
+					.getExpressions();
+			Condition[] subconditions = new Condition[expressions.size()];
+			int index = 0;
+			for (Expression subexpression : expressions) {
+				subconditions[index++] = compile(subexpression, offsets,
+						positions);
+			}
+			return new ComposedCondition(subconditions,
+					expression instanceof AndExpression);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the table of the next codes for all the combinations of states,
+	 *         <code>null</code> if there is too much of them
+	 */
+	private byte[] createTable() {
+		if (states.length > Byte.MAX_VALUE) {
+			return null;
+		}
+		long size = 1;
+		for (int index = 0; index < neighborhood.size(); index++) {
+			size *= states.length;
+			if (size > MAX_TABLE_SIZE) {
+				return null;
+			}
+		}
+
+		byte[] table = new byte[(int) size];
+		int[] combination = new int[neighborhood.size()];
+		for (int key = 0; key < table.length; key++) {
+			table[key] = (byte) getNextCode(combination);
+			for (int index = 0; index < combination.length; index++) {
+				combination[index]++;
+				if (combination[index] < states.length) {
+					break;
+				} else {
+					combination[index] = 0;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * 
+	 * @param neighborCodes
+	 *            the code of the state of each neighbor
+	 * @return the code of the next state, {@link #KEEP_STATE} if no condition
+	 *         is verified
+	 */
+	private int getNextCode(int[] neighborCodes) {
+		for (int part = 0; part < conditions.length; part++) {
+			if (conditions[part].isVerifiedBy(neighborCodes)) {
+				return nextCodes[part];
+			}
+		}
+		return KEEP_STATE;
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            a state
+	 * @return the code of the state, -1 if it is not a possible state
+	 */
+	private int getCode(Character state) {
+		char character = state;
+		return character < codes.length ? codes[character] : -1;
+	}
+
+	/**
+	 * 
+	 * @return the cells looked at by this rule
+	 */
+	public Neighborhood getNeighborhood() {
+		return neighborhood;
+	}
+
+	/**
+	 * 
+	 * @return true if the next states are read in a precomputed table, false
+	 *         if the conditions are evaluated for each cell
+	 */
+	public boolean isTabulated() {
+		return table != null;
+	}
+
+	@Override
+	public Character calculateNextStateOf(ICell<Character> cell) {
+		List<ICell<Character>> neighbors = cell.getNeighbors(neighborhood);
+		int nextCode;
+		if (table != null) {
+			int key = 0;
+			for (int index = neighbors.size() - 1; index >= 0; index--) {
+				int code = getCode(neighbors.get(index).getCurrentState());
+				if (code < 0) {
+					return fallback.calculateNextStateOf(cell);
+				}
+				key = key * states.length + code;
+			}
+			nextCode = table[key];
+		} else {
+			int[] neighborCodes = new int[neighbors.size()];
+			for (int index = 0; index < neighborCodes.length; index++) {
+				int code = getCode(neighbors.get(index).getCurrentState());
+				if (code < 0) {
+					return fallback.calculateNextStateOf(cell);
+				}
+				neighborCodes[index] = code;
+			}
+			nextCode = getNextCode(neighborCodes);
+		}
+		return nextCode == KEEP_STATE ? cell.getCurrentState()
+				: states[nextCode];
+	}
+
+	/**
+	 * 
+	 * @return a part evaluating the expression on the cells, like done in the
+	 *         scripts without compilation
+	 */
+	private static DynamicRule.RulePart<Character> createPart(
+			final Expression expression, final Character nextState) {
+		return new DynamicRule.RulePart<Character>() {
+			@Override
+			public boolean isVerifiedBy(ICell<Character> cell) {
+				return expression.evaluate(cell);
+			}
+
+			@Override
+			public Character getAssignedState() {
+				return nextState;
+			}
+		};
+	}
+
+	/**
+	 * A condition is the compiled version of an expression, evaluated on the
+	 * codes of the states of the neighbors.
+	 */
+	private static interface Condition {
+		/**
+		 * 
+		 * @param neighborCodes
+		 *            the code of the state of each neighbor
+		 * @return true if the condition is verified
+		 */
+		public boolean isVerifiedBy(int[] neighborCodes);
+	}
+
+	/**
+	 * Compiled version of {@link AndExpression} and {@link OrExpression}.
+	 */
+	private static class ComposedCondition implements Condition {
+		private final Condition[] conditions;
+		private final boolean isAnd;
+
+		public ComposedCondition(Condition[] conditions, boolean isAnd) {
+			this.conditions = conditions;
+			this.isAnd = isAnd;
+		}
+
+		@Override
+		public boolean isVerifiedBy(int[] neighborCodes) {
+			for (Condition condition : conditions) {
+				if (condition.isVerifiedBy(neighborCodes) != isAnd) {
+					return !isAnd;
+				}
+			}
+			return isAnd;
+		}
+	}
+
+	/**
+	 * Compiled version of {@link CellComparisonExpression}.
+	 */
+	private static class ComparisonCondition implements Condition {
+		private final int[] neighbors;
+		private final int[] codes;
+		private final int[] counts;
+
+		public ComparisonCondition(int[] neighbors, int[] codes, int[] counts) {
+			this.neighbors = neighbors;
+			this.codes = codes;
+			this.counts = counts;
+		}
+
+		@Override
+		public boolean isVerifiedBy(int[] neighborCodes) {
+			for (int constraint = 0; constraint < codes.length; constraint++) {
+				int code = codes[constraint];
+				int count = 0;
+				for (int neighbor : neighbors) {
+					if (neighborCodes[neighbor] == code) {
+						count++;
+					}
+				}
+				// like the expression, a state must be present to be counted
+				if (count == 0 || count != counts[constraint]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
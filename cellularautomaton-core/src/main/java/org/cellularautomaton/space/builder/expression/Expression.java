@@ -1,5 +1,18 @@
 package org.cellularautomaton.space.builder.expression;
 
+import org.cellularautomaton.cell.ICell;
+
 public interface Expression {
 	public boolean evaluate();
+
+	/**
+	 * Evaluate the expression for the given cell, without storing it in the
+	 * expression. Because no state is modified, the same expression can be
+	 * evaluated by several threads at the same time.
+	 * 
+	 * @param origin
+	 *            the cell to evaluate the expression for
+	 * @return the result of the evaluation
+	 */
+	public boolean evaluate(ICell<Character> origin);
 }
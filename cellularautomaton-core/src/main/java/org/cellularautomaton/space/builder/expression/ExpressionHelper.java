@@ -1,10 +1,12 @@
 package org.cellularautomaton.space.builder.expression;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.space.builder.BadFileContentException;
@@ -12,126 +14,91 @@ import org.cellularautomaton.util.Coords;
 
 public class ExpressionHelper {
 
-	private final static String regexRef = "(%[0-9]+%)";
-	private final static String regexCell = "(\\([+-]?[0-9]+(,[+-]?[0-9]+)*\\))";
-	private final static String regexCellSet = String.format("%s(\\+%s)*",
-			regexCell, regexCell);
-	private static String regexValue;
-	private static String regexValueSet;
-	private static String regexComparison;
-	private static String regexExpression;
-	private static String regexAndChain;
-	private static String regexOrChain;
-	private static String regexLeafParenthesis;
+	/**
+	 * The number of parsed rule parts kept by {@link #parseRulePart(String,
+	 * Collection)}.
+	 */
+	public static final int CACHE_SIZE = 256;
 
+	@SuppressWarnings("serial")
+	private static final Map<List<Object>, Expression> cache = new LinkedHashMap<List<Object>, Expression>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<List<Object>, Expression> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Parse a condition of a rule. The last parsed conditions are kept in a
+	 * cache, so parsing again the same text with the same states only copies
+	 * the cached expression. The returned expression is always a new one, so
+	 * it can be modified (for example by
+	 * {@link #setExpressionForOriginCell(Expression, ICell)}) without
+	 * impacting the other callers.
+	 * 
+	 * @param description
+	 *            the condition to parse
+	 * @param states
+	 *            the possible states
+	 * @return the expression corresponding to the condition
+	 * @throws BadFileContentException
+	 *             if the condition is not well written
+	 */
 	public static Expression parseRulePart(String description,
 			Collection<Character> states) {
-		initRegex(states);
-
-		description = description.replaceAll("\\s", "");
-		final List<Expression> expressionBuffer = new ArrayList<Expression>();
-
-		// compute expression
-		while (!description.matches(regexRef)) {
-			Matcher parenthesisMatcher = Pattern.compile(regexLeafParenthesis)
-					.matcher(description);
-			Matcher andChainMatcher = Pattern.compile(regexAndChain).matcher(
-					description);
-			Matcher orChainMatcher = Pattern.compile(regexOrChain).matcher(
-					description);
-
-			// explicit priority : parenthesis
-			if (parenthesisMatcher.find()) {
-				String extract = parenthesisMatcher.group();
-				description = description.replaceAll(Pattern.quote(extract),
-						"%" + expressionBuffer.size() + "%");
-				extract = extract.substring(1, extract.length() - 1);
-				expressionBuffer.add(parseRulePart(extract, states));
-			}
-			// high implicit priority : and
-			else if (andChainMatcher.find()) {
-				String extract = andChainMatcher.group();
-				description = description.replaceAll(Pattern.quote(extract),
-						"%" + expressionBuffer.size() + "%");
-				AndExpression expression = new AndExpression();
-				expressionBuffer.add(expression);
-				for (String component : extract.split("&")) {
-					if (component.matches(regexComparison)) {
-						expression.addExpression(parseRulePart(component,
-								states));
-					} else if (component.matches(regexRef)) {
-						expression.addExpression(expressionBuffer.get(Integer
-								.parseInt(component.replaceAll("%", ""))));
-					} else {
-						throw new BadFileContentException(
-								"unreadable statement : " + component);
-					}
-				}
+		List<Object> key = Arrays.asList(new Object[] { description,
+				new HashSet<Character>(states) });
+		Expression expression;
+		synchronized (cache) {
+			expression = cache.get(key);
+		}
+		if (expression == null) {
+			expression = new Parser(description, states).parse();
+			synchronized (cache) {
+				cache.put(key, expression);
 			}
-			// low implicit priority : or
-			else if (orChainMatcher.find()) {
-				String extract = orChainMatcher.group();
-				description = description.replaceAll(Pattern.quote(extract),
-						"%" + expressionBuffer.size() + "%");
-				OrExpression expression = new OrExpression();
-				expressionBuffer.add(expression);
-				for (String component : extract.split("\\|")) {
-					if (component.matches(regexComparison)) {
-						expression.addExpression(parseRulePart(component,
-								states));
-					} else if (component.matches(regexRef)) {
-						expression.addExpression(expressionBuffer.get(Integer
-								.parseInt(component.replaceAll("%", ""))));
-					} else {
-						throw new BadFileContentException(
-								"unreadable statement in AND chain : "
-										+ component);
-					}
-				}
+		}
+		return copy(expression);
+	}
+
+	/**
+	 * Copy an expression built by the parser, so the cached expressions are
+	 * never given.
+	 * 
+	 * @param expression
+	 *            the expression to copy
+	 * @return a new expression equivalent to the given one
+	 */
+	private static Expression copy(Expression expression) {
+		if (expression instanceof ComposedExpression) {
+			ComposedExpression copy;
+			if (expression instanceof AndExpression) {
+				copy = new AndExpression();
+			} else {
+				copy = new OrExpression();
 			}
-			// last priority : cell=value
-			else if (description.matches(regexComparison)) {
-				String[] splitExpression = description.split("=");
-				description = "%" + expressionBuffer.size() + "%";
-				CellComparisonExpression expression = new CellComparisonExpression();
-				for (String target : splitExpression[0].substring(1,
-						splitExpression[0].length() - 1).split("\\)\\+\\(")) {
-					expression.addTarget(new Coords("(" + target + ")"));
-				}
-				for (String constraint : splitExpression[1].split("\\+")) {
-					if (constraint.matches(regexValue)) {
-						constraint = "1" + constraint;
-					}
-					Character state = constraint
-							.charAt(constraint.length() - 1);
-					Integer count = Integer.parseInt(constraint.substring(0,
-							constraint.length() - 1));
-					expression.addConstraint(state, count);
-				}
-				expressionBuffer.add(expression);
+			for (Expression subexpression : ((ComposedExpression) expression)
+					.getExpressions()) {
+				copy.addExpression(copy(subexpression));
+			}
+			return copy;
+		} else if (expression instanceof CellComparisonExpression) {
+			CellComparisonExpression comparison = (CellComparisonExpression) expression;
+			CellComparisonExpression copy = new CellComparisonExpression();
+			for (Coords target : comparison.getTargets()) {
+				copy.addTarget(target);
 			}
-			// unrecognized statement
-			else {
-				throw new BadFileContentException("unreadable statement : "
-						+ description);
+			for (Map.Entry<Character, Integer> constraint : comparison
+					.getConstraints().entrySet()) {
+				copy.addConstraint(constraint.getKey(), constraint.getValue());
 			}
+			return copy;
+		} else {
+			throw new IllegalArgumentException("The expression " + expression
+					+ " is not built by the parser.");
 		}
-		return expressionBuffer.get(Integer.parseInt(description.replaceAll(
-				"%", "")));
-	}
-
-	private static void initRegex(Collection<Character> states) {
-		regexValue = getValueRegexFor(states);
-		regexValueSet = String.format("([0-9]*%s(\\+[0-9]*%s)*)", regexValue,
-				regexValue);
-		regexComparison = String.format("(%s=%s)", regexCellSet, regexValueSet);
-		regexExpression = String.format("(%s|%s)", regexComparison, regexRef);
-		regexAndChain = String.format("(%s(&%s)+)", regexExpression,
-				regexExpression);
-		regexOrChain = String.format("(%s(\\|%s)+)", regexExpression,
-				regexExpression);
-		regexLeafParenthesis = String.format("(\\(%s([&|]%s)*\\))",
-				regexExpression, regexExpression);
 	}
 
 	public static void setExpressionForOriginCell(Expression expression,
@@ -146,12 +113,181 @@ public class ExpressionHelper {
 		}
 	}
 
-	private static String getValueRegexFor(Collection<Character> states) {
-		String regexValue = "";
-		for (Character state : states) {
-			regexValue += "|" + Pattern.quote(state.toString());
+	/**
+	 * Recursive descent parser of the conditions, reading each character only
+	 * once :
+	 * 
+	 * <pre>
+	 * or         := and ('|' and)*
+	 * and        := primary ('&' primary)*
+	 * primary    := '(' or ')' | comparison
+	 * comparison := cell ('+' cell)* '=' value ('+' value)*
+	 * cell       := '(' integer (',' integer)* ')'
+	 * value      := [count] state
+	 * </pre>
+	 */
+	private static class Parser {
+		private final String text;
+		private final Collection<Character> states;
+		private int position = 0;
+
+		public Parser(String description, Collection<Character> states) {
+			StringBuilder builder = new StringBuilder(description.length());
+			for (int index = 0; index < description.length(); index++) {
+				char character = description.charAt(index);
+				if (!Character.isWhitespace(character)) {
+					builder.append(character);
+				}
+			}
+			this.text = builder.toString();
+			this.states = new HashSet<Character>(states);
+		}
+
+		public Expression parse() {
+			Expression expression = parseOr();
+			if (position < text.length()) {
+				throw error("unexpected character");
+			}
+			return expression;
+		}
+
+		private Expression parseOr() {
+			Expression first = parseAnd();
+			if (!isNext('|')) {
+				return first;
+			}
+			OrExpression expression = new OrExpression();
+			expression.addExpression(first);
+			while (consume('|')) {
+				expression.addExpression(parseAnd());
+			}
+			return expression;
+		}
+
+		private Expression parseAnd() {
+			Expression first = parsePrimary();
+			if (!isNext('&')) {
+				return first;
+			}
+			AndExpression expression = new AndExpression();
+			expression.addExpression(first);
+			while (consume('&')) {
+				expression.addExpression(parsePrimary());
+			}
+			return expression;
+		}
+
+		private Expression parsePrimary() {
+			if (isNext('(') && !isCellStart(position + 1)) {
+				position++;
+				Expression expression = parseOr();
+				expect(')');
+				return expression;
+			} else {
+				return parseComparison();
+			}
+		}
+
+		private Expression parseComparison() {
+			CellComparisonExpression expression = new CellComparisonExpression();
+			do {
+				expression.addTarget(parseCell());
+			} while (consume('+'));
+			expect('=');
+			do {
+				parseValue(expression);
+			} while (consume('+'));
+			return expression;
+		}
+
+		private Coords parseCell() {
+			expect('(');
+			List<Integer> values = new ArrayList<Integer>();
+			do {
+				values.add(parseInteger());
+			} while (consume(','));
+			expect(')');
+
+			int[] coords = new int[values.size()];
+			for (int index = 0; index < coords.length; index++) {
+				coords[index] = values.get(index);
+			}
+			Coords result = new Coords(coords);
+			result.setMutable(false);
+			return result;
+		}
+
+		private int parseInteger() {
+			boolean isNegative = false;
+			if (isNext('+') || isNext('-')) {
+				isNegative = text.charAt(position) == '-';
+				position++;
+			}
+			int start = position;
+			while (position < text.length()
+					&& Character.isDigit(text.charAt(position))) {
+				position++;
+			}
+			if (start == position) {
+				throw error("integer expected");
+			}
+			int value = Integer.parseInt(text.substring(start, position));
+			return isNegative ? -value : value;
+		}
+
+		private void parseValue(CellComparisonExpression expression) {
+			int start = position;
+			while (position < text.length()
+					&& Character.isDigit(text.charAt(position))) {
+				position++;
+			}
+			if (position < text.length()
+					&& states.contains(text.charAt(position))) {
+				position++;
+			} else if (position > start
+					&& states.contains(text.charAt(position - 1))) {
+				// the last digit is a state
+			} else {
+				throw error("state expected");
+			}
+			Character state = text.charAt(position - 1);
+			int count = position - 1 > start ? Integer.parseInt(text
+					.substring(start, position - 1)) : 1;
+			expression.addConstraint(state, count);
+		}
+
+		private boolean isCellStart(int index) {
+			if (index >= text.length()) {
+				return false;
+			}
+			char character = text.charAt(index);
+			return Character.isDigit(character) || character == '+'
+					|| character == '-';
+		}
+
+		private boolean isNext(char character) {
+			return position < text.length()
+					&& text.charAt(position) == character;
+		}
+
+		private boolean consume(char character) {
+			if (isNext(character)) {
+				position++;
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		private void expect(char character) {
+			if (!consume(character)) {
+				throw error("'" + character + "' expected");
+			}
+		}
+
+		private BadFileContentException error(String reason) {
+			return new BadFileContentException("unreadable statement : "
+					+ text + " (" + reason + " at " + position + ")");
 		}
-		regexValue = "(" + regexValue.substring(1) + ")";
-		return regexValue;
 	}
 }
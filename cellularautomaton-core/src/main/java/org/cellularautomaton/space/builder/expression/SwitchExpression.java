@@ -1,5 +1,7 @@
 package org.cellularautomaton.space.builder.expression;
 
+import org.cellularautomaton.cell.ICell;
+
 public class SwitchExpression implements Expression {
 	private boolean state = false;
 
@@ -11,4 +13,12 @@ public class SwitchExpression implements Expression {
 	public boolean evaluate() {
 		return state;
 	}
+
+	/**
+	 * The cell is ignored, only the current state of the switch is returned.
+	 */
+	@Override
+	public boolean evaluate(ICell<Character> origin) {
+		return state;
+	}
 }
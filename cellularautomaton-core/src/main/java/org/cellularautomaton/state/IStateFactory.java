@@ -28,7 +28,13 @@ public interface IStateFactory<StateType> {
 	public StateType getDefaultState();
 
 	/**
-	 * This method must allow to customize a cell.
+	 * This method must allow to customize a cell. It is called once for each
+	 * cell of a new space. When the space is built in parallel (see
+	 * {@link org.cellularautomaton.space.builder.SpaceBuilder#setExecutorService(java.util.concurrent.ExecutorService)}
+	 * ), it is called by several threads at the same time, each on different
+	 * cells and in no particular order : it should then only modify the given
+	 * cell and read shared data, any other shared modification needing to be
+	 * synchronized.
 	 * 
 	 * @param cell
 	 *            the cell to customize
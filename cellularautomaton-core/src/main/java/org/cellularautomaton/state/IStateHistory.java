@@ -0,0 +1,36 @@
+package org.cellularautomaton.state;
+
+import org.cellularautomaton.util.Coords;
+
+/**
+ * A state history keeps the states of the cells of a space over more
+ * generations than their memory (see {@link StateMemory}), for example in a
+ * file. A cell asked for a state older than its memory can then read it from
+ * its history.
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ * @param <StateType>
+ *            the type of data used by the cells
+ */
+public interface IStateHistory<StateType> {
+
+	/**
+	 * 
+	 * @param coords
+	 *            the coordinates of the cell
+	 * @param age
+	 *            the age of the asked state, 0 is the current state
+	 * @return the state the cell had
+	 * @throws IndexOutOfBoundsException
+	 *             if the history does not go back so far
+	 */
+	public StateType getState(Coords coords, int age);
+
+	/**
+	 * 
+	 * @return the number of generations which can be asked, the current one
+	 *         included
+	 */
+	public int getDepth();
+}
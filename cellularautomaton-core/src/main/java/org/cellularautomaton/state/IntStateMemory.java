@@ -0,0 +1,89 @@
+package org.cellularautomaton.state;
+
+/**
+ * <p>
+ * A state memory keeping states coded as <code>int</code>, for the cells
+ * which use a numeral code for their states (like the index of the state in
+ * {@link IStateFactory#getPossibleStates()}) and do not want to box them at
+ * each step.
+ * </p>
+ * <p>
+ * It works like {@link StateMemory}: the states are stored in a circular
+ * buffer and the memory is not synchronized.
+ * </p>
+ * 
+ * @author Matthieu Vergne (matthieu.vergne@gmail.com)
+ * 
+ */
+public class IntStateMemory {
+	/**
+	 * The states memorized.
+	 */
+	private final int[] states;
+	/**
+	 * The index of the current state in {@link #states}.
+	 */
+	private int current = 0;
+
+	/**
+	 * 
+	 * @param size
+	 *            the size of the memory (at least 1)
+	 * @param initialState
+	 *            the state to fill the memory with
+	 */
+	public IntStateMemory(int size, int initialState) {
+		if (size < 1) {
+			throw new IllegalArgumentException(
+					"The memory size must be at least 1, " + size
+							+ " is given.");
+		}
+
+		states = new int[size];
+		for (int i = 0; i < size; i++) {
+			states[i] = initialState;
+		}
+	}
+
+	/**
+	 * @param state
+	 *            the new state to push in the memory, which forgets the oldest
+	 *            state
+	 */
+	public void pushNewState(int state) {
+		current = current == 0 ? states.length - 1 : current - 1;
+		states[current] = state;
+	}
+
+	/**
+	 * @param the
+	 *            age of the state asked, 0 is the most recent
+	 * @return the asked memorized state
+	 */
+	public int getState(int age) {
+		if (age < 0 || age >= states.length) {
+			throw new IndexOutOfBoundsException("Age: " + age + ", Size: "
+					+ states.length);
+		}
+		int index = current + age;
+		return states[index < states.length ? index : index - states.length];
+	}
+
+	/**
+	 * 
+	 * @return the size of the memory
+	 */
+	public int getMemorySize() {
+		return states.length;
+	}
+
+	/**
+	 * 
+	 * @param state
+	 *            the state to apply instead of the current state, the state is
+	 *            not pushed so the previous state is not kept in memory
+	 */
+	public void forceCurrentState(int state) {
+		states[current] = state;
+	}
+}
@@ -1,12 +1,17 @@
 package org.cellularautomaton.state;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
+ * <p>
  * A state memory is the memory of a cell. It keeps the previous states of the
  * cell.
+ * </p>
+ * <p>
+ * The states are stored in a circular buffer, so pushing a new state or getting
+ * a state of any age does not depend on the size of the memory. A memory is
+ * not synchronized: it is the memory of a single cell, which is calculated and
+ * applied by a single thread at a time (see
+ * {@link org.cellularautomaton.CellularAutomaton#setParallelTasks(int)}).
+ * </p>
  * 
  * @author Matthieu Vergne (matthieu.vergne@gmail.com)
  * 
@@ -20,21 +25,30 @@ public class StateMemory<StateType> {
 	/**
 	 * The states memorized.
 	 */
-	private final List<StateType> states = Collections
-			.synchronizedList(new ArrayList<StateType>());
+	private final Object[] states;
+	/**
+	 * The index of the current state in {@link #states}.
+	 */
+	private int current = 0;
 
 	/**
 	 * 
 	 * @param size
-	 *            the size of the memory
+	 *            the size of the memory (at least 1)
 	 * @param initialState
 	 *            the state to fill the memory with
 	 */
 	public StateMemory(int size, StateType initialState) {
 		assert initialState != null;
+		if (size < 1) {
+			throw new IllegalArgumentException(
+					"The memory size must be at least 1, " + size
+							+ " is given.");
+		}
 
+		states = new Object[size];
 		for (int i = 0; i < size; i++) {
-			states.add(initialState);
+			states[i] = initialState;
 		}
 	}
 
@@ -44,10 +58,8 @@ public class StateMemory<StateType> {
 	 *            state
 	 */
 	public void pushNewState(StateType state) {
-		synchronized (states) {
-			states.remove(0);
-			states.add(state);
-		}
+		current = current == 0 ? states.length - 1 : current - 1;
+		states[current] = state;
 	}
 
 	/**
@@ -55,8 +67,15 @@ public class StateMemory<StateType> {
 	 *            age of the state asked, 0 is the most recent
 	 * @return the asked memorized state
 	 */
+	@SuppressWarnings("unchecked")
 	public StateType getState(int age) {
-		return states.get(getMemorySize() - age - 1);
+		if (age < 0 || age >= states.length) {
+			throw new IndexOutOfBoundsException("Age: " + age + ", Size: "
+					+ states.length);
+		}
+		int index = current + age;
+		return (StateType) states[index < states.length ? index : index
+				- states.length];
 	}
 
 	/**
@@ -64,7 +83,7 @@ public class StateMemory<StateType> {
 	 * @return the size of the memory
 	 */
 	public int getMemorySize() {
-		return states.size();
+		return states.length;
 	}
 
 	/**
@@ -74,6 +93,6 @@ public class StateMemory<StateType> {
 	 *            not pushed so the previous state is not kept in memory
 	 */
 	public void forceCurrentState(StateType state) {
-		states.set(states.size() - 1, state);
+		states[current] = state;
 	}
 }
@@ -1,32 +1,66 @@
 package org.cellularautomaton.util;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * <p>
  * A tool to encapsulate the coordinate methods.
+ * </p>
+ * <p>
+ * The coordinates are stored in an <code>int</code> array and the hash is
+ * cached until the coordinates are modified, so they can be used as keys of
+ * hash structures without cost. The immutable coordinates used often can be
+ * shared with {@link #valueOf(int...)}, which keeps the last coordinates
+ * asked in a small pool and gives them back while they are there (the 2D and
+ * 3D versions do not even create an array to find them). The pool is not
+ * locked, so it can be used by several threads at the same time, but it is
+ * made for the few coordinates asked again and again (like the ones of the
+ * chunks of a {@link org.cellularautomaton.space.SparseSpace}), not for the
+ * coordinates of all the cells of a space.
+ * </p>
  * 
  * @author Matthieu Vergne (matthieu.vergne@gmail.com)
  * 
  */
 public class Coords implements Comparable<Coords> {
 
+	/**
+	 * The number of coordinates kept by {@link #valueOf(int...)}.
+	 */
+	public static final int POOL_SIZE = 1 << 12;
+	/**
+	 * The shared coordinates of {@link #valueOf(int...)}, each one being in
+	 * the slot given by its hash. A new coordinates replaces the one of its
+	 * slot, the array being atomic to publish the new ones safely.
+	 */
+	private static final AtomicReferenceArray<Coords> pool = new AtomicReferenceArray<Coords>(
+			POOL_SIZE);
+
 	/**
 	 * The coordinates themselves.
 	 */
-	private List<Integer> coords = new ArrayList<Integer>();
+	private int[] coords;
 	/**
 	 * Indicate if the coordinates can be modified.
 	 */
 	private boolean isMutable = true;
+	/**
+	 * Indicate if the coordinates are shared by {@link #valueOf(int...)}, in
+	 * which case they cannot be made mutable.
+	 */
+	private boolean isShared = false;
+	/**
+	 * The cached hash, 0 if it has to be computed (like in {@link String}, a
+	 * hash equal to 0 is then computed each time).
+	 */
+	private int hash = 0;
 
 	/**
 	 * Create an empty set of coordinates (no dimension)
 	 */
 	public Coords() {
-		// nothing to do
+		coords = new int[0];
 	}
 
 	/**
@@ -36,8 +70,7 @@ public class Coords implements Comparable<Coords> {
 	 *            the coordinates
 	 */
 	public Coords(int... coords) {
-		this();
-		setAll(coords);
+		this.coords = coords.clone();
 	}
 
 	/**
@@ -62,7 +95,132 @@ public class Coords implements Comparable<Coords> {
 			for (int i = 0; i < split.length; i++) {
 				coords[i] = Integer.parseInt(split[i].replace("+", ""));
 			}
-			setAll(coords);
+			this.coords = coords;
+		}
+	}
+
+	/**
+	 * Give a shared immutable instance of the given coordinates. Calling this
+	 * method several times with the same coordinates gives the same instance
+	 * while it is kept in the pool, so no new instance is created for the
+	 * coordinates asked often.
+	 * 
+	 * @param coords
+	 *            the coordinates
+	 * @return the immutable coordinates
+	 */
+	public static Coords valueOf(int... coords) {
+		int hash = hash(coords);
+		int slot = getSlot(hash);
+		Coords pooled = pool.get(slot);
+		if (pooled != null && pooled.hash == hash
+				&& Arrays.equals(pooled.coords, coords)) {
+			return pooled;
+		} else {
+			return share(new Coords(coords), hash, slot);
+		}
+	}
+
+	/**
+	 * Same as {@link #valueOf(int...)} for 2D coordinates, without creating
+	 * any array to find the known coordinates.
+	 * 
+	 * @param x
+	 *            the first coordinate
+	 * @param y
+	 *            the second coordinate
+	 * @return the immutable coordinates
+	 */
+	public static Coords valueOf(int x, int y) {
+		int hash = 31 + (31 * (31 + x) + y);
+		int slot = getSlot(hash);
+		Coords pooled = pool.get(slot);
+		if (pooled != null && pooled.hash == hash
+				&& pooled.coords.length == 2 && pooled.coords[0] == x
+				&& pooled.coords[1] == y) {
+			return pooled;
+		} else {
+			return share(new Coords(x, y), hash, slot);
+		}
+	}
+
+	/**
+	 * Same as {@link #valueOf(int...)} for 3D coordinates, without creating
+	 * any array to find the known coordinates.
+	 * 
+	 * @param x
+	 *            the first coordinate
+	 * @param y
+	 *            the second coordinate
+	 * @param z
+	 *            the third coordinate
+	 * @return the immutable coordinates
+	 */
+	public static Coords valueOf(int x, int y, int z) {
+		int hash = 31 + (31 * (31 * (31 + x) + y) + z);
+		int slot = getSlot(hash);
+		Coords pooled = pool.get(slot);
+		if (pooled != null && pooled.hash == hash
+				&& pooled.coords.length == 3 && pooled.coords[0] == x
+				&& pooled.coords[1] == y && pooled.coords[2] == z) {
+			return pooled;
+		} else {
+			return share(new Coords(x, y, z), hash, slot);
+		}
+	}
+
+	/**
+	 * 
+	 * @param hash
+	 *            the hash of some coordinates
+	 * @return the slot of the coordinates in the pool
+	 */
+	private static int getSlot(int hash) {
+		return (hash ^ hash >>> 12) & (POOL_SIZE - 1);
+	}
+
+	/**
+	 * Make the coordinates immutable and put them in the pool, in place of
+	 * the ones of their slot.
+	 * 
+	 * @param coords
+	 *            the new coordinates to share
+	 * @param hash
+	 *            the hash of the coordinates
+	 * @param slot
+	 *            the slot of the coordinates in the pool
+	 * @return the given coordinates, made immutable
+	 */
+	private static Coords share(Coords coords, int hash, int slot) {
+		coords.isMutable = false;
+		coords.isShared = true;
+		coords.hash = hash;
+		pool.set(slot, coords);
+		return coords;
+	}
+
+	/**
+	 * 
+	 * @param coords
+	 *            some coordinates
+	 * @return the hash of the coordinates, as given by {@link #hashCode()}
+	 */
+	private static int hash(int[] coords) {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(coords);
+		return result;
+	}
+
+	/**
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the coordinates are immutable
+	 */
+	private void checkMutable() {
+		if (!isMutable) {
+			throw new UnsupportedOperationException(
+					"The coordinates are immutable.");
 		}
 	}
 
@@ -72,11 +230,10 @@ public class Coords implements Comparable<Coords> {
 	 *            the dimensions of these coordinates
 	 */
 	public void setDimensions(int dimensions) {
-		while (getDimensions() < dimensions) {
-			coords.add(0);
-		}
-		while (getDimensions() > dimensions) {
-			coords.remove(coords.size() - 1);
+		checkMutable();
+		if (dimensions != coords.length) {
+			coords = Arrays.copyOf(coords, dimensions);
+			hash = 0;
 		}
 	}
 
@@ -85,7 +242,7 @@ public class Coords implements Comparable<Coords> {
 	 * @return the dimensions of these coordinates
 	 */
 	public int getDimensions() {
-		return coords.size();
+		return coords.length;
 	}
 
 	/**
@@ -96,7 +253,9 @@ public class Coords implements Comparable<Coords> {
 	 *            the value to apply as the coordinate
 	 */
 	public void set(int dimension, int value) {
-		coords.set(dimension, value);
+		checkMutable();
+		coords[dimension] = value;
+		hash = 0;
 	}
 
 	/**
@@ -106,7 +265,7 @@ public class Coords implements Comparable<Coords> {
 	 * @return the value of the coordinate
 	 */
 	public int get(int dimension) {
-		return coords.get(dimension);
+		return coords[dimension];
 	}
 
 	/**
@@ -117,10 +276,9 @@ public class Coords implements Comparable<Coords> {
 	 *            the coordinates to save
 	 */
 	public void setAll(int... coords) {
-		this.coords.clear();
-		for (int coord : coords) {
-			this.coords.add(coord);
-		}
+		checkMutable();
+		this.coords = coords.clone();
+		hash = 0;
 	}
 
 	/**
@@ -128,11 +286,7 @@ public class Coords implements Comparable<Coords> {
 	 * @return the complete coordinates
 	 */
 	public int[] getAll() {
-		int[] coords = new int[getDimensions()];
-		for (int i = 0; i < getDimensions(); i++) {
-			coords[i] = get(i);
-		}
-		return coords;
+		return coords.clone();
 	}
 
 	/**
@@ -140,14 +294,13 @@ public class Coords implements Comparable<Coords> {
 	 * on the dimensions, else it is done on the values of each coordinate.
 	 */
 	public int compareTo(Coords o) {
-		if (getDimensions() != o.getDimensions()) {
-			return Integer.valueOf(getDimensions()).compareTo(
-					Integer.valueOf(o.getDimensions()));
+		int[] others = o.coords;
+		if (coords.length != others.length) {
+			return coords.length < others.length ? -1 : 1;
 		} else {
-			for (int dim = 0; dim < getDimensions(); dim++) {
-				if (get(dim) != o.get(dim)) {
-					return Integer.valueOf(get(dim)).compareTo(
-							Integer.valueOf(o.get(dim)));
+			for (int dim = 0; dim < coords.length; dim++) {
+				if (coords[dim] != others[dim]) {
+					return coords[dim] < others[dim] ? -1 : 1;
 				}
 			}
 			return 0;
@@ -159,22 +312,28 @@ public class Coords implements Comparable<Coords> {
 	 */
 	@Override
 	public String toString() {
-		String string = Arrays.toString(coords.toArray());
+		String string = Arrays.toString(coords);
 		return "(" + string.substring(1, string.length() - 1) + ")";
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.hashCode(coords.toArray());
-		return result;
+		int hash = this.hash;
+		if (hash == 0) {
+			hash = hash(coords);
+			this.hash = hash;
+		}
+		return hash;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		if (obj instanceof Coords) {
-			return compareTo((Coords) obj) == 0;
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Coords) {
+			Coords other = (Coords) obj;
+			return hashCode() == other.hashCode()
+					&& Arrays.equals(coords, other.coords);
 		} else {
 			return false;
 		}
@@ -192,13 +351,15 @@ public class Coords implements Comparable<Coords> {
 	 * 
 	 * @param isMutable
 	 *            indicate if the coordinates can be modified
+	 * @throws UnsupportedOperationException
+	 *             if the coordinates are shared by {@link #valueOf(int...)},
+	 *             which cannot be made mutable
 	 */
 	public void setMutable(boolean isMutable) {
-		this.isMutable = isMutable;
-		if (!isMutable) {
-			coords = Collections.unmodifiableList(coords);
-		} else {
-			coords = new ArrayList<Integer>(coords);
+		if (isMutable && isShared) {
+			throw new UnsupportedOperationException(
+					"The shared coordinates cannot be made mutable.");
 		}
+		this.isMutable = isMutable;
 	}
 }
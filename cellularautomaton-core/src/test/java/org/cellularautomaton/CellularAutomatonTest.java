@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.optimization.AbstractOptimization;
@@ -277,4 +279,83 @@ public class CellularAutomatonTest extends
 		assertFalse(automaton.isReadyForApplying());
 	}
 
+	@Test
+	public void testParallelEvolution() {
+		// generate spaces of cells
+		IRule<Integer> rule = new IRule<Integer>() {
+			public Integer calculateNextStateOf(ICell<Integer> cell) {
+				return (cell.getRelativeCell(-1, 0).getCurrentState()
+						+ cell.getRelativeCell(0, -1).getCurrentState()
+						+ cell.getRelativeCell(+1, +1).getCurrentState() + 1) % 7;
+			}
+		};
+		IStateFactory<Integer> stateFactory = new AbstractStateFactory<Integer>() {
+			public List<Integer> getPossibleStates() {
+				return Arrays.asList(0, 1, 2, 3, 4, 5, 6);
+			}
+
+			public void customize(ICell<Integer> cell) {
+				cell.setCurrentState((cell.getCoords().get(0) * 3 + cell
+						.getCoords().get(1)) % 7);
+			}
+		};
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(stateFactory).setRule(rule);
+		ISpace<Integer> sequentialSpace = builder.createNewSpace()
+				.addDimension(10).addDimension(7).getSpaceOfCell();
+		ISpace<Integer> parallelSpace = builder.createNewSpace()
+				.addDimension(10).addDimension(7).getSpaceOfCell();
+
+		// generate automata
+		CellularAutomaton<Integer> sequential = new CellularAutomaton<Integer>(
+				sequentialSpace);
+		CellularAutomaton<Integer> parallel = new CellularAutomaton<Integer>(
+				parallelSpace);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			parallel.setExecutorService(executor);
+			parallel.setParallelTasks(5);
+			assertEquals(executor, parallel.getExecutorService());
+			assertEquals(5, parallel.getParallelTasks());
+
+			// compare evolutions
+			for (int step = 0; step < 5; step++) {
+				sequential.doStep();
+				parallel.doStep();
+				assertTrue(parallel.isReadyForCalculation());
+				for (ICell<Integer> cell : sequentialSpace.getAllCells()) {
+					ICell<Integer> parallelCell = parallelSpace.getOrigin()
+							.getRelativeCell(cell.getCoords().getAll());
+					assertEquals(cell.getCurrentState(),
+							parallelCell.getCurrentState());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelFailure() {
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		builder.setStateFactory(stateFactory1D).setRule(new IRule<String>() {
+			public String calculateNextStateOf(ICell<String> cell) {
+				return null;
+			}
+		}).createNewSpace().addDimension(4);
+		CellularAutomaton<String> automaton = new CellularAutomaton<String>(
+				builder.getSpaceOfCell());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			automaton.setExecutorService(executor);
+			automaton.setParallelTasks(2);
+			automaton.calculateNextStep();
+			fail("No exception thrown");
+		} catch (NullPointerException e) {
+			// expected
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 }
@@ -1,7 +1,16 @@
 package org.cellularautomaton.cell;
 
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.cellularautomaton.cell.GenericCell;
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.state.IStateHistory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
 
 /**
  * This test case uses the generic test defined for the {@link ICell} interface.
@@ -16,4 +25,62 @@ public class GenericCellTest extends ICellTest {
 	public <StateType> ICell<StateType> createCell() {
 		return new GenericCell<StateType>();
 	};
+
+	@Test
+	public void testHistory() {
+		GenericCell<Integer> cell = new GenericCell<Integer>();
+		cell.setMemory(2, 0);
+		cell.setCurrentState(1);
+		assertNull(cell.getHistory());
+		try {
+			cell.getState(2);
+			fail("No exception thrown.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+
+		IStateHistory<Integer> history = new IStateHistory<Integer>() {
+			public Integer getState(Coords coords, int age) {
+				return -age;
+			}
+
+			public int getDepth() {
+				return 100;
+			}
+		};
+		cell.setHistory(history);
+		assertEquals(history, cell.getHistory());
+		assertEquals(Integer.valueOf(1), cell.getState(0));
+		assertEquals(Integer.valueOf(0), cell.getState(1));
+		assertEquals(Integer.valueOf(-2), cell.getState(2));
+		assertEquals(Integer.valueOf(-50), cell.getState(50));
+	}
+
+	@Test
+	public void testNeighborsCache() {
+		List<GenericCell<Integer>> line = new ArrayList<GenericCell<Integer>>();
+		for (int index = 0; index < 5; index++) {
+			GenericCell<Integer> cell = new GenericCell<Integer>();
+			cell.setMemory(1, index);
+			cell.setDimensions(1);
+			line.add(cell);
+		}
+		for (int index = 0; index < 4; index++) {
+			line.get(index).setNextCellOnDimension(0, line.get(index + 1));
+			line.get(index + 1).setPreviousCellOnDimension(0, line.get(index));
+		}
+
+		GenericCell<Integer> cell = line.get(1);
+		Neighborhood neighborhood = new Neighborhood(new int[] { -1 },
+				new int[] { 2 });
+		List<ICell<Integer>> neighbors = cell.getNeighbors(neighborhood);
+		assertEquals(Arrays.asList(line.get(0), line.get(3)), neighbors);
+
+		line.get(4).setPreviousCellOnDimension(0, null);
+		line.get(0).setNextCellOnDimension(0, null);
+		assertSame(neighbors, cell.getNeighbors(neighborhood));
+
+		line.get(2).setNextCellOnDimension(0, line.get(4));
+		assertEquals(Arrays.asList(line.get(0), line.get(4)),
+				cell.getNeighbors(neighborhood));
+	}
 }
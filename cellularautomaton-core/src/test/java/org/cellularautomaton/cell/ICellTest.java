@@ -2,8 +2,10 @@ package org.cellularautomaton.cell;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 import org.cellularautomaton.rule.IRule;
 import org.cellularautomaton.rule.RuleFactory;
@@ -254,6 +256,83 @@ public abstract class ICellTest {
 		assertEquals(neighborTopRight, cell.getRelativeCell(1, 1));
 	}
 
+	@Test
+	public void testCellsAroundList() {
+		ICell<String> cell = createCell();
+		cell.setMemory(1, "middle");
+		cell.setDimensions(2);
+		ICell<String> left = createCell();
+		left.setMemory(1, "left");
+		ICell<String> right = createCell();
+		right.setMemory(1, "right");
+		ICell<String> top = createCell();
+		top.setMemory(1, "top");
+
+		assertTrue(cell.getCellsAround().isEmpty());
+		assertTrue(cell.getAllCellsAround().isEmpty());
+
+		cell.setPreviousCellOnDimension(0, left);
+		cell.setNextCellOnDimension(0, right);
+		cell.setNextCellOnDimension(1, top);
+		List<ICell<String>> around = cell.getCellsAround();
+		assertEquals(Arrays.asList(left, right, top), around);
+		assertEquals(new HashSet<ICell<String>>(around),
+				cell.getAllCellsAround());
+		assertTrue(cell.getAllCellsAround().contains(top));
+		try {
+			around.add(cell);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			cell.getAllCellsAround().remove(left);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		// same cell on both sides
+		cell.setNextCellOnDimension(0, left);
+		assertEquals(Arrays.asList(left, top), cell.getCellsAround());
+		assertEquals(2, cell.getAllCellsAround().size());
+
+		cell.setDimensions(1);
+		assertEquals(Arrays.asList(left), cell.getCellsAround());
+	}
+
+	@Test
+	public void testNeighbors() {
+		ICell<String> cell = createCell();
+		cell.setMemory(1, "middle");
+		cell.setDimensions(1);
+		ICell<String> left = createCell();
+		left.setMemory(1, "left");
+		left.setDimensions(1);
+		ICell<String> right = createCell();
+		right.setMemory(1, "right");
+		right.setDimensions(1);
+		cell.setPreviousCellOnDimension(0, left);
+		left.setNextCellOnDimension(0, cell);
+		cell.setNextCellOnDimension(0, right);
+		right.setPreviousCellOnDimension(0, cell);
+
+		Neighborhood neighborhood = new Neighborhood(new int[] { -1 },
+				new int[] { 1 }, new int[] { 2 }, new int[] { 0 });
+		List<ICell<String>> neighbors = cell.getNeighbors(neighborhood);
+		assertEquals(Arrays.asList(left, right, null, cell), neighbors);
+		assertEquals(neighbors, cell.getNeighbors(neighborhood));
+		try {
+			neighbors.set(0, cell);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		right.setNextCellOnDimension(0, left);
+		assertEquals(Arrays.asList(left, right, left, cell),
+				cell.getNeighbors(neighborhood));
+		assertEquals(Arrays.asList(left, right),
+				cell.getNeighbors(Neighborhood.vonNeumann(1)));
+	}
+
 	@Test
 	public void testCoords() {
 		ICell<String> cell = createCell();
@@ -0,0 +1,73 @@
+package org.cellularautomaton.cell;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class NeighborhoodTest {
+
+	private Set<List<Integer>> getOffsets(Neighborhood neighborhood) {
+		Set<List<Integer>> offsets = new HashSet<List<Integer>>();
+		for (int index = 0; index < neighborhood.size(); index++) {
+			List<Integer> offset = new ArrayList<Integer>();
+			for (int coord : neighborhood.getOffset(index)) {
+				offset.add(coord);
+			}
+			offsets.add(offset);
+		}
+		return offsets;
+	}
+
+	@Test
+	public void testMoore() {
+		Neighborhood neighborhood = Neighborhood.moore(2);
+		assertEquals(8, neighborhood.size());
+		assertEquals(2, neighborhood.getDimensions());
+		Set<List<Integer>> offsets = getOffsets(neighborhood);
+		assertEquals(8, offsets.size());
+		assertFalse(offsets.contains(Arrays.asList(0, 0)));
+		assertTrue(offsets.contains(Arrays.asList(-1, -1)));
+		assertTrue(offsets.contains(Arrays.asList(1, 0)));
+
+		assertEquals(26, Neighborhood.moore(3).size());
+		assertEquals(0, Neighborhood.moore(0).size());
+	}
+
+	@Test
+	public void testVonNeumann() {
+		Neighborhood neighborhood = Neighborhood.vonNeumann(2);
+		assertEquals(4, neighborhood.size());
+		Set<List<Integer>> offsets = getOffsets(neighborhood);
+		assertTrue(offsets.contains(Arrays.asList(-1, 0)));
+		assertTrue(offsets.contains(Arrays.asList(1, 0)));
+		assertTrue(offsets.contains(Arrays.asList(0, -1)));
+		assertTrue(offsets.contains(Arrays.asList(0, 1)));
+
+		assertEquals(6, Neighborhood.vonNeumann(3).size());
+	}
+
+	@Test
+	public void testCustom() {
+		int[] offset = { 2, -1 };
+		Neighborhood neighborhood = new Neighborhood(offset, new int[] { 0 });
+		offset[0] = 5;
+		assertEquals(2, neighborhood.size());
+		assertEquals(2, neighborhood.getDimensions());
+		assertArrayEquals(new int[] { 2, -1 }, neighborhood.getOffset(0));
+		neighborhood.getOffset(0)[0] = 5;
+		assertArrayEquals(new int[] { 2, -1 }, neighborhood.getOffset(0));
+
+		assertEquals(new Neighborhood(new int[] { 2, -1 }, new int[] { 0 }),
+				neighborhood);
+		assertEquals(new Neighborhood(new int[] { 2, -1 }, new int[] { 0 })
+				.hashCode(), neighborhood.hashCode());
+		assertFalse(new Neighborhood(new int[] { 0 }, new int[] { 2, -1 })
+				.equals(neighborhood));
+	}
+}
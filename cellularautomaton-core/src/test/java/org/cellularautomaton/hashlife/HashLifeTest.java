@@ -0,0 +1,204 @@
+package org.cellularautomaton.hashlife;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.rule.StaticRule;
+import org.cellularautomaton.space.BitSpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.Test;
+
+public class HashLifeTest {
+
+	private final OuterTotalisticRule<Boolean> lifeRule = new OuterTotalisticRule<Boolean>(
+			false, true, "B3/S23");
+
+	private void addGlider(HashLife<Boolean> hashLife, long x, long y) {
+		hashLife.setState(x + 1, y, true);
+		hashLife.setState(x + 2, y + 1, true);
+		hashLife.setState(x, y + 2, true);
+		hashLife.setState(x + 1, y + 2, true);
+		hashLife.setState(x + 2, y + 2, true);
+	}
+
+	private void checkGlider(HashLife<Boolean> hashLife, long x, long y) {
+		assertEquals(5, hashLife.getPopulation());
+		assertTrue(hashLife.getState(x + 1, y));
+		assertTrue(hashLife.getState(x + 2, y + 1));
+		assertTrue(hashLife.getState(x, y + 2));
+		assertTrue(hashLife.getState(x + 1, y + 2));
+		assertTrue(hashLife.getState(x + 2, y + 2));
+	}
+
+	@Test
+	public void testStates() {
+		HashLife<Boolean> hashLife = new HashLife<Boolean>(lifeRule);
+		assertEquals(0, hashLife.getPopulation());
+		assertFalse(hashLife.getState(0, 0));
+
+		hashLife.setState(3, -2, true);
+		hashLife.setState(-1000000, 5000, true);
+		assertEquals(2, hashLife.getPopulation());
+		assertTrue(hashLife.getState(3, -2));
+		assertTrue(hashLife.getState(-1000000, 5000));
+		assertFalse(hashLife.getState(-1000000, 5001));
+		assertFalse(hashLife.getState(Long.MAX_VALUE, 0));
+
+		hashLife.setState(3, -2, false);
+		assertEquals(1, hashLife.getPopulation());
+		assertFalse(hashLife.getState(3, -2));
+
+		hashLife.clear();
+		assertEquals(0, hashLife.getPopulation());
+	}
+
+	@Test
+	public void testUnsupportedRules() {
+		try {
+			new HashLife<Boolean>(new StaticRule<Boolean>());
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new HashLife<Boolean>(new OuterTotalisticRule<Boolean>(false,
+					true, "B03/S23"));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new HashLife<Boolean>(lifeRule).setState(0, 0, null);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testGlider() {
+		HashLife<Boolean> hashLife = new HashLife<Boolean>(lifeRule);
+		addGlider(hashLife, 0, 0);
+		hashLife.advance(4);
+		assertEquals(4, hashLife.getGeneration());
+		checkGlider(hashLife, 1, 1);
+
+		hashLife.advance(4000000000L);
+		assertEquals(4000000004L, hashLife.getGeneration());
+		checkGlider(hashLife, 1000000001, 1000000001);
+	}
+
+	@Test
+	public void testLongAdvance() {
+		HashLife<Boolean> hashLife = new HashLife<Boolean>(lifeRule);
+		hashLife.advance(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, hashLife.getGeneration());
+		assertEquals(0, hashLife.getPopulation());
+
+		hashLife = new HashLife<Boolean>(lifeRule);
+		hashLife.setState(0, 0, true);
+		hashLife.setState(1, 0, true);
+		hashLife.setState(0, 1, true);
+		hashLife.setState(1, 1, true);
+		hashLife.advance(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, hashLife.getGeneration());
+		assertEquals(4, hashLife.getPopulation());
+		assertTrue(hashLife.getState(1, 1));
+
+		hashLife = new HashLife<Boolean>(lifeRule);
+		hashLife.setState(-1, 0, true);
+		hashLife.setState(0, 0, true);
+		hashLife.setState(1, 0, true);
+		hashLife.advance(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, hashLife.getGeneration());
+		assertEquals(3, hashLife.getPopulation());
+		assertTrue(hashLife.getState(0, -1));
+		assertTrue(hashLife.getState(0, 1));
+
+		hashLife = new HashLife<Boolean>(lifeRule);
+		addGlider(hashLife, 0, 0);
+		try {
+			hashLife.advance(Long.MAX_VALUE);
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testSameEvolutionThanBitSpace() {
+		final List<Integer> seeds = Arrays.asList(3, 7, 8, 12, 13, 19, 22, 23,
+				24, 30, 31, 33, 39, 41, 44);
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStorage(Storage.BITS).setRule(lifeRule)
+				.setStateFactory(new AbstractStateFactory<Boolean>() {
+					public List<Boolean> getPossibleStates() {
+						return Arrays.asList(false, true);
+					}
+
+					public void customize(ICell<Boolean> cell) {
+						int x = cell.getCoords().get(0) - 60;
+						int y = cell.getCoords().get(1) - 60;
+						cell.setCurrentState(x >= 0 && x < 7 && y >= 0
+								&& y < 7 && seeds.contains(x + 7 * y));
+					}
+				});
+		builder.createNewSpace().addDimension(128, false)
+				.addDimension(128, false);
+		BitSpace<Boolean> space = (BitSpace<Boolean>) builder
+				.getSpaceOfCell();
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+
+		for (int cacheSize : new int[] { HashLife.DEFAULT_CACHE_SIZE, 50 }) {
+			HashLife<Boolean> hashLife = new HashLife<Boolean>(lifeRule,
+					cacheSize);
+			assertEquals(cacheSize, hashLife.getCacheSize());
+			hashLife.load(space);
+			assertEquals(space.countAliveCells(), hashLife.getPopulation());
+
+			int done = 0;
+			for (int generations : new int[] { 1, 2, 5, 13, 3 }) {
+				for (int step = 0; step < generations; step++) {
+					automaton.doStep();
+				}
+				done += generations;
+				hashLife.advance(generations);
+				assertEquals(space.countAliveCells(), hashLife.getPopulation());
+				for (ICell<Boolean> cell : space) {
+					int[] coords = cell.getCoords().getAll();
+					assertEquals(cell.toString(), cell.getCurrentState(),
+							hashLife.getState(coords[0], coords[1]));
+				}
+			}
+			assertEquals(done, hashLife.getGeneration());
+			if (cacheSize == 50) {
+				assertTrue(hashLife.getNodeCount() <= 50);
+			}
+
+			space = (BitSpace<Boolean>) builder.createNewSpace()
+					.addDimension(128, false).addDimension(128, false)
+					.getSpaceOfCell();
+			automaton = new CellularAutomaton<Boolean>(space);
+		}
+	}
+
+	@Test
+	public void testOtherStates() {
+		IRule<String> rule = new OuterTotalisticRule<String>("dead", "alive",
+				"B3/S23");
+		HashLife<String> hashLife = new HashLife<String>(rule);
+		hashLife.setState(0, 0, "alive");
+		hashLife.setState(1, 0, "alive");
+		hashLife.setState(2, 0, "alive");
+		hashLife.advance(1);
+		assertEquals("alive", hashLife.getState(1, -1));
+		assertEquals("alive", hashLife.getState(1, 1));
+		assertEquals("dead", hashLife.getState(0, 0));
+		assertEquals(3, hashLife.getPopulation());
+	}
+}
@@ -0,0 +1,257 @@
+package org.cellularautomaton.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.SparseSpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.PatternStateFactory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
+
+public class AutomatonSnapshotTest {
+
+	private final IRule<Boolean> rule = new OuterTotalisticRule<Boolean>(
+			false, true, "B3/S23");
+
+	private ISpace<Boolean> createSpace(int memorySize) {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new PatternStateFactory<Boolean>(false, true))
+				.setRule(rule).setMemorySize(memorySize).createNewSpace()
+				.addDimension(20, true).addDimension(12, false);
+		return builder.getSpaceOfCell();
+	}
+
+	private byte[] save(ISpace<Boolean> space) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AutomatonSnapshot.save(space, Channels.newChannel(bytes));
+		return bytes.toByteArray();
+	}
+
+	private ISpace<Boolean> load(byte[] snapshot, SpaceBuilder<Boolean> builder)
+			throws IOException {
+		return AutomatonSnapshot.load(
+				Channels.newChannel(new ByteArrayInputStream(snapshot)),
+				builder);
+	}
+
+	private void assertSameSpace(ISpace<Boolean> expected,
+			ISpace<Boolean> actual, int memorySize) {
+		assertEquals(expected.getAllCells().size(), actual.getAllCells()
+				.size());
+		for (ICell<Boolean> cell : expected) {
+			ICell<Boolean> loaded = actual.getCell(cell.getCoords());
+			assertEquals(memorySize, loaded.getMemorySize());
+			for (int age = 0; age < memorySize; age++) {
+				assertEquals(cell.getState(age), loaded.getState(age));
+			}
+		}
+	}
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		ISpace<Boolean> space = createSpace(3);
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+		automaton.doStep();
+		automaton.doStep();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AutomatonSnapshot.save(automaton, Channels.newChannel(bytes));
+		CellularAutomaton<Boolean> loaded = AutomatonSnapshot.load(
+				Channels.newChannel(new ByteArrayInputStream(bytes
+						.toByteArray())), rule);
+		ISpace<Boolean> loadedSpace = loaded.getSpace();
+		assertSameSpace(space, loadedSpace, 3);
+
+		ICell<Boolean> corner = loadedSpace.getCell(0, 0);
+		assertNotNull(corner.getPreviousCellOnDimension(0));
+		assertNull(corner.getPreviousCellOnDimension(1));
+		assertEquals(rule, corner.getRule());
+	}
+
+	@Test
+	public void testSameEvolutionAfterLoad() throws IOException {
+		ISpace<Boolean> space = createSpace(2);
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+		automaton.doStep();
+
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setRule(rule);
+		ISpace<Boolean> loadedSpace = load(save(space), builder);
+		CellularAutomaton<Boolean> loaded = new CellularAutomaton<Boolean>(
+				loadedSpace);
+		for (int step = 0; step < 10; step++) {
+			automaton.doStep();
+			loaded.doStep();
+			assertSameSpace(space, loadedSpace, 2);
+		}
+	}
+
+	@Test
+	public void testLoadInOtherStorage() throws IOException {
+		ISpace<Boolean> space = createSpace(1);
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setRule(rule).setStorage(Storage.ARRAY);
+		assertSameSpace(space, load(save(space), builder), 1);
+
+		byte[] history = save(createSpace(2));
+		try {
+			load(history, builder);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testLoadInBits() throws IOException {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			@Override
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+		}).setRule(rule).setStorage(Storage.BITS);
+		ISpace<Boolean> space = createSpace(1);
+		assertSameSpace(space, load(save(space), builder), 1);
+
+		SpaceBuilder<Boolean> empty = new SpaceBuilder<Boolean>();
+		empty.setStateFactory(builder.getStateFactory()).setRule(rule)
+				.createNewSpace().addDimension(20).addDimension(12);
+		space = empty.getSpaceOfCell();
+		ISpace<Boolean> loaded = load(save(space), builder);
+		assertSameSpace(space, loaded, 1);
+		loaded.getCell(3, 4).setCurrentState(true);
+		assertTrue(loaded.getCell(3, 4).getCurrentState());
+	}
+
+	@Test
+	public void testLoadInSparse() throws IOException {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setRule(rule).setStorage(Storage.SPARSE);
+		ISpace<Boolean> space = createSpace(1);
+		ISpace<Boolean> loaded = load(save(space), builder);
+		for (ICell<Boolean> cell : space) {
+			assertEquals(cell.getCurrentState(),
+					loaded.getCell(cell.getCoords()).getCurrentState());
+		}
+		assertEquals(false, ((SparseSpace<Boolean>) loaded).getDefaultState());
+		assertEquals(space.getAllCells().size(), loaded.getCells(
+				new Coords(0, 0), new Coords(19, 11)).size());
+
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			@Override
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+		});
+		SpaceBuilder<Boolean> full = new SpaceBuilder<Boolean>();
+		full.setStateFactory(builder.getStateFactory()).setRule(rule)
+				.createNewSpace().addDimension(20).addDimension(12);
+		for (ICell<Boolean> cell : full.getSpaceOfCell()) {
+			cell.setCurrentState(true);
+		}
+		loaded = load(save(full.getSpaceOfCell()), builder);
+		assertEquals(false, ((SparseSpace<Boolean>) loaded).getDefaultState());
+		assertTrue(loaded.getCell(19, 11).getCurrentState());
+		assertFalse(loaded.getCell(20, 11).getCurrentState());
+	}
+
+	@Test
+	public void testChannelPosition() throws IOException {
+		byte[] snapshot = save(createSpace(1));
+		File file = File.createTempFile("snapshot", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			access.write(snapshot);
+			access.write(42);
+			FileChannel channel = access.getChannel();
+			channel.position(0);
+			SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+			builder.setRule(rule);
+			AutomatonSnapshot.load(channel, builder);
+			assertEquals(snapshot.length, channel.position());
+		} finally {
+			access.close();
+		}
+	}
+
+	@Test
+	public void testCompression() throws IOException {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			@Override
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+		}).setRule(rule).createNewSpace().addDimension(300)
+				.addDimension(300);
+		ISpace<Boolean> space = builder.getSpaceOfCell();
+		byte[] snapshot = save(space);
+		assertTrue(snapshot.length < 200);
+
+		SpaceBuilder<Boolean> loader = new SpaceBuilder<Boolean>();
+		loader.setRule(rule);
+		assertSameSpace(space, load(snapshot, loader), 1);
+	}
+
+	@Test
+	public void testInvalidSnapshot() throws IOException {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setRule(rule);
+		byte[] snapshot = save(createSpace(1));
+
+		byte[] wrong = snapshot.clone();
+		wrong[0] = 'X';
+		try {
+			load(wrong, builder);
+			fail("No exception thrown.");
+		} catch (IOException e) {
+		}
+
+		try {
+			load(Arrays.copyOf(snapshot, snapshot.length - 1), builder);
+			fail("No exception thrown.");
+		} catch (EOFException e) {
+		}
+	}
+
+	@Test
+	public void testIncompleteSpace() throws IOException {
+		SparseSpace<Boolean> space = new SparseSpace<Boolean>(Arrays.asList(
+				false, true), false, rule, 2, 2);
+		space.getCell(0, 0).setCurrentState(true);
+		space.getCell(5, 0).setCurrentState(true);
+		try {
+			save(space);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		space.getCell(-1, 0).setCurrentState(true);
+		try {
+			save(space);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
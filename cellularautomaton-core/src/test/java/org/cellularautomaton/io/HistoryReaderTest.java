@@ -0,0 +1,140 @@
+package org.cellularautomaton.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryReaderTest {
+
+	private File file;
+	private FileChannel channel;
+
+	@Before
+	public void openFile() throws IOException {
+		file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+		channel = new RandomAccessFile(file, "rw").getChannel();
+	}
+
+	@After
+	public void closeFile() throws IOException {
+		channel.close();
+		file.delete();
+	}
+
+	private ISpace<Integer> createSpace() {
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(new AbstractStateFactory<Integer>() {
+			@Override
+			public List<Integer> getPossibleStates() {
+				return Arrays.asList(0);
+			}
+		}).setRule(new IRule<Integer>() {
+			public Integer calculateNextStateOf(ICell<Integer> cell) {
+				return cell.getCurrentState();
+			}
+		}).createNewSpace().addDimension(4).addDimension(3);
+		return builder.getSpaceOfCell();
+	}
+
+	/**
+	 * Write 6 generations, with a keyframe at the generations 10 and 13. At
+	 * the generation g, the cell (g % 4, g % 3) has the state g.
+	 */
+	private ISpace<Integer> writeHistory() throws IOException {
+		ISpace<Integer> space = createSpace();
+		HistoryWriter<Integer> writer = new HistoryWriter<Integer>(space,
+				channel);
+		for (int generation = 10; generation < 16; generation++) {
+			ICell<Integer> cell = space.getCell(generation % 4,
+					generation % 3);
+			cell.setCurrentState(generation);
+			if (generation % 3 == 1) {
+				writer.writeKeyframe(generation, space.getAllCells());
+			} else {
+				writer.writeDelta(generation, Arrays.asList(cell));
+			}
+		}
+		return space;
+	}
+
+	@Test
+	public void testSeek() throws IOException {
+		writeHistory();
+		HistoryReader<Integer> reader = new HistoryReader<Integer>(channel);
+		assertArrayEquals(new int[] { 4, 3 }, reader.getLengths());
+		assertEquals(10, reader.getFirstGeneration());
+		assertEquals(15, reader.getLastGeneration());
+		assertEquals(10, reader.getGeneration());
+		assertEquals(Integer.valueOf(10), reader.getState(2, 1));
+		assertEquals(Integer.valueOf(0), reader.getState(3, 2));
+
+		reader.seek(15);
+		assertEquals(Integer.valueOf(15), reader.getState(3, 0));
+		assertEquals(Integer.valueOf(14), reader.getState(2, 2));
+		assertEquals(Integer.valueOf(13), reader.getState(1, 1));
+		assertEquals(Integer.valueOf(10), reader.getState(2, 1));
+
+		reader.seek(12);
+		assertEquals(Integer.valueOf(12), reader.getState(0, 0));
+		assertEquals(Integer.valueOf(0), reader.getState(3, 0));
+
+		try {
+			reader.seek(16);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			reader.getState(4, 0);
+			fail("No exception thrown.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testRestore() throws IOException {
+		ISpace<Integer> recorded = writeHistory();
+		HistoryReader<Integer> reader = new HistoryReader<Integer>(channel);
+		reader.seek(15);
+		ISpace<Integer> space = createSpace();
+		reader.restore(space);
+		for (ICell<Integer> cell : recorded) {
+			assertEquals(cell.getCurrentState(),
+					space.getCell(cell.getCoords()).getCurrentState());
+		}
+	}
+
+	@Test
+	public void testIncompleteFrameIgnored() throws IOException {
+		writeHistory();
+		channel.truncate(channel.size() - 1);
+		HistoryReader<Integer> reader = new HistoryReader<Integer>(channel);
+		assertEquals(14, reader.getLastGeneration());
+	}
+
+	@Test
+	public void testInvalidHistory() throws IOException {
+		writeHistory();
+		channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 0);
+		try {
+			new HistoryReader<Integer>(channel);
+			fail("No exception thrown.");
+		} catch (IOException e) {
+		}
+	}
+}
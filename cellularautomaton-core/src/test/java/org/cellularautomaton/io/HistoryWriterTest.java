@@ -0,0 +1,186 @@
+package org.cellularautomaton.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.Test;
+
+public class HistoryWriterTest {
+
+	private ISpace<Boolean> createSpace() {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			@Override
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+		}).setRule(new OuterTotalisticRule<Boolean>(false, true, "B3/S23"))
+				.createNewSpace().addDimension(100).addDimension(100);
+		return builder.getSpaceOfCell();
+	}
+
+	@Test
+	public void testFrameSizes() throws IOException {
+		ISpace<Boolean> space = createSpace();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(space,
+				Channels.newChannel(bytes));
+		assertNull(writer.getLastGeneration());
+		int header = bytes.size();
+
+		for (int x = 0; x < 100; x += 2) {
+			space.getCell(x, x).setCurrentState(true);
+		}
+		writer.writeKeyframe(0, space.getAllCells());
+		assertEquals(Integer.valueOf(0), writer.getLastGeneration());
+		int keyframe = bytes.size() - header;
+
+		ICell<Boolean> cell = space.getCell(50, 51);
+		cell.setCurrentState(true);
+		writer.writeDelta(1, Collections.singleton(cell));
+		assertEquals(Integer.valueOf(1), writer.getLastGeneration());
+		int delta = bytes.size() - header - keyframe;
+		assertTrue(delta < 20);
+		assertTrue(delta < keyframe / 10);
+	}
+
+	@Test
+	public void testGenerationsOrder() throws IOException {
+		ISpace<Boolean> space = createSpace();
+		HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(space,
+				Channels.newChannel(new ByteArrayOutputStream()));
+		List<ICell<Boolean>> noCell = Collections.emptyList();
+		try {
+			writer.writeDelta(0, noCell);
+			fail("No exception thrown.");
+		} catch (IllegalStateException e) {
+		}
+
+		writer.writeKeyframe(5, space.getAllCells());
+		writer.writeDelta(6, noCell);
+		try {
+			writer.writeDelta(8, noCell);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			writer.writeKeyframe(7, noCell);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testBufferedFrames() throws IOException {
+		HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(
+				createSpace(),
+				Channels.newChannel(new ByteArrayOutputStream()));
+		assertEquals(HistoryWriter.DEFAULT_BUFFERED_FRAMES,
+				writer.getBufferedFrames());
+		writer.setBufferedFrames(3);
+		assertEquals(3, writer.getBufferedFrames());
+		try {
+			writer.setBufferedFrames(0);
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testBackgroundFailure() throws IOException {
+		ISpace<Boolean> space = createSpace();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WritableByteChannel channel = new WritableByteChannel() {
+			public boolean isOpen() {
+				return true;
+			}
+
+			public void close() {
+			}
+
+			public int write(ByteBuffer buffer) throws IOException {
+				if (bytes.size() > 0) {
+					throw new IOException("Disk full");
+				}
+				int size = buffer.remaining();
+				bytes.write(buffer.array(), buffer.position(), size);
+				buffer.position(buffer.limit());
+				return size;
+			}
+		};
+		HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(space,
+				channel);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			writer.setExecutorService(executor);
+			assertEquals(executor, writer.getExecutorService());
+			writer.writeKeyframe(0, space.getAllCells());
+			try {
+				writer.flush();
+				fail("No exception thrown.");
+			} catch (IOException e) {
+				assertEquals("Disk full", e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectedFrame() throws IOException {
+		ISpace<Boolean> space = createSpace();
+		for (ICell<Boolean> cell : space.getAllCells()) {
+			cell.setCurrentState(false);
+		}
+		File file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		try {
+			HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(space,
+					channel);
+			writer.writeKeyframe(0, space.getAllCells());
+
+			ICell<Boolean> cell = space.getAllCells().iterator().next();
+			cell.setCurrentState(true);
+			List<ICell<Boolean>> changes = Collections.singletonList(cell);
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			executor.shutdown();
+			writer.setExecutorService(executor);
+			try {
+				writer.writeDelta(1, changes);
+				fail("No exception thrown.");
+			} catch (IOException e) {
+			}
+			assertEquals(0, (int) writer.getLastGeneration());
+
+			writer.setExecutorService(null);
+			writer.writeDelta(1, changes);
+
+			HistoryReader<Boolean> reader = new HistoryReader<Boolean>(channel);
+			assertEquals(1, reader.getLastGeneration());
+			reader.seek(1);
+			assertEquals(true, reader.getState(cell.getCoords().getAll()));
+		} finally {
+			channel.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package org.cellularautomaton.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.cell.GenericCell;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedHistoryStoreTest {
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private ISpace<Integer> createSpace(final List<Integer> states) {
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(new AbstractStateFactory<Integer>() {
+			@Override
+			public List<Integer> getPossibleStates() {
+				return states;
+			}
+		}).setRule(new IRule<Integer>() {
+			public Integer calculateNextStateOf(ICell<Integer> cell) {
+				return cell.getCurrentState();
+			}
+		}).createNewSpace().addDimension(5).addDimension(4);
+		return builder.getSpaceOfCell();
+	}
+
+	/**
+	 * Give to each cell the state <code>generation + x * 4 + y</code>.
+	 */
+	private void setGeneration(ISpace<Integer> space, int generation) {
+		for (ICell<Integer> cell : space) {
+			int[] coords = cell.getCoords().getAll();
+			cell.setCurrentState(generation + coords[0] * 4 + coords[1]);
+		}
+	}
+
+	private void testRing(int statesCount) throws IOException {
+		List<Integer> states = new ArrayList<Integer>();
+		for (int state = 0; state < statesCount; state++) {
+			states.add(state);
+		}
+		ISpace<Integer> space = createSpace(states);
+		MappedHistoryStore<Integer> store = MappedHistoryStore.create(file,
+				space, states, 6);
+		try {
+			assertEquals(6, store.getCapacity());
+			assertEquals(0, store.getDepth());
+			for (int generation = 0; generation < 10; generation++) {
+				setGeneration(space, generation);
+				store.record(space.getAllCells());
+			}
+			assertEquals(10, store.getGenerations());
+			assertEquals(6, store.getDepth());
+			for (int age = 0; age < 6; age++) {
+				for (ICell<Integer> cell : space) {
+					int[] coords = cell.getCoords().getAll();
+					assertEquals(Integer.valueOf(9 - age + coords[0] * 4
+							+ coords[1]), store.getState(age, coords));
+				}
+			}
+			try {
+				store.getState(6, 0, 0);
+				fail("No exception thrown.");
+			} catch (IndexOutOfBoundsException e) {
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testRingOfBytes() throws IOException {
+		testRing(100);
+	}
+
+	@Test
+	public void testRingOfShorts() throws IOException {
+		testRing(1000);
+	}
+
+	@Test
+	public void testRingOfInts() throws IOException {
+		testRing(70000);
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		List<Integer> states = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10,
+				11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22);
+		ISpace<Integer> space = createSpace(states);
+		MappedHistoryStore<Integer> store = MappedHistoryStore.create(file,
+				space, states, 4);
+		for (int generation = 0; generation < 3; generation++) {
+			setGeneration(space, generation);
+			store.record(space.getAllCells());
+		}
+		store.close();
+
+		store = MappedHistoryStore.open(file);
+		try {
+			assertArrayEquals(new int[] { 5, 4 }, store.getLengths());
+			assertEquals(states, store.getPossibleStates());
+			assertEquals(3, store.getGenerations());
+			assertEquals(Integer.valueOf(2 + 4 * 4 + 3),
+					store.getState(0, 4, 3));
+			assertEquals(Integer.valueOf(0 + 1 * 4 + 2),
+					store.getState(2, 1, 2));
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testAttach() throws IOException {
+		List<Integer> states = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10,
+				11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22);
+		ISpace<Integer> space = createSpace(states);
+		MappedHistoryStore<Integer> store = MappedHistoryStore.create(file,
+				space, states, 4);
+		for (int generation = 0; generation < 3; generation++) {
+			setGeneration(space, generation);
+			store.record(space.getAllCells());
+		}
+		store.close();
+
+		store = MappedHistoryStore.open(file);
+		try {
+			ISpace<Integer> restarted = createSpace(states);
+			setGeneration(restarted, 1);
+			try {
+				store.attach(restarted);
+				fail("No exception thrown.");
+			} catch (IllegalArgumentException e) {
+			}
+			assertNull(((GenericCell<Integer>) restarted.getCell(0, 0))
+					.getHistory());
+
+			setGeneration(restarted, 2);
+			store.attach(restarted);
+			GenericCell<Integer> cell = (GenericCell<Integer>) restarted
+					.getCell(1, 2);
+			assertEquals(store, cell.getHistory());
+			assertEquals(Integer.valueOf(0 + 1 * 4 + 2), cell.getState(2));
+
+			store.detach(restarted);
+			assertNull(cell.getHistory());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testInvalidStore() throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		access.write(new byte[100]);
+		access.close();
+		try {
+			MappedHistoryStore.open(file);
+			fail("No exception thrown.");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testUnknownState() throws IOException {
+		List<Integer> states = Arrays.asList(0, 1);
+		ISpace<Integer> space = createSpace(states);
+		MappedHistoryStore<Integer> store = MappedHistoryStore.create(file,
+				space, states, 2);
+		try {
+			space.getCell(1, 1).setCurrentState(2);
+			store.record(space.getAllCells());
+			fail("No exception thrown.");
+		} catch (IllegalArgumentException e) {
+		} finally {
+			store.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package org.cellularautomaton.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.junit.Test;
+
+public class StateInputStreamTest {
+
+	private Object readBack(Object object) throws IOException,
+			ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(object);
+		output.close();
+		StateInputStream input = new StateInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		try {
+			return input.readObject();
+		} finally {
+			input.close();
+		}
+	}
+
+	@Test
+	public void testAllowedStates() throws Exception {
+		List<Object> states = new ArrayList<Object>(Arrays.asList(true, 'A',
+				(byte) 1, (short) 2, 3, 4L, 5f, 6d, "state", Storage.BITS));
+		assertEquals(states, readBack(states));
+	}
+
+	@Test
+	public void testRefusedStates() throws Exception {
+		List<Object> states = new ArrayList<Object>();
+		states.add(new Date());
+		for (Object object : new Object[] { states,
+				new HashMap<String, String>() }) {
+			try {
+				readBack(object);
+				fail("No exception thrown for " + object);
+			} catch (InvalidClassException e) {
+			}
+		}
+	}
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import org.cellularautomaton.optimization.OptimizationManager.OptimizationExecutor;
 import org.cellularautomaton.optimization.step.OptimizationStep;
+import org.cellularautomaton.optimization.type.AutoRemoveOptimization;
 import org.cellularautomaton.optimization.type.OptimizationType;
 import org.junit.Test;
 
@@ -63,4 +64,111 @@ public class OptimizationManagerTest extends OptimizableTest<Object> {
 		manager.execute((Class<? extends OptimizationStep<Object>>) OptimizationStep.class);
 		assertTrue(executed[0]);
 	}
+
+	interface OtherType extends OptimizationType<Object> {
+	}
+
+	class Counted extends AbstractOptimization<Object> implements
+			OptimizationStep<Object>, Type, OtherType {
+		@Override
+		public int execute(int input) {
+			return input;
+		}
+	}
+
+	class Counter implements OptimizationExecutor<Object> {
+		private int count = 0;
+
+		@Override
+		public void execute(
+				org.cellularautomaton.optimization.Optimization<Object> optimization) {
+			count++;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testExactExecutor() {
+		OptimizationManager<Object> manager = new OptimizationManager<Object>();
+		manager.setOwner(new Object());
+		manager.add(new Counted());
+		Counter typeCounter = new Counter();
+		manager.setExecutor(Type.class, typeCounter);
+		manager.setExecutor(OtherType.class, typeCounter);
+		Class<? extends OptimizationStep<Object>> step = (Class<? extends OptimizationStep<Object>>) OptimizationStep.class;
+		try {
+			manager.execute(step);
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+
+		Counter exactCounter = new Counter();
+		manager.setExecutor(
+				(Class<? extends OptimizationType<Object>>) Counted.class,
+				exactCounter);
+		manager.execute(step);
+		manager.execute(step);
+		assertEquals(2, exactCounter.count);
+		assertEquals(0, typeCounter.count);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDispatchFollowsChanges() {
+		OptimizationManager<Object> manager = new OptimizationManager<Object>();
+		manager.setOwner(new Object());
+		Class<? extends OptimizationStep<Object>> step = (Class<? extends OptimizationStep<Object>>) OptimizationStep.class;
+		manager.execute(step);
+
+		Counter first = new Counter();
+		manager.setExecutor(Type.class, first);
+		Counted optimization = new Counted();
+		manager.add(optimization);
+		manager.execute(step);
+		assertEquals(1, first.count);
+
+		Counter second = new Counter();
+		manager.setExecutor(Type.class, second);
+		manager.execute(step);
+		assertEquals(1, first.count);
+		assertEquals(1, second.count);
+
+		manager.add(new Counted());
+		manager.execute(step);
+		assertEquals(3, second.count);
+
+		manager.remove(optimization);
+		manager.execute(step);
+		assertEquals(4, second.count);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testAutoRemove() {
+		final boolean[] removeNow = { false };
+		class Removable extends Counted implements
+				AutoRemoveOptimization<Object> {
+			@Override
+			public boolean removeNow() {
+				return removeNow[0];
+			}
+		}
+		OptimizationManager<Object> manager = new OptimizationManager<Object>();
+		manager.setOwner(new Object());
+		Counter counter = new Counter();
+		manager.setExecutor(Type.class, counter);
+		Removable optimization = new Removable();
+		manager.add(optimization);
+		Class<? extends OptimizationStep<Object>> step = (Class<? extends OptimizationStep<Object>>) OptimizationStep.class;
+
+		manager.execute(step);
+		assertEquals(1, counter.count);
+		assertTrue(manager.contains(optimization));
+
+		removeNow[0] = true;
+		manager.execute(step);
+		assertEquals(1, counter.count);
+		assertFalse(manager.contains(optimization));
+		assertNull(optimization.getOwner());
+	}
 }
@@ -0,0 +1,114 @@
+package org.cellularautomaton.optimization.implemented;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.optimization.type.AutomatonCellsSelectionOptimizationTest;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.Test;
+
+public class CalculateOnlyActiveTilesOptimizationTest extends
+		AutomatonCellsSelectionOptimizationTest {
+
+	private ISpace<Boolean> createSpace(final int[][] alive) {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			@Override
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+
+			@Override
+			public void customize(ICell<Boolean> cell) {
+				int[] coords = cell.getCoords().getAll();
+				boolean isAlive = false;
+				for (int[] cellCoords : alive) {
+					isAlive |= Arrays.equals(cellCoords, coords);
+				}
+				cell.setCurrentState(isAlive);
+			}
+		}).setRule(new OuterTotalisticRule<Boolean>(false, true, "B3/S23"))
+				.createNewSpace().addDimension(40).addDimension(24);
+		return builder.getSpaceOfCell();
+	}
+
+	@Test
+	public void testSameEvolutionThanAllCells() {
+		int[][] alive = { { 37, 20 }, { 38, 21 }, { 36, 22 }, { 37, 22 },
+				{ 38, 22 }, { 10, 10 }, { 11, 10 }, { 10, 11 }, { 11, 11 } };
+		ISpace<Boolean> allSpace = createSpace(alive);
+		ISpace<Boolean> tileSpace = createSpace(alive);
+		CellularAutomaton<Boolean> all = new CellularAutomaton<Boolean>(
+				allSpace);
+		CellularAutomaton<Boolean> tiled = new CellularAutomaton<Boolean>(
+				tileSpace);
+		CalculateOnlyActiveTilesOptimization<Boolean> optimization = new CalculateOnlyActiveTilesOptimization<Boolean>(
+				8);
+		tiled.add(optimization);
+		assertEquals(8, optimization.getTileSize());
+		assertEquals(0, optimization.getTileCount());
+
+		for (int step = 0; step < 60; step++) {
+			for (ICell<Boolean> cell : allSpace) {
+				assertEquals(cell.getCurrentState(),
+						tileSpace.getCell(cell.getCoords()).getCurrentState());
+			}
+			all.doStep();
+			tiled.doStep();
+			assertEquals(15, optimization.getTileCount());
+			// the glider is always on at most 4 tiles, the block sleeps
+			assertTrue(optimization.getAwakeTileCount() <= 12);
+			assertEquals(optimization.getAwakeTileCount() * 64, tiled
+					.getCellsToManage().size());
+		}
+	}
+
+	@Test
+	public void testInnerChangesWakeOnlyTheirTile() {
+		ISpace<Boolean> space = createSpace(new int[][] { { 3, 4 }, { 4, 4 },
+				{ 5, 4 } });
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+		CalculateOnlyActiveTilesOptimization<Boolean> optimization = new CalculateOnlyActiveTilesOptimization<Boolean>(
+				8);
+		automaton.add(optimization);
+
+		for (int step = 0; step < 5; step++) {
+			automaton.doStep();
+			assertEquals(1, optimization.getAwakeTileCount());
+			Collection<ICell<Boolean>> cells = new HashSet<ICell<Boolean>>(
+					space.getCells(space.getCell(0, 0).getCoords(), space
+							.getCell(7, 7).getCoords()));
+			assertEquals(cells, new HashSet<ICell<Boolean>>(automaton
+					.getCellsToManage()));
+		}
+	}
+
+	@Test
+	public void testStillSpaceSleeps() {
+		ISpace<Boolean> space = createSpace(new int[][] { { 7, 7 }, { 8, 7 },
+				{ 7, 8 }, { 8, 8 } });
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+		CalculateOnlyActiveTilesOptimization<Boolean> optimization = new CalculateOnlyActiveTilesOptimization<Boolean>();
+		automaton.add(optimization);
+		assertEquals(CalculateOnlyActiveTilesOptimization.DEFAULT_TILE_SIZE,
+				optimization.getTileSize());
+
+		automaton.doStep();
+		assertEquals(0, optimization.getAwakeTileCount());
+		assertTrue(automaton.getCellsToManage().isEmpty());
+		automaton.doStep();
+		assertTrue(space.getCell(7, 7).getCurrentState());
+		assertFalse(space.getCell(6, 7).getCurrentState());
+	}
+}
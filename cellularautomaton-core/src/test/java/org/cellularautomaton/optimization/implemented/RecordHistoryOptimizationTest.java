@@ -0,0 +1,122 @@
+package org.cellularautomaton.optimization.implemented;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.io.HistoryReader;
+import org.cellularautomaton.io.HistoryWriter;
+import org.cellularautomaton.optimization.type.GenericOptimizationTest;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.PatternStateFactory;
+import org.junit.Test;
+
+public class RecordHistoryOptimizationTest extends GenericOptimizationTest {
+
+	private ISpace<Boolean> createSpace() {
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new PatternStateFactory<Boolean>(false, true))
+				.setRule(new OuterTotalisticRule<Boolean>(false, true, "B3/S23"))
+				.createNewSpace().addDimension(30, true).addDimension(20, true);
+		return builder.getSpaceOfCell();
+	}
+
+	private List<Boolean[][]> record(ISpace<Boolean> space,
+			CellularAutomaton<Boolean> automaton, int steps) {
+		List<Boolean[][]> generations = new ArrayList<Boolean[][]>();
+		for (int step = 0; step <= steps; step++) {
+			Boolean[][] states = new Boolean[30][20];
+			for (ICell<Boolean> cell : space) {
+				int[] coords = cell.getCoords().getAll();
+				states[coords[0]][coords[1]] = cell.getCurrentState();
+			}
+			generations.add(states);
+			if (step < steps) {
+				automaton.doStep();
+			}
+		}
+		return generations;
+	}
+
+	private void assertGeneration(Boolean[][] expected,
+			HistoryReader<Boolean> reader) {
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 20; y++) {
+				assertEquals(expected[x][y], reader.getState(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testRecordAndSeek() throws IOException {
+		File file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		try {
+			ISpace<Boolean> space = createSpace();
+			CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+					space);
+			RecordHistoryOptimization<Boolean> optimization = new RecordHistoryOptimization<Boolean>(
+					new HistoryWriter<Boolean>(space, channel), 7);
+			automaton.add(optimization);
+			assertEquals(7, optimization.getKeyframeInterval());
+			List<Boolean[][]> generations = record(space, automaton, 30);
+			assertEquals(31, optimization.getGenerations());
+			optimization.getWriter().flush();
+
+			HistoryReader<Boolean> reader = new HistoryReader<Boolean>(channel);
+			assertEquals(0, reader.getFirstGeneration());
+			assertEquals(30, reader.getLastGeneration());
+			for (int generation = 0; generation <= 30; generation++) {
+				reader.seek(generation);
+				assertGeneration(generations.get(generation), reader);
+			}
+			for (int generation : new int[] { 22, 3, 15, 14, 30, 0, 8 }) {
+				reader.seek(generation);
+				assertEquals(generation, reader.getGeneration());
+				assertGeneration(generations.get(generation), reader);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test
+	public void testRecordInBackground() throws IOException {
+		File file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ISpace<Boolean> space = createSpace();
+			CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+					space);
+			HistoryWriter<Boolean> writer = new HistoryWriter<Boolean>(space,
+					channel);
+			writer.setExecutorService(executor);
+			writer.setBufferedFrames(2);
+			automaton.add(new RecordHistoryOptimization<Boolean>(writer));
+			List<Boolean[][]> generations = record(space, automaton, 20);
+			writer.flush();
+
+			HistoryReader<Boolean> reader = new HistoryReader<Boolean>(channel);
+			assertEquals(20, reader.getLastGeneration());
+			reader.seek(20);
+			assertGeneration(generations.get(20), reader);
+		} finally {
+			executor.shutdown();
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.cellularautomaton.optimization.implemented;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.GenericCell;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.io.MappedHistoryStore;
+import org.cellularautomaton.optimization.type.GenericOptimizationTest;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.junit.Test;
+
+public class StoreHistoryOptimizationTest extends GenericOptimizationTest {
+
+	@Test
+	public void testOldStatesReadByTheRule() throws IOException {
+		// each cell copies the state it had 3 generations ago, plus 1
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		final List<Integer> states = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8,
+				9, 10);
+		builder.setStateFactory(new AbstractStateFactory<Integer>() {
+			@Override
+			public List<Integer> getPossibleStates() {
+				return states;
+			}
+		}).setRule(new IRule<Integer>() {
+			public Integer calculateNextStateOf(ICell<Integer> cell) {
+				return cell.getState(2) + 1;
+			}
+		}).createNewSpace().addDimension(3).addDimension(3);
+		ISpace<Integer> space = builder.getSpaceOfCell();
+		space.getCell(1, 1).setCurrentState(5);
+
+		File file = File.createTempFile("history", ".bin");
+		file.deleteOnExit();
+		MappedHistoryStore<Integer> store = MappedHistoryStore.create(file,
+				space, states, 3);
+		try {
+			CellularAutomaton<Integer> automaton = new CellularAutomaton<Integer>(
+					space);
+			StoreHistoryOptimization<Integer> optimization = new StoreHistoryOptimization<Integer>(
+					store);
+			automaton.add(optimization);
+			assertEquals(store, optimization.getStore());
+			assertEquals(1, store.getGenerations());
+			// the first generations do not have enough history
+			store.record(space.getAllCells());
+			store.record(space.getAllCells());
+
+			automaton.doStep();
+			assertEquals(Integer.valueOf(6), space.getCell(1, 1)
+					.getCurrentState());
+			assertEquals(Integer.valueOf(1), space.getCell(0, 0)
+					.getCurrentState());
+			assertEquals(Integer.valueOf(5), space.getCell(1, 1).getState(1));
+			assertEquals(4, store.getGenerations());
+			automaton.doStep();
+			automaton.doStep();
+			automaton.doStep();
+			assertEquals(Integer.valueOf(7), space.getCell(1, 1)
+					.getCurrentState());
+			assertEquals(Integer.valueOf(6), space.getCell(1, 1).getState(2));
+
+			automaton.remove(optimization);
+			assertNull(((GenericCell<Integer>) space.getCell(1, 1))
+					.getHistory());
+		} finally {
+			store.close();
+			file.delete();
+		}
+	}
+}
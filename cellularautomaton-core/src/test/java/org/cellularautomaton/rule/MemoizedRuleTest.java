@@ -0,0 +1,203 @@
+package org.cellularautomaton.rule;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.rule.MemoizedRule.Eviction;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.ScriptSpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.junit.Test;
+
+public class MemoizedRuleTest extends IRuleTest<Boolean> {
+
+	@Override
+	public IRule<Boolean> createRule() {
+		return new MemoizedRule<Boolean>(new OuterTotalisticRule<Boolean>(
+				false, true, "B3/S23"), Arrays.asList(false, true));
+	}
+
+	@Override
+	public IStateFactory<Boolean> getStateFactory() {
+		return new AbstractStateFactory<Boolean>() {
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+
+			@Override
+			public void customize(ICell<Boolean> cell) {
+				cell.setCurrentState(getRandomState());
+			}
+		};
+	}
+
+	@Test
+	public void testSameResults() {
+		OuterTotalisticRule<Boolean> rule = new OuterTotalisticRule<Boolean>(
+				false, true, "B3/S23");
+		MemoizedRule<Boolean> memoizedRule = new MemoizedRule<Boolean>(rule,
+				Arrays.asList(false, true));
+
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(getStateFactory()).setRule(memoizedRule);
+		builder.createNewSpace().addDimension(20).addDimension(20);
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				builder.getSpaceOfCell());
+
+		int calls = 0;
+		for (int step = 0; step < 10; step++) {
+			for (ICell<Boolean> cell : automaton.getSpace().getAllCells()) {
+				assertEquals(rule.calculateNextStateOf(cell),
+						memoizedRule.calculateNextStateOf(cell));
+				calls++;
+			}
+			automaton.doStep();
+			calls += 400;
+		}
+		assertEquals(calls, memoizedRule.getHits() + memoizedRule.getMisses());
+		assertTrue(memoizedRule.getMisses() <= 512);
+		assertTrue(memoizedRule.getHitRate() > 0.5);
+		assertEquals(memoizedRule.getMisses(), memoizedRule.getCachedCount());
+
+		memoizedRule.clear();
+		assertEquals(0, memoizedRule.getHits());
+		assertEquals(0, memoizedRule.getMisses());
+		assertEquals(0, memoizedRule.getCachedCount());
+		assertEquals(0, memoizedRule.getHitRate(), 0);
+	}
+
+	@Test
+	public void testParallelFirstIn() throws Exception {
+		final OuterTotalisticRule<Boolean> rule = new OuterTotalisticRule<Boolean>(
+				false, true, "B3/S23");
+		final MemoizedRule<Boolean> memoizedRule = new MemoizedRule<Boolean>(
+				rule, null, Arrays.asList(false, true), 16, Eviction.FIRST_IN);
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(getStateFactory()).setRule(memoizedRule);
+		builder.createNewSpace().addDimension(20).addDimension(20);
+		final ISpace<Boolean> space = builder.getSpaceOfCell();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int thread = 0; thread < 4; thread++) {
+			results.add(executor.submit(new Callable<Boolean>() {
+				public Boolean call() {
+					for (ICell<Boolean> cell : space) {
+						if (!rule.calculateNextStateOf(cell).equals(
+								memoizedRule.calculateNextStateOf(cell))) {
+							return false;
+						}
+					}
+					return true;
+				}
+			}));
+		}
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get());
+		}
+		executor.shutdown();
+		assertEquals(1600, memoizedRule.getHits() + memoizedRule.getMisses());
+		assertTrue(memoizedRule.getCachedCount() <= 16);
+	}
+
+	private List<ICell<Character>> createCells(String states) {
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString("[config]\nstates=abc\n[cells]\n"
+				+ states + "\n");
+		ISpace<Character> space = builder.getSpaceOfCell();
+		List<ICell<Character>> cells = new ArrayList<ICell<Character>>();
+		for (int index = 0; index < states.length(); index++) {
+			cells.add(space.getCell(index));
+		}
+		return cells;
+	}
+
+	private MemoizedRule<Character> createCountingRule(
+			final List<ICell<Character>> calls, Eviction eviction) {
+		return new MemoizedRule<Character>(new IRule<Character>() {
+			public Character calculateNextStateOf(ICell<Character> cell) {
+				calls.add(cell);
+				return cell.getCurrentState();
+			}
+		}, new Neighborhood(), Arrays.asList('a', 'b', 'c'), 2, eviction);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		List<ICell<Character>> cells = createCells("abaca");
+		List<ICell<Character>> calls = new ArrayList<ICell<Character>>();
+		MemoizedRule<Character> rule = createCountingRule(calls,
+				Eviction.LEAST_RECENTLY_USED);
+		for (ICell<Character> cell : cells) {
+			assertEquals(cell.getCurrentState(),
+					rule.calculateNextStateOf(cell));
+		}
+		assertEquals(
+				Arrays.asList(cells.get(0), cells.get(1), cells.get(3)), calls);
+		assertEquals(2, rule.getHits());
+		assertEquals(3, rule.getMisses());
+		assertEquals(2, rule.getCachedCount());
+	}
+
+	@Test
+	public void testFirstInEviction() {
+		List<ICell<Character>> cells = createCells("abaca");
+		List<ICell<Character>> calls = new ArrayList<ICell<Character>>();
+		MemoizedRule<Character> rule = createCountingRule(calls,
+				Eviction.FIRST_IN);
+		for (ICell<Character> cell : cells) {
+			assertEquals(cell.getCurrentState(),
+					rule.calculateNextStateOf(cell));
+		}
+		assertEquals(Arrays.asList(cells.get(0), cells.get(1), cells.get(3),
+				cells.get(4)), calls);
+		assertEquals(1, rule.getHits());
+		assertEquals(4, rule.getMisses());
+		assertEquals(2, rule.getCachedCount());
+	}
+
+	@Test
+	public void testUnknownStates() {
+		List<ICell<Character>> cells = createCells("abcab");
+		final List<ICell<Character>> calls = new ArrayList<ICell<Character>>();
+		MemoizedRule<Character> rule = new MemoizedRule<Character>(
+				new IRule<Character>() {
+					public Character calculateNextStateOf(
+							ICell<Character> cell) {
+						calls.add(cell);
+						return 'a';
+					}
+				}, null, Arrays.asList('a'), 10, Eviction.FIRST_IN);
+		for (ICell<Character> cell : cells) {
+			assertEquals((Character) 'a', rule.calculateNextStateOf(cell));
+		}
+		assertEquals(5, rule.getMisses());
+		for (ICell<Character> cell : cells) {
+			assertEquals((Character) 'a', rule.calculateNextStateOf(cell));
+		}
+		assertEquals(5, rule.getHits());
+		assertEquals(5, calls.size());
+	}
+
+	@Test
+	public void testCacheSize() {
+		try {
+			new MemoizedRule<Boolean>(createRule(), null, Arrays.asList(false,
+					true), 0, Eviction.FIRST_IN);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
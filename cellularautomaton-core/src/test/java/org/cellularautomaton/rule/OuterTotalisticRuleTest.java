@@ -0,0 +1,119 @@
+package org.cellularautomaton.rule;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.junit.Test;
+
+public class OuterTotalisticRuleTest extends IRuleTest<Boolean> {
+
+	@Override
+	public IRule<Boolean> createRule() {
+		return new OuterTotalisticRule<Boolean>(false, true, "B3/S23");
+	}
+
+	@Override
+	public IStateFactory<Boolean> getStateFactory() {
+		return new AbstractStateFactory<Boolean>() {
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+
+			@Override
+			public void customize(ICell<Boolean> cell) {
+				cell.setCurrentState(getRandomState());
+			}
+		};
+	}
+
+	@Test
+	public void testNotation() {
+		OuterTotalisticRule<Boolean> rule = new OuterTotalisticRule<Boolean>(
+				false, true, "B36/S23");
+		assertEquals("B36/S23", rule.getNotation());
+		assertEquals((1L << 3) | (1L << 6), rule.getBirthMask());
+		assertEquals((1L << 2) | (1L << 3), rule.getSurvivalMask());
+		assertTrue(rule.isBirth(6));
+		assertFalse(rule.isBirth(2));
+		assertTrue(rule.isSurvival(2));
+		assertFalse(rule.isSurvival(6));
+
+		rule = new OuterTotalisticRule<Boolean>(false, true, "s23/b3");
+		assertEquals("B3/S23", rule.getNotation());
+		rule = new OuterTotalisticRule<Boolean>(false, true, "B/S");
+		assertEquals(0, rule.getBirthMask());
+		assertEquals(0, rule.getSurvivalMask());
+
+		rule = new OuterTotalisticRule<Boolean>(false, true, new int[] { 3 },
+				new int[] { 2, 3 });
+		assertEquals("B3/S23", rule.toString());
+
+		for (String notation : new String[] { "B3", "B3/S2/S3", "B3/X23",
+				"B3a/S23", "/S23" }) {
+			try {
+				new OuterTotalisticRule<Boolean>(false, true, notation);
+				fail("No exception thrown for " + notation);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+		try {
+			new OuterTotalisticRule<Boolean>(true, true, "B3/S23");
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testNextState() {
+		OuterTotalisticRule<String> rule = new OuterTotalisticRule<String>(
+				"dead", "alive", "B3/S23");
+		assertEquals("dead", rule.getDeadState());
+		assertEquals("alive", rule.getAliveState());
+		for (int count = 0; count <= 8; count++) {
+			assertEquals(count == 3 ? "alive" : "dead",
+					rule.getNextState(false, count));
+			assertEquals(count == 2 || count == 3 ? "alive" : "dead",
+					rule.getNextState(true, count));
+		}
+	}
+
+	@Test
+	public void testBlinker() {
+		final List<Integer> aliveX = Arrays.asList(1, 2, 3);
+		SpaceBuilder<Boolean> builder = new SpaceBuilder<Boolean>();
+		builder.setStateFactory(new AbstractStateFactory<Boolean>() {
+			public List<Boolean> getPossibleStates() {
+				return Arrays.asList(false, true);
+			}
+
+			@Override
+			public void customize(ICell<Boolean> cell) {
+				cell.setCurrentState(cell.getCoords().get(1) == 2
+						&& aliveX.contains(cell.getCoords().get(0)));
+			}
+		}).setRule(createRule());
+		builder.createNewSpace().addDimension(5, false).addDimension(5, false);
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				builder.getSpaceOfCell());
+
+		automaton.doStep();
+		for (ICell<Boolean> cell : automaton.getSpace().getAllCells()) {
+			assertEquals(cell.toString(), cell.getCoords().get(0) == 2
+					&& aliveX.contains(cell.getCoords().get(1)),
+					cell.getCurrentState());
+		}
+		automaton.doStep();
+		for (ICell<Boolean> cell : automaton.getSpace().getAllCells()) {
+			assertEquals(cell.toString(), cell.getCoords().get(1) == 2
+					&& aliveX.contains(cell.getCoords().get(0)),
+					cell.getCurrentState());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.cellularautomaton.rule;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.ScriptSpaceBuilder;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.junit.Test;
+
+public class TotalisticRuleTest extends IRuleTest<Integer> {
+
+	private static final List<Integer> STATES = Arrays.asList(0, 1, 2);
+
+	@Override
+	public IRule<Integer> createRule() {
+		return new TotalisticRule<Integer>(STATES, 777);
+	}
+
+	@Override
+	public IStateFactory<Integer> getStateFactory() {
+		return new AbstractStateFactory<Integer>() {
+			public List<Integer> getPossibleStates() {
+				return STATES;
+			}
+
+			@Override
+			public void customize(ICell<Integer> cell) {
+				cell.setCurrentState(getRandomState());
+			}
+		};
+	}
+
+	@Test
+	public void testCode() {
+		TotalisticRule<Integer> rule = new TotalisticRule<Integer>(STATES, 777);
+		assertTrue(Arrays.equals(new int[] { 0, 1, 2, 1, 0, 0, 1 },
+				rule.getTable()));
+		assertEquals(777, rule.getCode());
+		assertEquals("777", rule.toString());
+		assertEquals(STATES, rule.getStates());
+		assertEquals(2, rule.getValue(2));
+		assertEquals(-1, rule.getValue(3));
+
+		assertEquals(0, rule.getNextValue(0));
+		assertEquals(2, rule.getNextValue(2));
+		assertEquals(1, rule.getNextValue(6));
+		assertEquals(0, rule.getNextValue(7));
+		assertEquals(0, rule.getNextValue(-1));
+
+		rule = new TotalisticRule<Integer>(STATES, new int[] { 0, 2, 1 });
+		assertEquals(1 * 9 + 2 * 3, rule.getCode());
+		assertEquals(0, new TotalisticRule<Integer>(STATES, 0).getCode());
+	}
+
+	@Test
+	public void testInvalidRules() {
+		try {
+			new TotalisticRule<Integer>(Arrays.asList(0), 1);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new TotalisticRule<Integer>(Arrays.asList(0, 1, 0), 1);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new TotalisticRule<Integer>(STATES, new int[] { 0, 3 });
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new TotalisticRule<Integer>(STATES, -1);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testNextState() {
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString("[config]\nstates=.ab\n[cells]\n"
+				+ ".ab.bba\n");
+		ISpace<Character> space = builder.getSpaceOfCell();
+		TotalisticRule<Character> rule = new TotalisticRule<Character>(
+				Arrays.asList('.', 'a', 'b'), 777);
+
+		// sums (cyclic) : 2, 3, 3, 4, 4, 5, 3
+		String expected = "baa...a";
+		for (int index = 0; index < expected.length(); index++) {
+			assertEquals((Character) expected.charAt(index),
+					rule.calculateNextStateOf(space.getCell(index)));
+		}
+
+		space.getCell(0).setCurrentState('x');
+		try {
+			rule.calculateNextStateOf(space.getCell(1));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
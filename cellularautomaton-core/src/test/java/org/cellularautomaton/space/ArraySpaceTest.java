@@ -0,0 +1,342 @@
+package org.cellularautomaton.space;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.optimization.implemented.CalculateOnlyActiveTilesOptimization;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.rule.TotalisticRule;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.cellularautomaton.state.PatternStateFactory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
+
+public class ArraySpaceTest {
+
+	private final IRule<Integer> lifeRule = new IRule<Integer>() {
+		public Integer calculateNextStateOf(ICell<Integer> cell) {
+			int alive = 0;
+			for (int x = -1; x <= 1; x++) {
+				for (int y = -1; y <= 1; y++) {
+					if (x != 0 || y != 0) {
+						alive += cell.getRelativeCell(x, y).getCurrentState();
+					}
+				}
+			}
+			return alive == 3 || alive == 2 && cell.getCurrentState() == 1 ? 1
+					: 0;
+		}
+	};
+
+	private final IStateFactory<String> stateFactory = new AbstractStateFactory<String>() {
+		public List<String> getPossibleStates() {
+			return Arrays.asList(new String[] { "0", "1", "2" });
+		}
+
+		public void customize(ICell<String> cell) {
+			cell.setCurrentState("" + cell.getCoords().get(0));
+		}
+	};
+
+	private ArraySpace<String> createSpace(boolean cyclic, int memorySize) {
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		builder.setStorage(Storage.ARRAY).setStateFactory(stateFactory)
+				.setMemorySize(memorySize).setRule(new IRule<String>() {
+					public String calculateNextStateOf(ICell<String> cell) {
+						return cell.getCurrentState() + "+";
+					}
+				});
+		builder.createNewSpace().addDimension(3, cyclic).addDimension(2, cyclic);
+		return (ArraySpace<String>) builder.getSpaceOfCell();
+	}
+
+	@Test
+	public void testStructure() {
+		ArraySpace<String> space = createSpace(false, 1);
+		assertEquals(6, space.size());
+		assertEquals(2, space.getDimensions());
+		assertEquals(3, space.getLength(0));
+		assertEquals(2, space.getLength(1));
+		assertFalse(space.isCyclic(0));
+		assertFalse(space.isEmpty());
+
+		ICell<String> origin = space.getOrigin();
+		assertEquals(new Coords(0, 0), origin.getCoords());
+		assertEquals(origin, space.getCell(0, 0));
+		assertEquals(new Coords(1, 0), origin.getNextCellOnDimension(0)
+				.getCoords());
+		assertEquals(new Coords(0, 1), origin.getNextCellOnDimension(1)
+				.getCoords());
+		assertNull(origin.getPreviousCellOnDimension(0));
+		assertNull(origin.getPreviousCellOnDimension(1));
+		assertNull(space.getCell(3, 0));
+		assertEquals(space.getCell(2, 1), origin.getRelativeCell(2, 1));
+		assertNull(origin.getRelativeCell(-1, 0));
+
+		Collection<ICell<String>> around = new HashSet<ICell<String>>();
+		around.add(space.getCell(1, 0));
+		around.add(space.getCell(0, 1));
+		assertEquals(around, origin.getAllCellsAround());
+	}
+
+	@Test
+	public void testCyclicStructure() {
+		ArraySpace<String> space = createSpace(true, 1);
+		ICell<String> origin = space.getOrigin();
+		assertEquals(space.getCell(2, 0), origin.getPreviousCellOnDimension(0));
+		assertEquals(space.getCell(0, 1), origin.getPreviousCellOnDimension(1));
+		assertEquals(space.getCell(2, 1), origin.getRelativeCell(-1, -1));
+		assertEquals(space.getCell(1, 0), origin.getRelativeCell(4, 2));
+	}
+
+	@Test
+	public void testAllCells() {
+		ArraySpace<String> space = createSpace(true, 1);
+		Collection<ICell<String>> cells = space.getAllCells();
+		assertEquals(6, cells.size());
+		assertEquals(6, new HashSet<ICell<String>>(cells).size());
+		int index = 0;
+		for (ICell<String> cell : space) {
+			assertEquals(index % 3, cell.getCoords().get(0));
+			assertEquals(index / 3, cell.getCoords().get(1));
+			assertEquals("" + cell.getCoords().get(0), cell.getCurrentState());
+			index++;
+		}
+		assertEquals(6, index);
+	}
+
+	@Test
+	public void testCellEvolution() {
+		ArraySpace<String> space = createSpace(true, 3);
+		ICell<String> cell = space.getCell(1, 1);
+		assertEquals(3, cell.getMemorySize());
+		assertEquals("1", cell.getState(0));
+		assertEquals("0", cell.getState(1));
+		assertEquals("0", cell.getState(2));
+		assertFalse(cell.isNextStateCalculated());
+
+		cell.calculateNextState();
+		assertTrue(cell.isNextStateCalculated());
+		assertTrue(cell.isNextStateDifferent());
+		assertEquals("1", space.getCell(1, 1).getCurrentState());
+
+		space.getCell(1, 1).applyNextState();
+		assertFalse(cell.isNextStateCalculated());
+		assertEquals("1+", cell.getState(0));
+		assertEquals("1", cell.getState(1));
+		assertEquals("0", cell.getState(2));
+		assertTrue(space.getKnownStates().contains("1+"));
+
+		cell.setCurrentState("2");
+		assertEquals("2", cell.getState(0));
+		assertEquals("1", cell.getState(1));
+	}
+
+	@Test
+	public void testFixedStructure() {
+		ArraySpace<String> space = createSpace(true, 1);
+		ICell<String> cell = space.getOrigin();
+		try {
+			cell.setNextCellOnDimension(0, cell);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			cell.setRule(null);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			space.setOrigin(cell);
+			fail("No exception thrown");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	public void testNeighbors() {
+		Neighborhood neighborhood = new Neighborhood(new int[] { -2, 1 },
+				new int[] { 0, 0 }, new int[] { 1 }, new int[] { 3, -1 });
+		for (boolean cyclic : new boolean[] { false, true }) {
+			SpaceBuilder<String> builder = new SpaceBuilder<String>();
+			builder.setStorage(Storage.ARRAY)
+					.setStateFactory(new PatternStateFactory<String>("0", "1"))
+					.setRule(new IRule<String>() {
+						public String calculateNextStateOf(ICell<String> cell) {
+							return cell.getCurrentState();
+						}
+					});
+			builder.createNewSpace().addDimension(7, cyclic)
+					.addDimension(5, cyclic);
+			ISpace<String> space = builder.getSpaceOfCell();
+
+			for (ICell<String> cell : space.getAllCells()) {
+				List<ICell<String>> neighbors = cell.getNeighbors(neighborhood);
+				assertEquals(neighborhood.size(), neighbors.size());
+				for (int index = 0; index < neighborhood.size(); index++) {
+					assertEquals(cell.getRelativeCell(neighborhood
+							.getOffset(index)), neighbors.get(index));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGetCells() {
+		ArraySpace<String> space = createSpace(false, 1);
+		assertEquals(new Coords(2, 1), space.getCell(new Coords(2, 1))
+				.getCoords());
+		assertNull(space.getCell(new Coords(3, 1)));
+		assertNull(space.getCell(new Coords(2)));
+
+		Collection<ICell<String>> cells = space.getCells(new Coords(1, -5),
+				new Coords(5, 0));
+		assertEquals(2, cells.size());
+		Iterator<ICell<String>> iterator = cells.iterator();
+		assertEquals(new Coords(1, 0), iterator.next().getCoords());
+		assertEquals(new Coords(2, 0), iterator.next().getCoords());
+		assertTrue(space.getCells(new Coords(1, 1), new Coords(0, 1))
+				.isEmpty());
+	}
+
+	@Test
+	public void testSameEvolutionThanLinkedSpace() {
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(new PatternStateFactory<Integer>(0, 1))
+				.setRule(lifeRule);
+		ISpace<Integer> linkedSpace = builder.createNewSpace()
+				.addDimension(12).addDimension(9).getSpaceOfCell();
+		builder.setStorage(Storage.ARRAY);
+		ArraySpace<Integer> arraySpace = (ArraySpace<Integer>) builder
+				.createNewSpace().addDimension(12).addDimension(9)
+				.getSpaceOfCell();
+		ArraySpace<Integer> tiledSpace = (ArraySpace<Integer>) builder
+				.createNewSpace().addDimension(12).addDimension(9)
+				.getSpaceOfCell();
+
+		CellularAutomaton<Integer> linked = new CellularAutomaton<Integer>(
+				linkedSpace);
+		CellularAutomaton<Integer> array = new CellularAutomaton<Integer>(
+				arraySpace);
+		assertEquals(arraySpace.size(), array.getCellsToManage().size());
+		CellularAutomaton<Integer> tiled = new CellularAutomaton<Integer>(
+				tiledSpace);
+		tiled.add(new CalculateOnlyActiveTilesOptimization<Integer>(4));
+
+		for (int step = 0; step < 10; step++) {
+			for (ICell<Integer> cell : linkedSpace) {
+				int[] coords = cell.getCoords().getAll();
+				assertEquals(cell.getCurrentState(), arraySpace
+						.getCell(coords).getCurrentState());
+				assertEquals(cell.getCurrentState(), tiledSpace
+						.getCell(coords).getCurrentState());
+			}
+			linked.doStep();
+			array.doStep();
+			tiled.doStep();
+		}
+	}
+
+	@Test
+	public void testApplyNextStates() {
+		ArraySpace<String> space = createSpace(false, 2);
+		space.calculateNextStates();
+		assertTrue(space.applyNextStates());
+		assertEquals("1+", space.getCell(1, 0).getCurrentState());
+		assertEquals("1", space.getCell(1, 0).getState(1));
+		try {
+			space.applyNextStates();
+			fail("No exception thrown");
+		} catch (StateNotCalculatedException e) {
+		}
+	}
+
+	private <StateType> void checkSameEvolution(IRule<StateType> rule,
+			final List<StateType> states, int[] lengths, boolean[] cyclic) {
+		IStateFactory<StateType> stateFactory = new AbstractStateFactory<StateType>() {
+			public List<StateType> getPossibleStates() {
+				return states;
+			}
+
+			public void customize(ICell<StateType> cell) {
+				int hash = 0;
+				for (int coord : cell.getCoords().getAll()) {
+					hash = hash * 31 + coord * 17 + 5;
+				}
+				hash = (hash * 7 + 3) % 11;
+				cell.setCurrentState(states.get(hash % states.size()));
+			}
+		};
+
+		SpaceBuilder<StateType> builder = new SpaceBuilder<StateType>();
+		builder.setStateFactory(stateFactory).setRule(rule).createNewSpace();
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			builder.addDimension(lengths[dimension], cyclic[dimension]);
+		}
+		ISpace<StateType> linkedSpace = builder.getSpaceOfCell();
+		builder.setStorage(Storage.ARRAY).createNewSpace();
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			builder.addDimension(lengths[dimension], cyclic[dimension]);
+		}
+		ArraySpace<StateType> arraySpace = (ArraySpace<StateType>) builder
+				.getSpaceOfCell();
+
+		CellularAutomaton<StateType> linked = new CellularAutomaton<StateType>(
+				linkedSpace);
+		CellularAutomaton<StateType> array = new CellularAutomaton<StateType>(
+				arraySpace);
+		for (int step = 0; step < 10; step++) {
+			for (ICell<StateType> cell : linkedSpace) {
+				assertEquals(cell.getCurrentState(),
+						arraySpace.getCell(cell.getCoords().getAll())
+								.getCurrentState());
+			}
+			linked.doStep();
+			array.doStep();
+		}
+	}
+
+	@Test
+	public void testOuterTotalisticRule() {
+		IRule<Integer> rule = new OuterTotalisticRule<Integer>(0, 1, "B3/S23");
+		List<Integer> states = Arrays.asList(0, 1);
+		checkSameEvolution(rule, states, new int[] { 12, 9 }, new boolean[] {
+				true, true });
+		checkSameEvolution(rule, states, new int[] { 12, 9 }, new boolean[] {
+				false, true });
+		checkSameEvolution(rule, states, new int[] { 2, 7 }, new boolean[] {
+				true, false });
+		checkSameEvolution(rule, states, new int[] { 5, 4, 3 },
+				new boolean[] { true, false, true });
+	}
+
+	@Test
+	public void testTotalisticRule() {
+		List<Character> states = Arrays.asList('.', 'a', 'b');
+		IRule<Character> rule = new TotalisticRule<Character>(states, 777);
+		checkSameEvolution(rule, states, new int[] { 30 },
+				new boolean[] { true });
+		checkSameEvolution(rule, states, new int[] { 30 },
+				new boolean[] { false });
+
+		rule = new TotalisticRule<Character>(states, new int[] { 0, 1, 2, 1,
+				0, 2, 0, 1, 1, 2, 0, 1, 2 });
+		checkSameEvolution(rule, states, new int[] { 10, 8 }, new boolean[] {
+				true, false });
+		checkSameEvolution(rule, states, new int[] { 2, 3, 4 },
+				new boolean[] { true, true, false });
+	}
+}
@@ -0,0 +1,233 @@
+package org.cellularautomaton.space;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.cellularautomaton.state.PatternStateFactory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
+
+public class BitSpaceTest {
+
+	private final OuterTotalisticRule<Integer> lifeRule = new OuterTotalisticRule<Integer>(
+			0, 1, "B3/S23");
+
+	private final IStateFactory<Integer> stateFactory = new PatternStateFactory<Integer>(
+			0, 1);
+
+	private BitSpace<Boolean> createSpace(IRule<Boolean> rule, int width,
+			int height, boolean cyclic) {
+		BitSpace<Boolean> space = new BitSpace<Boolean>(false, true, false,
+				rule, new int[] { width, height }, new boolean[] { cyclic,
+						cyclic });
+		for (ICell<Boolean> cell : space) {
+			int x = cell.getCoords().get(0);
+			int y = cell.getCoords().get(1);
+			cell.setCurrentState((x * 7 + y * 3 + x * y) % 5 < 2);
+		}
+		return space;
+	}
+
+	@Test
+	public void testStructure() {
+		BitSpace<Boolean> space = createSpace(null, 70, 3, false);
+		assertEquals(210, space.size());
+		assertEquals(2, space.getDimensions());
+		assertEquals(70, space.getLength(0));
+		assertEquals(3, space.getLength(1));
+		assertEquals(1, space.getMemorySize());
+		assertEquals(false, space.getDeadState());
+		assertEquals(true, space.getAliveState());
+
+		ICell<Boolean> cell = space.getCell(63, 1);
+		assertEquals(new Coords(64, 1), cell.getNextCellOnDimension(0)
+				.getCoords());
+		assertEquals(new Coords(63, 2), cell.getNextCellOnDimension(1)
+				.getCoords());
+		assertNull(space.getCell(69, 2).getNextCellOnDimension(0));
+
+		try {
+			new BitSpace<Boolean>(false, true, false, null, new int[] { 4 },
+					new boolean[] { true });
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new BitSpace<Boolean>(false, false, false, null,
+					new int[] { 4, 4 }, new boolean[] { true, true });
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testStates() {
+		BitSpace<Boolean> space = new BitSpace<Boolean>(false, true, true,
+				null, new int[] { 70, 3 }, new boolean[] { true, true });
+		assertEquals(210, space.countAliveCells());
+		for (ICell<Boolean> cell : space) {
+			assertEquals(true, cell.getCurrentState());
+		}
+
+		space.getCell(64, 1).setCurrentState(false);
+		space.getCell(3, 2).setCurrentState(false);
+		assertEquals(208, space.countAliveCells());
+		assertEquals(false, space.getCell(64, 1).getCurrentState());
+		assertEquals(true, space.getCell(63, 1).getCurrentState());
+		assertEquals(true, space.getCell(65, 1).getCurrentState());
+		assertEquals(true, space.getCell(64, 0).getCurrentState());
+		assertEquals(false, space.getCell(3, 2).getCurrentState());
+
+		try {
+			space.getOrigin().getState(1);
+			fail("No exception thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testCellEvolution() {
+		BitSpace<Boolean> space = createSpace(new IRule<Boolean>() {
+			public Boolean calculateNextStateOf(ICell<Boolean> cell) {
+				return !cell.getCurrentState();
+			}
+		}, 5, 5, true);
+		ICell<Boolean> cell = space.getCell(1, 2);
+		boolean state = cell.getCurrentState();
+		assertFalse(cell.isNextStateCalculated());
+		try {
+			cell.applyNextState();
+			fail("No exception thrown");
+		} catch (StateNotCalculatedException e) {
+		}
+
+		cell.calculateNextState();
+		assertTrue(cell.isNextStateCalculated());
+		assertTrue(cell.isNextStateDifferent());
+		assertEquals(state, cell.getCurrentState());
+		cell.applyNextState();
+		assertFalse(cell.isNextStateCalculated());
+		assertEquals(!state, cell.getCurrentState());
+
+		try {
+			space.applyNextStates();
+			fail("No exception thrown");
+		} catch (StateNotCalculatedException e) {
+		}
+		space.calculateNextStates();
+		assertTrue(space.applyNextStates());
+		assertEquals(state, cell.getCurrentState());
+	}
+
+	@Test
+	public void testBitwiseEvolution() {
+		final OuterTotalisticRule<Boolean> life = new OuterTotalisticRule<Boolean>(
+				false, true, "B3/S23");
+		final OuterTotalisticRule<Boolean> other = new OuterTotalisticRule<Boolean>(
+				false, true, "B0367/S1458");
+		BitSpace<Boolean> empty = new BitSpace<Boolean>(false, true, false,
+				life, new int[] { 70, 3 }, new boolean[] { true, true });
+		empty.calculateNextStates();
+		assertFalse(empty.applyNextStates());
+
+		List<OuterTotalisticRule<Boolean>> rules = new ArrayList<OuterTotalisticRule<Boolean>>();
+		rules.add(life);
+		rules.add(other);
+		for (OuterTotalisticRule<Boolean> rule : rules) {
+			final OuterTotalisticRule<Boolean> cellRule = rule;
+			IRule<Boolean> hiddenRule = new IRule<Boolean>() {
+				public Boolean calculateNextStateOf(ICell<Boolean> cell) {
+					return cellRule.calculateNextStateOf(cell);
+				}
+			};
+			for (int width : new int[] { 1, 5, 63, 64, 65, 130 }) {
+				for (boolean cyclic : new boolean[] { false, true }) {
+					BitSpace<Boolean> bitwise = createSpace(rule, width, 7,
+							cyclic);
+					BitSpace<Boolean> called = createSpace(hiddenRule, width,
+							7, cyclic);
+					for (int step = 0; step < 5; step++) {
+						bitwise.calculateNextStates();
+						bitwise.applyNextStates();
+						called.calculateNextStates();
+						called.applyNextStates();
+						for (ICell<Boolean> expected : called) {
+							assertEquals(rule + " " + width + " " + cyclic
+									+ " " + expected, expected
+									.getCurrentState(), bitwise.getCell(
+									expected.getCoords().getAll())
+									.getCurrentState());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSameEvolutionThanLinkedSpace() {
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(stateFactory).setRule(lifeRule);
+		ISpace<Integer> linkedSpace = builder.createNewSpace()
+				.addDimension(70).addDimension(9).getSpaceOfCell();
+		BitSpace<Integer> bitSpace = (BitSpace<Integer>) builder
+				.setStorage(Storage.BITS).createNewSpace().addDimension(70)
+				.addDimension(9).getSpaceOfCell();
+
+		CellularAutomaton<Integer> linked = new CellularAutomaton<Integer>(
+				linkedSpace);
+		CellularAutomaton<Integer> bits = new CellularAutomaton<Integer>(
+				bitSpace);
+
+		for (int step = 0; step < 10; step++) {
+			for (ICell<Integer> cell : linkedSpace) {
+				assertEquals(cell.getCurrentState(),
+						bitSpace.getCell(cell.getCoords().getAll())
+								.getCurrentState());
+			}
+			linked.doStep();
+			bits.doStep();
+		}
+	}
+
+	@Test
+	public void testBuilderChecks() {
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStorage(Storage.BITS).setStateFactory(stateFactory)
+				.setRule(lifeRule);
+		try {
+			builder.createNewSpace().addDimension(4).finalizeSpace();
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+		try {
+			builder.setMemorySize(2).createNewSpace().addDimension(4)
+					.addDimension(4).finalizeSpace();
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+		try {
+			builder.setMemorySize(1)
+					.setStateFactory(new AbstractStateFactory<Integer>() {
+						public List<Integer> getPossibleStates() {
+							return Arrays.asList(0, 1, 2);
+						}
+					}).createNewSpace().addDimension(4).addDimension(4)
+					.finalizeSpace();
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
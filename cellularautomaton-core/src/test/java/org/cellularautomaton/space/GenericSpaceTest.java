@@ -1,8 +1,23 @@
 package org.cellularautomaton.space;
 
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cellularautomaton.cell.CellFactory;
+import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.space.GenericSpaceTest.TestState;
 import org.cellularautomaton.space.builder.SpaceBuilder;
 import org.cellularautomaton.state.EnumStateFactory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
 
 public class GenericSpaceTest extends ISpaceTest<TestState> {
 
@@ -28,4 +43,133 @@ public class GenericSpaceTest extends ISpaceTest<TestState> {
 		return builder.setStateFactory(stateFactory).createNewSpace()
 				.addDimension(5).addDimension(5).getSpaceOfCell();
 	}
+
+	@Test
+	public void testIndexedOrder() {
+		ISpace<TestState> space = createSpace();
+		List<ICell<TestState>> cells = (List<ICell<TestState>>) space
+				.getAllCells();
+		assertEquals(25, cells.size());
+		for (int rank = 1; rank < cells.size(); rank++) {
+			assertTrue(cells.get(rank - 1).getCoords()
+					.compareTo(cells.get(rank).getCoords()) < 0);
+		}
+		assertSame(cells, space.getAllCells());
+
+		Iterator<ICell<TestState>> iterator = space.iterator();
+		for (ICell<TestState> cell : cells) {
+			assertSame(cell, iterator.next());
+		}
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void testIndexUpdated() {
+		GenericSpace<TestState> space = (GenericSpace<TestState>) createSpace();
+		ICell<TestState> origin = space.getOrigin();
+		ICell<TestState> intruder = new CellFactory<TestState>()
+				.setDimensions(2).createCell();
+		intruder.getCoords().setAll(-1, 0);
+		intruder.setNextCellOnDimension(0, origin);
+		origin.setPreviousCellOnDimension(0, intruder);
+
+		assertEquals(26, space.getAllCells().size());
+		assertSame(intruder, space.getCell(-1, 0));
+		assertSame(intruder, space.iterator().next());
+
+		List<ICell<TestState>> cells = (List<ICell<TestState>>) space
+				.getAllCells();
+		intruder.getCoords().setAll(-2, 0);
+		assertSame(cells, space.getAllCells());
+		assertNull(space.getCell(-2, 0));
+		space.indexCells();
+		assertSame(intruder, space.getCell(-2, 0));
+	}
+
+	@Test
+	public void testGetCellsOfWideRegion() {
+		ISpace<TestState> space = createSpace();
+		Coords min = new Coords(-1000000, -1000000);
+		Coords max = new Coords(1000000, 1000000);
+		List<ICell<TestState>> square = new ArrayList<ICell<TestState>>(
+				space.getCells(new Coords(0, 0), new Coords(4, 4)));
+		assertEquals(25, square.size());
+		assertEquals(square,
+				new ArrayList<ICell<TestState>>(space.getCells(min, max)));
+
+		ICell<TestState> origin = space.getOrigin();
+		ICell<TestState> far = new CellFactory<TestState>().setDimensions(2)
+				.createCell();
+		far.getCoords().setAll(-1000, 3);
+		far.setNextCellOnDimension(0, origin);
+		origin.setPreviousCellOnDimension(0, far);
+		List<ICell<TestState>> cells = new ArrayList<ICell<TestState>>(
+				space.getCells(min, max));
+		assertEquals(26, cells.size());
+		assertTrue(cells.contains(far));
+		for (int rank = 1; rank < cells.size(); rank++) {
+			Coords previous = cells.get(rank - 1).getCoords();
+			Coords next = cells.get(rank).getCoords();
+			assertTrue(previous.get(1) < next.get(1)
+					|| previous.get(1) == next.get(1)
+					&& previous.get(0) < next.get(0));
+		}
+	}
+
+	@Test
+	public void testSetCells() {
+		CellFactory<TestState> factory = new CellFactory<TestState>()
+				.setDimensions(1);
+		List<ICell<TestState>> cells = new ArrayList<ICell<TestState>>();
+		for (int x = 0; x < 3; x++) {
+			ICell<TestState> cell = factory.createCell();
+			cell.getCoords().setAll(x);
+			if (x > 0) {
+				cells.get(x - 1).setNextCellOnDimension(0, cell);
+				cell.setPreviousCellOnDimension(0, cells.get(x - 1));
+			}
+			cells.add(cell);
+		}
+
+		GenericSpace<TestState> space = new GenericSpace<TestState>();
+		space.setCells(cells);
+		assertSame(cells.get(0), space.getOrigin());
+		assertEquals(cells, space.getAllCells());
+		assertSame(cells.get(2), space.getCell(2));
+		Iterator<ICell<TestState>> iterator = space.iterator();
+		for (ICell<TestState> cell : cells) {
+			assertSame(cell, iterator.next());
+		}
+		assertFalse(iterator.hasNext());
+
+		space.setCells(new ArrayList<ICell<TestState>>());
+		assertTrue(space.isEmpty());
+		assertNull(space.getCell(0));
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		final ISpace<TestState> space = createSpace();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (int thread = 0; thread < 4; thread++) {
+			results.add(executor.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					start.await();
+					for (ICell<TestState> cell : space) {
+						if (space.getCell(cell.getCoords()) != cell) {
+							return false;
+						}
+					}
+					return true;
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Boolean> result : results) {
+			assertTrue(result.get());
+		}
+		executor.shutdown();
+	}
 }
@@ -14,6 +14,7 @@ import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.space.builder.SpaceBuilder;
 import org.cellularautomaton.state.AbstractStateFactory;
 import org.cellularautomaton.state.IStateFactory;
+import org.cellularautomaton.util.Coords;
 import org.junit.Test;
 
 public abstract class ISpaceTest<StateType> {
@@ -86,7 +87,8 @@ public abstract class ISpaceTest<StateType> {
 
 		// test init
 		{
-			Collection<ICell<StateType>> cellsToView = space.getAllCells();
+			Collection<ICell<StateType>> cellsToView = new HashSet<ICell<StateType>>(
+					space.getAllCells());
 			Iterator<ICell<StateType>> iterator = space.iterator();
 			while (iterator.hasNext()) {
 				ICell<StateType> cell = iterator.next();
@@ -110,7 +112,8 @@ public abstract class ISpaceTest<StateType> {
 			ICell<StateType> intruderNotAccessible = cellFactory.createCell();
 			intruderNotAccessible.setNextCellOnDimension(0, hostCell);
 
-			Collection<ICell<StateType>> cellsToView = space.getAllCells();
+			Collection<ICell<StateType>> cellsToView = new HashSet<ICell<StateType>>(
+					space.getAllCells());
 			iterator = space.iterator();
 			while (iterator.hasNext()) {
 				ICell<StateType> cell = iterator.next();
@@ -155,4 +158,53 @@ public abstract class ISpaceTest<StateType> {
 		automaton1D.doStep();
 		assertEquals(cell0, automaton1D.getSpace().getOrigin());
 	}
+
+	@Test
+	public void testGetCell() {
+		ISpace<StateType> space = createSpace();
+		for (ICell<StateType> cell : space.getAllCells()) {
+			assertSame(cell, space.getCell(cell.getCoords()));
+			assertSame(cell, space.getCell(cell.getCoords().getAll()));
+		}
+
+		Coords coords = space.getOrigin().getCoords();
+		int[] outside = coords.getAll();
+		outside[0] = -1;
+		assertNull(space.getCell(outside));
+		assertNull(space.getCell(new Coords(outside)));
+	}
+
+	@Test
+	public void testGetCells() {
+		ISpace<StateType> space = createSpace();
+		int dimensions = space.getOrigin().getDimensions();
+		Coords min = new Coords(new int[dimensions]);
+		Coords max = new Coords(new int[dimensions]);
+		max.set(0, 1);
+		Collection<ICell<StateType>> cells = space.getCells(min, max);
+		assertEquals(2, cells.size());
+		for (ICell<StateType> cell : cells) {
+			assertTrue(cell.getCoords().get(0) <= 1);
+			for (int dimension = 1; dimension < dimensions; dimension++) {
+				assertEquals(0, cell.getCoords().get(dimension));
+			}
+		}
+
+		for (int dimension = 0; dimension < dimensions; dimension++) {
+			min.set(dimension, -10);
+			max.set(dimension, 100);
+		}
+		cells = space.getCells(min, max);
+		assertEquals(space.getAllCells().size(), cells.size());
+		assertTrue(cells.containsAll(space.getAllCells()));
+
+		max.set(0, -11);
+		assertTrue(space.getCells(min, max).isEmpty());
+
+		try {
+			space.getCells(min, new Coords(new int[dimensions + 1]));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
 }
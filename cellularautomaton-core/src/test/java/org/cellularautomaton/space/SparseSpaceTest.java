@@ -0,0 +1,288 @@
+package org.cellularautomaton.space;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.cellularautomaton.CellularAutomaton;
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
+import org.cellularautomaton.cell.StateNotCalculatedException;
+import org.cellularautomaton.rule.IRule;
+import org.cellularautomaton.rule.OuterTotalisticRule;
+import org.cellularautomaton.space.builder.SpaceBuilder;
+import org.cellularautomaton.space.builder.SpaceBuilder.Storage;
+import org.cellularautomaton.state.AbstractStateFactory;
+import org.cellularautomaton.state.IStateFactory;
+import org.cellularautomaton.state.PatternStateFactory;
+import org.cellularautomaton.util.Coords;
+import org.junit.Test;
+
+public class SparseSpaceTest {
+
+	private final IRule<Integer> lifeRule = new IRule<Integer>() {
+		public Integer calculateNextStateOf(ICell<Integer> cell) {
+			int alive = 0;
+			for (int x = -1; x <= 1; x++) {
+				for (int y = -1; y <= 1; y++) {
+					if (x != 0 || y != 0) {
+						alive += cell.getRelativeCell(x, y).getCurrentState();
+					}
+				}
+			}
+			return alive == 3 || alive == 2 && cell.getCurrentState() == 1 ? 1
+					: 0;
+		}
+	};
+
+	private final IRule<String> staticRule = new IRule<String>() {
+		public String calculateNextStateOf(ICell<String> cell) {
+			return cell.getCurrentState();
+		}
+	};
+
+	private SparseSpace<String> createSpace(IRule<String> rule) {
+		return new SparseSpace<String>(Arrays.asList("a", "b"), ".", rule, 2,
+				4);
+	}
+
+	@Test
+	public void testStructure() {
+		SparseSpace<String> space = createSpace(staticRule);
+		assertEquals(2, space.getDimensions());
+		assertEquals(4, space.getChunkSize());
+		assertEquals(1, space.getMemorySize());
+		assertEquals(".", space.getDefaultState());
+		assertEquals(Arrays.asList(".", "a", "b"), space.getKnownStates());
+		assertFalse(space.isEmpty());
+
+		ICell<String> origin = space.getOrigin();
+		assertEquals(new Coords(0, 0), origin.getCoords());
+		assertEquals(origin, space.getCell(0, 0));
+		assertEquals(origin, space.getCell(new Coords(0, 0)));
+		assertEquals(space.getCell(-1, 0),
+				origin.getPreviousCellOnDimension(0));
+		assertEquals(space.getCell(0, 1), origin.getNextCellOnDimension(1));
+		assertEquals(space.getCell(-5, 1000), origin.getRelativeCell(-5, 1000));
+		assertNull(space.getCell(0, 0, 0));
+		assertNull(space.getCell(new Coords(0)));
+
+		Collection<ICell<String>> around = new HashSet<ICell<String>>();
+		around.add(space.getCell(-1, 0));
+		around.add(space.getCell(1, 0));
+		around.add(space.getCell(0, -1));
+		around.add(space.getCell(0, 1));
+		assertEquals(around, origin.getAllCellsAround());
+		assertEquals(8, origin.getNeighbors(Neighborhood.moore(2)).size());
+	}
+
+	@Test
+	public void testChunksAllocation() {
+		SparseSpace<String> space = createSpace(staticRule);
+		assertEquals(".", space.getCell(123456, -987654).getCurrentState());
+		assertEquals(0, space.getChunkCount());
+		assertEquals(0, space.getAllCells().size());
+
+		space.getCell(-1, -1).setCurrentState(".");
+		assertEquals(0, space.getChunkCount());
+
+		space.getCell(-1, -1).setCurrentState("a");
+		space.getCell(-4, -4).setCurrentState("b");
+		space.getCell(3, 0).setCurrentState("b");
+		assertEquals(2, space.getChunkCount());
+		assertEquals(3, space.getPopulation());
+		assertEquals(32, space.getAllCells().size());
+		assertEquals("a", space.getCell(-1, -1).getCurrentState());
+		assertEquals("b", space.getCell(-4, -4).getCurrentState());
+		assertEquals("b", space.getCell(3, 0).getCurrentState());
+		assertEquals(".", space.getCell(-1, 0).getCurrentState());
+		assertEquals(".", space.getCell(4, 0).getCurrentState());
+
+		space.getCell(3, 0).setCurrentState(".");
+		assertEquals(2, space.getPopulation());
+		space.calculateNextStates();
+		space.applyNextStates();
+		assertEquals(1, space.getChunkCount());
+		assertEquals("a", space.getCell(-1, -1).getCurrentState());
+		assertEquals("b", space.getCell(-4, -4).getCurrentState());
+	}
+
+	@Test
+	public void testCalculateNextState() {
+		SparseSpace<String> space = createSpace(new IRule<String>() {
+			public String calculateNextStateOf(ICell<String> cell) {
+				return cell.getRelativeCell(-1, 0).getCurrentState();
+			}
+		});
+		space.getCell(7, 7).setCurrentState("a");
+
+		ICell<String> cell = space.getCell(8, 7);
+		assertFalse(cell.isNextStateCalculated());
+		try {
+			cell.applyNextState();
+			fail("No exception thrown");
+		} catch (StateNotCalculatedException e) {
+		}
+		cell.calculateNextState();
+		assertTrue(cell.isNextStateCalculated());
+		assertTrue(cell.isNextStateDifferent());
+		assertEquals(".", cell.getCurrentState());
+		cell.applyNextState();
+		assertEquals("a", cell.getCurrentState());
+		assertFalse(cell.isNextStateCalculated());
+	}
+
+	@Test
+	public void testCalculateNextStates() {
+		SparseSpace<String> space = createSpace(new IRule<String>() {
+			public String calculateNextStateOf(ICell<String> cell) {
+				return cell.getRelativeCell(-1, -1).getCurrentState();
+			}
+		});
+		space.getCell(0, 0).setCurrentState("a");
+		space.getCell(-1, 2).setCurrentState("b");
+		for (int step = 1; step <= 10; step++) {
+			space.calculateNextStates();
+			assertTrue(space.applyNextStates());
+			assertEquals(2, space.getPopulation());
+			assertEquals("a", space.getCell(step, step).getCurrentState());
+			assertEquals("b", space.getCell(step - 1, step + 2)
+					.getCurrentState());
+			assertTrue(space.getChunkCount() <= 4);
+		}
+	}
+
+	@Test
+	public void testGetCells() {
+		SparseSpace<String> space = createSpace(staticRule);
+		space.getCell(-2, 5).setCurrentState("a");
+		List<ICell<String>> cells = (List<ICell<String>>) space.getCells(
+				new Coords(-3, 4), new Coords(-1, 5));
+		assertEquals(6, cells.size());
+		assertEquals(space.getCell(-3, 4), cells.get(0));
+		assertEquals(space.getCell(-2, 4), cells.get(1));
+		assertEquals(space.getCell(-1, 5), cells.get(5));
+		assertEquals("a", cells.get(4).getCurrentState());
+		assertEquals(0, space.getCells(new Coords(1, 1), new Coords(0, 1))
+				.size());
+	}
+
+	@Test
+	public void testWrongChunkSize() {
+		try {
+			new SparseSpace<String>(Arrays.asList("a"), ".", staticRule, 2, 6);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new SparseSpace<String>(Arrays.asList("a"), ".", staticRule, 40,
+					2);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testSpaceBuilder() {
+		IStateFactory<String> stateFactory = new AbstractStateFactory<String>() {
+			public List<String> getPossibleStates() {
+				return Arrays.asList(".", "a");
+			}
+
+			public void customize(ICell<String> cell) {
+				cell.setCurrentState(cell.getCoords().get(0) == 1 ? "a" : ".");
+			}
+		};
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		builder.setStorage(Storage.SPARSE).setStateFactory(stateFactory)
+				.setRule(staticRule).createNewSpace().addDimension(3)
+				.addDimension(40);
+		SparseSpace<String> space = (SparseSpace<String>) builder
+				.getSpaceOfCell();
+		assertEquals(2, space.getDimensions());
+		assertEquals(".", space.getDefaultState());
+		assertEquals(40, space.getPopulation());
+		assertEquals("a", space.getCell(1, 39).getCurrentState());
+		assertEquals(".", space.getCell(1, 40).getCurrentState());
+		assertEquals(".", space.getCell(1, -1).getCurrentState());
+
+		builder.setMemorySize(2).createNewSpace().addDimension(3);
+		try {
+			builder.getSpaceOfCell();
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testSameEvolutionThanArraySpace() {
+		IStateFactory<Integer> stateFactory = new PatternStateFactory<Integer>(
+				0, 1) {
+			@Override
+			protected boolean isAlive(int x, int y) {
+				boolean isInside = x >= 25 && x < 35 && y >= 25 && y < 35;
+				return isInside && super.isAlive(x, y);
+			}
+		};
+		SpaceBuilder<Integer> builder = new SpaceBuilder<Integer>();
+		builder.setStateFactory(stateFactory).setRule(lifeRule);
+		ArraySpace<Integer> arraySpace = (ArraySpace<Integer>) builder
+				.setStorage(Storage.ARRAY).createNewSpace().addDimension(60)
+				.addDimension(60).getSpaceOfCell();
+		SparseSpace<Integer> sparseSpace = new SparseSpace<Integer>(
+				stateFactory.getPossibleStates(), 0, lifeRule, 2, 4);
+		for (ICell<Integer> cell : arraySpace) {
+			int[] coords = cell.getCoords().getAll();
+			sparseSpace.getCell(coords[0] - 30, coords[1] - 30)
+					.setCurrentState(cell.getCurrentState());
+		}
+
+		CellularAutomaton<Integer> array = new CellularAutomaton<Integer>(
+				arraySpace);
+		CellularAutomaton<Integer> sparse = new CellularAutomaton<Integer>(
+				sparseSpace);
+
+		for (int step = 0; step < 15; step++) {
+			int population = 0;
+			for (ICell<Integer> cell : arraySpace) {
+				int[] coords = cell.getCoords().getAll();
+				assertEquals(cell.getCurrentState(),
+						sparseSpace.getCell(coords[0] - 30, coords[1] - 30)
+								.getCurrentState());
+				population += cell.getCurrentState();
+			}
+			assertEquals(population, sparseSpace.getPopulation());
+			array.doStep();
+			sparse.doStep();
+		}
+	}
+
+	@Test
+	public void testGliderTravel() {
+		IRule<Boolean> rule = new OuterTotalisticRule<Boolean>(false, true,
+				"B3/S23");
+		SparseSpace<Boolean> space = new SparseSpace<Boolean>(Arrays.asList(
+				false, true), false, rule, 2);
+		int[][] glider = { { 1, 0 }, { 2, 1 }, { 0, 2 }, { 1, 2 }, { 2, 2 } };
+		for (int[] coords : glider) {
+			space.getCell(coords).setCurrentState(true);
+		}
+
+		CellularAutomaton<Boolean> automaton = new CellularAutomaton<Boolean>(
+				space);
+		for (int period = 1; period <= 100; period++) {
+			for (int step = 0; step < 4; step++) {
+				automaton.doStep();
+				assertTrue(space.getChunkCount() <= 4);
+			}
+			assertEquals(5, space.getPopulation());
+			for (int[] coords : glider) {
+				assertTrue(space.getCell(coords[0] + period,
+						coords[1] + period).getCurrentState());
+			}
+		}
+	}
+}
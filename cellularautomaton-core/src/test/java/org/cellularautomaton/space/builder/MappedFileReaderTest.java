@@ -0,0 +1,109 @@
+package org.cellularautomaton.space.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+
+	private File createFile(String content, Charset charset)
+			throws IOException {
+		File file = File.createTempFile("mapped", ".txt");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				charset);
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+
+	private String readAll(MappedFileReader reader) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[7];
+		int count;
+		while ((count = reader.read(buffer, 0, buffer.length)) != -1) {
+			builder.append(buffer, 0, count);
+		}
+		reader.close();
+		return builder.toString();
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		Charset charset = Charset.forName("UTF-8");
+		String content = "[config]\nstates=X-\n[cells]\nX-X\n-X-\n";
+		File file = createFile(content, charset);
+
+		assertEquals(content, readAll(new MappedFileReader(file, charset)));
+
+		BufferedReader reader = new BufferedReader(new MappedFileReader(file,
+				charset));
+		assertEquals("[config]", reader.readLine());
+		assertEquals("states=X-", reader.readLine());
+		assertEquals("[cells]", reader.readLine());
+		assertEquals("X-X", reader.readLine());
+		assertEquals("-X-", reader.readLine());
+		assertNull(reader.readLine());
+		reader.close();
+		file.delete();
+	}
+
+	@Test
+	public void testReadSeveralWindows() throws IOException {
+		Charset charset = Charset.forName("UTF-8");
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append("a\u00e9\u20ac\ud834\udd1e").append(i).append('\n');
+		}
+		String content = builder.toString();
+		File file = createFile(content, charset);
+
+		for (int windowSize = 4; windowSize < 20; windowSize++) {
+			assertEquals(content, readAll(new MappedFileReader(file, charset,
+					windowSize)));
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = createFile("", Charset.forName("UTF-8"));
+		MappedFileReader reader = new MappedFileReader(file);
+		assertEquals(-1, reader.read());
+		reader.close();
+		file.delete();
+	}
+
+	@Test
+	public void testClosed() throws IOException {
+		File file = createFile("abc", Charset.forName("UTF-8"));
+		MappedFileReader reader = new MappedFileReader(file);
+		assertEquals('a', reader.read());
+		reader.close();
+		try {
+			reader.read();
+			fail("No exception thrown");
+		} catch (IOException e) {
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testWindowSize() throws IOException {
+		File file = createFile("abc", Charset.forName("UTF-8"));
+		try {
+			new MappedFileReader(file, Charset.forName("UTF-8"), 3);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+		file.delete();
+	}
+}
@@ -10,6 +10,9 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.cellularautomaton.CellularAutomaton;
 import org.cellularautomaton.cell.ICell;
@@ -1113,4 +1116,111 @@ public class ScriptSpaceBuilderTest {
 		assertEquals((Character) 'X', cell3.getCurrentState());
 		assertEquals((Character) '-', cell4.getCurrentState());
 	}
+
+	@Test
+	public void testLargeSpaceFromFile() throws IOException {
+		// create file
+		Random random = new Random(0);
+		int width = 300;
+		int height = 200;
+		char[][] states = new char[height][width];
+		File file = File.createTempFile("large", ".txt");
+		file.deleteOnExit();
+		PrintWriter pw = new PrintWriter(new FileWriter(file));
+		pw.println("[config]");
+		pw.println("states=X-");
+		pw.println("[cells]");
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				states[row][column] = random.nextBoolean() ? 'X' : '-';
+			}
+			pw.println(states[row]);
+		}
+		pw.close();
+
+		// generate space
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromFile(file);
+		ISpace<Character> space = builder.getSpaceOfCell();
+
+		// check states
+		assertEquals(width * height, space.getAllCells().size());
+		for (int row = 0; row < height; row++) {
+			for (int column = 0; column < width; column++) {
+				assertEquals((Character) states[row][column],
+						space.getCell(row, column).getCurrentState());
+			}
+		}
+
+		// delete the file
+		file.delete();
+	}
+
+	@Test
+	public void testCellsBeforeStates() throws IOException {
+		// create description
+		String description;
+		{
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			pw.println("[cells]");
+			pw.println("X-X|--X");
+			pw.println("-X-|XX-");
+			pw.println("[config]");
+			pw.println("states=X-");
+			pw.close();
+			description = sw.getBuffer().toString();
+		}
+
+		// generate space
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(description);
+		ISpace<Character> space = builder.getSpaceOfCell();
+
+		// check states
+		assertEquals(12, space.getAllCells().size());
+		assertEquals((Character) 'X', space.getCell(0, 0, 0).getCurrentState());
+		assertEquals((Character) '-', space.getCell(0, 1, 0).getCurrentState());
+		assertEquals((Character) 'X', space.getCell(1, 1, 0).getCurrentState());
+		assertEquals((Character) 'X', space.getCell(1, 0, 2).getCurrentState());
+		assertEquals((Character) '-', space.getCell(1, 1, 2).getCurrentState());
+	}
+
+	@Test
+	public void testParallelBuild() {
+		// create description
+		String description;
+		{
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			pw.println("[config]");
+			pw.println("states=X-");
+			pw.println("[cells]");
+			pw.println("X-X|--X|-X-");
+			pw.println("-X-|XX-|X--");
+			pw.close();
+			description = sw.getBuffer().toString();
+		}
+
+		// generate spaces
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(description);
+		ISpace<Character> sequential = builder.getSpaceOfCell();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			builder.setExecutorService(executor);
+			builder.setParallelTasks(5);
+			builder.createSpaceFromString(description);
+		} finally {
+			executor.shutdown();
+		}
+		ISpace<Character> parallel = builder.getSpaceOfCell();
+
+		// check states
+		assertEquals(18, parallel.getAllCells().size());
+		for (ICell<Character> cell : sequential) {
+			assertEquals(cell.getCurrentState(),
+					parallel.getCell(cell.getCoords()).getCurrentState());
+		}
+	}
 }
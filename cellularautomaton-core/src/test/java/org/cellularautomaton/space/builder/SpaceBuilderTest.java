@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.optimization.AbstractOptimization;
@@ -13,6 +15,7 @@ import org.cellularautomaton.optimization.OptimizableTest;
 import org.cellularautomaton.optimization.Optimization;
 import org.cellularautomaton.optimization.step.OptimizationStep;
 import org.cellularautomaton.optimization.type.OptimizationType;
+import org.cellularautomaton.space.ISpace;
 import org.cellularautomaton.state.AbstractStateFactory;
 import org.cellularautomaton.state.IStateFactory;
 import org.cellularautomaton.util.Coords;
@@ -1466,6 +1469,144 @@ public class SpaceBuilderTest extends OptimizableTest<SpaceBuilder<String>> {
 		assertFalse(cell2.getCoords().isMutable());
 	}
 
+	@Test
+	public void testLinksByCoords() {
+		IStateFactory<String> stateFactory = new AbstractStateFactory<String>() {
+			public List<String> getPossibleStates() {
+				return Arrays.asList(new String[] { "" });
+			}
+		};
+		int[] lengths = { 4, 2, 5 };
+		boolean[] cycles = { true, false, true };
+
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		builder.setStateFactory(stateFactory).createNewSpace();
+		for (int dimension = 0; dimension < lengths.length; dimension++) {
+			builder.addDimension(lengths[dimension], cycles[dimension]);
+		}
+		ISpace<String> space = builder.getSpaceOfCell();
+
+		List<ICell<String>> cells = new ArrayList<ICell<String>>(
+				space.getAllCells());
+		assertEquals(40, cells.size());
+		assertSame(space.getOrigin(), cells.get(0));
+		for (int rank = 1; rank < cells.size(); rank++) {
+			assertTrue(cells.get(rank - 1).getCoords()
+					.compareTo(cells.get(rank).getCoords()) < 0);
+		}
+		for (ICell<String> cell : cells) {
+			assertEquals(3, cell.getDimensions());
+			for (int dimension = 0; dimension < lengths.length; dimension++) {
+				int length = lengths[dimension];
+				int[] next = cell.getCoords().getAll();
+				int[] previous = cell.getCoords().getAll();
+				next[dimension]++;
+				previous[dimension]--;
+				if (cycles[dimension]) {
+					next[dimension] = (next[dimension] + length) % length;
+					previous[dimension] = (previous[dimension] + length)
+							% length;
+				}
+				assertSame(space.getCell(next),
+						cell.getNextCellOnDimension(dimension));
+				assertSame(space.getCell(previous),
+						cell.getPreviousCellOnDimension(dimension));
+			}
+		}
+	}
+
+	@Test
+	public void testParallelBuild() {
+		IStateFactory<String> stateFactory = new AbstractStateFactory<String>() {
+			public List<String> getPossibleStates() {
+				return Arrays.asList(new String[] { "0", "1", "2" });
+			}
+
+			@Override
+			public void customize(ICell<String> cell) {
+				int[] coords = cell.getCoords().getAll();
+				cell.setCurrentState("" + (coords[0] + 2 * coords[2]) % 3);
+			}
+		};
+		int[] lengths = { 5, 3, 7 };
+		boolean[] cycles = { true, false, true };
+
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		builder.setStateFactory(stateFactory);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			builder.setExecutorService(executor).setParallelTasks(4);
+			assertEquals(executor, builder.getExecutorService());
+			assertEquals(4, builder.getParallelTasks());
+
+			builder.createNewSpace();
+			for (int dimension = 0; dimension < lengths.length; dimension++) {
+				builder.addDimension(lengths[dimension], cycles[dimension]);
+			}
+			ISpace<String> parallel = builder.getSpaceOfCell();
+
+			builder.setExecutorService(null).createNewSpace();
+			for (int dimension = 0; dimension < lengths.length; dimension++) {
+				builder.addDimension(lengths[dimension], cycles[dimension]);
+			}
+			ISpace<String> sequential = builder.getSpaceOfCell();
+
+			assertEquals(105, parallel.getAllCells().size());
+			for (ICell<String> cell : sequential.getAllCells()) {
+				Coords coords = cell.getCoords();
+				ICell<String> parallelCell = parallel.getCell(coords);
+				assertFalse(parallelCell.getCoords().isMutable());
+				assertEquals(cell.getCurrentState(),
+						parallelCell.getCurrentState());
+				for (int dimension = 0; dimension < lengths.length; dimension++) {
+					assertEquals(coordsOf(cell
+							.getNextCellOnDimension(dimension)),
+							coordsOf(parallelCell
+									.getNextCellOnDimension(dimension)));
+					assertEquals(coordsOf(cell
+							.getPreviousCellOnDimension(dimension)),
+							coordsOf(parallelCell
+									.getPreviousCellOnDimension(dimension)));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Coords coordsOf(ICell<String> cell) {
+		return cell == null ? null : cell.getCoords();
+	}
+
+	@Test
+	public void testParallelFailure() {
+		IStateFactory<String> stateFactory = new AbstractStateFactory<String>() {
+			public List<String> getPossibleStates() {
+				return Arrays.asList(new String[] { "" });
+			}
+
+			@Override
+			public void customize(ICell<String> cell) {
+				if (cell.getCoords().get(0) == 7) {
+					throw new IllegalStateException("Bad cell");
+				}
+			}
+		};
+
+		SpaceBuilder<String> builder = new SpaceBuilder<String>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			builder.setStateFactory(stateFactory).setExecutorService(executor)
+					.setParallelTasks(2).createNewSpace().addDimension(10)
+					.finalizeSpace();
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("Bad cell", e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void testFinalisation() {
 		// generate space
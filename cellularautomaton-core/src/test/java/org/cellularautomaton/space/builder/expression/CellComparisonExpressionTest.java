@@ -4,8 +4,14 @@ import static org.junit.Assert.*;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.ISpace;
 import org.cellularautomaton.space.builder.ScriptSpaceBuilder;
 import org.cellularautomaton.space.builder.expression.CellComparisonExpression;
 import org.cellularautomaton.util.Coords;
@@ -71,4 +77,84 @@ public class CellComparisonExpressionTest {
 		assertFalse(expression.evaluate());
 	}
 
+	@Test
+	public void testEvaluateWithCell() {
+		String description = "[config]\n" + "states=X-\n" + "[cells]\n"
+				+ "X-\n" + "-X\n";
+
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(description);
+		ICell<Character> cell00 = builder.getSpaceOfCell().getOrigin();
+		ICell<Character> cell10 = cell00.getNextCellOnDimension(0);
+
+		CellComparisonExpression expression = new CellComparisonExpression();
+		expression.addConstraint('X', 1);
+		expression.addTarget(new Coords(0, 0));
+		assertTrue(expression.evaluate(cell00));
+		assertFalse(expression.evaluate(cell10));
+		assertNull(expression.getOrigin());
+
+		expression.setOrigin(cell10);
+		assertTrue(expression.evaluate(cell00));
+		assertFalse(expression.evaluate());
+
+		try {
+			expression.evaluate(null);
+			fail("No exception thrown");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testConcurrentEvaluation() throws InterruptedException {
+		Random random = new Random(0);
+		StringBuilder description = new StringBuilder();
+		description.append("[config]\nstates=X-\n[cells]\n");
+		for (int y = 0; y < 30; y++) {
+			for (int x = 0; x < 30; x++) {
+				description.append(random.nextBoolean() ? 'X' : '-');
+			}
+			description.append("\n");
+		}
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(description.toString());
+		ISpace<Character> space = builder.getSpaceOfCell();
+
+		final Expression expression = ExpressionHelper.parseRulePart(
+				"(0,0)=X & (-1,-1)+(-1,0)+(-1,1)+(0,-1)+(0,1)+(1,-1)+(1,0)"
+						+ "+(1,1)=2X | (-1,-1)+(-1,0)+(-1,1)+(0,-1)+(0,1)"
+						+ "+(1,-1)+(1,0)+(1,1)=3X", Arrays
+						.asList(new Character[] { 'X', '-' }));
+		final List<ICell<Character>> cells = new ArrayList<ICell<Character>>(
+				space.getAllCells());
+		final boolean[] expected = new boolean[cells.size()];
+		for (int index = 0; index < cells.size(); index++) {
+			expected[index] = expression.evaluate(cells.get(index));
+		}
+
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int rank = 0; rank < threads.length; rank++) {
+			final int offset = rank;
+			threads[rank] = new Thread() {
+				@Override
+				public void run() {
+					for (int loop = 0; loop < 20; loop++) {
+						for (int index = 0; index < cells.size(); index++) {
+							int shifted = (index + offset * 7) % cells.size();
+							ICell<Character> cell = cells.get(shifted);
+							if (expression.evaluate(cell) != expected[shifted]) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+				}
+			};
+			threads[rank].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+	}
 }
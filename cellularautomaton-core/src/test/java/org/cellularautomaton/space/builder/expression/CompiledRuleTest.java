@@ -0,0 +1,139 @@
+package org.cellularautomaton.space.builder.expression;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.rule.DynamicRule;
+import org.cellularautomaton.rule.DynamicRule.RulePart;
+import org.cellularautomaton.space.ISpace;
+import org.cellularautomaton.space.builder.ScriptSpaceBuilder;
+import org.junit.Test;
+
+public class CompiledRuleTest {
+
+	private static final List<Character> WIREWORLD_STATES = Arrays
+			.asList(new Character[] { '.', '#', '@', '~' });
+
+	private static final String[] WIREWORLD_RULE = {
+			"(0,0)=@ : ~",
+			"(0,0)=~ : #",
+			"(0,0)=# & ((-1,-1)+(-1,0)+(-1,1)+(0,-1)+(0,1)+(1,-1)+(1,0)+(1,1)=1@"
+					+ " | (-1,-1)+(-1,0)+(-1,1)+(0,-1)+(0,1)+(1,-1)+(1,0)+(1,1)=2@) : @" };
+
+	private ISpace<Character> createSpace(List<Character> states, int width,
+			int height, long seed) {
+		Random random = new Random(seed);
+		StringBuilder description = new StringBuilder();
+		description.append("[config]\nstates=");
+		for (Character state : states) {
+			description.append(state);
+		}
+		description.append("\n[cells]\n");
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				description.append(states.get(random.nextInt(states.size())));
+			}
+			description.append("\n");
+		}
+		ScriptSpaceBuilder builder = new ScriptSpaceBuilder();
+		builder.createSpaceFromString(description.toString());
+		return builder.getSpaceOfCell();
+	}
+
+	private DynamicRule<Character> createDynamicRule(
+			List<Expression> conditions, List<Character> nextStates) {
+		DynamicRule<Character> rule = new DynamicRule<Character>();
+		for (int part = 0; part < conditions.size(); part++) {
+			final Expression condition = conditions.get(part);
+			final Character nextState = nextStates.get(part);
+			rule.addPart(new RulePart<Character>() {
+				@Override
+				public boolean isVerifiedBy(ICell<Character> cell) {
+					ExpressionHelper.setExpressionForOriginCell(condition, cell);
+					return condition.evaluate();
+				}
+
+				@Override
+				public Character getAssignedState() {
+					return nextState;
+				}
+			});
+		}
+		return rule;
+	}
+
+	private void checkSameResults(String[] rule, List<Character> states,
+			boolean isTabulated) {
+		List<Expression> conditions = new ArrayList<Expression>();
+		List<Character> nextStates = new ArrayList<Character>();
+		for (String part : rule) {
+			String[] split = part.split(":");
+			conditions.add(ExpressionHelper.parseRulePart(split[0], states));
+			nextStates.add(split[1].trim().charAt(0));
+		}
+		CompiledRule compiled = new CompiledRule(conditions, nextStates,
+				states);
+		assertEquals(isTabulated, compiled.isTabulated());
+		DynamicRule<Character> dynamic = createDynamicRule(conditions,
+				nextStates);
+
+		for (long seed = 0; seed < 5; seed++) {
+			for (ICell<Character> cell : createSpace(states, 12, 10, seed)) {
+				assertEquals(dynamic.calculateNextStateOf(cell),
+						compiled.calculateNextStateOf(cell));
+			}
+		}
+	}
+
+	@Test
+	public void testTabulatedRule() {
+		checkSameResults(WIREWORLD_RULE, WIREWORLD_STATES, true);
+	}
+
+	@Test
+	public void testEvaluatedRule() {
+		// 2^25 combinations, too much for a table
+		StringBuilder targets = new StringBuilder();
+		for (int x = -2; x <= 2; x++) {
+			for (int y = -2; y <= 2; y++) {
+				targets.append("+(" + x + "," + y + ")");
+			}
+		}
+		String area = targets.substring(1);
+		String[] rule = { "(0,0)=X & " + area + "=5X : -",
+				"(0,0)=- & (" + area + "=3X | (1,1)+(-1,-1)=2X) : X" };
+		checkSameResults(rule,
+				Arrays.asList(new Character[] { '-', 'X' }), false);
+	}
+
+	@Test
+	public void testNeighborhood() {
+		List<Character> states = Arrays.asList(new Character[] { 'A', 'B' });
+		List<Expression> conditions = new ArrayList<Expression>();
+		conditions.add(ExpressionHelper.parseRulePart("(0)=A & (1)=B", states));
+		conditions.add(ExpressionHelper.parseRulePart("(1)+(-1)=2A", states));
+		CompiledRule rule = new CompiledRule(conditions,
+				Arrays.asList(new Character[] { 'B', 'A' }), states);
+		assertEquals(3, rule.getNeighborhood().size());
+	}
+
+	@Test
+	public void testNotCompilable() {
+		AndExpression expression = new AndExpression();
+		expression.addExpression(new SwitchExpression());
+		assertFalse(CompiledRule.isCompilable(expression));
+		assertFalse(CompiledRule.isCompilable(new CellComparisonExpression()));
+		try {
+			new CompiledRule(Arrays.asList(new Expression[] { expression }),
+					Arrays.asList(new Character[] { 'A' }),
+					Arrays.asList(new Character[] { 'A' }));
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
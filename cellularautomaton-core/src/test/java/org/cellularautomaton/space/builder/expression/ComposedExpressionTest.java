@@ -2,6 +2,7 @@ package org.cellularautomaton.space.builder.expression;
 
 import static org.junit.Assert.*;
 
+import org.cellularautomaton.cell.ICell;
 import org.cellularautomaton.space.builder.expression.ComposedExpression;
 import org.cellularautomaton.space.builder.expression.Expression;
 import org.junit.Test;
@@ -17,6 +18,11 @@ public abstract class ComposedExpressionTest {
 			public boolean evaluate() {
 				return false;
 			}
+
+			@Override
+			public boolean evaluate(ICell<Character> origin) {
+				return false;
+			}
 		};
 	}
 
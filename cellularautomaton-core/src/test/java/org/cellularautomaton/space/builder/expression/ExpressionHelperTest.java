@@ -12,6 +12,7 @@ import java.util.List;
 
 import org.cellularautomaton.cell.GenericCell;
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.space.builder.BadFileContentException;
 import org.cellularautomaton.space.builder.expression.AndExpression;
 import org.cellularautomaton.space.builder.expression.CellComparisonExpression;
 import org.cellularautomaton.space.builder.expression.ComposedExpression;
@@ -364,4 +365,58 @@ public class ExpressionHelperTest {
 		}
 	}
 
+	@Test
+	public void testParseRuleCounts() {
+		Expression expression = ExpressionHelper.parseRulePart(
+				"(0,1)+(1,0)+(-1,0)=2A+C", STATES);
+		assertTrue(expression instanceof CellComparisonExpression);
+
+		CellComparisonExpression e = (CellComparisonExpression) expression;
+		assertEquals(3, e.getTargets().size());
+		assertEquals((Integer) 2, e.getConstraints().get('A'));
+		assertEquals((Integer) 1, e.getConstraints().get('C'));
+		assertFalse(e.getConstraints().containsKey('B'));
+	}
+
+	@Test
+	public void testParseRuleCache() {
+		CellComparisonExpression expression = (CellComparisonExpression) ExpressionHelper
+				.parseRulePart("(0,1)+(1,0)=2A", STATES);
+		ICell<Character> origin = new GenericCell<Character>();
+		ExpressionHelper.setExpressionForOriginCell(expression, origin);
+		expression.addConstraint('B', 1);
+
+		CellComparisonExpression other = (CellComparisonExpression) ExpressionHelper
+				.parseRulePart("(0,1)+(1,0)=2A", STATES);
+		assertNotSame(expression, other);
+		assertNull(other.getOrigin());
+		assertEquals(2, other.getTargets().size());
+		assertEquals(1, other.getConstraints().size());
+		assertEquals((Integer) 2, other.getConstraints().get('A'));
+	}
+
+	@Test
+	public void testParseRuleLongChain() {
+		StringBuilder rule = new StringBuilder("(0,0)=A");
+		for (int i = 1; i < 5000; i++) {
+			rule.append(i % 2 == 0 ? " | " : " & ");
+			rule.append("(" + i + ",-" + i + ")=B");
+		}
+		Expression expression = ExpressionHelper.parseRulePart(
+				rule.toString(), STATES);
+		assertTrue(expression instanceof OrExpression);
+		assertEquals(2500, ((OrExpression) expression).getExpressions().size());
+	}
+
+	@Test
+	public void testParseRuleErrors() {
+		for (String rule : new String[] { "", "(0,0)", "(0,0)=D", "(0,0)=A &",
+				"((0,0)=A", "(0,0)=A)", "(0,a)=A", "(0,0)=A | | (0,0)=B" }) {
+			try {
+				ExpressionHelper.parseRulePart(rule, STATES);
+				fail("No exception thrown for " + rule);
+			} catch (BadFileContentException e) {
+			}
+		}
+	}
 }
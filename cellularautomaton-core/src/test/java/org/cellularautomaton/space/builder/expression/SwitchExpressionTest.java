@@ -25,4 +25,12 @@ public class SwitchExpressionTest {
 		assertFalse(expression.evaluate());
 	}
 
+	@Test
+	public void testSwitchWithCell() {
+		SwitchExpression expression = new SwitchExpression();
+		assertFalse(expression.evaluate(null));
+
+		expression.switchEvaluation();
+		assertTrue(expression.evaluate(null));
+	}
 }
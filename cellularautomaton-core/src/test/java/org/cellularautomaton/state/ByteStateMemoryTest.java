@@ -0,0 +1,55 @@
+package org.cellularautomaton.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ByteStateMemoryTest {
+
+	@Test
+	public void testMemoryPushGetForce() {
+		ByteStateMemory memory = new ByteStateMemory(3, (byte) 0);
+		assertEquals(3, memory.getMemorySize());
+		assertEquals(0, memory.getState(0));
+		assertEquals(0, memory.getState(1));
+		assertEquals(0, memory.getState(2));
+
+		memory.pushNewState((byte) 1);
+		memory.pushNewState((byte) 2);
+		assertEquals(2, memory.getState(0));
+		assertEquals(1, memory.getState(1));
+		assertEquals(0, memory.getState(2));
+
+		memory.pushNewState((byte) 3);
+		memory.pushNewState((byte) 4);
+		assertEquals(4, memory.getState(0));
+		assertEquals(3, memory.getState(1));
+		assertEquals(2, memory.getState(2));
+
+		memory.forceCurrentState((byte) 15);
+		assertEquals(15, memory.getState(0));
+		assertEquals(3, memory.getState(1));
+		assertEquals(2, memory.getState(2));
+
+		memory.pushNewState((byte) 200);
+		assertEquals((byte) 200, memory.getState(0));
+		assertEquals(15, memory.getState(1));
+		assertEquals(3, memory.getState(2));
+	}
+
+	@Test
+	public void testMemoryLimits() {
+		ByteStateMemory memory = new ByteStateMemory(2, (byte) 0);
+		try {
+			memory.getState(2);
+			fail("No exception thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			new ByteStateMemory(0, (byte) 0);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package org.cellularautomaton.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class IntStateMemoryTest {
+
+	@Test
+	public void testMemoryPushGetForce() {
+		IntStateMemory memory = new IntStateMemory(3, 0);
+		assertEquals(3, memory.getMemorySize());
+		assertEquals(0, memory.getState(0));
+		assertEquals(0, memory.getState(1));
+		assertEquals(0, memory.getState(2));
+
+		memory.pushNewState(1);
+		memory.pushNewState(2);
+		assertEquals(2, memory.getState(0));
+		assertEquals(1, memory.getState(1));
+		assertEquals(0, memory.getState(2));
+
+		memory.pushNewState(3);
+		memory.pushNewState(4);
+		assertEquals(4, memory.getState(0));
+		assertEquals(3, memory.getState(1));
+		assertEquals(2, memory.getState(2));
+
+		memory.forceCurrentState(15);
+		assertEquals(15, memory.getState(0));
+		assertEquals(3, memory.getState(1));
+		assertEquals(2, memory.getState(2));
+
+		memory.pushNewState(100000);
+		assertEquals(100000, memory.getState(0));
+		assertEquals(15, memory.getState(1));
+		assertEquals(3, memory.getState(2));
+	}
+
+	@Test
+	public void testMemoryLimits() {
+		IntStateMemory memory = new IntStateMemory(2, 0);
+		try {
+			memory.getState(2);
+			fail("No exception thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			new IntStateMemory(0, 0);
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
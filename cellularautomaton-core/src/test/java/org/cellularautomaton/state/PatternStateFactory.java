@@ -0,0 +1,37 @@
+package org.cellularautomaton.state;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cellularautomaton.cell.ICell;
+
+/**
+ * Factory giving the same irregular pattern of alive cells to the 2D spaces of
+ * the tests, so the evolutions of different implementations can be compared.
+ */
+public class PatternStateFactory<StateType> extends
+		AbstractStateFactory<StateType> {
+
+	private final StateType deadState;
+	private final StateType aliveState;
+
+	public PatternStateFactory(StateType deadState, StateType aliveState) {
+		this.deadState = deadState;
+		this.aliveState = aliveState;
+	}
+
+	@Override
+	public List<StateType> getPossibleStates() {
+		return Arrays.asList(deadState, aliveState);
+	}
+
+	@Override
+	public void customize(ICell<StateType> cell) {
+		cell.setCurrentState(isAlive(cell.getCoords().get(0), cell.getCoords()
+				.get(1)) ? aliveState : deadState);
+	}
+
+	protected boolean isAlive(int x, int y) {
+		return (x * 7 + y * 3) % 5 == 0;
+	}
+}
@@ -1,6 +1,7 @@
 package org.cellularautomaton.state;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -51,4 +52,40 @@ public class StateMemoryTest {
 		assertEquals("15", memory.getState(1));
 		assertEquals("3", memory.getState(2));
 	}
+
+	@Test
+	public void testMemoryLoop() {
+		StateMemory<Integer> memory = new StateMemory<Integer>(4, 0);
+		for (int i = 1; i <= 10; i++) {
+			memory.pushNewState(i);
+			for (int age = 0; age < 4; age++) {
+				assertEquals((Integer) Math.max(i - age, 0),
+						memory.getState(age));
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryLimits() {
+		StateMemory<String> memory = new StateMemory<String>(1, "");
+		memory.pushNewState("1");
+		assertEquals("1", memory.getState(0));
+		assertEquals(1, memory.getMemorySize());
+
+		try {
+			memory.getState(1);
+			fail("No exception thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			memory.getState(-1);
+			fail("No exception thrown");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			new StateMemory<String>(0, "");
+			fail("No exception thrown");
+		} catch (IllegalArgumentException e) {
+		}
+	}
 }
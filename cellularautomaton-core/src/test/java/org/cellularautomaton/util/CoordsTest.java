@@ -225,4 +225,70 @@ public class CoordsTest {
 		coords.setAll(0, 1);
 		assertEquals(new Coords(0, 1), coords);
 	}
+
+	@Test
+	public void testHashCode() {
+		Coords coords = new Coords(1, 2, 3);
+		assertEquals(new Coords(1, 2, 3).hashCode(), coords.hashCode());
+
+		coords.set(0, 5);
+		assertEquals(new Coords(5, 2, 3).hashCode(), coords.hashCode());
+
+		coords.setDimensions(4);
+		assertEquals(new Coords(5, 2, 3, 0).hashCode(), coords.hashCode());
+
+		coords.setAll(1, 2);
+		assertEquals(new Coords(1, 2).hashCode(), coords.hashCode());
+		assertEquals(Coords.valueOf(1, 2).hashCode(), coords.hashCode());
+		assertEquals(Coords.valueOf(1, 2, 3).hashCode(),
+				new Coords(1, 2, 3).hashCode());
+	}
+
+	@Test
+	public void testCreationArrayCopied() {
+		int[] values = { 1, 2 };
+		Coords coords = new Coords(values);
+		values[0] = 5;
+		assertEquals(1, coords.get(0));
+
+		coords.getAll()[0] = 5;
+		assertEquals(1, coords.get(0));
+	}
+
+	@Test
+	public void testValueOf() {
+		Coords coords = Coords.valueOf(4, 5);
+		assertEquals(new Coords(4, 5), coords);
+		assertFalse(coords.isMutable());
+		assertSame(coords, Coords.valueOf(4, 5));
+		assertSame(coords, Coords.valueOf(new int[] { 4, 5 }));
+
+		coords = Coords.valueOf(4, 5, 6);
+		assertEquals(new Coords(4, 5, 6), coords);
+		assertSame(coords, Coords.valueOf(4, 5, 6));
+		assertSame(coords, Coords.valueOf(new int[] { 4, 5, 6 }));
+
+		coords = Coords.valueOf(4, 5, 6, 7);
+		assertEquals(new Coords(4, 5, 6, 7), coords);
+		assertSame(coords, Coords.valueOf(4, 5, 6, 7));
+		assertNotSame(coords, Coords.valueOf(4, 5, 6));
+
+		for (int x = 0; x < 100; x++) {
+			for (int y = 0; y < 100; y++) {
+				assertEquals(new Coords(x, y), Coords.valueOf(x, y));
+			}
+		}
+		assertSame(Coords.valueOf(50, 50), Coords.valueOf(50, 50));
+
+		try {
+			coords.setMutable(true);
+			fail("Making shared coordinates mutable should not be allowed.");
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			coords.set(0, 5);
+			fail("Modifying shared coordinates should not be allowed.");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
 }
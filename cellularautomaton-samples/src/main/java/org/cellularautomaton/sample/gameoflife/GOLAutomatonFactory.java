@@ -1,10 +1,12 @@
 package org.cellularautomaton.sample.gameoflife;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.cellularautomaton.CellularAutomaton;
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
 import org.cellularautomaton.rule.IRule;
 import org.cellularautomaton.space.builder.SpaceBuilder;
 import org.cellularautomaton.state.EnumStateFactory;
@@ -13,6 +15,8 @@ import org.cellularautomaton.util.Coords;
 
 public class GOLAutomatonFactory {
 
+	private static final Neighborhood NEIGHBORHOOD = Neighborhood.moore(2);
+
 	public static CellularAutomaton<GameOfLifeState> createAutomaton() {
 		IRule<GameOfLifeState> rule = new IRule<GameOfLifeState>() {
 
@@ -20,10 +24,9 @@ public class GOLAutomatonFactory {
 					ICell<GameOfLifeState> cell) {
 				final boolean isAlive = cell.getCurrentState() == GameOfLifeState.ALIVE;
 				int aliveNeighbors = 0;
-				for (final int[] coords : new int[][] { { -1, -1 }, { -1, 0 },
-						{ -1, 1 }, { 0, -1 }, { 0, 1 }, { +1, -1 }, { +1, 0 },
-						{ +1, 1 } }) {
-					if (cell.getRelativeCell(coords).getCurrentState() == GameOfLifeState.ALIVE) {
+				for (ICell<GameOfLifeState> neighbor : cell
+						.getNeighbors(NEIGHBORHOOD)) {
+					if (neighbor.getCurrentState() == GameOfLifeState.ALIVE) {
 						aliveNeighbors++;
 					}
 				}
@@ -47,10 +50,11 @@ public class GOLAutomatonFactory {
 				return GameOfLifeState.DEAD;
 			}
 
-			private final List<Coords> aliveCoords = Arrays
-					.asList(new Coords[] { new Coords(2, 0), new Coords(2, 1),
+			private final Set<Coords> aliveCoords = new HashSet<Coords>(
+					Arrays.asList(new Coords[] { new Coords(2, 0),
+							new Coords(2, 1),
 							new Coords(1, 2), new Coords(3, 1),
-							new Coords(3, 2), });
+							new Coords(3, 2), }));
 
 			@Override
 			public void customize(ICell<GameOfLifeState> cell) {
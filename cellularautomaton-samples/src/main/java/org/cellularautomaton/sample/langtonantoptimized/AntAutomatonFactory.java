@@ -18,7 +18,7 @@ public class AntAutomatonFactory {
 					protected Collection<ICell<AntState>> getCellsDependingTo(
 							ICell<AntState> cell) {
 						// heuristic optimization
-						return cell.getAllCellsAround();
+						return cell.getCellsAround();
 					}
 				});
 
@@ -1,10 +1,12 @@
 package org.cellularautomaton.sample.wireworld;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.cellularautomaton.CellularAutomaton;
 import org.cellularautomaton.cell.ICell;
+import org.cellularautomaton.cell.Neighborhood;
 import org.cellularautomaton.rule.IRule;
 import org.cellularautomaton.space.builder.SpaceBuilder;
 import org.cellularautomaton.state.EnumStateFactory;
@@ -13,6 +15,8 @@ import org.cellularautomaton.util.Coords;
 
 public class WireWorldAutomatonFactory {
 
+	private static final Neighborhood NEIGHBORHOOD = Neighborhood.moore(2);
+
 	public static CellularAutomaton<WireWorldState> createAutomaton() {
 		IRule<WireWorldState> rule = new IRule<WireWorldState>() {
 			public WireWorldState calculateNextStateOf(
@@ -22,10 +26,9 @@ public class WireWorldAutomatonFactory {
 					return WireWorldState.EMPTY;
 				case METAL:
 					int heads = 0;
-					for (final int[] coords : new int[][] { { -1, -1 },
-							{ -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 },
-							{ +1, -1 }, { +1, 0 }, { +1, 1 } }) {
-						if (cell.getRelativeCell(coords).getCurrentState() == WireWorldState.HEAD) {
+					for (ICell<WireWorldState> neighbor : cell
+							.getNeighbors(NEIGHBORHOOD)) {
+						if (neighbor.getCurrentState() == WireWorldState.HEAD) {
 							heads++;
 						}
 					}
@@ -56,8 +59,9 @@ public class WireWorldAutomatonFactory {
 				return WireWorldState.EMPTY;
 			}
 
-			private final List<Coords> metalCoords = Arrays
-					.asList(new Coords[] { new Coords(2, 0), new Coords(2, 1),
+			private final Set<Coords> metalCoords = new HashSet<Coords>(
+					Arrays.asList(new Coords[] { new Coords(2, 0),
+							new Coords(2, 1),
 							new Coords(2, 2), new Coords(2, 3),
 							new Coords(2, 4), new Coords(1, 5),
 							new Coords(3, 5), new Coords(1, 6),
@@ -83,13 +87,15 @@ public class WireWorldAutomatonFactory {
 							new Coords(6, 12), new Coords(6, 13),
 							new Coords(8, 10), new Coords(8, 11),
 							new Coords(8, 12), new Coords(8, 13),
-							new Coords(7, 14), });
+							new Coords(7, 14), }));
 
-			private final List<Coords> headCoords = Arrays.asList(new Coords[] {
-					new Coords(2, 14), new Coords(7, 14) });
+			private final Set<Coords> headCoords = new HashSet<Coords>(
+					Arrays.asList(new Coords[] { new Coords(2, 14),
+							new Coords(7, 14) }));
 
-			private final List<Coords> queueCoords = Arrays
-					.asList(new Coords[] { new Coords(3, 13), new Coords(8, 13) });
+			private final Set<Coords> queueCoords = new HashSet<Coords>(
+					Arrays.asList(new Coords[] { new Coords(3, 13),
+							new Coords(8, 13) }));
 
 			@Override
 			public void customize(ICell<WireWorldState> cell) {